@@ -0,0 +1,72 @@
+package logfilefilter.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import logfilefilter.JavaLogFileFilter;
+
+/**
+ * Filters a generated log file into a target file with
+ * {@link JavaLogFileFilter#execute()}, like the command line does. Each
+ * operation is the whole file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark {
+	private static final long FILE_SIZE = 64L * 1024 * 1024;
+
+	@Param({ "stream", "mapped", "parallel" })
+	public String mode;
+
+	@Param({ "0.01", "0.5" })
+	public double selectivity;
+
+	private Path source;
+	private Path target;
+	private long entryCount;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		source = Files.createTempFile("EndToEndBenchmark", ".log");
+		target = Files.createTempFile("EndToEndBenchmark", ".out");
+		entryCount = new LogGenerator().setSelectivity(selectivity).generate(source, FILE_SIZE);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.delete(source);
+		Files.delete(target);
+	}
+
+	@Benchmark
+	public void filter(ThroughputCounters counters) throws IOException {
+		JavaLogFileFilter filter = new JavaLogFileFilter();
+		filter.addIncludePattern(LogGenerator.MATCH_PATTERN);
+		filter.setSourceFilePath(source.toString());
+		filter.setTargetFilePath(target.toString());
+		filter.setMemoryMapped("mapped".equals(mode));
+		filter.setParallel("parallel".equals(mode));
+		filter.execute();
+		counters.add(Files.size(source), entryCount);
+	}
+}
@@ -0,0 +1,90 @@
+package logfilefilter.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import logfilefilter.JavaLogFileFilter;
+import logfilefilter.benchmarks.LogGenerator.SizeDistribution;
+import logfilefilter.internal.processors.MappedFileProcessor;
+import logfilefilter.internal.processors.StreamProcessor;
+
+/**
+ * Splits a generated log file into entries, without filtering them: decoded
+ * line by line by the {@link StreamProcessor} and on the raw bytes by the
+ * {@link MappedFileProcessor}. Each operation is the whole file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntrySplittingBenchmark {
+	private static final long FILE_SIZE = 64L * 1024 * 1024;
+
+	@Param({ "5", "50" })
+	public int maxStackDepth;
+
+	@Param({ "UNIFORM", "LONG_TAIL" })
+	public SizeDistribution sizeDistribution;
+
+	private Path file;
+	private long entryCount;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		file = Files.createTempFile("EntrySplittingBenchmark", ".log");
+		entryCount = new LogGenerator().setMaxStackDepth(maxStackDepth).setSizeDistribution(sizeDistribution, 80)
+				.generate(file, FILE_SIZE);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.delete(file);
+	}
+
+	@Benchmark
+	public long streamProcessor(ThroughputCounters counters) throws IOException {
+		AtomicLong entries = new AtomicLong();
+		try (InputStream in = Files.newInputStream(file)) {
+			new StreamProcessor(in, StandardCharsets.UTF_8, JavaLogFileFilter.DEFAULT_DATE_PATTERN)
+					.execute(Arrays.asList(logEntry -> entries.incrementAndGet()));
+		}
+		counters.add(Files.size(file), entryCount);
+		return entries.get();
+	}
+
+	@Benchmark
+	public long mappedFileProcessor(ThroughputCounters counters) throws IOException {
+		AtomicLong entries = new AtomicLong();
+		try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+			new MappedFileProcessor(in, Pattern.compile(JavaLogFileFilter.DEFAULT_DATE_PATTERN))
+					.execute(Arrays.asList(logEntry -> entries.incrementAndGet()));
+		}
+		counters.add(Files.size(file), entryCount);
+		return entries.get();
+	}
+}
@@ -0,0 +1,195 @@
+package logfilefilter.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Generates a synthetic java log file. The content only depends on the
+ * settings and the seed, so results of benchmarks on generated logs can be
+ * compared across commits and machines.
+ * <p>
+ * Every entry starts with a timestamp in the default format, timestamps
+ * increase by one millisecond per entry. Error entries are followed by a stack
+ * trace. The entries matching the benchmark pattern {@link #MATCH_PATTERN} are
+ * chosen by the selectivity.
+ * <p>
+ * The generator can also be run to create a file for manual measurements:
+ *
+ * <pre>
+ * java -cp benchmarks.jar logfilefilter.benchmarks.LogGenerator target.log 100
+ * </pre>
+ */
+public class LogGenerator {
+	/** The include pattern, which only matches the selected entries */
+	public static final String MATCH_PATTERN = "OrderService\\.checkout";
+	private static final String MATCH_TEXT = "OrderService.checkout failed";
+
+	/** The distribution of the message lengths */
+	public enum SizeDistribution {
+		/** Every message has the average length */
+		FIXED,
+		/** Evenly distributed between zero and twice the average length */
+		UNIFORM,
+		/** Mostly short messages, a few very long ones (e.g. dumped requests) */
+		LONG_TAIL
+	}
+
+	private static final String[] LEVELS = { "INFO", "INFO", "INFO", "DEBUG", "WARN" };
+	private static final String WORDS = "lorem ipsum dolor sit amet consectetur adipiscing elit sed do eiusmod "
+			+ "tempor incididunt ut labore et dolore magna aliqua user order invoice request response ";
+
+	private long seed = 42;
+	private int maxStackDepth = 20;
+	private int averageMessageLength = 80;
+	private SizeDistribution sizeDistribution = SizeDistribution.UNIFORM;
+	private double errorRatio = 0.1;
+	private double selectivity = 0.01;
+
+	public LogGenerator setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	/**
+	 * @param maxStackDepth
+	 *            the stack traces of errors have 1 to this number of frames
+	 */
+	public LogGenerator setMaxStackDepth(int maxStackDepth) {
+		this.maxStackDepth = maxStackDepth;
+		return this;
+	}
+
+	public LogGenerator setSizeDistribution(SizeDistribution sizeDistribution, int averageMessageLength) {
+		this.sizeDistribution = sizeDistribution;
+		this.averageMessageLength = averageMessageLength;
+		return this;
+	}
+
+	/**
+	 * @param errorRatio
+	 *            the ratio of error entries with a stack trace
+	 */
+	public LogGenerator setErrorRatio(double errorRatio) {
+		this.errorRatio = errorRatio;
+		return this;
+	}
+
+	/**
+	 * @param selectivity
+	 *            the ratio of entries matching {@link #MATCH_PATTERN}
+	 */
+	public LogGenerator setSelectivity(double selectivity) {
+		this.selectivity = selectivity;
+		return this;
+	}
+
+	/**
+	 * @return the generated log of about the given size
+	 */
+	public String generate(int size) {
+		StringBuilder result = new StringBuilder(size + 4096);
+		Random random = new Random(seed);
+		for (long count = 0; result.length() < size; count++) {
+			appendEntry(result, count, random);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Writes entries to the file until the given size is reached.
+	 *
+	 * @return the number of entries
+	 */
+	public long generate(Path file, long size) throws IOException {
+		try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			Random random = new Random(seed);
+			StringBuilder entry = new StringBuilder(1024);
+			long written = 0;
+			long count = 0;
+			while (written < size) {
+				entry.setLength(0);
+				appendEntry(entry, count++, random);
+				out.append(entry);
+				written += entry.length();
+			}
+			return count;
+		}
+	}
+
+	private void appendEntry(StringBuilder entry, long number, Random random) {
+		boolean error = random.nextDouble() < errorRatio;
+		boolean match = random.nextDouble() < selectivity;
+
+		appendTimestamp(entry, number);
+		entry.append(error ? " ERROR " : " " + LEVELS[random.nextInt(LEVELS.length)] + " ");
+		entry.append("[worker-").append(random.nextInt(16)).append("] ");
+		entry.append(match ? MATCH_TEXT : "Processed request").append(' ').append(number).append(": ");
+		appendWords(entry, messageLength(random), random);
+		entry.append('\n');
+
+		if (error) {
+			entry.append("java.lang.IllegalStateException: Illegal state of object ").append(number).append('\n');
+			int depth = 1 + random.nextInt(maxStackDepth);
+			for (int i = 0; i < depth; i++) {
+				int module = random.nextInt(50);
+				entry.append("\tat com.acme.module").append(module).append(".Service").append(module)
+						.append(".execute(Service").append(module).append(".java:").append(random.nextInt(900) + 10)
+						.append(")\n");
+			}
+		}
+	}
+
+	private int messageLength(Random random) {
+		switch (sizeDistribution) {
+		case FIXED:
+			return averageMessageLength;
+		case LONG_TAIL:
+			// Exponentially distributed with the same mean
+			return (int) Math.min(-Math.log(1 - random.nextDouble()) * averageMessageLength,
+					averageMessageLength * 1000L);
+		default:
+			return random.nextInt(2 * averageMessageLength + 1);
+		}
+	}
+
+	private static void appendWords(StringBuilder entry, int length, Random random) {
+		int end = entry.length() + length;
+		while (entry.length() < end) {
+			int start = random.nextInt(WORDS.length() - 16);
+			entry.append(WORDS, start, Math.min(start + end - entry.length(), WORDS.length()));
+		}
+	}
+
+	/**
+	 * One millisecond per entry, starting at 2016-04-27 00:00:00,000
+	 */
+	private static void appendTimestamp(StringBuilder entry, long number) {
+		long millis = number % (24L * 3600 * 1000);
+		entry.append("2016-04-27 ");
+		appendTwoDigits(entry, millis / 3600000);
+		entry.append(':');
+		appendTwoDigits(entry, millis / 60000 % 60);
+		entry.append(':');
+		appendTwoDigits(entry, millis / 1000 % 60);
+		entry.append(',');
+		long milli = millis % 1000;
+		entry.append(milli < 100 ? "0" : "").append(milli < 10 ? "0" : "").append(milli);
+	}
+
+	private static void appendTwoDigits(StringBuilder entry, long value) {
+		entry.append(value < 10 ? "0" : "").append(value);
+	}
+
+	/**
+	 * Arguments: the target file and its size in MB
+	 */
+	public static void main(String[] args) throws IOException {
+		long count = new LogGenerator().generate(Paths.get(args[0]), Long.parseLong(args[1]) * 1024 * 1024);
+		System.out.println(count + " entries written to " + args[0]);
+	}
+}
@@ -0,0 +1,98 @@
+package logfilefilter.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import logfilefilter.internal.processors.FixedWidthLogLineDetector;
+import logfilefilter.internal.processors.LogLineDetector;
+import logfilefilter.internal.processors.RegexLogLineDetector;
+
+/**
+ * Compares the detection of the begin of a log entry: a new {@link Pattern}
+ * matcher per line (the former implementation), a reused anchored matcher and
+ * the fixed width detector. Each operation is one line, a tenth of the lines
+ * start a log entry.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogLineDetectorBenchmark {
+	private static final int LINE_COUNT = 1000;
+
+	@Param({ "default", "iso", "isoOffset" })
+	public String layout;
+
+	private String[] lines;
+	private Pattern pattern;
+	private LogLineDetector regexDetector;
+	private LogLineDetector fixedWidthDetector;
+
+	@Setup
+	public void setUp() {
+		String timestamp;
+		switch (layout) {
+		case "iso":
+			pattern = Pattern.compile("^\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}");
+			timestamp = "2016-04-27 14:38:44";
+			break;
+		case "isoOffset":
+			pattern = Pattern.compile("^\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\.\\d{3}[+-]\\d{2}:\\d{2}");
+			timestamp = "2016-04-27T14:38:44.123+02:00";
+			break;
+		default:
+			pattern = Pattern.compile("^[0-9-]{10} [0-9:,]{12}");
+			timestamp = "2016-04-27 14:38:44,123";
+			break;
+		}
+
+		lines = new String[LINE_COUNT];
+		for (int i = 0; i < LINE_COUNT; i++) {
+			lines[i] = i % 10 == 0 ? timestamp + " ERROR An Exception occurred: Illegal state of object " + i
+					: "\tat com.acme.billing.InvoiceService.execute(InvoiceService.java:" + i + ")";
+		}
+
+		regexDetector = new RegexLogLineDetector(pattern);
+		fixedWidthDetector = FixedWidthLogLineDetector.compile(pattern);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LINE_COUNT)
+	public void newMatcherFind(Blackhole blackhole) {
+		for (String line : lines) {
+			blackhole.consume(pattern.matcher(line).find());
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LINE_COUNT)
+	public void reusedAnchoredMatcher(Blackhole blackhole) {
+		for (String line : lines) {
+			blackhole.consume(regexDetector.isLogLine(line));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LINE_COUNT)
+	public void fixedWidth(Blackhole blackhole) {
+		for (String line : lines) {
+			blackhole.consume(fixedWidthDetector.isLogLine(line));
+		}
+	}
+}
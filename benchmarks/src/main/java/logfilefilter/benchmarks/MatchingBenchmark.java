@@ -0,0 +1,113 @@
+package logfilefilter.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import logfilefilter.JavaLogFileFilter;
+import logfilefilter.internal.filters.FilterPlan;
+import logfilefilter.internal.processors.StreamProcessor;
+
+/**
+ * Applies include and exclude patterns to already split entries: one
+ * {@link Pattern} search per pattern and entry (the former implementation)
+ * compared to the {@link FilterPlan}. Each operation is all entries of a
+ * generated log.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchingBenchmark {
+	private static final int LOG_SIZE = 8 * 1024 * 1024;
+
+	@Param({ "0.001", "0.1" })
+	public double selectivity;
+
+	/** The number of additional exclude patterns */
+	@Param({ "1", "10" })
+	public int excludeCount;
+
+	private String[] entries;
+	private long size;
+	private List<String> includePatterns;
+	private List<String> excludePatterns;
+	private Pattern[] includes;
+	private Pattern[] excludes;
+	private FilterPlan filterPlan;
+
+	@Setup
+	public void setUp() {
+		String log = new LogGenerator().setSelectivity(selectivity).generate(LOG_SIZE);
+		size = log.length();
+		List<String> entryList = new ArrayList<>();
+		new StreamProcessor(new ByteArrayInputStream(log.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8,
+				JavaLogFileFilter.DEFAULT_DATE_PATTERN).execute(Arrays.asList(entryList::add));
+		entries = entryList.toArray(new String[entryList.size()]);
+
+		includePatterns = Arrays.asList(LogGenerator.MATCH_PATTERN);
+		excludePatterns = new ArrayList<>();
+		for (int i = 0; i < excludeCount; i++) {
+			excludePatterns.add("Service" + (i + 100) + "\\.execute");
+		}
+		includes = compile(includePatterns);
+		excludes = compile(excludePatterns);
+		filterPlan = FilterPlan.compile(includePatterns, excludePatterns);
+	}
+
+	private static Pattern[] compile(List<String> patterns) {
+		return patterns.stream().map(Pattern::compile).toArray(Pattern[]::new);
+	}
+
+	@Benchmark
+	public long patternPerEntry(ThroughputCounters counters) {
+		long matched = 0;
+		for (String entry : entries) {
+			matched += matches(entry) ? 1 : 0;
+		}
+		counters.add(size, entries.length);
+		return matched;
+	}
+
+	private boolean matches(String entry) {
+		for (Pattern include : includes) {
+			if (include.matcher(entry).find()) {
+				return true;
+			}
+		}
+		for (Pattern exclude : excludes) {
+			if (exclude.matcher(entry).find()) {
+				return false;
+			}
+		}
+		return excludes.length > 0;
+	}
+
+	@Benchmark
+	public long filterPlan(ThroughputCounters counters) {
+		long matched = 0;
+		for (String entry : entries) {
+			matched += filterPlan.test(entry) ? 1 : 0;
+		}
+		counters.add(size, entries.length);
+		return matched;
+	}
+}
@@ -0,0 +1,29 @@
+package logfilefilter.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Additional results of a benchmark: JMH reports the counters as rate, so
+ * with a time unit of seconds they are MB/s and entries/s.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class ThroughputCounters {
+	public double megabytes;
+	public long entries;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		megabytes = 0;
+		entries = 0;
+	}
+
+	public void add(long bytes, long entryCount) {
+		megabytes += bytes / (1024.0 * 1024.0);
+		entries += entryCount;
+	}
+}
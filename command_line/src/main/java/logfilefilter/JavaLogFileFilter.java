@@ -1,16 +1,82 @@
 package logfilefilter;
 
+import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
 import java.util.regex.Pattern;
 
+import logfilefilter.internal.aggregation.EntryAggregator;
+import logfilefilter.internal.aggregation.EntryFingerprinter;
+import logfilefilter.internal.aggregation.FingerprintTable;
+import logfilefilter.internal.aggregation.Histogram;
+import logfilefilter.internal.aggregation.HistogramColumns;
+import logfilefilter.internal.batch.BatchWorkers;
+import logfilefilter.internal.batch.ConcurrencyLimits;
+import logfilefilter.internal.batch.FileSummary;
+import logfilefilter.internal.cache.MatchOffsets;
+import logfilefilter.internal.cache.ResultCache;
+import logfilefilter.internal.filters.FilterPlan;
+import logfilefilter.internal.filters.FilterPlanCache;
+import logfilefilter.internal.filters.HeaderFilter;
+import logfilefilter.internal.filters.HeaderLayout;
+import logfilefilter.internal.filters.LinearRegex;
+import logfilefilter.internal.filters.RegexEngine;
+import logfilefilter.internal.index.EntryIndex;
+import logfilefilter.internal.index.EntryIndexBuilder;
+import logfilefilter.internal.index.TimestampParser;
+import logfilefilter.internal.index.TrigramIndex;
+import logfilefilter.internal.index.TrigramIndexBuilder;
+import logfilefilter.internal.input.AsyncInputStream;
+import logfilefilter.internal.input.CompressionCodec;
+import logfilefilter.internal.input.CompressionCodecs;
+import logfilefilter.internal.input.SourceResolver;
+import logfilefilter.internal.output.BufferedOutputSink;
+import logfilefilter.internal.output.FlushPolicy;
+import logfilefilter.internal.output.OutputSink;
+import logfilefilter.internal.output.ParallelGzipOutputStream;
+import logfilefilter.internal.output.RotatingOutputSink;
+import logfilefilter.internal.processors.ByteSequence;
+import logfilefilter.internal.processors.EntryOffsetCache;
+import logfilefilter.internal.processors.EntryOffsetTable;
+import logfilefilter.internal.processors.FollowProcessor;
+import logfilefilter.internal.processors.MappedFileProcessor;
+import logfilefilter.internal.processors.ParallelFileProcessor;
+import logfilefilter.internal.processors.MergeProcessor;
+import logfilefilter.internal.processors.OversizedEntryPolicy;
+import logfilefilter.internal.processors.PipelinedStreamProcessor;
 import logfilefilter.internal.processors.StreamProcessor;
+import logfilefilter.internal.statistics.FilterStatistics;
 
 /**
  * Filters java log files with the help of include and exclude {@link Pattern
@@ -38,8 +104,22 @@ import logfilefilter.internal.processors.StreamProcessor;
  * exceptions, which should be ignored) " MyClass.execute(83)" will return the
  * first and the last line.
  * <p>
- * If no source file is defined, {@link System#in} is used as source stream.<br>
+ * Several include and exclude patterns can be defined. A log message is
+ * written, if it matches any include pattern or if it does not match any of
+ * the exclude patterns.
+ * <p>
+ * If no source file is defined, {@link System#in} is used as source stream.
+ * Several source files (or glob patterns) can be defined, gzip compressed
+ * files are decompressed automatically.<br>
+ * The entries can be limited to a time range. For uncompressed files, only
+ * the byte range of the time range is read, found by a sparse
+ * {@link EntryIndex} of entry offsets and timestamps.<br>
+ * The entries can be limited by conditions on the header fields of their
+ * first line, like level and logger. They are checked before any pattern, see
+ * {@link HeaderLayout}.<br>
  * If no target file is defined, {@link System#out} is used as target stream.
+ * A target file ending with {@link #GZIP_EXTENSION} is compressed on all
+ * cores.
  * The default timestamp-format is {@link #DEFAULT_DATE_PATTERN}.
  *
  * @author joegotgit@outlook.de
@@ -51,100 +131,1599 @@ public class JavaLogFileFilter {
 	 */
 	public static final String DEFAULT_DATE_PATTERN = "^[0-9-]{10} [0-9:,]{12}";
 
-	private String includePattern = null;
-	private String excludePattern = null;
+	/** A target file with this extension is gzip compressed */
+	public static final String GZIP_EXTENSION = ".gz";
+
+	/** Default number of batch workers reading at the same time */
+	public static final int DEFAULT_BATCH_IO_LIMIT = 4;
+	private static final int BATCH_READ_SIZE = 1 << 16;
+
+	private final List<String> includePatterns = new ArrayList<>();
+	private final List<String> excludePatterns = new ArrayList<>();
 
 	private String datePattern = DEFAULT_DATE_PATTERN;
 
-	private String sourceFilePath = null;
+	private final List<String> sourceFilePaths = new ArrayList<>();
 	private String targetFilePath = null;
 
+	private boolean memoryMapped = false;
+	private boolean parallel = false;
+
+	private Charset inputCharset = Charset.defaultCharset();
+	private Charset outputCharset = null;
+	private boolean raw = false;
+	private long rotateSize = 0;
+	private FlushPolicy flushPolicy = FlushPolicy.BUFFER;
+	private long flushIntervalMillis = 0;
+	private boolean gatherWrites = false;
+	private String timeFormat = TimestampParser.DEFAULT_TIME_FORMAT;
+	private String from = null;
+	private String to = null;
+	private String headerLayout = HeaderLayout.DEFAULT_PRESET;
+	private final List<String> levelConditions = new ArrayList<>();
+	private final List<String> loggers = new ArrayList<>();
+	private final List<String> threadPatterns = new ArrayList<>();
+	private final List<String> messagePatterns = new ArrayList<>();
+	private boolean index = false;
+	private boolean buildTrigramIndex = false;
+	private boolean statisticsReport = false;
+	private long progressIntervalMillis = 0;
+	private boolean jmx = false;
+	private EntryOffsetCache entryOffsetCache = null;
+	private FilterPlanCache filterPlanCache = null;
+	private OutputStream standardOutput = null;
+	private PrintStream standardError = null;
+	private ResultCache resultCache = null;
+	private boolean recordStatistics = false;
+	private volatile FilterStatistics statistics = null;
+	private Consumer<String> entryObserver = null;
+	private volatile boolean cancelled = false;
+	private boolean follow = false;
+	private long idleFlushTimeoutMillis = FollowProcessor.DEFAULT_IDLE_FLUSH_TIMEOUT;
+	private int maxEntrySize = 0;
+	private OversizedEntryPolicy oversizedEntryPolicy = OversizedEntryPolicy.TRUNCATE;
+	private RegexEngine regexEngine = RegexEngine.JAVA;
+	private long matchBudgetMillis = 0;
+	private boolean batch = false;
+	private int batchJobs = Runtime.getRuntime().availableProcessors() * 2;
+	private int batchCpuLimit = Runtime.getRuntime().availableProcessors();
+	private int batchIoLimit = DEFAULT_BATCH_IO_LIMIT;
+	private boolean merge = false;
+	private boolean mergeTag = false;
+	private boolean aggregate = false;
+	private long histogramGranularityMillis = 0;
+	private HistogramColumns histogramColumns = HistogramColumns.LEVEL;
+	private boolean histogramCsv = false;
+	private int aggregateFrames = EntryFingerprinter.DEFAULT_FRAME_COUNT;
+
 	private class ProcessorContext {
-		private String lastWrittenLogEntry = "";
-		private OutputStream out;
+		private OutputSink out;
+		/** If set, the entries are aggregated instead of written */
+		private EntryAggregator aggregator;
+		/** If set, the entries are counted instead of written */
+		private Histogram histogram;
 
-		public ProcessorContext(OutputStream out) {
+		public ProcessorContext(OutputSink out) {
 			this.out = out;
 		}
 
-		public void writeIfNotDoneYet(String logEntry) {
-			if (!lastWrittenLogEntry.equals(logEntry)) {
-				try {
-					out.write(logEntry.getBytes());
-					lastWrittenLogEntry = logEntry;
-				} catch (Exception e) {
-					throw new IllegalStateException(e);
-				}
+		public void write(CharSequence logEntry) {
+			if (aggregator != null) {
+				aggregator.add(logEntry);
+				return;
+			}
+			if (histogram != null) {
+				histogram.add(logEntry);
+				return;
+			}
+			writeOutput(logEntry);
+		}
+
+		private void writeOutput(CharSequence logEntry) {
+			long start = statistics != null ? System.nanoTime() : 0;
+			try {
+				out.write(logEntry);
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			written(logEntry.length(), start);
+			if (entryObserver != null) {
+				entryObserver.accept(logEntry.toString());
+			}
+		}
+
+		public void write(ByteSequence logEntry) {
+			if (aggregator != null) {
+				aggregator.add(logEntry);
+				return;
+			}
+			if (histogram != null) {
+				histogram.add(logEntry);
+				return;
 			}
+			long start = statistics != null ? System.nanoTime() : 0;
+			try {
+				out.write(logEntry);
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			written(logEntry.length(), start);
+			if (entryObserver != null) {
+				entryObserver.accept(logEntry.decode(raw ? StandardCharsets.ISO_8859_1 : inputCharset));
+			}
+		}
+
+		private void written(int length, long start) {
+			if (statistics != null) {
+				statistics.addWritten(length, System.nanoTime() - start);
+			}
+		}
+
+		/**
+		 * Writes the summary of the aggregated entries or the histogram.
+		 */
+		public void finish() {
+			if (aggregator != null) {
+				EntryAggregator entries = aggregator;
+				aggregator = null;
+				entries.writeSummary(this::write);
+			}
+			if (histogram != null) {
+				histogram.writeAllRows(this::writeOutput);
+			}
+		}
+
+		public void flush() {
+			if (histogram != null) {
+				histogram.writeCompletedRows(this::writeOutput);
+			}
+			try {
+				out.flush();
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	private ProcessorContext newProcessorContext(OutputSink out) {
+		if (aggregate && histogramGranularityMillis > 0) {
+			throw new IllegalArgumentException("Aggregation and histogram cannot be combined");
+		}
+		ProcessorContext result = new ProcessorContext(out);
+		if (aggregate) {
+			result.aggregator = newEntryAggregator();
 		}
+		if (histogramGranularityMillis > 0) {
+			result.histogram = newHistogram();
+		}
+		return result;
 	}
 
 	public void execute() throws IOException {
-		List<Consumer<String>> consumerList = new ArrayList<>();
-
-		try (OutputStream out = getOutStream(); InputStream in = getInputStream()) {
-			ProcessorContext processorCtx = new ProcessorContext(out);
-			if (includePattern != null) {
-				Pattern includePattern = Pattern.compile(this.includePattern);
-				consumerList.add(logEntry -> {
-					if (includePattern.matcher(logEntry).find()) {
-						processorCtx.writeIfNotDoneYet(logEntry);
+		statistics = recordStatistics || statisticsReport || progressIntervalMillis > 0 || jmx
+				? new FilterStatistics(new ArrayList<>(includePatterns), new ArrayList<>(excludePatterns)) : null;
+		ScheduledExecutorService progressReporter = startStatistics();
+		try {
+			filter();
+		} finally {
+			stopStatistics(progressReporter);
+		}
+	}
+
+	private void filter() throws IOException {
+		if (regexEngine == RegexEngine.LINEAR) {
+			for (String pattern : includeAndExcludePatterns()) {
+				if (!LinearRegex.isSupported(pattern)) {
+					standardError().println("Pattern '" + pattern + "' is not supported by the linear regex engine,"
+							+ " java.util.regex is used");
+				}
+			}
+		}
+		FilterPlan entryPlan = newEntryFilter(raw ? this::toByteView : Function.identity());
+		FilterPlan bytePlan = newEntryFilter(this::toByteView);
+		// Counted per execution, a cached plan is shared with other executions
+		LongAdder budgetExceeded = new LongAdder();
+		try {
+			filter(entryPlan, bytePlan, budgetExceeded);
+		} finally {
+			if (budgetExceeded.sum() > 0) {
+				standardError().println(budgetExceeded.sum() + " entries exceeded the match time budget of "
+						+ matchBudgetMillis + " ms, the exceeding patterns were treated as not matching");
+			}
+		}
+	}
+
+	/**
+	 * @return <code>true</code>, if the byte views of the patterns match the
+	 *         bytes of an entry like the patterns match the decoded entry
+	 * @see ByteSequence#hasExactByteView(String, Charset, boolean)
+	 */
+	private boolean hasExactByteViews(boolean bytewise) {
+		List<String> patterns = includeAndExcludePatterns();
+		patterns.addAll(threadPatterns);
+		patterns.addAll(messagePatterns);
+		for (String pattern : patterns) {
+			if (!ByteSequence.hasExactByteView(pattern, inputCharset, bytewise)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private List<String> includeAndExcludePatterns() {
+		List<String> result = new ArrayList<>(includePatterns);
+		result.addAll(excludePatterns);
+		return result;
+	}
+
+	private void filter(FilterPlan entryPlan, FilterPlan bytePlan, LongAdder budgetExceeded) throws IOException {
+		Function<String, String> entryView = raw ? this::toByteView : Function.identity();
+		Predicate<CharSequence> entryFilter = measured(withHeaderFields(withTimeRange(
+				withMatchListener(entryPlan, budgetExceeded), entryView.apply(datePattern)), entryView), false);
+		Predicate<CharSequence> byteEntryFilter = measured(withHeaderFields(withTimeRange(
+				withMatchListener(bytePlan, budgetExceeded), toByteView(datePattern)), this::toByteView), true);
+		if (entryFilter == null && histogramGranularityMillis > 0) {
+			// All entries are counted
+			entryFilter = measured(logEntry -> true, false);
+			byteEntryFilter = measured(logEntry -> true, true);
+		}
+		// The files are only matched as bytes, if the byte views match like the patterns
+		// In raw mode, '.' and the like match single bytes anyway
+		boolean byteView = hasExactByteViews(raw);
+		if (raw && !byteView) {
+			throw new IllegalArgumentException("A pattern has a multi-byte character in a character class or under"
+					+ " a quantifier, it cannot be matched on the raw bytes");
+		}
+		List<Path> sources = SourceResolver.resolve(sourceFilePaths);
+
+		if (batch && entryFilter != null && targetFilePath != null && Files.isDirectory(Paths.get(targetFilePath))) {
+			executeBatch(null, entryFilter, sources, Paths.get(targetFilePath));
+			return;
+		}
+
+		try (OutputSink out = newOutputSink()) {
+			ProcessorContext processorCtx = newProcessorContext(out);
+			if (entryFilter == null || buildTrigramIndex) {
+				updateIndexes(sources);
+			}
+			if (entryFilter == null) {
+				return;
+			}
+
+			if (follow) {
+				if (sources.size() != 1) {
+					throw new IllegalArgumentException("Follow mode needs exactly one source file");
+				}
+				if (aggregate) {
+					throw new IllegalArgumentException("Follow mode cannot aggregate, it never ends");
+				}
+				if (batch) {
+					throw new IllegalArgumentException("Follow mode cannot be combined with batch mode");
+				}
+				executeFollow(processorCtx, entryFilter, sources.get(0));
+				return;
+			}
+
+			if (merge) {
+				executeMerge(processorCtx, entryFilter, sources);
+				processorCtx.finish();
+				return;
+			}
+
+			if (batch) {
+				executeBatch(processorCtx, entryFilter, sources, null);
+				processorCtx.finish();
+				return;
+			}
+
+			if (sources.isEmpty()) {
+				executeStream(processorCtx, entryFilter, getInputStream(null, null));
+			}
+			// Each source is processed separately, so the last entry of a file
+			// is never merged with the first line of the next file
+			for (Path source : sources) {
+				CompressionCodec codec = CompressionCodecs.detect(source);
+				boolean bytePath = codec == null && byteView;
+				if (bytePath && (from != null || to != null)) {
+					executeTimeRange(processorCtx, byteEntryFilter, source);
+				} else if (bytePath && !includePatterns.isEmpty() && excludePatterns.isEmpty()
+						&& Files.isRegularFile(TrigramIndex.indexFileOf(source))) {
+					executeTrigramIndexed(processorCtx, byteEntryFilter, source);
+				} else if (bytePath && resultCache != null && matchBudgetMillis == 0
+						&& resultCache.isCacheable(source)) {
+					executeResultCached(processorCtx, byteEntryFilter, source);
+				} else if (bytePath && entryOffsetCache != null) {
+					executeCached(processorCtx, byteEntryFilter, source);
+				} else if (bytePath && parallel) {
+					executeParallel(processorCtx, byteEntryFilter, source);
+				} else if (bytePath && memoryMapped) {
+					executeMapped(processorCtx, byteEntryFilter, source);
+				} else {
+					executeStream(processorCtx, entryFilter, getInputStream(source, codec));
+				}
+			}
+			processorCtx.finish();
+		}
+	}
+
+	private void executeStream(ProcessorContext processorCtx, Predicate<CharSequence> entryFilter, InputStream input)
+			throws IOException {
+		// A spilled oversized entry is only valid during the call, it cannot
+		// wait in a batch
+		if (parallel && !(maxEntrySize > 0 && oversizedEntryPolicy == OversizedEntryPolicy.STREAM)) {
+			executePipelined(processorCtx, entryFilter, input);
+		} else {
+			executeStream(entryFilter, input, processorCtx::write);
+		}
+	}
+
+	/**
+	 * A stream cannot be split into chunks like a file. It is read ahead on
+	 * one thread, its entries are assembled on another one and matched in
+	 * batches on all cores, see {@link PipelinedStreamProcessor}.
+	 */
+	private void executePipelined(ProcessorContext processorCtx, Predicate<CharSequence> entryFilter,
+			InputStream input) throws IOException {
+		// Decompressed sources are read ahead already
+		InputStream readAhead = input instanceof AsyncInputStream ? input : new AsyncInputStream(input, "Read input");
+		try (InputStream in = statistics != null ? statistics.measureReads(readAhead) : readAhead) {
+			ForkJoinPool pool = new ForkJoinPool();
+			try {
+				newPipelinedStreamProcessor(newSteamProcessor(in), pool).execute(entryFilter, processorCtx::write);
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+
+	private void executeStream(Predicate<CharSequence> entryFilter, InputStream input,
+			Consumer<CharSequence> consumer) throws IOException {
+		try (InputStream in = statistics != null ? statistics.measureReads(input) : input) {
+			StreamProcessor processor = newSteamProcessor(in);
+			processor.setOversizedEntryConsumer(logEntry -> {
+				if (entryFilter.test(logEntry)) {
+					consumer.accept(logEntry);
+				}
+			});
+			processor.execute(Arrays.asList(logEntry -> {
+				if (entryFilter.test(logEntry)) {
+					consumer.accept(logEntry);
+				}
+			}));
+		}
+	}
+
+	/**
+	 * The sources are filtered concurrently by a bounded number of workers,
+	 * limited further by the CPU and I/O limits. The entries are written to
+	 * the combined output or, without it, to one file per source in the
+	 * target directory. A summary of all files is printed to stderr.
+	 *
+	 * @param combinedCtx
+	 *            the combined output or <code>null</code>
+	 */
+	private void executeBatch(ProcessorContext combinedCtx, Predicate<CharSequence> entryFilter, List<Path> sources,
+			Path targetDirectory) throws IOException {
+		if (sources.isEmpty()) {
+			throw new IllegalArgumentException("Batch mode needs source files");
+		}
+		ConcurrencyLimits limits = new ConcurrencyLimits(batchCpuLimit, batchIoLimit);
+		Predicate<CharSequence> limitedFilter = limits.limitCpu(entryFilter);
+		Path baseDirectory = commonDirectory(sources);
+
+		List<FileSummary> summaries = new ArrayList<>();
+		List<Future<?>> results = new ArrayList<>();
+		Semaphore jobs = new Semaphore(batchJobs);
+		ExecutorService workers = BatchWorkers.newExecutor(batchJobs);
+		try {
+			for (Path source : sources) {
+				FileSummary summary = new FileSummary(source);
+				summaries.add(summary);
+				jobs.acquire();
+				results.add(workers.submit(() -> {
+					long start = System.nanoTime();
+					Throwable failure = null;
+					try {
+						Predicate<CharSequence> countingFilter = logEntry -> {
+							boolean matched = limitedFilter.test(logEntry);
+							summary.addEntry(matched);
+							return matched;
+						};
+						InputStream input = new BufferedInputStream(
+								limits.limitIo(getInputStream(source, CompressionCodecs.detect(source))),
+								BATCH_READ_SIZE);
+						if (combinedCtx != null) {
+							executeBatchCombined(combinedCtx, countingFilter, input, source);
+						} else {
+							executeBatchFile(countingFilter, input, batchTarget(targetDirectory, baseDirectory, source));
+						}
+					} catch (CancellationException e) {
+						failure = e;
+						throw e;
+					} catch (Exception e) {
+						failure = e;
+					} finally {
+						limits.release();
+						summary.finish(System.nanoTime() - start, failure);
+						jobs.release();
 					}
-				});
+					return null;
+				}));
+			}
+
+			for (Future<?> result : results) {
+				result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Batch interrupted");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			workers.shutdownNow();
+		}
+
+		standardError().println(FileSummary.toTable(summaries));
+		long failed = summaries.stream().filter(summary -> summary.getFailure() != null).count();
+		if (failed > 0) {
+			throw new IllegalStateException(failed + " of " + sources.size() + " files failed");
+		}
+	}
+
+	private void executeBatchCombined(ProcessorContext combinedCtx, Predicate<CharSequence> entryFilter,
+			InputStream input, Path source) throws IOException {
+		String tag = mergeTag ? "[" + source.getFileName() + "] " : "";
+		executeStream(entryFilter, input, logEntry -> {
+			synchronized (combinedCtx) {
+				combinedCtx.write(tag.isEmpty() ? logEntry : tag + logEntry);
+			}
+		});
+	}
+
+	private void executeBatchFile(Predicate<CharSequence> entryFilter, InputStream input, Path target)
+			throws IOException {
+		Files.createDirectories(target.toAbsolutePath().getParent());
+		try (OutputSink out = newOutputSink(target)) {
+			ProcessorContext processorCtx = newProcessorContext(out);
+			executeStream(entryFilter, input, processorCtx::write);
+			processorCtx.finish();
+		}
+	}
+
+	/**
+	 * @return the target of the source in the target directory, at the same
+	 *         relative path as the source below the common directory of all
+	 *         sources. The extension of a compressed source is removed.
+	 */
+	private static Path batchTarget(Path targetDirectory, Path baseDirectory, Path source) throws IOException {
+		String relativePath = baseDirectory.relativize(source.toAbsolutePath().normalize()).toString();
+		int extension = relativePath.lastIndexOf('.');
+		if (CompressionCodecs.detect(source) != null && extension > relativePath.lastIndexOf(File.separatorChar) + 1) {
+			relativePath = relativePath.substring(0, extension);
+		}
+		return targetDirectory.resolve(relativePath);
+	}
+
+	private static Path commonDirectory(List<Path> sources) {
+		Path result = null;
+		for (Path source : sources) {
+			Path directory = source.toAbsolutePath().normalize().getParent();
+			if (result == null) {
+				result = directory;
+			}
+			while (!directory.startsWith(result)) {
+				result = result.getParent();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The sources are read and filtered in parallel, the matching entries are
+	 * merged by their timestamps.
+	 */
+	private void executeMerge(ProcessorContext processorCtx, Predicate<CharSequence> entryFilter, List<Path> sources) {
+		List<MergeProcessor.EntrySource> entrySources = new ArrayList<>();
+		for (Path source : sources) {
+			entrySources.add(consumer -> {
+				try (InputStream input = getInputStream(source, CompressionCodecs.detect(source));
+						InputStream in = statistics != null ? statistics.measureReads(input) : input) {
+					StreamProcessor processor = newSteamProcessor(in);
+					// A spilled entry is only valid during the call, the merge
+					// needs it later
+					processor.setOversizedEntryConsumer(logEntry -> {
+						if (entryFilter.test(logEntry)) {
+							consumer.accept(logEntry.toString());
+						}
+					});
+					processor.execute(Arrays.asList(logEntry -> {
+						if (entryFilter.test(logEntry)) {
+							consumer.accept(logEntry);
+						}
+					}));
+				}
+			});
+		}
+
+		List<String> tags = sources.stream().map(source -> "[" + source.getFileName() + "] ")
+				.collect(Collectors.toList());
+		new MergeProcessor(entrySources, newTimestampParser(raw ? toByteView(datePattern) : datePattern))
+				.execute((logEntry, source) -> processorCtx.write(mergeTag ? tags.get(source) + logEntry : logEntry));
+	}
+
+	private void executeMapped(ProcessorContext processorCtx, Predicate<CharSequence> entryFilter, Path source)
+			throws IOException {
+		try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+			newMappedFileProcessor(in).execute(Arrays.asList(logEntry -> {
+				if (entryFilter.test(logEntry)) {
+					processorCtx.write(logEntry);
+				}
+			}));
+		}
+	}
+
+	private void executeParallel(ProcessorContext processorCtx, Predicate<CharSequence> entryFilter, Path source)
+			throws IOException {
+		try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+			ForkJoinPool pool = new ForkJoinPool();
+			try {
+				newParallelFileProcessor(in, pool).execute(entryFilter, processorCtx::write);
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Only the byte range of the file, which may contain entries of the time
+	 * range, is processed. It is found with the {@link EntryIndex} of the file.
+	 */
+	private void executeTimeRange(ProcessorContext processorCtx, Predicate<CharSequence> entryFilter, Path source)
+			throws IOException {
+		try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+			TimestampParser timestampParser = newTimestampParser(toByteView(datePattern));
+			EntryIndex entryIndex = newEntryIndexBuilder().updateSidecar(source, in, index);
+			long start = from != null ? entryIndex.startOffset(timestampParser.parseQuery(from)) : 0;
+			long end = to != null ? entryIndex.endOffset(timestampParser.parseQuery(to)) : entryIndex.getIndexedSize();
+
+			newMappedFileProcessor(in, start, end).execute(Arrays.asList(logEntry -> {
+				if (entryFilter.test(logEntry)) {
+					processorCtx.write(logEntry);
+				}
+			}));
+		}
+	}
+
+	/**
+	 * The first execution splits the file memory mapped and caches the
+	 * {@link EntryOffsetTable} of its entries, later executions only filter
+	 * the cached entries in parallel.
+	 */
+	private void executeCached(ProcessorContext processorCtx, Predicate<CharSequence> entryFilter, Path source)
+			throws IOException {
+		try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+			EntryOffsetTable table = entryOffsetCache.get(source, datePattern);
+			if (table != null) {
+				ForkJoinPool pool = new ForkJoinPool();
+				try {
+					table.filter(in, entryFilter, processorCtx::write, pool);
+				} finally {
+					pool.shutdown();
+				}
+				return;
+			}
+
+			long modifiedTime = Files.getLastModifiedTime(source).toMillis();
+			EntryOffsetTable.Builder tableBuilder = new EntryOffsetTable.Builder();
+			newMappedFileProcessor(in).execute(Arrays.asList(logEntry -> {
+				tableBuilder.add(logEntry);
+				if (entryFilter.test(logEntry)) {
+					processorCtx.write(logEntry);
+				}
+			}));
+			entryOffsetCache.put(source, tableBuilder.build(modifiedTime, datePattern));
+		}
+	}
+
+	/**
+	 * A repeated query on an unchanged file writes the entries at the cached
+	 * offsets of its matches, otherwise the file is filtered memory mapped
+	 * and the offsets of the matches are cached.
+	 * Not used with a match budget, the matches of such a query depend on
+	 * the time taken.
+	 */
+	private void executeResultCached(ProcessorContext processorCtx, Predicate<CharSequence> entryFilter, Path source)
+			throws IOException {
+		try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+			List<String> query = new ArrayList<>();
+			query.add(datePattern);
+			query.add(raw ? "raw" : inputCharset.name());
+			addQueryParts(query, "include", includePatterns);
+			addQueryParts(query, "exclude", excludePatterns);
+			query.add(regexEngine.name());
+			if (!levelConditions.isEmpty() || !loggers.isEmpty() || !threadPatterns.isEmpty()
+					|| !messagePatterns.isEmpty()) {
+				query.add(headerLayout);
+				addQueryParts(query, "level", levelConditions);
+				addQueryParts(query, "logger", loggers);
+				addQueryParts(query, "thread", threadPatterns);
+				addQueryParts(query, "message", messagePatterns);
+			}
+			String key = resultCache.key(source, query);
+
+			MatchOffsets matches = resultCache.get(key);
+			if (matches != null) {
+				writeMatches(processorCtx, in, matches);
+				return;
 			}
 
-			if (excludePattern != null) {
-				Pattern excludePattern = Pattern.compile(this.excludePattern);
-				consumerList.add(logEntry -> {
-					if (!excludePattern.matcher(logEntry).find()) {
-						processorCtx.writeIfNotDoneYet(logEntry);
+			MatchOffsets newMatches = new MatchOffsets();
+			long[] position = { 0 };
+			newMappedFileProcessor(in).execute(Arrays.asList(logEntry -> {
+				if (entryFilter.test(logEntry)) {
+					newMatches.add(position[0], logEntry.length());
+					processorCtx.write(logEntry);
+				}
+				position[0] += logEntry.length();
+			}));
+			resultCache.put(key, newMatches);
+		}
+	}
+
+	/**
+	 * Adds each value as its own part, so "-i 'x, y'" and "-i x -i y" are
+	 * different queries.
+	 */
+	private static void addQueryParts(List<String> query, String kind, List<String> values) {
+		query.add(kind);
+		query.add(Integer.toString(values.size()));
+		query.addAll(values);
+	}
+
+	private void writeMatches(ProcessorContext processorCtx, FileChannel in, MatchOffsets matches) throws IOException {
+		MappedByteBuffer window = null;
+		long windowStart = 0;
+		for (int i = 0; i < matches.size(); i++) {
+			if (cancelled) {
+				throw new CancellationException("Filter cancelled");
+			}
+			long offset = matches.getOffset(i);
+			int length = matches.getLength(i);
+			if (window == null || offset + length > windowStart + window.limit()) {
+				windowStart = offset;
+				window = in.map(FileChannel.MapMode.READ_ONLY, windowStart,
+						Math.min(in.size() - windowStart, MappedFileProcessor.DEFAULT_WINDOW_SIZE));
+			}
+			processorCtx.write(new ByteSequence(window, (int) (offset - windowStart), length));
+		}
+	}
+
+	/**
+	 * Only the blocks of the file, which may contain a match of an include
+	 * pattern according to the {@link TrigramIndex} of the file, are filtered.
+	 */
+	private void executeTrigramIndexed(ProcessorContext processorCtx, Predicate<CharSequence> entryFilter,
+			Path source) throws IOException {
+		TrigramIndex trigramIndex = TrigramIndex.load(TrigramIndex.indexFileOf(source));
+		try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+			BitSet candidates = trigramIndex != null
+					&& trigramIndex.isValid(in.size(), Files.getLastModifiedTime(source).toMillis(), datePattern)
+							? trigramIndex.candidateBlocks(toView(includePatterns, this::toByteView)) : null;
+			if (candidates == null) {
+				// The index is outdated or the patterns have no literals
+				executeMapped(processorCtx, entryFilter, source);
+				return;
+			}
+
+			for (int block = candidates.nextSetBit(0); block >= 0; block = candidates.nextSetBit(block)) {
+				int lastBlock = candidates.nextClearBit(block) - 1;
+				newMappedFileProcessor(in, trigramIndex.getBlockStart(block), trigramIndex.getBlockEnd(lastBlock))
+						.execute(Arrays.asList(logEntry -> {
+							if (entryFilter.test(logEntry)) {
+								processorCtx.write(logEntry);
+							}
+						}));
+				block = lastBlock + 1;
+			}
+		}
+	}
+
+	private void updateIndexes(List<Path> sources) throws IOException {
+		for (Path source : sources) {
+			if (CompressionCodecs.detect(source) == null && (index || buildTrigramIndex)) {
+				try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+					if (index) {
+						newEntryIndexBuilder().updateSidecar(source, in, true);
+					}
+					if (buildTrigramIndex) {
+						newTrigramIndexBuilder().updateSidecar(source, in);
 					}
-				});
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param entryDatePattern
+	 *            the date pattern in the form of the processed entries
+	 * @return the filter, which additionally checks the time range of an
+	 *         entry, if a time range is defined
+	 */
+	private Predicate<CharSequence> withTimeRange(Predicate<CharSequence> entryFilter, String entryDatePattern) {
+		if (from == null && to == null) {
+			return entryFilter;
+		}
+
+		TimestampParser timestampParser = newTimestampParser(entryDatePattern);
+		long fromMillis = from != null ? timestampParser.parseQuery(from) : Long.MIN_VALUE + 1;
+		long toMillis = to != null ? timestampParser.parseQuery(to) : Long.MAX_VALUE;
+		Predicate<CharSequence> inTimeRange = logEntry -> {
+			long timestamp = timestampParser.parse(logEntry);
+			return timestamp >= fromMillis && timestamp < toMillis;
+		};
+		return entryFilter != null ? inTimeRange.and(entryFilter) : inTimeRange;
+	}
+
+	/**
+	 * @param entryView
+	 *            converts the conditions into the form of the processed
+	 *            entries
+	 * @return the filter, which first checks the header fields of the first
+	 *         line of an entry, if header conditions are defined. Most
+	 *         entries are rejected without scanning them completely.
+	 */
+	private Predicate<CharSequence> withHeaderFields(Predicate<CharSequence> entryFilter,
+			Function<String, String> entryView) {
+		HeaderFilter headerFilter = HeaderFilter.compile(newHeaderLayout(entryView), levelConditions,
+				toView(loggers, entryView), toView(threadPatterns, entryView), toView(messagePatterns, entryView));
+		if (headerFilter == null) {
+			return entryFilter;
+		}
+		return entryFilter != null ? headerFilter.and(entryFilter) : headerFilter;
+	}
+
+	/**
+	 * Runs until the current thread is interrupted. Every written entry is
+	 * flushed immediately.
+	 */
+	private void executeFollow(ProcessorContext processorCtx, Predicate<CharSequence> entryFilter, Path source) {
+		newFollowProcessor(source).execute(entryFilter, processorCtx::write, processorCtx::flush);
+	}
+
+	private ScheduledExecutorService startStatistics() {
+		if (statistics == null) {
+			return null;
+		}
+		if (jmx) {
+			statistics.register();
+		}
+		if (progressIntervalMillis <= 0) {
+			return null;
+		}
+
+		ScheduledExecutorService result = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "progress");
+			thread.setDaemon(true);
+			return thread;
+		});
+		FilterStatistics runStatistics = statistics;
+		PrintStream err = standardError();
+		result.scheduleAtFixedRate(() -> err.println(runStatistics.toProgressLine()), progressIntervalMillis,
+				progressIntervalMillis, TimeUnit.MILLISECONDS);
+		return result;
+	}
+
+	private void stopStatistics(ScheduledExecutorService progressReporter) {
+		if (progressReporter != null) {
+			progressReporter.shutdownNow();
+		}
+		if (statistics != null && jmx) {
+			statistics.unregister();
+		}
+		if (statistics != null && statisticsReport) {
+			standardError().print(statistics.toReport());
+		}
+	}
+
+	/**
+	 * @return the filter, which counts the matches per pattern, if statistics
+	 *         are recorded, and the entries exceeding the match budget
+	 */
+	private Predicate<CharSequence> withMatchListener(FilterPlan filterPlan, LongAdder budgetExceeded) {
+		if (filterPlan == null || statistics == null && matchBudgetMillis <= 0) {
+			return filterPlan;
+		}
+		FilterStatistics runStatistics = statistics;
+		FilterPlan.MatchListener listener = new FilterPlan.MatchListener() {
+			@Override
+			public void includeMatched(int includeIndex) {
+				if (runStatistics != null) {
+					runStatistics.includeMatched(includeIndex);
+				}
+			}
+
+			@Override
+			public void excludeMatched(int excludeIndex) {
+				if (runStatistics != null) {
+					runStatistics.excludeMatched(excludeIndex);
+				}
+			}
+
+			@Override
+			public void budgetExceeded() {
+				budgetExceeded.increment();
 			}
+		};
+		return logEntry -> filterPlan.test(logEntry, listener);
+	}
 
-			if (!consumerList.isEmpty()) {
-				newSteamProcessor(in).execute(consumerList);
+	/**
+	 * @return the filter, which stops the execution by a
+	 *         {@link CancellationException} as soon as it is cancelled
+	 */
+	private Predicate<CharSequence> cancellable(Predicate<CharSequence> entryFilter) {
+		if (entryFilter == null) {
+			return null;
+		}
+		return logEntry -> {
+			if (cancelled) {
+				throw new CancellationException("Filter cancelled");
 			}
+			return entryFilter.test(logEntry);
+		};
+	}
+
+	/**
+	 * @param mappedEntries
+	 *            if <code>true</code>, the filter is applied to the raw bytes
+	 *            of a memory mapped file
+	 * @return the filter, which can be cancelled and counts the entries and
+	 *         the time to filter them, if statistics are recorded
+	 */
+	private Predicate<CharSequence> measured(Predicate<CharSequence> entryFilter, boolean mappedEntries) {
+		Predicate<CharSequence> result = cancellable(entryFilter);
+		return result == null || statistics == null ? result : statistics.measureEntries(result, mappedEntries);
+	}
+
+	/**
+	 * A log entry passes the filter, if it matches any include pattern or if it
+	 * does not match any exclude pattern. See {@link FilterPlan}.
+	 *
+	 * @param patternView
+	 *            converts the patterns into the form of the processed entries
+	 * @return the filter or <code>null</code>, if no pattern is defined
+	 */
+	private FilterPlan newEntryFilter(Function<String, String> patternView) {
+		List<String> entryIncludePatterns = toView(includePatterns, patternView);
+		List<String> entryExcludePatterns = toView(excludePatterns, patternView);
+		long matchBudgetNanos = TimeUnit.MILLISECONDS.toNanos(matchBudgetMillis);
+		if (filterPlanCache != null) {
+			return filterPlanCache.get(entryIncludePatterns, entryExcludePatterns, regexEngine, matchBudgetNanos);
 		}
+		return FilterPlan.compile(entryIncludePatterns, entryExcludePatterns, regexEngine, matchBudgetNanos);
 	}
 
+	private static List<String> toView(List<String> patterns, Function<String, String> patternView) {
+		return patterns.stream().map(patternView).collect(Collectors.toList());
+	}
+
+	/**
+	 * Replaces all include patterns by the given one.
+	 */
 	public void setIncludePattern(String includePattern) {
-		this.includePattern = includePattern;
+		includePatterns.clear();
+		addIncludePattern(includePattern);
 	}
 
+	/**
+	 * Replaces all exclude patterns by the given one.
+	 */
 	public void setExcludePattern(String excludePattern) {
-		this.excludePattern = excludePattern;
+		excludePatterns.clear();
+		addExcludePattern(excludePattern);
+	}
+
+	public void addIncludePattern(String includePattern) {
+		includePatterns.add(includePattern);
+	}
+
+	public void addExcludePattern(String excludePattern) {
+		excludePatterns.add(excludePattern);
+	}
+
+	/**
+	 * Adds each line of the file as include pattern. Empty lines and lines
+	 * starting with '#' are ignored.
+	 */
+	public void addIncludePatternFile(String patternFilePath) throws IOException {
+		includePatterns.addAll(readPatternFile(patternFilePath));
+	}
+
+	/**
+	 * Adds each line of the file as exclude pattern. Empty lines and lines
+	 * starting with '#' are ignored.
+	 */
+	public void addExcludePatternFile(String patternFilePath) throws IOException {
+		excludePatterns.addAll(readPatternFile(patternFilePath));
+	}
+
+	private static List<String> readPatternFile(String patternFilePath) throws IOException {
+		return Files.readAllLines(Paths.get(patternFilePath), Charset.defaultCharset()).stream()
+				.filter(line -> !line.isEmpty() && !line.startsWith("#")).collect(Collectors.toList());
 	}
 
 	public void setDatePattern(String datePattern) {
 		this.datePattern = datePattern;
 	}
 
+	/**
+	 * Replaces all source files by the given one.
+	 */
 	public void setSourceFilePath(String sourceFilePath) {
-		this.sourceFilePath = sourceFilePath;
+		sourceFilePaths.clear();
+		addSourceFilePath(sourceFilePath);
+	}
+
+	/**
+	 * Adds a source file or a glob pattern of source files. The sources are
+	 * processed one after another. Compressed sources are detected by their
+	 * content and decompressed on the fly.
+	 */
+	public void addSourceFilePath(String sourceFilePath) {
+		sourceFilePaths.add(sourceFilePath);
 	}
 
 	public void setTargetFilePath(String targetFilePath) {
 		this.targetFilePath = targetFilePath;
 	}
 
-	protected InputStream getInputStream() throws IOException {
-		if (sourceFilePath == null) {
+	/**
+	 * @param memoryMapped
+	 *            if <code>true</code>, a source file is memory mapped and split
+	 *            into log entries without decoding it. The entries are written
+	 *            unchanged, including their original line separators.
+	 */
+	public void setMemoryMapped(boolean memoryMapped) {
+		this.memoryMapped = memoryMapped;
+	}
+
+	/**
+	 * @param parallel
+	 *            if <code>true</code>, a source file is memory mapped, split
+	 *            into chunks at log entry boundaries and filtered on all cores.
+	 *            The standard input and compressed sources are filtered in a
+	 *            pipeline instead. The result is written in the original order.
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	/**
+	 * @param inputCharset
+	 *            the charset of the source, by default the platform charset
+	 */
+	public void setInputCharset(Charset inputCharset) {
+		this.inputCharset = inputCharset;
+	}
+
+	/**
+	 * @param outputCharset
+	 *            the charset of the target, by default the charset of the
+	 *            source
+	 */
+	public void setOutputCharset(Charset outputCharset) {
+		this.outputCharset = outputCharset;
+	}
+
+	/**
+	 * @param raw
+	 *            if <code>true</code>, the log entries are never decoded or
+	 *            re-encoded, the bytes of the source are written unchanged.
+	 *            The patterns are matched against the bytes of their encoding
+	 *            in the input charset, so a pattern must not have a multi-byte
+	 *            character in a character class or under a quantifier.
+	 */
+	public void setRaw(boolean raw) {
+		this.raw = raw;
+	}
+
+	/**
+	 * @param rotateSize
+	 *            the size of the entries (before compression) written to one
+	 *            target file, 0 (default) for one target file. The following
+	 *            files are numbered, see {@link RotatingOutputSink}.
+	 */
+	public void setRotateSize(long rotateSize) {
+		this.rotateSize = rotateSize;
+	}
+
+	/**
+	 * A target file ending with ".gz" is only flushed in complete blocks of
+	 * the {@link ParallelGzipOutputStream}, the last block is written at the
+	 * end.
+	 *
+	 * @param flushInterval
+	 *            in milliseconds, only used with {@link FlushPolicy#INTERVAL}
+	 */
+	public void setFlushPolicy(FlushPolicy flushPolicy, long flushInterval) {
+		this.flushPolicy = flushPolicy;
+		this.flushIntervalMillis = flushInterval;
+	}
+
+	/**
+	 * @param gatherWrites
+	 *            if <code>true</code>, memory mapped entries are written to a
+	 *            target file with gathering writes instead of being copied
+	 *            into the output buffer
+	 */
+	public void setGatherWrites(boolean gatherWrites) {
+		this.gatherWrites = gatherWrites;
+	}
+
+	/**
+	 * @param timeFormat
+	 *            the {@link java.time.format.DateTimeFormatter} pattern of the
+	 *            timestamp found by the date pattern
+	 */
+	public void setTimeFormat(String timeFormat) {
+		this.timeFormat = timeFormat;
+	}
+
+	/**
+	 * Only entries with a timestamp at or after the given one are written.
+	 * Trailing fields of the time format may be omitted.
+	 */
+	public void setFrom(String from) {
+		this.from = from;
+	}
+
+	/**
+	 * Only entries with a timestamp before the given one are written. Trailing
+	 * fields of the time format may be omitted.
+	 */
+	public void setTo(String to) {
+		this.to = to;
+	}
+
+	/**
+	 * @param headerLayout
+	 *            the layout of the first line of an entry or the name of a
+	 *            preset, see {@link HeaderLayout}. It locates the fields of
+	 *            the header conditions.
+	 */
+	public void setHeaderLayout(String headerLayout) {
+		this.headerLayout = headerLayout;
+	}
+
+	/**
+	 * Only entries with a level fulfilling the condition are written, e.g.
+	 * <code>&gt;=WARN</code>. Several conditions are AND-ed.
+	 */
+	public void addLevelCondition(String levelCondition) {
+		levelConditions.add(levelCondition);
+	}
+
+	/**
+	 * Only entries of the logger or its child loggers are written. Several
+	 * loggers are OR-ed.
+	 */
+	public void addLogger(String logger) {
+		loggers.add(logger);
+	}
+
+	/**
+	 * Only entries with a thread name matching the regex pattern are written.
+	 * Several patterns are OR-ed.
+	 */
+	public void addThreadPattern(String threadPattern) {
+		threadPatterns.add(threadPattern);
+	}
+
+	/**
+	 * Only entries with a message in their first line matching the regex
+	 * pattern are written. Several patterns are OR-ed.
+	 */
+	public void addMessagePattern(String messagePattern) {
+		messagePatterns.add(messagePattern);
+	}
+
+	/**
+	 * @param index
+	 *            if <code>true</code>, the sidecar {@link EntryIndex} of each
+	 *            uncompressed source file is created or updated. It is used for
+	 *            time range queries, which otherwise only use an existing
+	 *            sidecar index. Without patterns and time range, only the
+	 *            indexes are updated.
+	 */
+	public void setIndex(boolean index) {
+		this.index = index;
+	}
+
+	/**
+	 * @param buildTrigramIndex
+	 *            if <code>true</code>, the sidecar trigram index (.lftri) of
+	 *            each uncompressed source is created or rebuilt, if it is
+	 *            outdated. A query with include patterns only reads the
+	 *            blocks of a file with an index, which can contain a match.
+	 */
+	public void setBuildTrigramIndex(boolean buildTrigramIndex) {
+		this.buildTrigramIndex = buildTrigramIndex;
+	}
+
+	/**
+	 * @param statisticsReport
+	 *            if <code>true</code>, a summary of the {@link FilterStatistics}
+	 *            is printed to {@link System#err} after filtering
+	 */
+	public void setStatisticsReport(boolean statisticsReport) {
+		this.statisticsReport = statisticsReport;
+	}
+
+	/**
+	 * @param progressInterval
+	 *            in milliseconds, a progress line is printed to
+	 *            {@link System#err} in this interval, 0 for none
+	 */
+	public void setProgressInterval(long progressInterval) {
+		this.progressIntervalMillis = progressInterval;
+	}
+
+	/**
+	 * @param jmx
+	 *            if <code>true</code>, the statistics are published as MBean
+	 *            {@link FilterStatistics#OBJECT_NAME} with a <code>name</code>
+	 *            key property per run while filtering
+	 */
+	public void setJmx(boolean jmx) {
+		this.jmx = jmx;
+	}
+
+	/**
+	 * @param entryOffsetCache
+	 *            if set, the entries of uncompressed source files are cached in
+	 *            it, so a source can be filtered again (e.g. with other
+	 *            patterns) without splitting it into entries again. The cache
+	 *            can be shared by several filters.
+	 */
+	public void setEntryOffsetCache(EntryOffsetCache entryOffsetCache) {
+		this.entryOffsetCache = entryOffsetCache;
+	}
+
+	/**
+	 * @param filterPlanCache
+	 *            if set, the compiled patterns are taken from it and kept in
+	 *            it. The cache can be shared by several filters.
+	 */
+	public void setFilterPlanCache(FilterPlanCache filterPlanCache) {
+		this.filterPlanCache = filterPlanCache;
+	}
+
+	/**
+	 * @param standardOutput
+	 *            the target, if no target file is defined, default is
+	 *            {@link System#out}. It is closed after filtering.
+	 */
+	public void setStandardOutput(OutputStream standardOutput) {
+		this.standardOutput = standardOutput;
+	}
+
+	/**
+	 * @param standardError
+	 *            receives warnings, statistics and summaries, default is
+	 *            {@link System#err}
+	 */
+	public void setStandardError(PrintStream standardError) {
+		this.standardError = standardError;
+	}
+
+	private PrintStream standardError() {
+		return standardError != null ? standardError : System.err;
+	}
+
+	/**
+	 * @param resultCache
+	 *            if set, the offsets of the matching entries of files, which
+	 *            are not modified anymore (e.g. rotated logs), are cached in
+	 *            it. A repeated query on such a file is answered from the
+	 *            cache without scanning the file.
+	 */
+	public void setResultCache(ResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	/**
+	 * @param recordStatistics
+	 *            if <code>true</code>, {@link #getStatistics()} are recorded
+	 *            without being reported, e.g. to show the progress
+	 */
+	public void setRecordStatistics(boolean recordStatistics) {
+		this.recordStatistics = recordStatistics;
+	}
+
+	/**
+	 * @param maxEntrySize
+	 *            the maximal number of chars of a log entry kept in memory, 0
+	 *            for no limit. Only used for stream processing (compressed
+	 *            sources, standard input or without -m/-p), memory mapped
+	 *            entries are never copied into the heap.
+	 */
+	public void setMaxEntrySize(int maxEntrySize) {
+		this.maxEntrySize = maxEntrySize;
+	}
+
+	/**
+	 * @param oversizedEntryPolicy
+	 *            how entries exceeding the maximum entry size are handled,
+	 *            default is {@link OversizedEntryPolicy#TRUNCATE}
+	 */
+	public void setOversizedEntryPolicy(OversizedEntryPolicy oversizedEntryPolicy) {
+		this.oversizedEntryPolicy = oversizedEntryPolicy;
+	}
+
+	/**
+	 * @param regexEngine
+	 *            executes the include and exclude patterns, default is
+	 *            {@link RegexEngine#JAVA}. {@link RegexEngine#LINEAR} never
+	 *            backtracks, patterns it does not support are executed by
+	 *            java.util.regex.
+	 */
+	public void setRegexEngine(RegexEngine regexEngine) {
+		this.regexEngine = regexEngine;
+	}
+
+	/**
+	 * @param matchBudgetMillis
+	 *            the time the java.util.regex patterns may take per entry, 0
+	 *            (default) for no limit. A pattern exceeding it is treated as
+	 *            not matching, the number of such entries is printed to
+	 *            stderr.
+	 */
+	public void setMatchBudget(long matchBudgetMillis) {
+		this.matchBudgetMillis = matchBudgetMillis;
+	}
+
+	/**
+	 * @param batch
+	 *            if <code>true</code>, the sources (e.g. a directory or glob)
+	 *            are filtered concurrently. If the target is a directory, one
+	 *            file per source is written into it, otherwise all entries are
+	 *            written to the target, tagged with their source with
+	 *            {@link #setMergeTag(boolean)}. A summary of all files is
+	 *            printed to stderr.
+	 */
+	public void setBatch(boolean batch) {
+		this.batch = batch;
+	}
+
+	/**
+	 * @param batchJobs
+	 *            the number of files filtered at the same time in batch mode,
+	 *            default is twice the number of cores
+	 */
+	public void setBatchJobs(int batchJobs) {
+		this.batchJobs = batchJobs;
+	}
+
+	/**
+	 * @param batchCpuLimit
+	 *            the number of workers filtering entries at the same time in
+	 *            batch mode, default is the number of cores
+	 */
+	public void setBatchCpuLimit(int batchCpuLimit) {
+		this.batchCpuLimit = batchCpuLimit;
+	}
+
+	/**
+	 * @param batchIoLimit
+	 *            the number of workers reading at the same time in batch mode,
+	 *            default is {@link #DEFAULT_BATCH_IO_LIMIT}
+	 */
+	public void setBatchIoLimit(int batchIoLimit) {
+		this.batchIoLimit = batchIoLimit;
+	}
+
+	/**
+	 * @param merge
+	 *            if <code>true</code>, the entries of all sources are merged
+	 *            into one stream ordered by their timestamps, e.g. the logs of
+	 *            several instances of a service. The entries of each source
+	 *            have to be ordered by time.
+	 */
+	public void setMerge(boolean merge) {
+		this.merge = merge;
+	}
+
+	/**
+	 * @param mergeTag
+	 *            if <code>true</code>, merged entries and entries of a batch
+	 *            written to one target are prefixed with the file name of
+	 *            their source, e.g. <code>[app-1.log] </code>
+	 */
+	public void setMergeTag(boolean mergeTag) {
+		this.mergeTag = mergeTag;
+	}
+
+	/**
+	 * @param aggregate
+	 *            if <code>true</code>, a summary of the distinct matching
+	 *            entries with their number of occurrences is written instead
+	 *            of the entries. Entries with a stack trace are distinct by
+	 *            their exception and top frames, other entries by their first
+	 *            line without timestamp, numbers and ids.
+	 */
+	public void setAggregate(boolean aggregate) {
+		this.aggregate = aggregate;
+	}
+
+	/**
+	 * @param histogramGranularityMillis
+	 *            if positive, the matching entries are counted in time buckets
+	 *            of this size instead of being written, 0 (default) to write
+	 *            the entries. The histogram is written at the end, in follow
+	 *            mode its completed rows are written when the output is
+	 *            flushed.
+	 */
+	public void setHistogram(long histogramGranularityMillis) {
+		this.histogramGranularityMillis = histogramGranularityMillis;
+	}
+
+	/**
+	 * @param histogramColumns
+	 *            what the columns of the histogram count, default is
+	 *            {@link HistogramColumns#LEVEL}
+	 */
+	public void setHistogramColumns(HistogramColumns histogramColumns) {
+		this.histogramColumns = histogramColumns;
+	}
+
+	/**
+	 * @param histogramCsv
+	 *            if <code>true</code>, the histogram is written as CSV instead
+	 *            of a table
+	 */
+	public void setHistogramCsv(boolean histogramCsv) {
+		this.histogramCsv = histogramCsv;
+	}
+
+	/**
+	 * @param aggregateFrames
+	 *            the number of top frames distinguishing stack traces, default
+	 *            is {@link EntryFingerprinter#DEFAULT_FRAME_COUNT}
+	 */
+	public void setAggregateFrames(int aggregateFrames) {
+		this.aggregateFrames = aggregateFrames;
+	}
+
+	/**
+	 * @param entryObserver
+	 *            is called with each written entry, e.g. to preview the result
+	 *            while filtering. It is called by the thread writing the
+	 *            entries, in their order.
+	 */
+	public void setEntryObserver(Consumer<String> entryObserver) {
+		this.entryObserver = entryObserver;
+	}
+
+	/**
+	 * Stops the current or next execution as soon as possible, it ends with a
+	 * {@link CancellationException}. Can be called by any thread.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * @return the statistics of the current or last execution or
+	 *         <code>null</code>, if no statistics are recorded
+	 */
+	public FilterStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * @param follow
+	 *            if <code>true</code>, the only source file is followed like
+	 *            <code>tail -F</code>: entries appended to it are filtered as
+	 *            they arrive, also after the file has been rotated or
+	 *            truncated. The filter runs until the thread is interrupted.
+	 */
+	public void setFollow(boolean follow) {
+		this.follow = follow;
+	}
+
+	/**
+	 * @param idleFlushTimeout
+	 *            in milliseconds, in follow mode the last entry is completed
+	 *            and written when nothing has been appended for this time
+	 */
+	public void setIdleFlushTimeout(long idleFlushTimeout) {
+		this.idleFlushTimeoutMillis = idleFlushTimeout;
+	}
+
+	/**
+	 * @param source
+	 *            the source file or <code>null</code> for {@link System#in}
+	 * @param codec
+	 *            the compression of the source or <code>null</code>
+	 */
+	protected InputStream getInputStream(Path source, CompressionCodec codec) throws IOException {
+		if (source == null) {
 			return System.in;
+		} else if (codec != null) {
+			return CompressionCodecs.openDecompressed(source, codec);
 		} else {
-			return Files.newInputStream(Paths.get(sourceFilePath));
+			return Files.newInputStream(source);
 		}
 	}
 
-	protected OutputStream getOutStream() throws IOException {
-		if (targetFilePath == null) {
-			return System.out;
+	protected OutputSink newOutputSink() throws IOException {
+		return newOutputSink(targetFilePath != null ? Paths.get(targetFilePath) : null);
+	}
+
+	/**
+	 * @param target
+	 *            the target file or <code>null</code> for standard output
+	 */
+	protected OutputSink newOutputSink(Path target) throws IOException {
+		if (rotateSize > 0) {
+			if (target == null) {
+				throw new IllegalArgumentException("Rotating the output needs a target file");
+			}
+			return new RotatingOutputSink(target, rotateSize, this::newFileOutputSink);
+		}
+		return newFileOutputSink(target);
+	}
+
+	/**
+	 * @return the sink of one file, which is compressed by a
+	 *         {@link ParallelGzipOutputStream}, if its name ends with ".gz"
+	 */
+	private OutputSink newFileOutputSink(Path target) throws IOException {
+		Charset sinkInputCharset = raw ? StandardCharsets.ISO_8859_1 : inputCharset;
+		Charset sinkOutputCharset = raw ? StandardCharsets.ISO_8859_1
+				: outputCharset != null ? outputCharset : inputCharset;
+
+		BufferedOutputSink result;
+		if (target == null) {
+			result = new BufferedOutputSink(standardOutput != null ? standardOutput : System.out, sinkInputCharset,
+					sinkOutputCharset, BufferedOutputSink.DEFAULT_BUFFER_SIZE);
+		} else if (target.getFileName().toString().endsWith(GZIP_EXTENSION)) {
+			result = new BufferedOutputSink(
+					new ParallelGzipOutputStream(Files.newOutputStream(target),
+							Runtime.getRuntime().availableProcessors(), ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE),
+					sinkInputCharset, sinkOutputCharset, BufferedOutputSink.DEFAULT_BUFFER_SIZE);
 		} else {
-			return Files.newOutputStream(Paths.get(targetFilePath));
+			FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+			result = new BufferedOutputSink(channel, sinkInputCharset, sinkOutputCharset,
+					BufferedOutputSink.DEFAULT_BUFFER_SIZE);
 		}
+		result.setFlushPolicy(flushPolicy, flushIntervalMillis, TimeUnit.MILLISECONDS);
+		result.setGatherWrites(gatherWrites);
+		return result;
 	}
 
 	protected StreamProcessor newSteamProcessor(InputStream in) {
-		return new StreamProcessor(in, datePattern);
+		StreamProcessor result = new StreamProcessor(in, raw ? StandardCharsets.ISO_8859_1 : inputCharset,
+				raw ? toByteView(datePattern) : datePattern);
+		result.setMaxEntrySize(maxEntrySize, oversizedEntryPolicy);
+		return result;
+	}
+
+	protected PipelinedStreamProcessor newPipelinedStreamProcessor(StreamProcessor assembler, ForkJoinPool pool) {
+		return new PipelinedStreamProcessor(assembler, pool);
+	}
+
+	protected MappedFileProcessor newMappedFileProcessor(FileChannel in) throws IOException {
+		return new MappedFileProcessor(in, Pattern.compile(toByteView(datePattern)));
+	}
+
+	protected MappedFileProcessor newMappedFileProcessor(FileChannel in, long start, long end) {
+		return new MappedFileProcessor(in, start, end, Pattern.compile(toByteView(datePattern)));
+	}
+
+	protected ParallelFileProcessor newParallelFileProcessor(FileChannel in, ForkJoinPool pool) throws IOException {
+		return new ParallelFileProcessor(in, Pattern.compile(toByteView(datePattern)), pool);
+	}
+
+	protected TrigramIndexBuilder newTrigramIndexBuilder() {
+		return new TrigramIndexBuilder(Pattern.compile(toByteView(datePattern)), datePattern);
+	}
+
+	protected EntryIndexBuilder newEntryIndexBuilder() {
+		String byteDatePattern = toByteView(datePattern);
+		return new EntryIndexBuilder(Pattern.compile(byteDatePattern), newTimestampParser(byteDatePattern));
+	}
+
+	protected TimestampParser newTimestampParser(String entryDatePattern) {
+		return new TimestampParser(Pattern.compile(entryDatePattern), timeFormat);
+	}
+
+	/**
+	 * @return the parser of the entries of all processors, a
+	 *         {@link ByteSequence} is parsed with the byte view of the date
+	 *         pattern, like in {@link #executeTimeRange}
+	 */
+	private TimestampParser newEntryTimestampParser() {
+		TimestampParser byteParser = newTimestampParser(toByteView(datePattern));
+		TimestampParser parser = raw ? byteParser : newTimestampParser(datePattern);
+		return new TimestampParser(Pattern.compile(datePattern), timeFormat) {
+			@Override
+			public long parse(CharSequence logEntry) {
+				return (logEntry instanceof ByteSequence ? byteParser : parser).parse(logEntry);
+			}
+		};
+	}
+
+	protected EntryAggregator newEntryAggregator() {
+		return new EntryAggregator(new EntryFingerprinter(Pattern.compile(datePattern), aggregateFrames),
+				aggregateFrames, newEntryTimestampParser(), FingerprintTable.DEFAULT_MAX_FINGERPRINTS,
+				raw ? StandardCharsets.ISO_8859_1 : inputCharset);
+	}
+
+	protected Histogram newHistogram() {
+		List<String> columns = new ArrayList<>();
+		ToIntFunction<CharSequence> columnOfEntry;
+		if (histogramColumns == HistogramColumns.PATTERN) {
+			FilterPlan[] plans = new FilterPlan[includePatterns.size()];
+			FilterPlan[] bytePlans = new FilterPlan[includePatterns.size()];
+			long matchBudgetNanos = TimeUnit.MILLISECONDS.toNanos(matchBudgetMillis);
+			for (int i = 0; i < plans.length; i++) {
+				String includePattern = includePatterns.get(i);
+				plans[i] = FilterPlan.compile(Arrays.asList(raw ? toByteView(includePattern) : includePattern),
+						Collections.emptyList(), regexEngine, matchBudgetNanos);
+				bytePlans[i] = FilterPlan.compile(Arrays.asList(toByteView(includePattern)), Collections.emptyList(),
+						regexEngine, matchBudgetNanos);
+			}
+			columns.addAll(includePatterns);
+			columnOfEntry = logEntry -> {
+				FilterPlan[] entryPlans = logEntry instanceof ByteSequence ? bytePlans : plans;
+				for (int i = 0; i < entryPlans.length; i++) {
+					if (entryPlans[i].test(logEntry)) {
+						return i;
+					}
+				}
+				return entryPlans.length;
+			};
+		} else {
+			HeaderLayout layout = newHeaderLayout(raw ? this::toByteView : Function.identity());
+			HeaderLayout byteLayout = newHeaderLayout(this::toByteView);
+			int levelField = layout.indexOf(HeaderLayout.Field.LEVEL);
+			if (levelField < 0) {
+				throw new IllegalArgumentException("The header layout '" + layout + "' has no level field");
+			}
+			columns.addAll(HeaderFilter.LEVEL_NAMES);
+			columnOfEntry = logEntry -> {
+				int[] bounds = new int[2 * (levelField + 1)];
+				if ((logEntry instanceof ByteSequence ? byteLayout : layout).parse(logEntry, levelField, bounds)) {
+					int rank = HeaderFilter.levelRank(logEntry, bounds[2 * levelField], bounds[2 * levelField + 1]);
+					if (rank != HeaderFilter.UNKNOWN_LEVEL) {
+						return rank;
+					}
+				}
+				return HeaderFilter.LEVEL_NAMES.size();
+			};
+		}
+		columns.add("other");
+		return new Histogram(newEntryTimestampParser(), histogramGranularityMillis, columns, columnOfEntry,
+				Histogram.DEFAULT_MAX_BUCKETS, histogramCsv);
+	}
+
+	private HeaderLayout newHeaderLayout(Function<String, String> entryView) {
+		return HeaderLayout.compile(entryView.apply(headerLayout), Pattern.compile(entryView.apply(datePattern)));
+	}
+
+	protected FollowProcessor newFollowProcessor(Path source) {
+		FollowProcessor result = new FollowProcessor(source, raw ? StandardCharsets.ISO_8859_1 : inputCharset,
+				Pattern.compile(raw ? toByteView(datePattern) : datePattern));
+		result.setIdleFlushTimeout(idleFlushTimeoutMillis);
+		return result;
+	}
+
+	private String toByteView(String pattern) {
+		return ByteSequence.toByteView(pattern, inputCharset);
 	}
 }
@@ -0,0 +1,184 @@
+package logfilefilter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import logfilefilter.internal.filters.FilterPlan;
+import logfilefilter.internal.processors.ByteSequence;
+import logfilefilter.internal.processors.EntrySpliterator;
+import logfilefilter.internal.processors.StreamProcessor;
+
+/**
+ * The filter as library, e.g. to embed it into a service. A filter is built
+ * once by its {@link Builder} and is immutable and thread safe, so it can be
+ * shared and used concurrently.
+ * <p>
+ * The entries of a file are exposed as stream of {@link ByteSequence} views
+ * into the memory mapped file, they are only decoded (with
+ * {@link #decode(ByteSequence)}) if needed. The stream of a file splits it at
+ * entry boundaries, so <code>filter(file).parallel()</code> processes the file
+ * on all cores:
+ *
+ * <pre>
+ * LogFilter filter = LogFilter.builder().include("ERROR").exclude("Timeout").build();
+ * try (Stream&lt;ByteSequence&gt; entries = filter.filter(Paths.get("server.log"))) {
+ * 	long count = entries.parallel().count();
+ * }
+ * </pre>
+ *
+ * The semantics of the patterns is the same as with {@link JavaLogFileFilter}.
+ */
+public final class LogFilter implements Predicate<CharSequence> {
+	private final Charset charset;
+	private final Pattern datePattern;
+	private final Pattern byteDatePattern;
+	/** <code>null</code>, if all entries pass */
+	private final FilterPlan plan;
+	/** <code>null</code>, if the bytes are decoded and tested with the plan */
+	private final FilterPlan bytePlan;
+
+	public static class Builder {
+		private final List<String> includePatterns = new ArrayList<>();
+		private final List<String> excludePatterns = new ArrayList<>();
+		private String datePattern = JavaLogFileFilter.DEFAULT_DATE_PATTERN;
+		private Charset charset = Charset.defaultCharset();
+
+		private Builder() {
+		}
+
+		public Builder include(String... includePatterns) {
+			Collections.addAll(this.includePatterns, includePatterns);
+			return this;
+		}
+
+		public Builder exclude(String... excludePatterns) {
+			Collections.addAll(this.excludePatterns, excludePatterns);
+			return this;
+		}
+
+		/**
+		 * @param datePattern
+		 *            identifies the first line of a log entry, default is
+		 *            {@link JavaLogFileFilter#DEFAULT_DATE_PATTERN}
+		 */
+		public Builder datePattern(String datePattern) {
+			this.datePattern = datePattern;
+			return this;
+		}
+
+		/**
+		 * @param charset
+		 *            of the files and streams, default is the platform charset
+		 */
+		public Builder charset(Charset charset) {
+			this.charset = charset;
+			return this;
+		}
+
+		/**
+		 * @throws java.util.regex.PatternSyntaxException
+		 *             if a pattern is invalid
+		 */
+		public LogFilter build() {
+			return new LogFilter(this);
+		}
+	}
+
+	private LogFilter(Builder builder) {
+		this.charset = builder.charset;
+		this.datePattern = Pattern.compile(builder.datePattern);
+		this.byteDatePattern = Pattern.compile(ByteSequence.toByteView(builder.datePattern, charset));
+		this.plan = FilterPlan.compile(builder.includePatterns, builder.excludePatterns);
+		this.bytePlan = hasExactByteViews(builder) ? FilterPlan.compile(toByteView(builder.includePatterns),
+				toByteView(builder.excludePatterns)) : null;
+	}
+
+	/**
+	 * @see ByteSequence#hasExactByteView(String, Charset, boolean)
+	 */
+	private boolean hasExactByteViews(Builder builder) {
+		return Stream.concat(builder.includePatterns.stream(), builder.excludePatterns.stream())
+				.allMatch(pattern -> ByteSequence.hasExactByteView(pattern, charset, false));
+	}
+
+	private List<String> toByteView(List<String> patterns) {
+		return patterns.stream().map(pattern -> ByteSequence.toByteView(pattern, charset))
+				.collect(Collectors.toList());
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return <code>true</code>, if the entry passes the filter. A
+	 *         {@link ByteSequence} is tested with the patterns converted to
+	 *         the charset of the filter, or decoded, if a pattern would match
+	 *         its bytes differently (e.g. '.' on a multi-byte char).
+	 */
+	@Override
+	public boolean test(CharSequence logEntry) {
+		if (plan == null) {
+			return true;
+		}
+		if (logEntry instanceof ByteSequence) {
+			return bytePlan != null ? bytePlan.test(logEntry) : plan.test(decode((ByteSequence) logEntry));
+		}
+		return plan.test(logEntry);
+	}
+
+	/**
+	 * @return all entries of the file, they are valid as long as the channel
+	 *         is open. The stream can be processed in parallel.
+	 */
+	public Stream<ByteSequence> entries(FileChannel channel) throws IOException {
+		return StreamSupport.stream(new EntrySpliterator(channel, 0, channel.size(), byteDatePattern), false);
+	}
+
+	/**
+	 * @return the entries of the file passing the filter, the file is closed
+	 *         with the stream
+	 */
+	public Stream<ByteSequence> filter(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			return entries(channel).filter(this).onClose(() -> {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+			});
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the entries of the stream (e.g. standard input or a decompressed
+	 *         file) passing the filter, read while the result is consumed
+	 */
+	public Stream<String> filter(InputStream input) {
+		return new StreamProcessor(input, charset, datePattern.pattern()).entries().filter(this);
+	}
+
+	/**
+	 * @return the text of an entry of a file
+	 */
+	public String decode(ByteSequence logEntry) {
+		return logEntry.decode(charset);
+	}
+}
@@ -0,0 +1,84 @@
+package logfilefilter.internal.aggregation;
+
+import java.nio.charset.Charset;
+import java.util.function.Consumer;
+
+import logfilefilter.internal.index.TimestampParser;
+import logfilefilter.internal.processors.ByteSequence;
+import logfilefilter.internal.processors.StreamProcessor;
+
+/**
+ * Aggregates log entries by their fingerprint: instead of the entries, a
+ * summary with the number of occurrences, the first and last occurrence and a
+ * sample of each distinct entry is written.
+ */
+public class EntryAggregator {
+	/** A sample is the begin of the first entry with a fingerprint */
+	private static final int MAX_SAMPLE_LENGTH = 4096;
+
+	private final EntryFingerprinter fingerprinter;
+	private final TimestampParser timestampParser;
+	private final FingerprintTable table;
+	private final Charset byteCharset;
+	private final int sampleLines;
+	private long entryCount = 0;
+
+	/**
+	 * @param byteCharset
+	 *            the charset of {@link ByteSequence} entries
+	 */
+	public EntryAggregator(EntryFingerprinter fingerprinter, int frameCount, TimestampParser timestampParser,
+			int maxFingerprints, Charset byteCharset) {
+		this.fingerprinter = fingerprinter;
+		this.timestampParser = timestampParser;
+		this.table = new FingerprintTable(maxFingerprints);
+		this.byteCharset = byteCharset;
+		// The first line, the exception and its top frames
+		this.sampleLines = frameCount + 2;
+	}
+
+	public void add(CharSequence logEntry) {
+		entryCount++;
+		int slot = table.add(fingerprinter.fingerprint(logEntry), timestampParser.parse(logEntry));
+		if (slot >= 0 && !table.hasSample(slot)) {
+			table.setSample(slot, sample(logEntry));
+		}
+	}
+
+	private String sample(CharSequence logEntry) {
+		int end = 0;
+		for (int line = 0; line < sampleLines && end < logEntry.length(); end++) {
+			if (logEntry.charAt(end) == '\n') {
+				line++;
+			}
+		}
+		CharSequence sample = logEntry.subSequence(0, Math.min(end, MAX_SAMPLE_LENGTH));
+		String result = sample instanceof ByteSequence ? ((ByteSequence) sample).decode(byteCharset)
+				: sample.toString();
+		if (end < logEntry.length()) {
+			return (result.endsWith("\n") ? result : result + StreamProcessor.LINE_SEPARATOR) + "\t...";
+		}
+		return result;
+	}
+
+	/**
+	 * Passes the summary to the consumer: a header followed by one block per
+	 * distinct entry, the most frequent first.
+	 */
+	public void writeSummary(Consumer<String> consumer) {
+		consumer.accept("=== " + table.size() + " distinct of " + entryCount + " entries ===");
+		for (int slot : table.slotsByCount()) {
+			consumer.accept(String.format("%,d x  %s .. %s  [%016x]%s%s", table.getCount(slot),
+					formatTime(table.getFirstSeen(slot)), formatTime(table.getLastSeen(slot)),
+					table.getFingerprint(slot), StreamProcessor.LINE_SEPARATOR, table.getSample(slot)));
+		}
+		if (table.getOverflowCount() > 0) {
+			consumer.accept(String.format("%,d x  further distinct entries, not counted separately",
+					table.getOverflowCount()));
+		}
+	}
+
+	private String formatTime(long millis) {
+		return millis == TimestampParser.NO_TIMESTAMP ? "?" : timestampParser.format(millis);
+	}
+}
@@ -0,0 +1,86 @@
+package logfilefilter.internal.aggregation;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Computes a 64 bit fingerprint of a log entry, which is the same for all
+ * occurrences of the same problem. For an entry with a stack trace it is the
+ * hash of the exception type and the top frames, messages and line numbers
+ * are ignored. For other entries it is the hash of the normalized first line:
+ * without timestamp, numbers and ids.
+ */
+public class EntryFingerprinter {
+	public static final int DEFAULT_FRAME_COUNT = 5;
+
+	private static final Pattern EXCEPTION_PATTERN = Pattern.compile(
+			"^(?:Caused by: )?((?:[a-zA-Z_$][\\w$]*\\.)*[a-zA-Z_$][\\w$]*(?:Exception|Error|Throwable))(?::|\\s*$)",
+			Pattern.MULTILINE);
+	private static final Pattern FRAME_PATTERN = Pattern.compile("^\\s+at ([^(\\s]+)", Pattern.MULTILINE);
+	/** Hexadecimal ids (e.g. hash codes, UUID parts) and numbers */
+	private static final Pattern ID_PATTERN = Pattern.compile("\\b(?=[0-9a-fA-F]*[0-9])[0-9a-fA-F]{6,}\\b|[0-9]+");
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final Pattern patternStartOfLogLine;
+	private final int frameCount;
+
+	/**
+	 * @param frameCount
+	 *            the number of top frames of the stack trace in the
+	 *            fingerprint
+	 */
+	public EntryFingerprinter(Pattern patternStartOfLogLine, int frameCount) {
+		this.patternStartOfLogLine = patternStartOfLogLine;
+		this.frameCount = frameCount;
+	}
+
+	/**
+	 * @return the fingerprint of the entry, never 0
+	 */
+	public long fingerprint(CharSequence logEntry) {
+		long hash = FNV_OFFSET_BASIS;
+		Matcher exception = EXCEPTION_PATTERN.matcher(logEntry);
+		if (exception.find()) {
+			hash = hash(hash, logEntry, exception.start(1), exception.end(1));
+			Matcher frame = FRAME_PATTERN.matcher(logEntry);
+			frame.region(exception.end(), logEntry.length());
+			for (int i = 0; i < frameCount && frame.find(); i++) {
+				hash = hash(hash, logEntry, frame.start(1), frame.end(1));
+			}
+		} else {
+			String normalized = normalize(firstLine(logEntry));
+			hash = hash(hash, normalized, 0, normalized.length());
+		}
+		return hash != 0 ? hash : 1;
+	}
+
+	/**
+	 * @return the line without the timestamp, numbers and ids replaced by '#'
+	 */
+	public String normalize(CharSequence line) {
+		Matcher timestamp = patternStartOfLogLine.matcher(line);
+		CharSequence message = timestamp.lookingAt() ? line.subSequence(timestamp.end(), line.length()) : line;
+		return ID_PATTERN.matcher(message).replaceAll("#").trim();
+	}
+
+	static CharSequence firstLine(CharSequence logEntry) {
+		int end = 0;
+		while (end < logEntry.length() && logEntry.charAt(end) != '\n' && logEntry.charAt(end) != '\r') {
+			end++;
+		}
+		return logEntry.subSequence(0, end);
+	}
+
+	/**
+	 * FNV-1a hash of the chars, terminated by a separator, so the hash of
+	 * several parts is not ambiguous
+	 */
+	private static long hash(long hash, CharSequence text, int start, int end) {
+		for (int i = start; i < end; i++) {
+			hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+		}
+		return (hash ^ '\n') * FNV_PRIME;
+	}
+}
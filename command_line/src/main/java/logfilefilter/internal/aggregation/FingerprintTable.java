@@ -0,0 +1,139 @@
+package logfilefilter.internal.aggregation;
+
+import java.util.Arrays;
+
+import logfilefilter.internal.index.TimestampParser;
+
+/**
+ * Counts the occurrences of fingerprints in an open addressing hash table of
+ * primitive arrays. The number of distinct fingerprints is bounded, so the
+ * memory used does not grow with the size of the input: occurrences of further
+ * fingerprints are only counted in total.
+ */
+public class FingerprintTable {
+	public static final int DEFAULT_MAX_FINGERPRINTS = 10_000;
+
+	private final int maxFingerprints;
+	private final int mask;
+	private final long[] fingerprints;
+	private final long[] counts;
+	private final long[] firstSeen;
+	private final long[] lastSeen;
+	/** The slots in the order of the first occurrence of their fingerprint */
+	private final int[] slotOrder;
+	private final String[] samples;
+	private int size = 0;
+	private long overflowCount = 0;
+
+	public FingerprintTable(int maxFingerprints) {
+		this.maxFingerprints = maxFingerprints;
+		// At most half of the slots are used, so the probe sequences are short
+		int capacity = Integer.highestOneBit(Math.max(maxFingerprints, 1) * 2 - 1) << 1;
+		this.mask = capacity - 1;
+		this.fingerprints = new long[capacity];
+		this.counts = new long[capacity];
+		this.firstSeen = new long[capacity];
+		this.lastSeen = new long[capacity];
+		this.slotOrder = new int[maxFingerprints];
+		this.samples = new String[capacity];
+	}
+
+	/**
+	 * Counts an occurrence of the fingerprint.
+	 *
+	 * @param fingerprint
+	 *            must not be 0
+	 * @param timestamp
+	 *            of the occurrence or {@link TimestampParser#NO_TIMESTAMP}.
+	 *            The occurrences may arrive in any order (e.g. merged or
+	 *            batched sources), the earliest and latest one are kept.
+	 * @return the slot of the fingerprint or -1, if the table is full and
+	 *         the fingerprint is new
+	 */
+	public int add(long fingerprint, long timestamp) {
+		int slot = (int) mix(fingerprint) & mask;
+		while (fingerprints[slot] != 0 && fingerprints[slot] != fingerprint) {
+			slot = (slot + 1) & mask;
+		}
+
+		if (fingerprints[slot] == 0) {
+			if (size == maxFingerprints) {
+				overflowCount++;
+				return -1;
+			}
+			fingerprints[slot] = fingerprint;
+			firstSeen[slot] = timestamp;
+			lastSeen[slot] = timestamp;
+			slotOrder[size++] = slot;
+		} else if (timestamp != TimestampParser.NO_TIMESTAMP) {
+			if (firstSeen[slot] == TimestampParser.NO_TIMESTAMP || timestamp < firstSeen[slot]) {
+				firstSeen[slot] = timestamp;
+			}
+			// NO_TIMESTAMP is smaller than every timestamp
+			lastSeen[slot] = Math.max(lastSeen[slot], timestamp);
+		}
+		counts[slot]++;
+		return slot;
+	}
+
+	/**
+	 * Keeps the sample of the slot, if it has none yet.
+	 */
+	public void setSample(int slot, String sample) {
+		if (samples[slot] == null) {
+			samples[slot] = sample;
+		}
+	}
+
+	public boolean hasSample(int slot) {
+		return samples[slot] != null;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of occurrences of fingerprints, which were not
+	 *         counted separately because the table was full
+	 */
+	public long getOverflowCount() {
+		return overflowCount;
+	}
+
+	/**
+	 * @return the used slots, the most frequent fingerprint first
+	 */
+	public int[] slotsByCount() {
+		return Arrays.stream(slotOrder, 0, size).boxed()
+				.sorted((a, b) -> Long.compare(counts[b], counts[a])).mapToInt(Integer::intValue).toArray();
+	}
+
+	public long getFingerprint(int slot) {
+		return fingerprints[slot];
+	}
+
+	public long getCount(int slot) {
+		return counts[slot];
+	}
+
+	public long getFirstSeen(int slot) {
+		return firstSeen[slot];
+	}
+
+	public long getLastSeen(int slot) {
+		return lastSeen[slot];
+	}
+
+	public String getSample(int slot) {
+		return samples[slot];
+	}
+
+	/** Spreads the bits of the fingerprint (finalizer of MurmurHash3) */
+	private static long mix(long value) {
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		return value;
+	}
+}
@@ -0,0 +1,236 @@
+package logfilefilter.internal.aggregation;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+import logfilefilter.internal.index.TimestampParser;
+
+/**
+ * Counts log entries per time bucket and column (e.g. per level), instead of
+ * writing them. The counts are kept in one <code>long[]</code> of a fixed
+ * number of buckets, so the memory does not grow with the input: if the
+ * entries span more buckets, the granularity is doubled and neighbouring
+ * buckets are merged.
+ * <p>
+ * The rows can be written at the end, or the completed rows (older than the
+ * bucket of the newest entry) while following a file. Entries older than the
+ * rows already written are not counted anymore.
+ */
+public class Histogram {
+	/** Enough for a week of minutes */
+	public static final int DEFAULT_MAX_BUCKETS = 16_384;
+	private static final int MIN_CELL_WIDTH = 9;
+
+	private final TimestampParser timestampParser;
+	private final String[] columnNames;
+	private final ToIntFunction<CharSequence> columnOfEntry;
+	private final int maxBuckets;
+	private final boolean csv;
+
+	private long granularityMillis;
+	/** The start of the first bucket, aligned to the granularity */
+	private long origin = 0;
+	/** The counts of bucket <code>b</code> start at <code>b * columns</code> */
+	private long[] counts;
+	/** The range of the used buckets, -1 if no bucket is used */
+	private int firstBucket = -1;
+	private int lastBucket = -1;
+	/** The end of the rows already written */
+	private long writtenUntil = Long.MIN_VALUE;
+	private boolean headerWritten = false;
+	private final long[] withoutTimestamp;
+	private final long[] tooLate;
+
+	/**
+	 * @param columnNames
+	 *            the names of the columns
+	 * @param columnOfEntry
+	 *            the index of the column counting an entry
+	 * @param csv
+	 *            if <code>true</code>, the rows are written comma separated,
+	 *            else as table
+	 */
+	public Histogram(TimestampParser timestampParser, long granularityMillis, List<String> columnNames,
+			ToIntFunction<CharSequence> columnOfEntry, int maxBuckets, boolean csv) {
+		if (granularityMillis <= 0) {
+			throw new IllegalArgumentException("The granularity of the histogram must be positive");
+		}
+		this.timestampParser = timestampParser;
+		this.granularityMillis = granularityMillis;
+		this.columnNames = columnNames.toArray(new String[columnNames.size()]);
+		this.columnOfEntry = columnOfEntry;
+		this.maxBuckets = maxBuckets;
+		this.csv = csv;
+		this.counts = new long[maxBuckets * this.columnNames.length];
+		this.withoutTimestamp = new long[this.columnNames.length];
+		this.tooLate = new long[this.columnNames.length];
+	}
+
+	/**
+	 * @return the current granularity, it is larger than the configured one,
+	 *         if the entries span more buckets than the maximum
+	 */
+	public long getGranularityMillis() {
+		return granularityMillis;
+	}
+
+	public void add(CharSequence logEntry) {
+		int column = columnOfEntry.applyAsInt(logEntry);
+		long timestamp = timestampParser.parse(logEntry);
+		if (timestamp == TimestampParser.NO_TIMESTAMP) {
+			withoutTimestamp[column]++;
+			return;
+		}
+		if (timestamp < writtenUntil) {
+			tooLate[column]++;
+			return;
+		}
+
+		if (firstBucket < 0) {
+			origin = Math.max(alignDown(timestamp, granularityMillis), alignUp(writtenUntil, granularityMillis));
+		}
+		long bucket = Math.floorDiv(timestamp - origin, granularityMillis);
+		if (bucket < 0 || bucket >= maxBuckets) {
+			rebucket(timestamp);
+			// Before the origin only, if it is aligned to the written rows
+			bucket = Math.max(Math.floorDiv(timestamp - origin, granularityMillis), 0);
+		}
+		counts[(int) bucket * columnNames.length + column]++;
+		if (firstBucket < 0) {
+			firstBucket = (int) bucket;
+			lastBucket = (int) bucket;
+		} else {
+			firstBucket = Math.min(firstBucket, (int) bucket);
+			lastBucket = Math.max(lastBucket, (int) bucket);
+		}
+	}
+
+	/**
+	 * Moves the buckets, so the timestamp fits in. The granularity is doubled
+	 * until the used buckets and the timestamp fit into the maximum number of
+	 * buckets.
+	 */
+	private void rebucket(long timestamp) {
+		long start = Math.min(origin + firstBucket * granularityMillis, timestamp);
+		long end = Math.max(origin + (lastBucket + 1) * granularityMillis, timestamp + 1);
+		long newGranularity = granularityMillis;
+		while (alignUp(end, newGranularity) - alignDown(start, newGranularity) > maxBuckets * newGranularity) {
+			newGranularity *= 2;
+		}
+		// Buckets of a new granularity must not start before the written rows
+		long newOrigin = Math.max(alignDown(start, newGranularity), alignUp(writtenUntil, newGranularity));
+
+		long[] newCounts = new long[counts.length];
+		int columns = columnNames.length;
+		int newFirst = Integer.MAX_VALUE;
+		int newLast = -1;
+		for (int bucket = firstBucket; bucket <= lastBucket; bucket++) {
+			int newBucket = (int) Math.floorDiv(origin + bucket * granularityMillis - newOrigin, newGranularity);
+			newBucket = Math.max(newBucket, 0);
+			for (int column = 0; column < columns; column++) {
+				newCounts[newBucket * columns + column] += counts[bucket * columns + column];
+			}
+			newFirst = Math.min(newFirst, newBucket);
+			newLast = Math.max(newLast, newBucket);
+		}
+		counts = newCounts;
+		origin = newOrigin;
+		granularityMillis = newGranularity;
+		firstBucket = newFirst;
+		lastBucket = newLast;
+	}
+
+	private static long alignDown(long millis, long granularity) {
+		return millis == Long.MIN_VALUE ? millis : Math.floorDiv(millis, granularity) * granularity;
+	}
+
+	private static long alignUp(long millis, long granularity) {
+		return millis == Long.MIN_VALUE ? millis : -Math.floorDiv(-millis, granularity) * granularity;
+	}
+
+	/**
+	 * Writes the rows of the buckets older than the bucket of the newest
+	 * entry, each row only once.
+	 */
+	public void writeCompletedRows(Consumer<String> consumer) {
+		if (firstBucket >= 0 && lastBucket > firstBucket) {
+			writeRows(consumer, lastBucket - 1);
+		}
+	}
+
+	/**
+	 * Writes the rows of all buckets not written yet and the number of
+	 * entries, which could not be counted in a bucket.
+	 */
+	public void writeAllRows(Consumer<String> consumer) {
+		if (firstBucket >= 0) {
+			writeRows(consumer, lastBucket);
+		} else {
+			writeHeader(consumer);
+		}
+		if (Arrays.stream(withoutTimestamp).sum() > 0) {
+			consumer.accept(toRow("no timestamp", withoutTimestamp, 0));
+		}
+		if (Arrays.stream(tooLate).sum() > 0) {
+			consumer.accept(toRow("too late", tooLate, 0));
+		}
+	}
+
+	private void writeRows(Consumer<String> consumer, int untilBucket) {
+		writeHeader(consumer);
+		int columns = columnNames.length;
+		for (int bucket = firstBucket; bucket <= untilBucket; bucket++) {
+			String time = timestampParser.format(origin + bucket * granularityMillis);
+			consumer.accept(toRow(time, counts, bucket * columns));
+		}
+		Arrays.fill(counts, firstBucket * columns, (untilBucket + 1) * columns, 0);
+		writtenUntil = origin + (untilBucket + 1) * granularityMillis;
+		if (untilBucket == lastBucket) {
+			firstBucket = -1;
+			lastBucket = -1;
+		} else {
+			firstBucket = untilBucket + 1;
+		}
+	}
+
+	private void writeHeader(Consumer<String> consumer) {
+		if (!headerWritten) {
+			headerWritten = true;
+			String[] header = new String[columnNames.length + 1];
+			System.arraycopy(columnNames, 0, header, 0, columnNames.length);
+			header[columnNames.length] = "total";
+			consumer.accept(toRow("time", header));
+		}
+	}
+
+	private String toRow(String time, long[] values, int offset) {
+		String[] cells = new String[columnNames.length + 1];
+		long total = 0;
+		for (int i = 0; i < cells.length - 1; i++) {
+			long value = values[offset + i];
+			cells[i] = Long.toString(value);
+			total += value;
+		}
+		cells[cells.length - 1] = Long.toString(total);
+		return toRow(time, cells);
+	}
+
+	private String toRow(String time, String[] cells) {
+		StringBuilder row = new StringBuilder(csv ? time : String.format("%-" + timeWidth() + "s", time));
+		for (int i = 0; i < cells.length; i++) {
+			if (csv) {
+				row.append(',').append(cells[i]);
+			} else {
+				int width = Math.max(MIN_CELL_WIDTH, i < columnNames.length ? columnNames[i].length() : 0);
+				row.append(String.format(" %" + width + "s", cells[i]));
+			}
+		}
+		return row.toString();
+	}
+
+	private int timeWidth() {
+		return Math.max(timestampParser.getTimeFormat().length(), "no timestamp".length());
+	}
+}
@@ -0,0 +1,11 @@
+package logfilefilter.internal.aggregation;
+
+/**
+ * What the columns of a {@link Histogram} count.
+ */
+public enum HistogramColumns {
+	/** The entries per level, found by the header layout */
+	LEVEL,
+	/** The entries per include pattern, the first matching one counts */
+	PATTERN
+}
@@ -0,0 +1,34 @@
+package logfilefilter.internal.batch;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executor of the workers of a batch. Virtual threads are used,
+ * if the runtime supports them (Java 21), so a worker blocked on the disk
+ * costs no platform thread. Otherwise a pool of daemon threads is used.
+ */
+public class BatchWorkers {
+	private BatchWorkers() {
+	}
+
+	/**
+	 * @param workerCount
+	 *            the size of the pool, if there are no virtual threads. The
+	 *            number of concurrent tasks has to be limited by the caller
+	 *            anyway.
+	 */
+	public static ExecutorService newExecutor(int workerCount) {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			AtomicInteger threadNumber = new AtomicInteger();
+			return Executors.newFixedThreadPool(workerCount, task -> {
+				Thread thread = new Thread(task, "batch-worker-" + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package logfilefilter.internal.batch;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Predicate;
+
+/**
+ * Limits how many workers read from the disk and how many filter entries at
+ * the same time, independent of the number of workers. A worker holds a CPU
+ * permit while it filters and gives it back when it reads, so a worker
+ * waiting for the disk never blocks a core.
+ */
+public class ConcurrencyLimits {
+	private final Semaphore cpuPermits;
+	private final Semaphore ioPermits;
+	private final ThreadLocal<Boolean> holdsCpuPermit = new ThreadLocal<>();
+
+	public ConcurrencyLimits(int cpuLimit, int ioLimit) {
+		this.cpuPermits = new Semaphore(cpuLimit);
+		this.ioPermits = new Semaphore(ioLimit);
+	}
+
+	/**
+	 * @return the filter, which holds a CPU permit while it is executed
+	 */
+	public <T> Predicate<T> limitCpu(Predicate<T> filter) {
+		return entry -> {
+			acquireCpu();
+			return filter.test(entry);
+		};
+	}
+
+	/**
+	 * @return the stream, which holds an I/O permit while it is read
+	 */
+	public InputStream limitIo(InputStream input) {
+		return new FilterInputStream(input) {
+			@Override
+			public int read() throws IOException {
+				acquireIo();
+				try {
+					return super.read();
+				} finally {
+					ioPermits.release();
+				}
+			}
+
+			@Override
+			public int read(byte[] buffer, int offset, int length) throws IOException {
+				acquireIo();
+				try {
+					return super.read(buffer, offset, length);
+				} finally {
+					ioPermits.release();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Gives back the permits of the current worker, at the end of its task.
+	 */
+	public void release() {
+		if (Boolean.TRUE.equals(holdsCpuPermit.get())) {
+			holdsCpuPermit.set(false);
+			cpuPermits.release();
+		}
+	}
+
+	private void acquireCpu() {
+		if (!Boolean.TRUE.equals(holdsCpuPermit.get())) {
+			acquire(cpuPermits);
+			holdsCpuPermit.set(true);
+		}
+	}
+
+	private void acquireIo() {
+		release();
+		acquire(ioPermits);
+	}
+
+	private static void acquire(Semaphore permits) {
+		try {
+			permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Worker interrupted");
+		}
+	}
+}
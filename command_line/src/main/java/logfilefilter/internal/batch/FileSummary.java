@@ -0,0 +1,73 @@
+package logfilefilter.internal.batch;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The result of filtering one file of a batch.
+ */
+public class FileSummary {
+	private final Path source;
+	private final LongAdder entries = new LongAdder();
+	private final LongAdder matches = new LongAdder();
+	private long nanos = 0;
+	private Throwable failure = null;
+
+	public FileSummary(Path source) {
+		this.source = source;
+	}
+
+	public Path getSource() {
+		return source;
+	}
+
+	public void addEntry(boolean matched) {
+		entries.increment();
+		if (matched) {
+			matches.increment();
+		}
+	}
+
+	public long getEntries() {
+		return entries.sum();
+	}
+
+	public long getMatches() {
+		return matches.sum();
+	}
+
+	public void finish(long nanos, Throwable failure) {
+		this.nanos = nanos;
+		this.failure = failure;
+	}
+
+	public Throwable getFailure() {
+		return failure;
+	}
+
+	/**
+	 * @return one line per file and a line with the totals
+	 */
+	public static String toTable(List<FileSummary> summaries) {
+		StringBuilder result = new StringBuilder();
+		result.append(String.format("%12s %12s %10s  %s%n", "entries", "matches", "ms", "file"));
+		long entries = 0;
+		long matches = 0;
+		int failures = 0;
+		for (FileSummary summary : summaries) {
+			result.append(String.format("%,12d %,12d %,10d  %s", summary.getEntries(), summary.getMatches(),
+					summary.nanos / 1_000_000, summary.source));
+			if (summary.failure != null) {
+				failures++;
+				result.append("  FAILED: ").append(summary.failure);
+			}
+			result.append(String.format("%n"));
+			entries += summary.getEntries();
+			matches += summary.getMatches();
+		}
+		result.append(String.format("%,12d %,12d %10s  %d files, %d failed", entries, matches, "", summaries.size(),
+				failures));
+		return result.toString();
+	}
+}
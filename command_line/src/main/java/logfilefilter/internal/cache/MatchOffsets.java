@@ -0,0 +1,86 @@
+package logfilefilter.internal.cache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The positions of the matching entries of a file: start offset and length of
+ * each entry in the order of the file. They are stored as variable length
+ * deltas, so a cached result is much smaller than the entries.
+ */
+public class MatchOffsets {
+	private long[] offsets = new long[64];
+	private int[] lengths = new int[64];
+	private int count = 0;
+
+	/**
+	 * @param offset
+	 *            must not be before the end of the previous entry
+	 */
+	public void add(long offset, int length) {
+		if (count == offsets.length) {
+			offsets = Arrays.copyOf(offsets, count * 2);
+			lengths = Arrays.copyOf(lengths, count * 2);
+		}
+		offsets[count] = offset;
+		lengths[count] = length;
+		count++;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	public long getOffset(int index) {
+		return offsets[index];
+	}
+
+	public int getLength(int index) {
+		return lengths[index];
+	}
+
+	void write(DataOutput out) throws IOException {
+		out.writeInt(count);
+		long previousEnd = 0;
+		for (int i = 0; i < count; i++) {
+			writeVarLong(out, offsets[i] - previousEnd);
+			writeVarLong(out, lengths[i]);
+			previousEnd = offsets[i] + lengths[i];
+		}
+	}
+
+	static MatchOffsets read(DataInput in) throws IOException {
+		MatchOffsets result = new MatchOffsets();
+		int count = in.readInt();
+		long previousEnd = 0;
+		for (int i = 0; i < count; i++) {
+			long offset = previousEnd + readVarLong(in);
+			int length = (int) readVarLong(in);
+			result.add(offset, length);
+			previousEnd = offset + length;
+		}
+		return result;
+	}
+
+	private static void writeVarLong(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	private static long readVarLong(DataInput in) throws IOException {
+		long result = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.readByte();
+			result |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				return result;
+			}
+		}
+		throw new IOException("Malformed variable length number");
+	}
+}
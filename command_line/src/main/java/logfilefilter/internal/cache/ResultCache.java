@@ -0,0 +1,157 @@
+package logfilefilter.internal.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Caches the {@link MatchOffsets} of filter queries on files, which do not
+ * change anymore (e.g. rotated logs), in a directory. A repeated query is
+ * answered by reading the matching entries at the cached offsets, without
+ * scanning the file.
+ * <p>
+ * A result is stored under the hash of its key: the path, size and
+ * modification time of the source and everything deciding about the matches
+ * (patterns, date pattern, charset). So a changed file never hits an old
+ * result. Files modified recently are considered live and are not cached.
+ * The cache is limited by a size budget, the least recently used results are
+ * evicted first.
+ */
+public class ResultCache {
+	public static final String FILE_EXTENSION = ".lfres";
+	public static final long DEFAULT_SIZE_BUDGET = 256L << 20;
+	/** A file not modified for this time is considered immutable */
+	public static final long LIVE_FILE_AGE_MILLIS = 60_000;
+	private static final int MAGIC = 0x4C465243;
+	private static final int VERSION = 1;
+
+	private final Path directory;
+	private final long sizeBudget;
+
+	public ResultCache(Path directory, long sizeBudget) {
+		this.directory = directory;
+		this.sizeBudget = sizeBudget;
+	}
+
+	/**
+	 * @return <code>true</code>, if the source is not modified anymore and its
+	 *         result can be cached
+	 */
+	public boolean isCacheable(Path source) throws IOException {
+		return System.currentTimeMillis() - Files.getLastModifiedTime(source).toMillis() >= LIVE_FILE_AGE_MILLIS;
+	}
+
+	/**
+	 * @param query
+	 *            everything deciding about the matches, e.g. the patterns
+	 * @return the key of the result of the query on the source in its current
+	 *         state
+	 */
+	public String key(Path source, List<String> query) throws IOException {
+		List<String> parts = new ArrayList<>();
+		parts.add(source.toAbsolutePath().normalize().toString());
+		parts.add(Long.toString(Files.size(source)));
+		parts.add(Long.toString(Files.getLastModifiedTime(source).toMillis()));
+		parts.addAll(query);
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			for (String part : parts) {
+				digest.update(part.getBytes(StandardCharsets.UTF_8));
+				// Separates the parts unambiguously
+				digest.update((byte) 0);
+			}
+			StringBuilder result = new StringBuilder();
+			for (byte b : digest.digest()) {
+				result.append(String.format("%02x", b));
+			}
+			return result.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return the cached result or <code>null</code>, if there is none or it
+	 *         cannot be read
+	 */
+	public MatchOffsets get(String key) {
+		Path file = fileOf(key);
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return null;
+			}
+			MatchOffsets result = MatchOffsets.read(in);
+			// The modification time orders the results by their last use
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			return result;
+		} catch (IOException e) {
+			// A damaged result is computed again
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the result and evicts the least recently used results exceeding
+	 * the size budget.
+	 */
+	public void put(String key, MatchOffsets matches) throws IOException {
+		Files.createDirectories(directory);
+		Path file = fileOf(key);
+		Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			matches.write(out);
+		}
+		Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		evict();
+	}
+
+	private void evict() throws IOException {
+		List<Path> results = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_EXTENSION)) {
+			files.forEach(results::add);
+		}
+		long size = 0;
+		for (Path result : results) {
+			size += Files.size(result);
+		}
+
+		results.sort(Comparator.comparing(ResultCache::lastUse));
+		for (Path result : results) {
+			if (size <= sizeBudget) {
+				break;
+			}
+			size -= Files.size(result);
+			Files.deleteIfExists(result);
+		}
+	}
+
+	private static FileTime lastUse(Path result) {
+		try {
+			return Files.getLastModifiedTime(result);
+		} catch (IOException e) {
+			return FileTime.fromMillis(0);
+		}
+	}
+
+	private Path fileOf(String key) {
+		return directory.resolve(key + FILE_EXTENSION);
+	}
+}
@@ -0,0 +1,69 @@
+package logfilefilter.internal.daemon;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The protocol between {@link FilterClient} and {@link FilterDaemon}. The
+ * client sends the token of the daemon, its working directory and the command
+ * line arguments. The daemon answers with frames of standard output and
+ * standard error, each a type byte, a length and the bytes, and a final end
+ * frame.
+ */
+class DaemonProtocol {
+	static final byte STANDARD_OUTPUT = 'O';
+	static final byte STANDARD_ERROR = 'E';
+	static final byte END = 'X';
+	/** The frames are limited, so the client can use a fixed buffer */
+	static final int MAX_FRAME_SIZE = 1 << 16;
+
+	private DaemonProtocol() {
+	}
+
+	/**
+	 * Writes the bytes as frames of one type. Several frame streams may share
+	 * one connection, they are written atomically. Closing the stream only
+	 * flushes it.
+	 */
+	static class FrameOutputStream extends OutputStream {
+		private final DataOutputStream connection;
+		private final byte type;
+
+		FrameOutputStream(DataOutputStream connection, byte type) {
+			this.connection = connection;
+			this.type = type;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			while (length > 0) {
+				int frameSize = Math.min(length, MAX_FRAME_SIZE);
+				synchronized (connection) {
+					connection.writeByte(type);
+					connection.writeInt(frameSize);
+					connection.write(bytes, offset, frameSize);
+				}
+				offset += frameSize;
+				length -= frameSize;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			synchronized (connection) {
+				connection.flush();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package logfilefilter.internal.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Sends a command line to a running {@link FilterDaemon} and copies its
+ * standard output and standard error.
+ */
+public class FilterClient {
+	private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+
+	private FilterClient() {
+	}
+
+	/**
+	 * @param stateFile
+	 *            the state file written by the daemon
+	 * @param workingDirectory
+	 *            the directory relative paths of the arguments are resolved
+	 *            against
+	 * @return <code>false</code>, if no daemon is running, so the command line
+	 *         has to be executed locally
+	 */
+	public static boolean execute(Path stateFile, Path workingDirectory, String[] args, OutputStream out,
+			OutputStream err) throws IOException {
+		Properties state = new Properties();
+		try (InputStream in = Files.newInputStream(stateFile)) {
+			state.load(in);
+		} catch (NoSuchFileException e) {
+			return false;
+		}
+		String port = state.getProperty(FilterDaemon.PORT_PROPERTY);
+		String token = state.getProperty(FilterDaemon.TOKEN_PROPERTY);
+		if (port == null || token == null) {
+			throw new IOException("The daemon state file '" + stateFile + "' is invalid");
+		}
+
+		try (Socket socket = new Socket()) {
+			try {
+				socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(port)),
+						CONNECT_TIMEOUT_MILLIS);
+			} catch (IOException e) {
+				// The state file of a daemon, which was killed
+				return false;
+			}
+			DataOutputStream request = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			request.writeUTF(token);
+			request.writeUTF(workingDirectory.toAbsolutePath().toString());
+			request.writeInt(args.length);
+			for (String arg : args) {
+				request.writeUTF(arg);
+			}
+			request.flush();
+
+			DataInputStream response = new DataInputStream(
+					new BufferedInputStream(socket.getInputStream(), DaemonProtocol.MAX_FRAME_SIZE));
+			byte[] buffer = new byte[DaemonProtocol.MAX_FRAME_SIZE];
+			while (true) {
+				byte type;
+				int length;
+				try {
+					type = response.readByte();
+					length = response.readInt();
+				} catch (EOFException e) {
+					throw new IOException("The daemon closed the connection before the end", e);
+				}
+				if (type == DaemonProtocol.END) {
+					out.flush();
+					err.flush();
+					return true;
+				}
+				if (length < 0 || length > buffer.length) {
+					throw new IOException("Invalid frame of " + length + " bytes");
+				}
+				response.readFully(buffer, 0, length);
+				OutputStream target = type == DaemonProtocol.STANDARD_ERROR ? err : out;
+				target.write(buffer, 0, length);
+				if (type == DaemonProtocol.STANDARD_ERROR) {
+					err.flush();
+				}
+			}
+		}
+	}
+}
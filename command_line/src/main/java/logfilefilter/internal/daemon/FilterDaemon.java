@@ -0,0 +1,244 @@
+package logfilefilter.internal.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import logfilefilter.JavaLogFileFilter;
+import logfilefilter.internal.filters.FilterPlanCache;
+import logfilefilter.internal.processors.EntryOffsetCache;
+import logfilefilter.internal.ui.CommandLineUi;
+
+/**
+ * Answers filter requests of {@link FilterClient}s, so repeated queries pay
+ * neither the start of a JVM nor the warm-up of the JIT. The compiled patterns
+ * and the entry offsets of the recently filtered files are kept between the
+ * requests.
+ * <p>
+ * The daemon listens on a port of the loopback interface only. The port and a
+ * random token are written to the state file, which only its owner can read.
+ * A client has to send the token, so only the owner of the daemon can use it.
+ * The requests are executed by a bounded pool of workers, a request exceeding
+ * the queue is rejected.
+ */
+public class FilterDaemon implements Closeable {
+	/** The state file used, if none is given */
+	public static final Path DEFAULT_STATE_FILE = Paths.get(System.getProperty("user.home"), ".logfilefilter",
+			"daemon.properties");
+	/** Requests waiting per worker, before further requests are rejected */
+	private static final int QUEUED_REQUESTS_PER_WORKER = 4;
+	private static final int MAX_CACHED_FILES = 16;
+	/** The time a client may take to send its request */
+	private static final int DEFAULT_REQUEST_TIMEOUT_MILLIS = 10_000;
+	static final String PORT_PROPERTY = "port";
+	static final String TOKEN_PROPERTY = "token";
+
+	private final Path stateFile;
+	private final ServerSocket serverSocket;
+	private final byte[] token;
+	private final ThreadPoolExecutor workers;
+	private final EntryOffsetCache entryOffsetCache = new EntryOffsetCache(MAX_CACHED_FILES);
+	private final FilterPlanCache filterPlanCache = new FilterPlanCache();
+	private int requestTimeoutMillis = DEFAULT_REQUEST_TIMEOUT_MILLIS;
+
+	/**
+	 * Binds the daemon to a free port and writes the state file.
+	 */
+	public FilterDaemon(Path stateFile, int workerCount) throws IOException {
+		this.stateFile = stateFile;
+		this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		this.token = newToken();
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(workerCount * QUEUED_REQUESTS_PER_WORKER), task -> {
+					Thread thread = new Thread(task, "daemon-worker-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		try {
+			writeStateFile();
+		} catch (IOException | RuntimeException e) {
+			close();
+			throw e;
+		}
+	}
+
+	private static byte[] newToken() {
+		byte[] random = new byte[32];
+		new SecureRandom().nextBytes(random);
+		StringBuilder result = new StringBuilder();
+		for (byte b : random) {
+			result.append(String.format("%02x", b));
+		}
+		return result.toString().getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Writes the state file atomically, it is readable by its owner only.
+	 */
+	private void writeStateFile() throws IOException {
+		Path directory = stateFile.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		Path temporaryFile;
+		try {
+			temporaryFile = Files.createTempFile(directory, "daemon", ".tmp",
+					PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+		} catch (UnsupportedOperationException e) {
+			// No POSIX file system, the file has the default permissions
+			temporaryFile = Files.createTempFile(directory, "daemon", ".tmp");
+		}
+		Properties state = new Properties();
+		state.setProperty(PORT_PROPERTY, Integer.toString(getPort()));
+		state.setProperty(TOKEN_PROPERTY, new String(token, StandardCharsets.US_ASCII));
+		try (OutputStream out = Files.newOutputStream(temporaryFile)) {
+			state.store(out, "Filter daemon, process " + processName());
+		}
+		Files.move(temporaryFile, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static String processName() {
+		return java.lang.management.ManagementFactory.getRuntimeMXBean().getName();
+	}
+
+	/**
+	 * @param requestTimeoutMillis
+	 *            the time a client may take to send its request, before the
+	 *            connection is closed
+	 */
+	void setRequestTimeout(int requestTimeoutMillis) {
+		this.requestTimeoutMillis = requestTimeoutMillis;
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Accepts requests, until the daemon is closed.
+	 */
+	public void run() throws IOException {
+		while (!serverSocket.isClosed()) {
+			Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (SocketException e) {
+				if (serverSocket.isClosed()) {
+					return;
+				}
+				throw e;
+			}
+			try {
+				workers.execute(() -> serve(socket));
+			} catch (RejectedExecutionException e) {
+				reject(socket, "The daemon is busy, too many requests are waiting");
+			}
+		}
+	}
+
+	private void serve(Socket socket) {
+		try (Socket connection = socket;
+				DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+				DataOutputStream out = new DataOutputStream(
+						new BufferedOutputStream(connection.getOutputStream(), DaemonProtocol.MAX_FRAME_SIZE))) {
+			// A connection sending nothing must not hold a worker
+			connection.setSoTimeout(requestTimeoutMillis);
+			byte[] clientToken = in.readUTF().getBytes(StandardCharsets.US_ASCII);
+			if (!MessageDigest.isEqual(token, clientToken)) {
+				writeEnd(out, "The token does not match the daemon");
+				return;
+			}
+			Path workingDirectory = Paths.get(in.readUTF());
+			String[] args = new String[in.readInt()];
+			for (int i = 0; i < args.length; i++) {
+				args[i] = in.readUTF();
+			}
+			// The request has been read, its filtering may take any time
+			connection.setSoTimeout(0);
+
+			PrintStream standardError = new PrintStream(
+					new DaemonProtocol.FrameOutputStream(out, DaemonProtocol.STANDARD_ERROR), true);
+			JavaLogFileFilter processor = new JavaLogFileFilter();
+			processor.setStandardOutput(new DaemonProtocol.FrameOutputStream(out, DaemonProtocol.STANDARD_OUTPUT));
+			processor.setStandardError(standardError);
+			processor.setEntryOffsetCache(entryOffsetCache);
+			processor.setFilterPlanCache(filterPlanCache);
+			try {
+				// Never --daemon or --client, they are unknown filter parameters
+				CommandLineUi.of(processor, workingDirectory).executeFilter(args);
+				writeEnd(out, null);
+			} catch (Exception e) {
+				// Reported like the command line does
+				StringWriter stackTrace = new StringWriter();
+				e.printStackTrace(new PrintWriter(stackTrace));
+				writeEnd(out, stackTrace.toString());
+			}
+		} catch (IOException e) {
+			// The client is gone
+		}
+	}
+
+	private static void reject(Socket socket, String message) {
+		try (Socket connection = socket;
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()))) {
+			writeEnd(out, message);
+		} catch (IOException e) {
+			// The client is gone
+		}
+	}
+
+	/**
+	 * @param error
+	 *            written to standard error before the end, may be
+	 *            <code>null</code>
+	 */
+	private static void writeEnd(DataOutputStream out, String error) throws IOException {
+		if (error != null) {
+			byte[] bytes = (error.endsWith("\n") ? error : error + "\n").getBytes(StandardCharsets.UTF_8);
+			new DaemonProtocol.FrameOutputStream(out, DaemonProtocol.STANDARD_ERROR).write(bytes);
+		}
+		synchronized (out) {
+			out.writeByte(DaemonProtocol.END);
+			out.writeInt(0);
+			out.flush();
+		}
+	}
+
+	/**
+	 * Stops accepting requests, stops the running requests and removes the
+	 * state file.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			serverSocket.close();
+			workers.shutdownNow();
+		} finally {
+			Files.deleteIfExists(stateFile);
+		}
+	}
+}
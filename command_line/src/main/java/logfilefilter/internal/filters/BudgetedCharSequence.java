@@ -0,0 +1,56 @@
+package logfilefilter.internal.filters;
+
+/**
+ * A view on a log entry, which stops a backtracking regex as soon as its time
+ * budget is used up. The time is checked only every few characters read.
+ */
+class BudgetedCharSequence implements CharSequence {
+	private static final int CHECK_INTERVAL = 1024;
+
+	private final CharSequence text;
+	private final long deadlineNanos;
+	private int reads = 0;
+
+	/**
+	 * Thrown when the deadline is passed. Without a stack trace, it is only
+	 * used to abort the regex.
+	 */
+	static class BudgetExceededException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		BudgetExceededException() {
+			super("Match time budget exceeded", null, false, false);
+		}
+	}
+
+	BudgetedCharSequence(CharSequence text, long deadlineNanos) {
+		this.text = text;
+		this.deadlineNanos = deadlineNanos;
+	}
+
+	@Override
+	public int length() {
+		return text.length();
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (++reads == CHECK_INTERVAL) {
+			reads = 0;
+			if (System.nanoTime() - deadlineNanos > 0) {
+				throw new BudgetExceededException();
+			}
+		}
+		return text.charAt(index);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return new BudgetedCharSequence(text.subSequence(start, end), deadlineNanos);
+	}
+
+	@Override
+	public String toString() {
+		return text.toString();
+	}
+}
@@ -0,0 +1,233 @@
+package logfilefilter.internal.filters;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * All include and exclude patterns compiled into one filter. A log entry
+ * passes the filter, if
+ * <ul>
+ * <li>it matches at least one include pattern, or</li>
+ * <li>exclude patterns are defined and it matches none of them.</li>
+ * </ul>
+ * So the include patterns are OR-ed, the exclude patterns are OR-ed and an
+ * include pattern overrules the exclude patterns.
+ * <p>
+ * Before any regex is executed, the required literals of all patterns are
+ * searched in one scan of the entry by a {@link MultiLiteralMatcher}. A
+ * pattern whose literals do not occur cannot match and is skipped, a pattern
+ * which is a plain literal is decided by the scan alone. The plan is immutable
+ * and thread safe.
+ * <p>
+ * The patterns are executed by the selected {@link RegexEngine}. Backtracking
+ * patterns can be limited to a time budget per entry: a pattern exceeding it
+ * is treated as not matching and the entry is counted, see
+ * {@link #getBudgetExceededCount()}.
+ */
+public class FilterPlan implements Predicate<CharSequence> {
+	private final CompiledPattern[] includes;
+	private final CompiledPattern[] excludes;
+	private final MultiLiteralMatcher literalMatcher;
+	private final long matchBudgetNanos;
+	private final LongAdder budgetExceeded = new LongAdder();
+
+	/**
+	 * Is informed which pattern decided about an entry, e.g. to count the
+	 * matches per pattern. It is called concurrently, if the plan is used
+	 * concurrently.
+	 */
+	public interface MatchListener {
+		void includeMatched(int includeIndex);
+
+		void excludeMatched(int excludeIndex);
+
+		/**
+		 * A pattern exceeded the match budget for the entry, e.g. to count
+		 * such entries per execution of a shared plan.
+		 */
+		default void budgetExceeded() {
+		}
+	}
+
+	private static class CompiledPattern {
+		private final Pattern pattern;
+		/** Executes the pattern instead of {@link #pattern}, if supported */
+		private final LinearRegex linearRegex;
+		/** The ids of the alternative required literals, empty if unknown */
+		private final int[] literalIds;
+		private final boolean literalOnly;
+
+		private CompiledPattern(Pattern pattern, LinearRegex linearRegex, int[] literalIds, boolean literalOnly) {
+			this.pattern = pattern;
+			this.linearRegex = linearRegex;
+			this.literalIds = literalIds;
+			this.literalOnly = literalOnly;
+		}
+
+		/**
+		 * @param budget
+		 *            limits the time of a backtracking regex, may be
+		 *            <code>null</code>
+		 */
+		private boolean find(CharSequence logEntry, long[] foundLiterals, MatchBudget budget) {
+			if (literalIds.length > 0) {
+				boolean literalFound = false;
+				for (int id : literalIds) {
+					literalFound |= MultiLiteralMatcher.isFound(foundLiterals, id);
+				}
+				if (!literalFound || literalOnly) {
+					return literalFound;
+				}
+			}
+			if (linearRegex != null) {
+				return linearRegex.find(logEntry);
+			}
+			if (budget == null) {
+				return pattern.matcher(logEntry).find();
+			}
+			if (budget.exceeded) {
+				// The remaining patterns have no time left, they do not match
+				return false;
+			}
+			try {
+				return pattern.matcher(new BudgetedCharSequence(logEntry, budget.deadlineNanos)).find();
+			} catch (BudgetedCharSequence.BudgetExceededException e) {
+				budget.exceeded = true;
+				return false;
+			}
+		}
+	}
+
+	/** The time left for the backtracking patterns of one entry */
+	private static class MatchBudget {
+		private final long deadlineNanos;
+		private boolean exceeded = false;
+
+		private MatchBudget(long deadlineNanos) {
+			this.deadlineNanos = deadlineNanos;
+		}
+	}
+
+	private FilterPlan(List<String> includePatterns, List<String> excludePatterns, RegexEngine engine,
+			long matchBudgetNanos) {
+		Map<String, Integer> literalIds = new LinkedHashMap<>();
+		this.includes = compile(includePatterns, literalIds, engine);
+		this.excludes = compile(excludePatterns, literalIds, engine);
+		this.literalMatcher = new MultiLiteralMatcher(new ArrayList<>(literalIds.keySet()));
+		this.matchBudgetNanos = matchBudgetNanos;
+	}
+
+	/**
+	 * @return the plan or <code>null</code>, if no pattern is defined
+	 */
+	public static FilterPlan compile(List<String> includePatterns, List<String> excludePatterns) {
+		return compile(includePatterns, excludePatterns, RegexEngine.JAVA, 0);
+	}
+
+	/**
+	 * @param matchBudgetNanos
+	 *            the time the backtracking patterns may take per entry, 0 for
+	 *            no limit
+	 * @return the plan or <code>null</code>, if no pattern is defined
+	 */
+	public static FilterPlan compile(List<String> includePatterns, List<String> excludePatterns, RegexEngine engine,
+			long matchBudgetNanos) {
+		if (includePatterns.isEmpty() && excludePatterns.isEmpty()) {
+			return null;
+		}
+		return new FilterPlan(includePatterns, excludePatterns, engine, matchBudgetNanos);
+	}
+
+	private static CompiledPattern[] compile(List<String> patterns, Map<String, Integer> literalIds,
+			RegexEngine engine) {
+		CompiledPattern[] result = new CompiledPattern[patterns.size()];
+		for (int i = 0; i < result.length; i++) {
+			String regex = patterns.get(i);
+			RegexLiterals literals = RegexLiterals.analyze(regex);
+
+			int[] ids = new int[literals.getRequiredLiterals().size()];
+			int j = 0;
+			for (String literal : literals.getRequiredLiterals()) {
+				Integer id = literalIds.get(literal);
+				if (id == null) {
+					id = literalIds.size();
+					literalIds.put(literal, id);
+				}
+				ids[j++] = id;
+			}
+			Pattern pattern = Pattern.compile(regex);
+			LinearRegex linearRegex = null;
+			if (engine == RegexEngine.LINEAR && !literals.isLiteralOnly()) {
+				try {
+					linearRegex = LinearRegexCompiler.compile(regex);
+				} catch (IllegalArgumentException e) {
+					// Not supported, executed by the pattern
+				}
+			}
+			result[i] = new CompiledPattern(pattern, linearRegex, ids, literals.isLiteralOnly());
+		}
+		return result;
+	}
+
+	/**
+	 * @return the number of entries, for which a pattern exceeded the match
+	 *         budget
+	 */
+	public long getBudgetExceededCount() {
+		return budgetExceeded.sum();
+	}
+
+	@Override
+	public boolean test(CharSequence logEntry) {
+		return test(logEntry, null);
+	}
+
+	/**
+	 * @param listener
+	 *            is informed about the deciding pattern, may be
+	 *            <code>null</code>
+	 */
+	public boolean test(CharSequence logEntry, MatchListener listener) {
+		long[] foundLiterals = literalMatcher.newResult();
+		if (literalMatcher.getLiteralCount() > 0) {
+			literalMatcher.findAll(logEntry, foundLiterals);
+		}
+		MatchBudget budget = matchBudgetNanos > 0 ? new MatchBudget(System.nanoTime() + matchBudgetNanos) : null;
+
+		try {
+			for (int i = 0; i < includes.length; i++) {
+				if (includes[i].find(logEntry, foundLiterals, budget)) {
+					if (listener != null) {
+						listener.includeMatched(i);
+					}
+					return true;
+				}
+			}
+
+			if (excludes.length == 0) {
+				return false;
+			}
+			for (int i = 0; i < excludes.length; i++) {
+				if (excludes[i].find(logEntry, foundLiterals, budget)) {
+					if (listener != null) {
+						listener.excludeMatched(i);
+					}
+					return false;
+				}
+			}
+			return true;
+		} finally {
+			if (budget != null && budget.exceeded) {
+				budgetExceeded.increment();
+				if (listener != null) {
+					listener.budgetExceeded();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package logfilefilter.internal.filters;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the recently compiled {@link FilterPlan}s, so a long running process
+ * answering repeated queries compiles their patterns only once. The plans are
+ * immutable and shared by all users of the cache. Thread safe.
+ */
+public class FilterPlanCache {
+	public static final int DEFAULT_MAX_PLANS = 64;
+
+	private final Map<List<Object>, FilterPlan> plans;
+
+	public FilterPlanCache() {
+		this(DEFAULT_MAX_PLANS);
+	}
+
+	public FilterPlanCache(int maxPlans) {
+		this.plans = new LinkedHashMap<List<Object>, FilterPlan>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<List<Object>, FilterPlan> eldest) {
+				return size() > maxPlans;
+			}
+		};
+	}
+
+	/**
+	 * @return the cached or newly compiled plan, see
+	 *         {@link FilterPlan#compile(List, List, RegexEngine, long)}
+	 */
+	public FilterPlan get(List<String> includePatterns, List<String> excludePatterns, RegexEngine engine,
+			long matchBudgetNanos) {
+		List<Object> key = Arrays.asList(includePatterns, excludePatterns, engine, matchBudgetNanos);
+		synchronized (plans) {
+			FilterPlan result = plans.get(key);
+			if (result != null) {
+				return result;
+			}
+		}
+		// Compiled outside of the lock, a plan compiled twice concurrently is harmless
+		FilterPlan result = FilterPlan.compile(includePatterns, excludePatterns, engine, matchBudgetNanos);
+		if (result != null) {
+			synchronized (plans) {
+				plans.put(key, result);
+			}
+		}
+		return result;
+	}
+}
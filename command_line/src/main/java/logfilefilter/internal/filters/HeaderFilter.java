@@ -0,0 +1,237 @@
+package logfilefilter.internal.filters;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import logfilefilter.internal.filters.HeaderLayout.Field;
+
+/**
+ * Typed conditions on the header fields of a log entry, located by a
+ * {@link HeaderLayout} in its first line. An entry passes the filter, if
+ * <ul>
+ * <li>its level fulfills all level conditions, e.g. <code>&gt;=WARN</code>,</li>
+ * <li>its logger is one of the given loggers or below one of them,</li>
+ * <li>its thread matches one of the thread patterns and</li>
+ * <li>the message of its first line matches one of the message patterns.</li>
+ * </ul>
+ * So the conditions on different fields are AND-ed, the values given for the
+ * logger, thread and message are OR-ed. An entry whose first line does not fit
+ * the layout does not pass. The filter is immutable and thread safe.
+ */
+public class HeaderFilter implements Predicate<CharSequence> {
+	/** The levels by rank, each with its aliases, e.g. of java.util.logging */
+	private static final String[][] LEVELS = { { "TRACE", "FINEST", "FINER" }, { "DEBUG", "FINE" },
+			{ "INFO", "CONFIG" }, { "WARN", "WARNING" }, { "ERROR", "SEVERE" }, { "FATAL", "CRITICAL" } };
+	/** The rank of a level, which is not known */
+	public static final int UNKNOWN_LEVEL = -1;
+	/** The names of the levels by rank */
+	public static final List<String> LEVEL_NAMES = Collections.unmodifiableList(
+			Arrays.stream(LEVELS).map(aliases -> aliases[0]).collect(Collectors.toList()));
+
+	private final HeaderLayout layout;
+	private final LevelCondition[] levelConditions;
+	private final String[] loggers;
+	private final Pattern[] threads;
+	private final Pattern[] messages;
+	private final int levelField;
+	private final int loggerField;
+	private final int threadField;
+	private final int messageField;
+	/** The index of the last field needed by a condition */
+	private final int lastField;
+
+	/** The operators with the longer symbols first, so "&lt;=" is not taken for "&lt;" */
+	private enum Operator {
+		LESS_OR_EQUAL("<="), GREATER_OR_EQUAL(">="), LESS("<"), GREATER(">"), EQUAL("=");
+
+		private final String symbol;
+
+		private Operator(String symbol) {
+			this.symbol = symbol;
+		}
+
+		private boolean test(int rank, int expectedRank) {
+			switch (this) {
+			case LESS:
+				return rank < expectedRank;
+			case LESS_OR_EQUAL:
+				return rank <= expectedRank;
+			case EQUAL:
+				return rank == expectedRank;
+			case GREATER_OR_EQUAL:
+				return rank >= expectedRank;
+			default:
+				return rank > expectedRank;
+			}
+		}
+	}
+
+	private static class LevelCondition {
+		private final Operator operator;
+		private final int rank;
+
+		private LevelCondition(Operator operator, int rank) {
+			this.operator = operator;
+			this.rank = rank;
+		}
+	}
+
+	private HeaderFilter(HeaderLayout layout, List<String> levelConditions, List<String> loggers,
+			List<String> threadPatterns, List<String> messagePatterns) {
+		this.layout = layout;
+		this.levelConditions = levelConditions.stream().map(HeaderFilter::toLevelCondition)
+				.toArray(LevelCondition[]::new);
+		this.loggers = loggers.toArray(new String[loggers.size()]);
+		this.threads = threadPatterns.stream().map(Pattern::compile).toArray(Pattern[]::new);
+		this.messages = messagePatterns.stream().map(Pattern::compile).toArray(Pattern[]::new);
+		this.levelField = fieldIndex(layout, Field.LEVEL, this.levelConditions.length);
+		this.loggerField = fieldIndex(layout, Field.LOGGER, this.loggers.length);
+		this.threadField = fieldIndex(layout, Field.THREAD, this.threads.length);
+		this.messageField = fieldIndex(layout, Field.MESSAGE, this.messages.length);
+		this.lastField = Math.max(Math.max(levelField, loggerField), Math.max(threadField, messageField));
+	}
+
+	/**
+	 * @param levelConditions
+	 *            a comparison and a level, like <code>&gt;=WARN</code> or
+	 *            <code>=ERROR</code>. Without comparison the level must be
+	 *            equal.
+	 * @param loggers
+	 *            the names of loggers, their child loggers are included
+	 * @param threadPatterns
+	 *            regex patterns found in the thread name
+	 * @param messagePatterns
+	 *            regex patterns found in the message of the first line
+	 * @return the filter or <code>null</code>, if no condition is defined
+	 * @throws IllegalArgumentException
+	 *             if a level is unknown or the layout has no field for a
+	 *             condition
+	 */
+	public static HeaderFilter compile(HeaderLayout layout, List<String> levelConditions, List<String> loggers,
+			List<String> threadPatterns, List<String> messagePatterns) {
+		if (levelConditions.isEmpty() && loggers.isEmpty() && threadPatterns.isEmpty()
+				&& messagePatterns.isEmpty()) {
+			return null;
+		}
+		return new HeaderFilter(layout, levelConditions, loggers, threadPatterns, messagePatterns);
+	}
+
+	private static int fieldIndex(HeaderLayout layout, Field field, int conditionCount) {
+		if (conditionCount == 0) {
+			return -1;
+		}
+		int result = layout.indexOf(field);
+		if (result < 0) {
+			throw new IllegalArgumentException("The header layout '" + layout + "' has no "
+					+ field.name().toLowerCase(Locale.ROOT) + " field");
+		}
+		return result;
+	}
+
+	private static LevelCondition toLevelCondition(String condition) {
+		Operator operator = Operator.EQUAL;
+		String level = condition;
+		for (Operator candidate : Operator.values()) {
+			if (condition.startsWith(candidate.symbol)) {
+				operator = candidate;
+				level = condition.substring(candidate.symbol.length()).trim();
+				break;
+			}
+		}
+		int rank = levelRank(level, 0, level.length());
+		if (rank == UNKNOWN_LEVEL) {
+			throw new IllegalArgumentException("Level '" + level + "' is unknown, expected e.g. '>=WARN'.");
+		}
+		return new LevelCondition(operator, rank);
+	}
+
+	/**
+	 * @return the rank of the level name in the range, ignoring its case, or
+	 *         {@link #UNKNOWN_LEVEL}
+	 */
+	public static int levelRank(CharSequence text, int start, int end) {
+		for (int rank = 0; rank < LEVELS.length; rank++) {
+			for (String name : LEVELS[rank]) {
+				if (equalsIgnoreCase(name, text, start, end)) {
+					return rank;
+				}
+			}
+		}
+		return UNKNOWN_LEVEL;
+	}
+
+	private static boolean equalsIgnoreCase(String name, CharSequence text, int start, int end) {
+		if (end - start != name.length()) {
+			return false;
+		}
+		for (int i = 0; i < name.length(); i++) {
+			char c = text.charAt(start + i);
+			if (c != name.charAt(i) && Character.toUpperCase(c) != name.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public HeaderLayout getLayout() {
+		return layout;
+	}
+
+	@Override
+	public boolean test(CharSequence logEntry) {
+		int[] bounds = new int[2 * (lastField + 1)];
+		if (!layout.parse(logEntry, lastField, bounds)) {
+			return false;
+		}
+		// The cheapest conditions first
+		if (levelField >= 0) {
+			int rank = levelRank(logEntry, bounds[2 * levelField], bounds[2 * levelField + 1]);
+			for (LevelCondition condition : levelConditions) {
+				if (rank == UNKNOWN_LEVEL || !condition.operator.test(rank, condition.rank)) {
+					return false;
+				}
+			}
+		}
+		if (loggerField >= 0 && !isLoggerIncluded(logEntry, bounds[2 * loggerField], bounds[2 * loggerField + 1])) {
+			return false;
+		}
+		if (threadField >= 0 && !find(threads, logEntry, bounds[2 * threadField], bounds[2 * threadField + 1])) {
+			return false;
+		}
+		return messageField < 0 || find(messages, logEntry, bounds[2 * messageField], bounds[2 * messageField + 1]);
+	}
+
+	private boolean isLoggerIncluded(CharSequence logEntry, int start, int end) {
+		for (String logger : loggers) {
+			int loggerEnd = start + logger.length();
+			if (loggerEnd <= end && regionEquals(logEntry, start, logger)
+					&& (loggerEnd == end || logEntry.charAt(loggerEnd) == '.' || logEntry.charAt(loggerEnd) == '$')) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean regionEquals(CharSequence text, int start, String expected) {
+		for (int i = 0; i < expected.length(); i++) {
+			if (text.charAt(start + i) != expected.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean find(Pattern[] patterns, CharSequence logEntry, int start, int end) {
+		for (Pattern pattern : patterns) {
+			if (pattern.matcher(logEntry).region(start, end).find()) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,278 @@
+package logfilefilter.internal.filters;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import logfilefilter.internal.processors.FixedWidthLogLineDetector;
+
+/**
+ * The layout of the first line of a log entry, which locates its header fields
+ * (level, logger, thread and message) without a regex. It is given like the
+ * pattern of a log4j or logback layout, e.g. <code>%d %-5p [%t] %c - %m</code>,
+ * or by the name of a preset, see {@link #PRESETS}.
+ * <ul>
+ * <li><code>%d</code> is the timestamp found by the date pattern,</li>
+ * <li><code>%p</code> (or <code>%level</code>) the level, <code>%t</code> (or
+ * <code>%thread</code>) the thread, <code>%c</code> (or <code>%logger</code>)
+ * the logger and <code>%m</code> (or <code>%msg</code>) the message,</li>
+ * <li>any other field is skipped.</li>
+ * </ul>
+ * Format modifiers like <code>-5</code> and options like <code>{36}</code> are
+ * ignored. A field ends where the text following it in the layout is found, the
+ * last field at the end of the line. A space in the layout matches any number
+ * of spaces and tabs, so padded fields are found as well.
+ * <p>
+ * Only the first line of an entry is parsed, and only up to the last field
+ * needed, so most entries are decided after a few dozen characters. The layout
+ * is immutable and thread safe.
+ */
+public class HeaderLayout {
+	public enum Field {
+		DATE, LEVEL, THREAD, LOGGER, MESSAGE, OTHER
+	}
+
+	/** The layout used, if none is given */
+	public static final String DEFAULT_PRESET = "default";
+	/** The layouts, which can be referred to by their name */
+	public static final Map<String, String> PRESETS;
+
+	static {
+		Map<String, String> presets = new LinkedHashMap<>();
+		presets.put(DEFAULT_PRESET, "%d %p %m");
+		presets.put("log4j", "%d %p [%t] %c - %m");
+		presets.put("logback", "%d [%t] %p %c - %m");
+		presets.put("jul", "%d %p %c %m");
+		PRESETS = Collections.unmodifiableMap(presets);
+	}
+
+	private final String layout;
+	private final Field[] fields;
+	/** The text before each field, the last element is the text after all fields */
+	private final String[] separators;
+	private final Pattern datePattern;
+	/** The width of the timestamp, if the date pattern has a fixed width, else -1 */
+	private final int dateWidth;
+
+	private HeaderLayout(String layout, List<Field> fields, List<String> separators, Pattern datePattern) {
+		this.layout = layout;
+		this.fields = fields.toArray(new Field[fields.size()]);
+		this.separators = separators.toArray(new String[separators.size()]);
+		this.datePattern = datePattern;
+		FixedWidthLogLineDetector fixedWidth = FixedWidthLogLineDetector.compile(datePattern);
+		this.dateWidth = fixedWidth != null ? fixedWidth.getWidth() : -1;
+	}
+
+	/**
+	 * @param layoutOrPreset
+	 *            the layout or the name of a preset
+	 * @param datePattern
+	 *            the pattern identifying the first line of a log entry, it
+	 *            finds the timestamp field
+	 * @throws IllegalArgumentException
+	 *             if the layout has no field or two fields are not separated
+	 *             by some text
+	 */
+	public static HeaderLayout compile(String layoutOrPreset, Pattern datePattern) {
+		String layout = PRESETS.getOrDefault(layoutOrPreset, layoutOrPreset);
+		List<Field> fields = new ArrayList<>();
+		List<String> separators = new ArrayList<>();
+		StringBuilder separator = new StringBuilder();
+		int i = 0;
+		while (i < layout.length()) {
+			char c = layout.charAt(i++);
+			if (c != '%') {
+				separator.append(c);
+				continue;
+			}
+			if (i < layout.length() && layout.charAt(i) == '%') {
+				separator.append('%');
+				i++;
+				continue;
+			}
+			// Format modifiers, e.g. "-5" or ".30"
+			while (i < layout.length() && "-.0123456789".indexOf(layout.charAt(i)) >= 0) {
+				i++;
+			}
+			int nameStart = i;
+			while (i < layout.length() && Character.isLetter(layout.charAt(i))) {
+				i++;
+			}
+			String name = layout.substring(nameStart, i);
+			// Options, e.g. "{36}"
+			if (i < layout.length() && layout.charAt(i) == '{') {
+				int optionsEnd = layout.indexOf('}', i);
+				i = optionsEnd >= 0 ? optionsEnd + 1 : layout.length();
+			}
+			if (name.equals("n")) {
+				// The line separator ends the first line
+				break;
+			}
+
+			Field field = toField(name);
+			if (!fields.isEmpty() && separator.length() == 0 && fields.get(fields.size() - 1) != Field.DATE) {
+				throw new IllegalArgumentException("The fields of the layout '" + layout
+						+ "' must be separated by some text, e.g. a space");
+			}
+			fields.add(field);
+			separators.add(separator.toString());
+			separator.setLength(0);
+		}
+		if (fields.isEmpty()) {
+			throw new IllegalArgumentException("The layout '" + layout + "' has no field, known presets are "
+					+ PRESETS.keySet());
+		}
+		separators.add(separator.toString());
+		return new HeaderLayout(layout, fields, separators, datePattern);
+	}
+
+	private static Field toField(String name) {
+		switch (name.toLowerCase(Locale.ROOT)) {
+		case "d":
+		case "date":
+			return Field.DATE;
+		case "p":
+		case "le":
+		case "level":
+			return Field.LEVEL;
+		case "t":
+		case "thread":
+			return Field.THREAD;
+		case "c":
+		case "lo":
+		case "logger":
+			return Field.LOGGER;
+		case "m":
+		case "msg":
+		case "message":
+			return Field.MESSAGE;
+		default:
+			return Field.OTHER;
+		}
+	}
+
+	public String getLayout() {
+		return layout;
+	}
+
+	/**
+	 * @return the index of the field in the layout or -1, if the layout does
+	 *         not contain it
+	 */
+	public int indexOf(Field field) {
+		for (int i = 0; i < fields.length; i++) {
+			if (fields[i] == field) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Locates the fields of the first line of the entry up to the given one.
+	 *
+	 * @param lastField
+	 *            the index of the last field needed
+	 * @param bounds
+	 *            receives the start and end of field <code>i</code> at
+	 *            <code>2 * i</code> and <code>2 * i + 1</code>
+	 * @return <code>false</code>, if the first line does not fit the layout
+	 */
+	public boolean parse(CharSequence logEntry, int lastField, int[] bounds) {
+		int position = 0;
+		for (int i = 0; i <= lastField; i++) {
+			position = skipSeparator(logEntry, position, separators[i]);
+			if (position < 0) {
+				return false;
+			}
+			int end;
+			if (fields[i] == Field.DATE) {
+				end = dateEnd(logEntry, position);
+			} else if (i == fields.length - 1 && separators[i + 1].isEmpty()) {
+				end = lineEnd(logEntry, position);
+			} else {
+				end = findSeparator(logEntry, position, separators[i + 1]);
+			}
+			if (end < 0) {
+				return false;
+			}
+			bounds[2 * i] = position;
+			bounds[2 * i + 1] = end;
+			position = end;
+		}
+		return true;
+	}
+
+	private int dateEnd(CharSequence logEntry, int start) {
+		if (dateWidth >= 0 && start == 0) {
+			return dateWidth <= logEntry.length() ? dateWidth : -1;
+		}
+		Matcher matcher = datePattern.matcher(logEntry);
+		matcher.region(start, lineEnd(logEntry, start));
+		return matcher.lookingAt() ? matcher.end() : -1;
+	}
+
+	/**
+	 * @return the position after the separator or -1, if it is not found at
+	 *         the position
+	 */
+	private static int skipSeparator(CharSequence logEntry, int position, String separator) {
+		int length = logEntry.length();
+		for (int i = 0; i < separator.length(); i++) {
+			char expected = separator.charAt(i);
+			if (expected == ' ') {
+				if (position >= length || !isBlank(logEntry.charAt(position))) {
+					return -1;
+				}
+				while (position < length && isBlank(logEntry.charAt(position))) {
+					position++;
+				}
+			} else if (position < length && logEntry.charAt(position) == expected) {
+				position++;
+			} else {
+				return -1;
+			}
+		}
+		return position;
+	}
+
+	/**
+	 * @return the first position of the first line, at which the separator
+	 *         is found, or -1
+	 */
+	private static int findSeparator(CharSequence logEntry, int from, String separator) {
+		for (int position = from; position < logEntry.length() && !isLineEnd(logEntry.charAt(position));
+				position++) {
+			if (skipSeparator(logEntry, position, separator) >= 0) {
+				return position;
+			}
+		}
+		return -1;
+	}
+
+	private static int lineEnd(CharSequence logEntry, int from) {
+		int position = from;
+		while (position < logEntry.length() && !isLineEnd(logEntry.charAt(position))) {
+			position++;
+		}
+		return position;
+	}
+
+	private static boolean isBlank(char c) {
+		return c == ' ' || c == '\t';
+	}
+
+	private static boolean isLineEnd(char c) {
+		return c == '\n' || c == '\r';
+	}
+
+	@Override
+	public String toString() {
+		return layout;
+	}
+}
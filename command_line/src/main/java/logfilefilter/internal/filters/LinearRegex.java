@@ -0,0 +1,496 @@
+package logfilefilter.internal.filters;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * A regular expression, which is found in time linear to the length of the
+ * text for any pattern and any text. The expression is compiled into a
+ * Thompson NFA, which is executed as a lazily built DFA: each set of NFA
+ * states reached is a DFA state, its transitions are computed when they are
+ * needed first and cached, so most characters cost one table lookup. The
+ * cache is bounded and cleared when it is full.
+ * <p>
+ * Only {@link #find(CharSequence)} is supported, it gives the same result as
+ * {@link Pattern#matcher(CharSequence) Pattern.matcher(text).find()}. Not
+ * supported constructs are rejected by {@link #compile(String)}, see
+ * {@link LinearRegexCompiler}. An instance is thread safe, each thread uses its
+ * own DFA cache.
+ */
+public final class LinearRegex {
+	static final int CHARS = 0;
+	static final int SPLIT = 1;
+	static final int JUMP = 2;
+	static final int ASSERT = 3;
+	static final int MATCH = 4;
+
+	static final int BEGIN_TEXT = 0;
+	static final int BEGIN_LINE = 1;
+	static final int END_TEXT = 2;
+	static final int END_TEXT_OR_FINAL_TERMINATOR = 3;
+	static final int END_LINE = 4;
+	static final int WORD_BOUNDARY = 5;
+	static final int NOT_WORD_BOUNDARY = 6;
+
+	/** Properties of a character used by assertions */
+	private static final int WORD = 1;
+	private static final int TERMINATOR = 2;
+	private static final int LINE_FEED = 4;
+	private static final int CARRIAGE_RETURN = 8;
+	/** The previous position is the begin of the text, only in a state */
+	private static final int AT_START = 16;
+
+	/** Maximal number of cached transitions of a thread */
+	private static final int MAX_TABLE_SIZE = 1 << 20;
+	private static final int UNKNOWN = -1;
+	private static final int MATCHED = -2;
+	private static final int DEAD = -3;
+
+	/**
+	 * Depending on the java version, <code>\b</code> uses letters and digits of
+	 * all scripts or only <code>\w</code> as word characters
+	 */
+	private static final boolean UNICODE_WORD_BOUNDARY = !Pattern.compile("a\\b").matcher("a\u00e9").find();
+
+	private final String regex;
+	private final int[] ops;
+	private final int[] args;
+	private final int[] alternates;
+	private final int[][] ranges;
+	/** Only a match at the begin of the text is possible */
+	private final boolean anchoredAtStart;
+	/**
+	 * Like java.util.regex, if the regex has no supplementary characters and
+	 * no negated classes
+	 */
+	private final boolean startsWithinSurrogatePairs;
+	private final boolean finalTerminatorAssertions;
+	/** The properties of characters used by the assertions */
+	private final int propertyMask;
+
+	/** The first code point of each character class */
+	private final int[] classStarts;
+	private final int columnStride;
+	private final int columnCount;
+	private final int[] latin1Columns = new int[256];
+	private final int maxStates;
+
+	private final ThreadLocal<Dfa> dfas = ThreadLocal.withInitial(Dfa::new);
+
+	LinearRegex(String regex, int[] ops, int[] args, int[] alternates, int[][] ranges, boolean anchoredAtStart,
+			boolean supplementary) {
+		this.regex = regex;
+		this.ops = ops;
+		this.args = args;
+		this.alternates = alternates;
+		this.ranges = ranges;
+		this.anchoredAtStart = anchoredAtStart;
+		this.startsWithinSurrogatePairs = !anchoredAtStart && !supplementary;
+
+		boolean finalTerminator = false;
+		int mask = 0;
+		TreeSet<Integer> starts = new TreeSet<>();
+		starts.add(0);
+		for (int pc = 0; pc < ops.length; pc++) {
+			if (ops[pc] == CHARS) {
+				for (int i = 0; i < ranges[pc].length; i += 2) {
+					starts.add(ranges[pc][i]);
+					if (ranges[pc][i + 1] < LinearRegexCompiler.MAX_CODE_POINT) {
+						starts.add(ranges[pc][i + 1] + 1);
+					}
+				}
+			} else if (ops[pc] == ASSERT) {
+				switch (args[pc]) {
+				case END_TEXT_OR_FINAL_TERMINATOR:
+					finalTerminator = true;
+					break;
+				case BEGIN_LINE:
+				case END_LINE:
+					mask |= TERMINATOR | LINE_FEED | CARRIAGE_RETURN;
+					break;
+				case WORD_BOUNDARY:
+				case NOT_WORD_BOUNDARY:
+					mask |= WORD;
+					break;
+				default:
+					break;
+				}
+			}
+		}
+		this.finalTerminatorAssertions = finalTerminator;
+		this.propertyMask = mask;
+
+		this.classStarts = starts.stream().mapToInt(Integer::intValue).toArray();
+		this.columnStride = mask == 0 ? 1 : Integer.highestOneBit(mask) * 2;
+		this.columnCount = classStarts.length * columnStride;
+		for (int c = 0; c < latin1Columns.length; c++) {
+			latin1Columns[c] = computeColumn(c);
+		}
+		this.maxStates = Math.max(16, MAX_TABLE_SIZE / columnCount);
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the regex is invalid or not supported, then
+	 *             {@link Pattern} has to be used
+	 */
+	public static LinearRegex compile(String regex) {
+		Pattern.compile(regex);
+		return LinearRegexCompiler.compile(regex);
+	}
+
+	public static boolean isSupported(String regex) {
+		try {
+			compile(regex);
+			return true;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	public String getRegex() {
+		return regex;
+	}
+
+	/**
+	 * @return <code>true</code>, if the regex occurs anywhere in the text
+	 */
+	public boolean find(CharSequence text) {
+		Dfa dfa = dfas.get();
+		int state = dfa.startState();
+		int length = text.length();
+		int finalTerminator = finalTerminatorAssertions ? finalTerminatorPosition(text) : -1;
+
+		int i = 0;
+		while (i < length) {
+			boolean atFinalTerminator = i == finalTerminator;
+			int codePoint = text.charAt(i++);
+			int next;
+			if (Character.isHighSurrogate((char) codePoint) && i < length
+					&& Character.isLowSurrogate(text.charAt(i))) {
+				char low = text.charAt(i++);
+				codePoint = Character.toCodePoint((char) codePoint, low);
+				next = startsWithinSurrogatePairs ? dfa.computePairTransition(state, codePoint, low)
+						: dfa.computeTransition(state, computeColumn(codePoint), false);
+			} else {
+				int column = codePoint < latin1Columns.length ? latin1Columns[codePoint] : computeColumn(codePoint);
+				next = atFinalTerminator ? UNKNOWN : dfa.transitions[state * columnCount + column];
+				if (next < 0) {
+					next = dfa.computeTransition(state, column, atFinalTerminator);
+				}
+			}
+			if (next == MATCHED) {
+				return true;
+			} else if (next == DEAD) {
+				return false;
+			}
+			state = next;
+		}
+		return dfa.matchesAtEnd(state);
+	}
+
+	private int computeColumn(int codePoint) {
+		int characterClass = Arrays.binarySearch(classStarts, codePoint);
+		if (characterClass < 0) {
+			characterClass = -characterClass - 2;
+		}
+		return characterClass * columnStride + (propertiesOf(codePoint) & propertyMask);
+	}
+
+	private static int propertiesOf(int codePoint) {
+		int result = 0;
+		if (codePoint == '_' || (UNICODE_WORD_BOUNDARY ? Character.isLetterOrDigit(codePoint)
+				: codePoint < 128 && Character.isLetterOrDigit(codePoint))) {
+			result |= WORD;
+		}
+		if (codePoint == '\n') {
+			result |= TERMINATOR | LINE_FEED;
+		} else if (codePoint == '\r') {
+			result |= TERMINATOR | CARRIAGE_RETURN;
+		} else if (codePoint == '\u0085' || codePoint == '\u2028' || codePoint == '\u2029') {
+			result |= TERMINATOR;
+		}
+		return result;
+	}
+
+	/**
+	 * @return the position of the line terminator at the end of the text, where
+	 *         <code>$</code> matches without the MULTILINE flag, or -1
+	 */
+	private static int finalTerminatorPosition(CharSequence text) {
+		int length = text.length();
+		if (length >= 2 && text.charAt(length - 2) == '\r' && text.charAt(length - 1) == '\n') {
+			return length - 2;
+		}
+		if (length >= 1 && (propertiesOf(text.charAt(length - 1)) & TERMINATOR) != 0) {
+			return length - 1;
+		}
+		return -1;
+	}
+
+	private static boolean holds(int assertion, int previous, int next, boolean atEnd, boolean atFinalTerminator) {
+		switch (assertion) {
+		case BEGIN_TEXT:
+			return (previous & AT_START) != 0;
+		case BEGIN_LINE:
+			return !atEnd && ((previous & AT_START) != 0 || (previous & TERMINATOR) != 0
+					&& !((previous & CARRIAGE_RETURN) != 0 && (next & LINE_FEED) != 0));
+		case END_TEXT:
+			return atEnd;
+		case END_TEXT_OR_FINAL_TERMINATOR:
+			return atEnd || atFinalTerminator;
+		case END_LINE:
+			return atEnd || (next & TERMINATOR) != 0 && !((next & LINE_FEED) != 0 && (previous & CARRIAGE_RETURN) != 0);
+		case WORD_BOUNDARY:
+			return ((previous & WORD) != 0) != (!atEnd && (next & WORD) != 0);
+		default:
+			return ((previous & WORD) != 0) == (!atEnd && (next & WORD) != 0);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return regex;
+	}
+
+	/**
+	 * The cached states and transitions of one thread. A state is the sorted
+	 * set of NFA instructions reached before their epsilon closure, followed by
+	 * the properties of the previous character.
+	 */
+	private final class Dfa {
+		private final Map<StateKey, Integer> stateIds = new HashMap<>();
+		private int[][] states = new int[16][];
+		private int stateCount = 0;
+		private int[] transitions = new int[0];
+		/** 0 unknown, 1 matches at the end of the text, 2 does not match */
+		private byte[] endMatches = new byte[16];
+		private int startState = -1;
+		private int resetCount = 0;
+
+		private final int[] stack = new int[ops.length * 3 + 1];
+		private final int[] visited = new int[ops.length];
+		private int generation = 0;
+		private final int[] reached = new int[ops.length];
+		private final int[] successors = new int[ops.length * 2 + 1];
+
+		private int startState() {
+			if (startState < 0) {
+				startState = addState(new int[] { 0, AT_START });
+			}
+			return startState;
+		}
+
+		/**
+		 * @param atFinalTerminator
+		 *            the character is the line terminator at the end of the
+		 *            text, where <code>$</code> matches. Such a transition is
+		 *            not cached.
+		 * @return the next state, {@link #MATCHED} or {@link #DEAD}
+		 */
+		private int computeTransition(int state, int column, boolean atFinalTerminator) {
+			int[] key = states[state];
+			int properties = column % columnStride;
+			int count = addSuccessors(key, properties, classStarts[column / columnStride], atFinalTerminator, 0);
+			if (count < 0) {
+				return atFinalTerminator ? MATCHED : setTransition(state, column, MATCHED);
+			}
+			if (!anchoredAtStart) {
+				successors[count++] = 0;
+			} else if (count == 0) {
+				return atFinalTerminator ? DEAD : setTransition(state, column, DEAD);
+			}
+
+			int resets = resetCount;
+			int next = addState(count, properties);
+			if (resetCount == resets && !atFinalTerminator) {
+				setTransition(state, column, next);
+			}
+			return next;
+		}
+
+		/**
+		 * java.util.regex also starts to search between the surrogates of a
+		 * supplementary character, where the low surrogate is a character of
+		 * its own. Such a transition is not cached.
+		 *
+		 * @return the next state or {@link #MATCHED}
+		 */
+		private int computePairTransition(int state, int codePoint, char low) {
+			int properties = propertiesOf(codePoint) & propertyMask;
+			int count = addSuccessors(states[state], properties, codePoint, false, 0);
+			if (count >= 0) {
+				int[] startKey = { 0, propertiesOf(Character.highSurrogate(codePoint)) & propertyMask };
+				count = addSuccessors(startKey, propertiesOf(low) & propertyMask, low, false, count);
+			}
+			if (count < 0) {
+				return MATCHED;
+			}
+			successors[count++] = 0;
+			return addState(count, properties);
+		}
+
+		/**
+		 * Adds the instructions reached by the threads of the key after the
+		 * character to {@link #successors}.
+		 *
+		 * @return the number of successors or -1, if the regex matched before
+		 *         the character
+		 */
+		private int addSuccessors(int[] key, int properties, int codePoint, boolean atFinalTerminator, int count) {
+			int reachedCount = closure(key, key[key.length - 1], properties, false, atFinalTerminator);
+			if (reachedCount < 0) {
+				return -1;
+			}
+			for (int i = 0; i < reachedCount; i++) {
+				if (contains(ranges[reached[i]], codePoint)) {
+					successors[count++] = reached[i] + 1;
+				}
+			}
+			return count;
+		}
+
+		/**
+		 * @return the state of the first successors and the properties of the
+		 *         character leading to it
+		 */
+		private int addState(int count, int properties) {
+			Arrays.sort(successors, 0, count);
+			int distinct = 0;
+			for (int i = 0; i < count; i++) {
+				if (distinct == 0 || successors[distinct - 1] != successors[i]) {
+					successors[distinct++] = successors[i];
+				}
+			}
+			int[] key = Arrays.copyOf(successors, distinct + 1);
+			key[distinct] = properties;
+			return addState(key);
+		}
+
+		private int setTransition(int state, int column, int next) {
+			transitions[state * columnCount + column] = next;
+			return next;
+		}
+
+		private boolean matchesAtEnd(int state) {
+			if (endMatches[state] == 0) {
+				int[] key = states[state];
+				endMatches[state] = closure(key, key[key.length - 1], 0, true, false) < 0 ? (byte) 1 : (byte) 2;
+			}
+			return endMatches[state] == 1;
+		}
+
+		/**
+		 * Follows all instructions not consuming a character.
+		 *
+		 * @return the number of character instructions reached, stored in
+		 *         {@link #reached}, or -1 if the regex matched
+		 */
+		private int closure(int[] key, int previous, int next, boolean atEnd, boolean atFinalTerminator) {
+			if (++generation == 0) {
+				Arrays.fill(visited, 0);
+				generation = 1;
+			}
+			int size = 0;
+			for (int i = 0; i < key.length - 1; i++) {
+				stack[size++] = key[i];
+			}
+			int count = 0;
+			while (size > 0) {
+				int pc = stack[--size];
+				if (visited[pc] == generation) {
+					continue;
+				}
+				visited[pc] = generation;
+				switch (ops[pc]) {
+				case CHARS:
+					reached[count++] = pc;
+					break;
+				case MATCH:
+					return -1;
+				case JUMP:
+					stack[size++] = args[pc];
+					break;
+				case SPLIT:
+					stack[size++] = alternates[pc];
+					stack[size++] = args[pc];
+					break;
+				default:
+					if (holds(args[pc], previous, next, atEnd, atFinalTerminator)) {
+						stack[size++] = pc + 1;
+					}
+					break;
+				}
+			}
+			return count;
+		}
+
+		private int addState(int[] key) {
+			StateKey stateKey = new StateKey(key);
+			Integer existing = stateIds.get(stateKey);
+			if (existing != null) {
+				return existing;
+			}
+			if (stateCount >= maxStates) {
+				// Clear the cache, the states are built again when needed
+				stateIds.clear();
+				stateCount = 0;
+				startState = -1;
+				resetCount++;
+			}
+			if (stateCount == states.length) {
+				states = Arrays.copyOf(states, stateCount * 2);
+				endMatches = Arrays.copyOf(endMatches, stateCount * 2);
+			}
+			if ((stateCount + 1) * columnCount > transitions.length) {
+				int oldLength = transitions.length;
+				transitions = Arrays.copyOf(transitions, Math.max(columnCount, oldLength * 2));
+				Arrays.fill(transitions, oldLength, transitions.length, UNKNOWN);
+			}
+			Arrays.fill(transitions, stateCount * columnCount, (stateCount + 1) * columnCount, UNKNOWN);
+			endMatches[stateCount] = 0;
+			states[stateCount] = key;
+			stateIds.put(stateKey, stateCount);
+			return stateCount++;
+		}
+	}
+
+	private static boolean contains(int[] ranges, int codePoint) {
+		int low = 0;
+		int high = ranges.length / 2 - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (codePoint < ranges[middle * 2]) {
+				high = middle - 1;
+			} else if (codePoint > ranges[middle * 2 + 1]) {
+				low = middle + 1;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static final class StateKey {
+		private final int[] key;
+		private final int hash;
+
+		private StateKey(int[] key) {
+			this.key = key;
+			this.hash = Arrays.hashCode(key);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof StateKey && Arrays.equals(key, ((StateKey) obj).key);
+		}
+	}
+}
@@ -0,0 +1,636 @@
+package logfilefilter.internal.filters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parses the subset of the {@link java.util.regex.Pattern} syntax supported by
+ * {@link LinearRegex} and compiles it into the instructions of a Thompson NFA.
+ * Constructs, which cannot be matched in linear time (backreferences,
+ * look-arounds, possessive quantifiers) or whose meaning is not reproduced
+ * exactly (e.g. Unicode properties, class intersections, most flags), are
+ * rejected with an {@link IllegalArgumentException}. The regex must already
+ * be valid for {@link java.util.regex.Pattern}.
+ */
+class LinearRegexCompiler {
+	static final int MAX_CODE_POINT = Character.MAX_CODE_POINT;
+	/** Larger programs make the lazy DFA too slow, java.util.regex is used */
+	static final int MAX_PROGRAM_SIZE = 10_000;
+	private static final int MAX_REPEAT = 1_000;
+
+	private static final int CASE_INSENSITIVE = 1;
+	private static final int MULTILINE = 2;
+	private static final int DOTALL = 4;
+
+	private static final int[] DIGITS = { '0', '9' };
+	private static final int[] WORD_CHARACTERS = { '0', '9', 'A', 'Z', '_', '_', 'a', 'z' };
+	private static final int[] WHITESPACE = { '\t', '\r', ' ', ' ' };
+	static final int[] LINE_TERMINATORS = { '\n', '\n', '\r', '\r', '\u0085', '\u0085', '\u2028', '\u2029' };
+
+	private final String regex;
+	private int position = 0;
+	private int flags = 0;
+	/**
+	 * java.util.regex does not start a search between the surrogates of a
+	 * supplementary character, if the regex may match such characters
+	 * explicitly: supplementary or surrogate code points and negated classes
+	 */
+	private boolean supplementary = false;
+
+	private final List<Integer> ops = new ArrayList<>();
+	private final List<Integer> args = new ArrayList<>();
+	private final List<Integer> alternates = new ArrayList<>();
+	private final List<int[]> ranges = new ArrayList<>();
+
+	private abstract static class Node {
+	}
+
+	private static final class Characters extends Node {
+		private final int[] ranges;
+
+		private Characters(int[] ranges) {
+			this.ranges = ranges;
+		}
+	}
+
+	private static final class Sequence extends Node {
+		private final List<Node> items = new ArrayList<>();
+	}
+
+	private static final class Alternation extends Node {
+		private final List<Node> alternatives = new ArrayList<>();
+	}
+
+	private static final class Repeat extends Node {
+		private final Node node;
+		private final int min;
+		/** -1 for no limit */
+		private final int max;
+
+		private Repeat(Node node, int min, int max) {
+			this.node = node;
+			this.min = min;
+			this.max = max;
+		}
+	}
+
+	private static final class Assertion extends Node {
+		private final int kind;
+
+		private Assertion(int kind) {
+			this.kind = kind;
+		}
+	}
+
+	private LinearRegexCompiler(String regex) {
+		this.regex = regex;
+	}
+
+	static LinearRegex compile(String regex) {
+		LinearRegexCompiler compiler = new LinearRegexCompiler(regex);
+		Node root = compiler.parseAlternation();
+		if (compiler.position < regex.length()) {
+			throw compiler.unsupported("unbalanced ')'");
+		}
+		compiler.emit(root);
+		compiler.add(LinearRegex.MATCH, 0, 0, null);
+
+		int size = compiler.ops.size();
+		int[] ops = new int[size];
+		int[] args = new int[size];
+		int[] alternates = new int[size];
+		for (int pc = 0; pc < size; pc++) {
+			ops[pc] = compiler.ops.get(pc);
+			args[pc] = compiler.args.get(pc);
+			alternates[pc] = compiler.alternates.get(pc);
+		}
+		return new LinearRegex(regex, ops, args, alternates, compiler.ranges.toArray(new int[size][]),
+				isAnchoredAtStart(root), compiler.supplementary);
+	}
+
+	private static boolean isAnchoredAtStart(Node node) {
+		if (node instanceof Sequence && !((Sequence) node).items.isEmpty()) {
+			return isAnchoredAtStart(((Sequence) node).items.get(0));
+		}
+		return node instanceof Assertion && ((Assertion) node).kind == LinearRegex.BEGIN_TEXT;
+	}
+
+	private Node parseAlternation() {
+		Node first = parseSequence();
+		if (!peek('|')) {
+			return first;
+		}
+		Alternation result = new Alternation();
+		result.alternatives.add(first);
+		while (peek('|')) {
+			position++;
+			result.alternatives.add(parseSequence());
+		}
+		return result;
+	}
+
+	private Node parseSequence() {
+		Sequence result = new Sequence();
+		while (position < regex.length() && !peek('|') && !peek(')')) {
+			Node atom;
+			if (regex.startsWith("\\Q", position)) {
+				// Like in java.util.regex a quantifier repeats the last quoted char only
+				List<Node> quoted = parseQuote();
+				if (quoted.isEmpty()) {
+					continue;
+				}
+				result.items.addAll(quoted.subList(0, quoted.size() - 1));
+				atom = quoted.get(quoted.size() - 1);
+			} else {
+				atom = parseAtom();
+			}
+			if (atom != null) {
+				result.items.add(parseQuantifier(atom));
+			}
+		}
+		return result.items.size() == 1 ? result.items.get(0) : result;
+	}
+
+	/**
+	 * @return the atom or <code>null</code> for a group only setting flags
+	 */
+	private Node parseAtom() {
+		int c = regex.codePointAt(position);
+		position += Character.charCount(c);
+		switch (c) {
+		case '(':
+			return parseGroup();
+		case '[':
+			return new Characters(parseClass());
+		case '.':
+			return new Characters((flags & DOTALL) != 0 ? new int[] { 0, MAX_CODE_POINT } : negate(LINE_TERMINATORS));
+		case '^':
+			return new Assertion((flags & MULTILINE) != 0 ? LinearRegex.BEGIN_LINE : LinearRegex.BEGIN_TEXT);
+		case '$':
+			return new Assertion(
+					(flags & MULTILINE) != 0 ? LinearRegex.END_LINE : LinearRegex.END_TEXT_OR_FINAL_TERMINATOR);
+		case '\\':
+			return parseEscape();
+		case '*':
+		case '+':
+		case '?':
+		case '{':
+			throw unsupported("dangling quantifier");
+		default:
+			return literal(c);
+		}
+	}
+
+	private Node parseGroup() {
+		// Flags set within a group apply until its end
+		int savedFlags = flags;
+		if (peek('?')) {
+			position++;
+			if (peek(':')) {
+				position++;
+			} else if (peek('<') && position + 1 < regex.length() && Character.isLetter(regex.charAt(position + 1))) {
+				// Named group, the name is irrelevant without backreferences
+				position = regex.indexOf('>', position) + 1;
+			} else if (parseFlags()) {
+				return null;
+			}
+		}
+		Node result = parseGroupEnd(parseAlternation());
+		flags = savedFlags;
+		return result;
+	}
+
+	/**
+	 * Parses the flags of <code>(?flags)</code> or <code>(?flags:X)</code>.
+	 *
+	 * @return <code>true</code>, if the group only sets the flags for the rest
+	 *         of the enclosing group
+	 */
+	private boolean parseFlags() {
+		boolean clear = false;
+		while (position < regex.length() && !peek(')') && !peek(':')) {
+			char flag = regex.charAt(position++);
+			int bit;
+			switch (flag) {
+			case 'i':
+				bit = CASE_INSENSITIVE;
+				break;
+			case 'm':
+				bit = MULTILINE;
+				break;
+			case 's':
+				bit = DOTALL;
+				break;
+			case '-':
+				clear = true;
+				continue;
+			default:
+				throw unsupported("group or flag '" + flag + "'");
+			}
+			flags = clear ? flags & ~bit : flags | bit;
+		}
+		position++;
+		return regex.charAt(position - 1) == ')';
+	}
+
+	private Node parseGroupEnd(Node node) {
+		if (!peek(')')) {
+			throw unsupported("unclosed group");
+		}
+		position++;
+		return node;
+	}
+
+	private Node parseQuantifier(Node atom) {
+		if (position >= regex.length()) {
+			return atom;
+		}
+		int min;
+		int max;
+		switch (regex.charAt(position)) {
+		case '*':
+			min = 0;
+			max = -1;
+			break;
+		case '+':
+			min = 1;
+			max = -1;
+			break;
+		case '?':
+			min = 0;
+			max = 1;
+			break;
+		case '{':
+			int end = regex.indexOf('}', position);
+			String[] bounds = regex.substring(position + 1, end).split(",", -1);
+			min = Integer.parseInt(bounds[0].trim());
+			max = bounds.length == 1 ? min : bounds[1].trim().isEmpty() ? -1 : Integer.parseInt(bounds[1].trim());
+			if (min > MAX_REPEAT || max > MAX_REPEAT) {
+				throw unsupported("repetition of more than " + MAX_REPEAT);
+			}
+			position = end;
+			break;
+		default:
+			return atom;
+		}
+		position++;
+		if (peek('?')) {
+			// Reluctant, a find() matches the same entries
+			position++;
+		} else if (peek('+')) {
+			throw unsupported("possessive quantifier");
+		}
+		if (max != 1 && isNullable(atom) && containsAssertion(atom)) {
+			// java.util.regex ends a loop after an empty iteration, so an
+			// assertion cannot be passed before a character in a later one
+			throw unsupported("repetition of an assertion matching the empty string");
+		}
+		if (position < regex.length() && "*+?{".indexOf(regex.charAt(position)) >= 0) {
+			// java.util.regex does not repeat the repetition
+			throw unsupported("quantifier following a quantifier");
+		}
+		return new Repeat(atom, min, max);
+	}
+
+	private static boolean isNullable(Node node) {
+		if (node instanceof Characters) {
+			return false;
+		} else if (node instanceof Sequence) {
+			return ((Sequence) node).items.stream().allMatch(LinearRegexCompiler::isNullable);
+		} else if (node instanceof Alternation) {
+			return ((Alternation) node).alternatives.stream().anyMatch(LinearRegexCompiler::isNullable);
+		} else if (node instanceof Repeat) {
+			return ((Repeat) node).min == 0 || isNullable(((Repeat) node).node);
+		}
+		return true;
+	}
+
+	private static boolean containsAssertion(Node node) {
+		if (node instanceof Sequence) {
+			return ((Sequence) node).items.stream().anyMatch(LinearRegexCompiler::containsAssertion);
+		} else if (node instanceof Alternation) {
+			return ((Alternation) node).alternatives.stream().anyMatch(LinearRegexCompiler::containsAssertion);
+		} else if (node instanceof Repeat) {
+			return containsAssertion(((Repeat) node).node);
+		}
+		return node instanceof Assertion;
+	}
+
+	private Node parseEscape() {
+		char c = regex.charAt(position++);
+		switch (c) {
+		case 'd':
+		case 'D':
+		case 'w':
+		case 'W':
+		case 's':
+		case 'S':
+			return new Characters(predefinedClass(c));
+		case 'b':
+			if (peek('{')) {
+				throw unsupported("boundary \\b{...}");
+			}
+			return new Assertion(LinearRegex.WORD_BOUNDARY);
+		case 'B':
+			return new Assertion(LinearRegex.NOT_WORD_BOUNDARY);
+		case 'A':
+			return new Assertion(LinearRegex.BEGIN_TEXT);
+		case 'z':
+			return new Assertion(LinearRegex.END_TEXT);
+		case 'Z':
+			return new Assertion(LinearRegex.END_TEXT_OR_FINAL_TERMINATOR);
+		default:
+			return literal(parseCharacterEscape(c));
+		}
+	}
+
+	/**
+	 * @return the literals of the quoted chars of <code>\Q...\E</code>
+	 */
+	private List<Node> parseQuote() {
+		position += 2;
+		int end = regex.indexOf("\\E", position);
+		String quoted = regex.substring(position, end < 0 ? regex.length() : end);
+		position = end < 0 ? regex.length() : end + 2;
+		List<Node> result = new ArrayList<>();
+		quoted.codePoints().forEach(codePoint -> result.add(literal(codePoint)));
+		return result;
+	}
+
+	private int[] predefinedClass(char c) {
+		if (Character.isUpperCase(c)) {
+			supplementary = true;
+		}
+		switch (c) {
+		case 'd':
+			return DIGITS;
+		case 'D':
+			return negate(DIGITS);
+		case 'w':
+			return WORD_CHARACTERS;
+		case 'W':
+			return negate(WORD_CHARACTERS);
+		case 's':
+			return WHITESPACE;
+		default:
+			return negate(WHITESPACE);
+		}
+	}
+
+	/**
+	 * @param c
+	 *            the character following the backslash
+	 * @return the code point of an escaped character
+	 */
+	private int parseCharacterEscape(char c) {
+		switch (c) {
+		case 't':
+			return '\t';
+		case 'n':
+			return '\n';
+		case 'r':
+			return '\r';
+		case 'f':
+			return '\f';
+		case 'a':
+			return '\u0007';
+		case 'e':
+			return '\u001B';
+		case 'c':
+			return regex.charAt(position++) ^ 64;
+		case '0':
+			int octal = 0;
+			for (int digits = 0; digits < 3 && position < regex.length(); digits++) {
+				int digit = regex.charAt(position) - '0';
+				if (digit < 0 || digit > 7 || octal * 8 + digit > 0377) {
+					break;
+				}
+				octal = octal * 8 + digit;
+				position++;
+			}
+			return octal;
+		case 'x':
+			if (peek('{')) {
+				int end = regex.indexOf('}', position);
+				int codePoint = Integer.parseInt(regex.substring(position + 1, end), 16);
+				position = end + 1;
+				return codePoint;
+			}
+			position += 2;
+			return Integer.parseInt(regex.substring(position - 2, position), 16);
+		case 'u':
+			position += 4;
+			return Integer.parseInt(regex.substring(position - 4, position), 16);
+		default:
+			if (Character.isLetterOrDigit(c)) {
+				throw unsupported("escape \\" + c);
+			}
+			return c;
+		}
+	}
+
+	private Node literal(int codePoint) {
+		checkSupplementary(codePoint);
+		int[] result = { codePoint, codePoint };
+		return new Characters((flags & CASE_INSENSITIVE) != 0 ? caseInsensitive(result) : result);
+	}
+
+	private int[] parseClass() {
+		boolean negated = peek('^');
+		if (negated) {
+			position++;
+		}
+		if (peek(']')) {
+			throw unsupported("']' at the begin of a class");
+		}
+
+		List<int[]> parts = new ArrayList<>();
+		while (!peek(']')) {
+			if (peek('[') || regex.startsWith("&&", position)) {
+				throw unsupported("nested class");
+			}
+			int first = regex.codePointAt(position);
+			position += Character.charCount(first);
+			if (first == '\\') {
+				char escaped = regex.charAt(position++);
+				if ("dDwWsS".indexOf(escaped) >= 0) {
+					parts.add(predefinedClass(escaped));
+					continue;
+				}
+				if (escaped == 'Q' || escaped == 'b' || escaped == 'B') {
+					throw unsupported("\\" + escaped + " in a class");
+				}
+				first = parseCharacterEscape(escaped);
+			}
+
+			int last = first;
+			if (peek('-') && position + 1 < regex.length() && regex.charAt(position + 1) != ']') {
+				position++;
+				if (peek('[')) {
+					throw unsupported("nested class");
+				}
+				last = regex.codePointAt(position);
+				position += Character.charCount(last);
+				if (last == '\\') {
+					char escaped = regex.charAt(position++);
+					if ("dDwWsSQbB".indexOf(escaped) >= 0) {
+						throw unsupported("range to \\" + escaped);
+					}
+					last = parseCharacterEscape(escaped);
+				}
+			}
+			checkSupplementary(first);
+			checkSupplementary(last);
+			parts.add(new int[] { first, last });
+		}
+		position++;
+		if (negated) {
+			supplementary = true;
+		}
+
+		int[] result = union(parts);
+		if ((flags & CASE_INSENSITIVE) != 0) {
+			result = caseInsensitive(result);
+		}
+		return negated ? negate(result) : result;
+	}
+
+	private void emit(Node node) {
+		if (node instanceof Characters) {
+			add(LinearRegex.CHARS, 0, 0, ((Characters) node).ranges);
+		} else if (node instanceof Assertion) {
+			add(LinearRegex.ASSERT, ((Assertion) node).kind, 0, null);
+		} else if (node instanceof Sequence) {
+			for (Node item : ((Sequence) node).items) {
+				emit(item);
+			}
+		} else if (node instanceof Alternation) {
+			List<Node> alternatives = ((Alternation) node).alternatives;
+			List<Integer> jumps = new ArrayList<>();
+			for (int i = 0; i < alternatives.size() - 1; i++) {
+				int split = add(LinearRegex.SPLIT, ops.size() + 1, 0, null);
+				emit(alternatives.get(i));
+				jumps.add(add(LinearRegex.JUMP, 0, 0, null));
+				alternates.set(split, ops.size());
+			}
+			emit(alternatives.get(alternatives.size() - 1));
+			for (int jump : jumps) {
+				args.set(jump, ops.size());
+			}
+		} else {
+			Repeat repeat = (Repeat) node;
+			for (int i = 0; i < repeat.min; i++) {
+				emit(repeat.node);
+			}
+			if (repeat.max < 0) {
+				int loop = add(LinearRegex.SPLIT, ops.size() + 1, 0, null);
+				emit(repeat.node);
+				add(LinearRegex.JUMP, loop, 0, null);
+				alternates.set(loop, ops.size());
+			} else {
+				List<Integer> splits = new ArrayList<>();
+				for (int i = repeat.min; i < repeat.max; i++) {
+					splits.add(add(LinearRegex.SPLIT, ops.size() + 1, 0, null));
+					emit(repeat.node);
+				}
+				for (int split : splits) {
+					alternates.set(split, ops.size());
+				}
+			}
+		}
+	}
+
+	private int add(int op, int arg, int alternate, int[] characters) {
+		if (ops.size() >= MAX_PROGRAM_SIZE) {
+			throw unsupported("more than " + MAX_PROGRAM_SIZE + " instructions");
+		}
+		ops.add(op);
+		args.add(arg);
+		alternates.add(alternate);
+		ranges.add(characters);
+		return ops.size() - 1;
+	}
+
+	private void checkSupplementary(int codePoint) {
+		if (Character.isSupplementaryCodePoint(codePoint) || Character.isSurrogate((char) codePoint)) {
+			supplementary = true;
+		}
+	}
+
+	private boolean peek(char c) {
+		return position < regex.length() && regex.charAt(position) == c;
+	}
+
+	private IllegalArgumentException unsupported(String construct) {
+		return new IllegalArgumentException(
+				"Regex '" + regex + "' is not supported by the linear engine: " + construct);
+	}
+
+	/**
+	 * @return the sorted, disjoint ranges (pairs of first and last code point)
+	 *         covering all the given ranges
+	 */
+	static int[] union(List<int[]> parts) {
+		List<int[]> pairs = new ArrayList<>();
+		for (int[] part : parts) {
+			for (int i = 0; i < part.length; i += 2) {
+				pairs.add(new int[] { part[i], part[i + 1] });
+			}
+		}
+		pairs.sort((first, second) -> Integer.compare(first[0], second[0]));
+
+		int[] result = new int[pairs.size() * 2];
+		int length = 0;
+		for (int[] pair : pairs) {
+			if (length > 0 && pair[0] <= result[length - 1] + 1) {
+				result[length - 1] = Math.max(result[length - 1], pair[1]);
+			} else {
+				result[length++] = pair[0];
+				result[length++] = pair[1];
+			}
+		}
+		return Arrays.copyOf(result, length);
+	}
+
+	static int[] negate(int[] ranges) {
+		int[] result = new int[ranges.length + 2];
+		int length = 0;
+		int next = 0;
+		for (int i = 0; i < ranges.length; i += 2) {
+			if (ranges[i] > next) {
+				result[length++] = next;
+				result[length++] = ranges[i] - 1;
+			}
+			next = ranges[i + 1] + 1;
+		}
+		if (next <= MAX_CODE_POINT) {
+			result[length++] = next;
+			result[length++] = MAX_CODE_POINT;
+		}
+		return Arrays.copyOf(result, length);
+	}
+
+	/**
+	 * Adds the other case of all ASCII letters, java.util.regex ignores only
+	 * the case of ASCII letters without the UNICODE_CASE flag.
+	 */
+	private static int[] caseInsensitive(int[] ranges) {
+		List<int[]> parts = new ArrayList<>();
+		parts.add(ranges);
+		for (int i = 0; i < ranges.length; i += 2) {
+			addOtherCase(parts, ranges[i], ranges[i + 1], 'a', 'z', 'A' - 'a');
+			addOtherCase(parts, ranges[i], ranges[i + 1], 'A', 'Z', 'a' - 'A');
+		}
+		return union(parts);
+	}
+
+	private static void addOtherCase(List<int[]> parts, int first, int last, int letterFirst, int letterLast,
+			int offset) {
+		int overlapFirst = Math.max(first, letterFirst);
+		int overlapLast = Math.min(last, letterLast);
+		if (overlapFirst <= overlapLast) {
+			parts.add(new int[] { overlapFirst + offset, overlapLast + offset });
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package logfilefilter.internal.filters;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Finds any number of ASCII literals in one scan of a text (Aho-Corasick). The
+ * automaton is compiled into a complete transition table, so each character
+ * costs one array lookup. Characters outside of ASCII cannot be part of a
+ * literal and reset the automaton.
+ */
+public class MultiLiteralMatcher {
+	private static final int ALPHABET_SIZE = 128;
+	private static final int ROOT = 0;
+
+	private final int literalCount;
+	private final int[] transitions;
+	/** The ids of the literals ending in a state, including suffixes */
+	private final int[][] outputs;
+
+	/**
+	 * @param literals
+	 *            the literals to search, the index of a literal is its id
+	 */
+	public MultiLiteralMatcher(List<String> literals) {
+		this.literalCount = literals.size();
+
+		List<int[]> gotoTable = new ArrayList<>();
+		List<int[]> outputTable = new ArrayList<>();
+		gotoTable.add(newState());
+		outputTable.add(new int[0]);
+
+		for (int id = 0; id < literals.size(); id++) {
+			int state = ROOT;
+			for (char c : literals.get(id).toCharArray()) {
+				if (c >= ALPHABET_SIZE) {
+					throw new IllegalArgumentException("Only ASCII literals are supported: " + literals.get(id));
+				}
+				if (gotoTable.get(state)[c] < 0) {
+					gotoTable.get(state)[c] = gotoTable.size();
+					gotoTable.add(newState());
+					outputTable.add(new int[0]);
+				}
+				state = gotoTable.get(state)[c];
+			}
+			outputTable.set(state, append(outputTable.get(state), id));
+		}
+
+		// Breadth first: the failure state of a state is always complete
+		// before the state itself is completed
+		int[] failure = new int[gotoTable.size()];
+		Deque<Integer> queue = new ArrayDeque<>();
+		for (int c = 0; c < ALPHABET_SIZE; c++) {
+			int next = gotoTable.get(ROOT)[c];
+			if (next < 0) {
+				gotoTable.get(ROOT)[c] = ROOT;
+			} else {
+				failure[next] = ROOT;
+				queue.add(next);
+			}
+		}
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			int[] stateTransitions = gotoTable.get(state);
+			outputTable.set(state, concat(outputTable.get(state), outputTable.get(failure[state])));
+			for (int c = 0; c < ALPHABET_SIZE; c++) {
+				int next = stateTransitions[c];
+				int failureNext = gotoTable.get(failure[state])[c];
+				if (next < 0) {
+					stateTransitions[c] = failureNext;
+				} else {
+					failure[next] = failureNext;
+					queue.add(next);
+				}
+			}
+		}
+
+		this.transitions = new int[gotoTable.size() * ALPHABET_SIZE];
+		for (int state = 0; state < gotoTable.size(); state++) {
+			System.arraycopy(gotoTable.get(state), 0, transitions, state * ALPHABET_SIZE, ALPHABET_SIZE);
+		}
+		this.outputs = outputTable.toArray(new int[outputTable.size()][]);
+	}
+
+	public int getLiteralCount() {
+		return literalCount;
+	}
+
+	/**
+	 * @return a bit set with a bit for each literal id, large enough for
+	 *         {@link #findAll(CharSequence, long[])}
+	 */
+	public long[] newResult() {
+		return new long[(literalCount + 63) / 64];
+	}
+
+	/**
+	 * Marks the ids of all literals occurring in the text in the given bit
+	 * set.
+	 */
+	public void findAll(CharSequence text, long[] found) {
+		int state = ROOT;
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if (c < ALPHABET_SIZE) {
+				state = transitions[state * ALPHABET_SIZE + c];
+				for (int id : outputs[state]) {
+					found[id >>> 6] |= 1L << id;
+				}
+			} else {
+				state = ROOT;
+			}
+		}
+	}
+
+	public static boolean isFound(long[] found, int id) {
+		return (found[id >>> 6] & 1L << id) != 0;
+	}
+
+	private static int[] newState() {
+		int[] result = new int[ALPHABET_SIZE];
+		Arrays.fill(result, -1);
+		return result;
+	}
+
+	private static int[] append(int[] array, int value) {
+		int[] result = Arrays.copyOf(array, array.length + 1);
+		result[array.length] = value;
+		return result;
+	}
+
+	private static int[] concat(int[] first, int[] second) {
+		int[] result = Arrays.copyOf(first, first.length + second.length);
+		System.arraycopy(second, 0, result, first.length, second.length);
+		return result;
+	}
+}
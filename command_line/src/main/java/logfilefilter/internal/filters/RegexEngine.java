@@ -0,0 +1,16 @@
+package logfilefilter.internal.filters;
+
+/**
+ * The engine executing the include and exclude patterns of a
+ * {@link FilterPlan}.
+ */
+public enum RegexEngine {
+	/** {@link java.util.regex.Pattern}, backtracking */
+	JAVA,
+	/**
+	 * {@link LinearRegex}, linear time for any pattern and entry. Patterns it
+	 * does not support (e.g. backreferences) are executed by
+	 * {@link java.util.regex.Pattern}.
+	 */
+	LINEAR
+}
@@ -0,0 +1,296 @@
+package logfilefilter.internal.filters;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Extracts literals from a regular expression, which must occur in every text
+ * the expression can be found in. The analysis is conservative: if a part of
+ * the expression is not understood, it is not used for a literal. Only ASCII
+ * literals are extracted.
+ */
+public class RegexLiterals {
+	private static final String ESCAPABLE_LITERALS = "\\.[]{}()<>*+-=!?^$|/&:,'\"#%@~`; ";
+
+	private final Set<String> requiredLiterals;
+	private final boolean literalOnly;
+	private final List<List<String>> branchLiterals;
+
+	private RegexLiterals(Set<String> requiredLiterals, boolean literalOnly) {
+		this(requiredLiterals, literalOnly, new ArrayList<>());
+	}
+
+	private RegexLiterals(Set<String> requiredLiterals, boolean literalOnly, List<List<String>> branchLiterals) {
+		this.requiredLiterals = requiredLiterals;
+		this.literalOnly = literalOnly;
+		this.branchLiterals = branchLiterals;
+	}
+
+	/**
+	 * @return alternative literals, at least one of them occurs in every match,
+	 *         or an empty set if no such literals are known
+	 */
+	public Set<String> getRequiredLiterals() {
+		return requiredLiterals;
+	}
+
+	/**
+	 * @return for each alternative all literals, which occur in every match of
+	 *         the alternative, or an empty list if no such literals are known.
+	 *         More selective than the longest literal of each alternative,
+	 *         e.g. for an index.
+	 */
+	public List<List<String>> getBranchLiterals() {
+		return branchLiterals;
+	}
+
+	/**
+	 * @return <code>true</code>, if the expression matches exactly its only
+	 *         required literal, so no regex has to be executed at all
+	 */
+	public boolean isLiteralOnly() {
+		return literalOnly;
+	}
+
+	public static RegexLiterals analyze(String regex) {
+		if (regex.replace("(?:", "").contains("(?")) {
+			// Flags and look-arounds change the meaning of literals
+			return new RegexLiterals(new LinkedHashSet<>(), false);
+		}
+
+		List<String> branches = splitTopLevelAlternatives(regex);
+		if (branches == null) {
+			return new RegexLiterals(new LinkedHashSet<>(), false);
+		}
+
+		Set<String> literals = new LinkedHashSet<>();
+		List<List<String>> branchLiterals = new ArrayList<>();
+		boolean literalOnly = branches.size() == 1;
+		for (String branch : branches) {
+			BranchLiteral branchLiteral = longestLiteral(branch);
+			if (branchLiteral.literal.isEmpty()) {
+				// One alternative may match without any known literal
+				return new RegexLiterals(new LinkedHashSet<>(), false);
+			}
+			literals.add(branchLiteral.literal);
+			branchLiterals.add(branchLiteral.all);
+			literalOnly &= branchLiteral.complete;
+		}
+		return new RegexLiterals(literals, literalOnly, branchLiterals);
+	}
+
+	private static class BranchLiteral {
+		private final String literal;
+		private final boolean complete;
+		private final List<String> all;
+
+		private BranchLiteral(String literal, boolean complete, List<String> all) {
+			this.literal = literal;
+			this.complete = complete;
+			this.all = all;
+		}
+	}
+
+	/**
+	 * @return the alternatives of the expression or <code>null</code>, if the
+	 *         expression cannot be parsed
+	 */
+	private static List<String> splitTopLevelAlternatives(String regex) {
+		List<String> result = new ArrayList<>();
+		int depth = 0;
+		int branchStart = 0;
+		for (int i = 0; i < regex.length(); i++) {
+			char c = regex.charAt(i);
+			if (c == '\\') {
+				// Also a quote, its '(', ')' and '|' are literals
+				i = skipEscape(regex, i);
+				if (i < 0) {
+					return null;
+				}
+			} else if (c == '[') {
+				i = skipCharacterClass(regex, i);
+				if (i < 0) {
+					return null;
+				}
+			} else if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+			} else if (c == '|' && depth == 0) {
+				result.add(regex.substring(branchStart, i));
+				branchStart = i + 1;
+			}
+		}
+		result.add(regex.substring(branchStart));
+		return result;
+	}
+
+	private static BranchLiteral longestLiteral(String branch) {
+		String longest = "";
+		List<String> all = new ArrayList<>();
+		StringBuilder current = new StringBuilder();
+		boolean complete = true;
+
+		for (int i = 0; i < branch.length(); i++) {
+			char c = branch.charAt(i);
+			int literalChar = -1;
+
+			if (c == '\\') {
+				if (i + 1 < branch.length() && ESCAPABLE_LITERALS.indexOf(branch.charAt(i + 1)) >= 0) {
+					literalChar = branch.charAt(++i);
+				} else {
+					// Character classes like \d, \Q...\E quoting etc.
+					i = skipEscape(branch, i);
+				}
+			} else if (c == '[') {
+				i = skipCharacterClass(branch, i);
+			} else if (c == '(') {
+				i = skipGroup(branch, i);
+			} else if (c == '*' || c == '?' || c == '{') {
+				// The last character is optional
+				if (current.length() > 0) {
+					current.setLength(current.length() - 1);
+				}
+				i = skipQuantifier(branch, i);
+			} else if (c == '+') {
+				i = skipQuantifier(branch, i);
+			} else if (c != '.' && c != '^' && c != '$' && c < 128) {
+				literalChar = c;
+			}
+
+			if (literalChar >= 0) {
+				current.append((char) literalChar);
+			} else {
+				complete = false;
+				longest = longer(longest, current);
+				addLiteral(all, current);
+				current.setLength(0);
+			}
+
+			if (i < 0) {
+				return new BranchLiteral("", false, new ArrayList<>());
+			}
+		}
+		longest = longer(longest, current);
+		addLiteral(all, current);
+		return new BranchLiteral(longest, complete, all);
+	}
+
+	private static void addLiteral(List<String> literals, StringBuilder literal) {
+		if (literal.length() > 0) {
+			literals.add(literal.toString());
+		}
+	}
+
+	private static String longer(String longest, StringBuilder candidate) {
+		return candidate.length() > longest.length() ? candidate.toString() : longest;
+	}
+
+	/**
+	 * @return the index of the last character of the escape sequence
+	 */
+	private static int skipEscape(String regex, int start) {
+		if (start + 1 >= regex.length()) {
+			return -1;
+		}
+
+		int end = start + 1;
+		char escaped = regex.charAt(end);
+		switch (escaped) {
+		case 'Q':
+			end = regex.indexOf("\\E", start);
+			return end < 0 ? regex.length() - 1 : end + 1;
+		case 'x':
+		case 'p':
+		case 'P':
+			if (end + 1 < regex.length() && regex.charAt(end + 1) == '{') {
+				return regex.indexOf('}', end);
+			}
+			return escaped == 'x' ? end + 2 : end + 1;
+		case 'u':
+			return end + 4;
+		case 'c':
+			return end + 1;
+		case 'k':
+			return regex.indexOf('>', end);
+		default:
+			if (escaped >= '0' && escaped <= '9') {
+				// Octal escapes and back references
+				while (end + 1 < regex.length() && Character.isDigit(regex.charAt(end + 1))) {
+					end++;
+				}
+			}
+			return end;
+		}
+	}
+
+	/**
+	 * @return the index of the closing bracket or -1, if there is none
+	 */
+	private static int skipCharacterClass(String regex, int start) {
+		int depth = 0;
+		for (int i = start; i < regex.length(); i++) {
+			char c = regex.charAt(i);
+			if (c == '\\') {
+				i++;
+			} else if (c == '[') {
+				depth++;
+			} else if (c == ']' && i > start + 1 && !(i == start + 2 && regex.charAt(start + 1) == '^')) {
+				depth--;
+				if (depth == 0) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the index of the closing parenthesis or -1, if there is none
+	 */
+	private static int skipGroup(String regex, int start) {
+		int depth = 0;
+		for (int i = start; i < regex.length(); i++) {
+			char c = regex.charAt(i);
+			if (c == '\\') {
+				i = skipEscape(regex, i);
+				if (i < 0) {
+					return -1;
+				}
+			} else if (c == '[') {
+				i = skipCharacterClass(regex, i);
+				if (i < 0) {
+					return -1;
+				}
+			} else if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+				if (depth == 0) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the index of the last character of the quantifier, including a
+	 *         lazy or possessive modifier
+	 */
+	private static int skipQuantifier(String regex, int start) {
+		int end = start;
+		if (regex.charAt(start) == '{') {
+			end = regex.indexOf('}', start);
+			if (end < 0) {
+				return -1;
+			}
+		}
+		if (end + 1 < regex.length() && (regex.charAt(end + 1) == '?' || regex.charAt(end + 1) == '+')) {
+			end++;
+		}
+		return end;
+	}
+}
@@ -0,0 +1,169 @@
+package logfilefilter.internal.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * A sparse index of a log file: for every sample interval of the file, the
+ * offset of the first entry starting in it and its timestamp. So a time range
+ * can be mapped to a byte range of the file by a binary search.
+ * <p>
+ * The timestamps are stored as running maximum, so they can be searched even
+ * if the entries of different threads are not exactly in time order. Entries
+ * written far out of order may be missed by a time range query.
+ * <p>
+ * The index is stored as sidecar file next to the log file. It records the
+ * size, modification time and a checksum of the begin of the indexed file, so
+ * an outdated index is detected and a grown file can be indexed incrementally.
+ */
+public class EntryIndex {
+	public static final String FILE_EXTENSION = ".lfidx";
+	private static final int MAGIC = 0x4C464958;
+	private static final int VERSION = 1;
+
+	private final String datePattern;
+	private final String timeFormat;
+	private final int sampleInterval;
+	long indexedSize;
+	long modifiedTime;
+	long headChecksum;
+	int sampleCount;
+	long[] offsets;
+	long[] timestamps;
+
+	EntryIndex(String datePattern, String timeFormat, int sampleInterval) {
+		this.datePattern = datePattern;
+		this.timeFormat = timeFormat;
+		this.sampleInterval = sampleInterval;
+		this.offsets = new long[16];
+		this.timestamps = new long[16];
+	}
+
+	public static Path indexFileOf(Path source) {
+		return source.resolveSibling(source.getFileName() + FILE_EXTENSION);
+	}
+
+	/**
+	 * @return <code>true</code>, if the index has been built with the same
+	 *         settings
+	 */
+	boolean isCompatible(String otherDatePattern, String otherTimeFormat, int otherSampleInterval) {
+		return datePattern.equals(otherDatePattern) && timeFormat.equals(otherTimeFormat)
+				&& sampleInterval == otherSampleInterval;
+	}
+
+	int getSampleInterval() {
+		return sampleInterval;
+	}
+
+	public long getIndexedSize() {
+		return indexedSize;
+	}
+
+	void addSample(long offset, long timestamp) {
+		if (sampleCount == offsets.length) {
+			offsets = Arrays.copyOf(offsets, sampleCount * 2);
+			timestamps = Arrays.copyOf(timestamps, sampleCount * 2);
+		}
+		long previous = sampleCount > 0 ? timestamps[sampleCount - 1] : TimestampParser.NO_TIMESTAMP;
+		offsets[sampleCount] = offset;
+		timestamps[sampleCount] = Math.max(previous, timestamp);
+		sampleCount++;
+	}
+
+	void removeLastSample() {
+		sampleCount--;
+	}
+
+	/**
+	 * @return the offset of an entry start, no entry before it has a timestamp
+	 *         at or after the given one
+	 */
+	public long startOffset(long from) {
+		// The last sample before the time, its interval may contain the time
+		int index = firstSampleAtOrAfter(from) - 1;
+		return index >= 0 ? offsets[index] : 0;
+	}
+
+	/**
+	 * @return the offset of an entry start, no entry after it has a timestamp
+	 *         before the given one
+	 */
+	public long endOffset(long to) {
+		int index = firstSampleAtOrAfter(to);
+		return index < sampleCount ? offsets[index] : indexedSize;
+	}
+
+	private int firstSampleAtOrAfter(long timestamp) {
+		int low = 0;
+		int high = sampleCount;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (timestamps[middle] < timestamp) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @return the stored index or <code>null</code>, if there is none or it
+	 *         cannot be read
+	 */
+	public static EntryIndex load(Path indexFile) {
+		if (!Files.isRegularFile(indexFile)) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return null;
+			}
+			EntryIndex result = new EntryIndex(in.readUTF(), in.readUTF(), in.readInt());
+			result.indexedSize = in.readLong();
+			result.modifiedTime = in.readLong();
+			result.headChecksum = in.readLong();
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				long offset = in.readLong();
+				result.addSample(offset, in.readLong());
+			}
+			return result;
+		} catch (IOException e) {
+			// A damaged index is built again
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the index to a temporary file first, so a reader never sees an
+	 * incomplete index.
+	 */
+	public void save(Path indexFile) throws IOException {
+		Path tempFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(datePattern);
+			out.writeUTF(timeFormat);
+			out.writeInt(sampleInterval);
+			out.writeLong(indexedSize);
+			out.writeLong(modifiedTime);
+			out.writeLong(headChecksum);
+			out.writeInt(sampleCount);
+			for (int i = 0; i < sampleCount; i++) {
+				out.writeLong(offsets[i]);
+				out.writeLong(timestamps[i]);
+			}
+		}
+		Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
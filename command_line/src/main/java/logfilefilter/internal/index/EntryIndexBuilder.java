@@ -0,0 +1,127 @@
+package logfilefilter.internal.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import logfilefilter.internal.processors.ByteSequence;
+import logfilefilter.internal.processors.EntryBoundaryFinder;
+
+/**
+ * Builds or updates the {@link EntryIndex} of a file. The file is not read
+ * completely: at every sample interval only the next entry start is searched
+ * and its timestamp is parsed.
+ */
+public class EntryIndexBuilder {
+	public static final int DEFAULT_SAMPLE_INTERVAL = 1024 * 1024;
+	/** The begin of the file, which identifies it */
+	private static final int HEAD_SIZE = 4096;
+	/** The maximal length of the first line of an entry, which is parsed */
+	private static final int TIMESTAMP_LINE_SIZE = 512;
+
+	private final Pattern patternStartOfLogLine;
+	private final TimestampParser timestampParser;
+	private int sampleInterval = DEFAULT_SAMPLE_INTERVAL;
+
+	/**
+	 * @param patternStartOfLogLine
+	 *            the pattern for the raw bytes of the file, see
+	 *            {@link ByteSequence#toByteView(String, java.nio.charset.Charset)}
+	 */
+	public EntryIndexBuilder(Pattern patternStartOfLogLine, TimestampParser timestampParser) {
+		this.patternStartOfLogLine = patternStartOfLogLine;
+		this.timestampParser = timestampParser;
+	}
+
+	protected void setSampleInterval(int sampleInterval) {
+		this.sampleInterval = sampleInterval;
+	}
+
+	/**
+	 * Loads the sidecar index of the source, updates it and stores it again if
+	 * it has changed.
+	 *
+	 * @param create
+	 *            if <code>true</code>, a missing sidecar index is created,
+	 *            otherwise it is only built in memory
+	 */
+	public EntryIndex updateSidecar(Path source, FileChannel channel, boolean create) throws IOException {
+		Path indexFile = EntryIndex.indexFileOf(source);
+		EntryIndex stored = EntryIndex.load(indexFile);
+		long storedSize = stored != null ? stored.indexedSize : -1;
+		long storedModifiedTime = stored != null ? stored.modifiedTime : -1;
+
+		EntryIndex result = update(stored, source, channel);
+		boolean changed = result != stored || result.indexedSize != storedSize
+				|| result.modifiedTime != storedModifiedTime;
+		if (changed && create) {
+			result.save(indexFile);
+		} else if (changed && stored != null) {
+			try {
+				result.save(indexFile);
+			} catch (IOException e) {
+				// The updated index is used in memory only
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param index
+	 *            the existing index or <code>null</code>
+	 * @return the given index, if it is up to date, the index extended by the
+	 *         appended part of the file or a new index
+	 */
+	public EntryIndex update(EntryIndex index, Path source, FileChannel channel) throws IOException {
+		long size = channel.size();
+		long modifiedTime = Files.getLastModifiedTime(source).toMillis();
+		if (index != null && index.isCompatible(patternStartOfLogLine.pattern(), timestampParser.getTimeFormat(),
+				sampleInterval) && index.indexedSize <= size
+				&& index.headChecksum == headChecksum(channel, index.indexedSize)) {
+			if (index.indexedSize == size && index.modifiedTime == modifiedTime) {
+				return index;
+			}
+			// Appended: the last sample may have been incomplete, an empty
+			// file has no sample
+			if (index.sampleCount > 0) {
+				index.removeLastSample();
+			}
+		} else {
+			index = new EntryIndex(patternStartOfLogLine.pattern(), timestampParser.getTimeFormat(), sampleInterval);
+		}
+
+		EntryBoundaryFinder boundaryFinder = new EntryBoundaryFinder(channel, patternStartOfLogLine);
+		ByteBuffer line = ByteBuffer.allocate(TIMESTAMP_LINE_SIZE);
+		for (long position = (long) index.sampleCount * sampleInterval; position < size; position += sampleInterval) {
+			long offset = boundaryFinder.nextEntryStart(position);
+			long timestamp = offset < size ? parseTimestamp(channel, offset, line) : TimestampParser.NO_TIMESTAMP;
+			index.addSample(offset, timestamp);
+		}
+		index.indexedSize = size;
+		index.modifiedTime = modifiedTime;
+		index.headChecksum = headChecksum(channel, size);
+		return index;
+	}
+
+	private long parseTimestamp(FileChannel channel, long offset, ByteBuffer line) throws IOException {
+		line.clear();
+		while (line.hasRemaining() && channel.read(line, offset + line.position()) > 0) {
+			// Read until the buffer is full or the end of the file is reached
+		}
+		return timestampParser.parse(new ByteSequence(line, 0, line.position()));
+	}
+
+	private static long headChecksum(FileChannel channel, long size) throws IOException {
+		ByteBuffer head = ByteBuffer.allocate((int) Math.min(size, HEAD_SIZE));
+		while (head.hasRemaining() && channel.read(head, head.position()) > 0) {
+			// Read until the head is complete
+		}
+		CRC32 checksum = new CRC32();
+		checksum.update(head.array(), 0, head.position());
+		return checksum.getValue();
+	}
+}
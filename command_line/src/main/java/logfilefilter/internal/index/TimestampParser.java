@@ -0,0 +1,102 @@
+package logfilefilter.internal.index;
+
+import java.text.ParsePosition;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the timestamp of a log entry. The timestamp starts where the pattern
+ * for the start of a log entry is found in the first line, its format is given
+ * by a {@link DateTimeFormatter} pattern. Timestamps are compared as
+ * milliseconds of the local date time, the time zone is not relevant.
+ */
+public class TimestampParser {
+	/** The default format matching the default date pattern */
+	public static final String DEFAULT_TIME_FORMAT = "yyyy-MM-dd HH:mm:ss,SSS";
+	/** Returned for an entry without a timestamp */
+	public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+	private final Pattern patternStartOfLogLine;
+	private final String timeFormat;
+	private final DateTimeFormatter formatter;
+
+	public TimestampParser(Pattern patternStartOfLogLine, String timeFormat) {
+		this.patternStartOfLogLine = patternStartOfLogLine;
+		this.timeFormat = timeFormat;
+		this.formatter = DateTimeFormatter.ofPattern(timeFormat);
+	}
+
+	public String getTimeFormat() {
+		return timeFormat;
+	}
+
+	/**
+	 * @return the timestamp of the entry in milliseconds or
+	 *         {@link #NO_TIMESTAMP}, if it cannot be parsed
+	 */
+	public long parse(CharSequence logEntry) {
+		Matcher matcher = patternStartOfLogLine.matcher(logEntry);
+		if (!matcher.find()) {
+			return NO_TIMESTAMP;
+		}
+		try {
+			return toMillis(LocalDateTime.from(formatter.parse(logEntry, new ParsePosition(matcher.start()))));
+		} catch (RuntimeException e) {
+			return NO_TIMESTAMP;
+		}
+	}
+
+	/**
+	 * Parses a timestamp given by the user, e.g. for a time range. Trailing
+	 * fields of the format may be omitted, they are zero then: with the default
+	 * format "2016-04-27 14:30" is accepted as well.
+	 */
+	public long parseQuery(String timestamp) {
+		String format = timeFormat;
+		while (!format.isEmpty()) {
+			try {
+				DateTimeFormatter queryFormatter = new DateTimeFormatterBuilder().appendPattern(format)
+						.parseDefaulting(ChronoField.HOUR_OF_DAY, 0).parseDefaulting(ChronoField.MINUTE_OF_HOUR, 0)
+						.parseDefaulting(ChronoField.SECOND_OF_MINUTE, 0)
+						.parseDefaulting(ChronoField.NANO_OF_SECOND, 0).toFormatter();
+				return toMillis(LocalDateTime.parse(timestamp, queryFormatter));
+			} catch (DateTimeParseException | IllegalArgumentException e) {
+				format = withoutLastField(format);
+			}
+		}
+		throw new IllegalArgumentException(
+				"Timestamp '" + timestamp + "' does not match the time format '" + timeFormat + "'.");
+	}
+
+	/**
+	 * @return the timestamp in milliseconds in the time format
+	 */
+	public String format(long millis) {
+		return formatter.format(LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000),
+				(int) Math.floorMod(millis, 1000) * 1_000_000, ZoneOffset.UTC));
+	}
+
+	/**
+	 * @return the format without its last field and the separator before it
+	 */
+	private static String withoutLastField(String format) {
+		int end = format.length();
+		while (end > 0 && Character.isLetter(format.charAt(end - 1))) {
+			end--;
+		}
+		while (end > 0 && !Character.isLetter(format.charAt(end - 1))) {
+			end--;
+		}
+		return format.substring(0, end);
+	}
+
+	private static long toMillis(LocalDateTime dateTime) {
+		return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+	}
+}
@@ -0,0 +1,228 @@
+package logfilefilter.internal.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+import logfilefilter.internal.filters.RegexLiterals;
+
+/**
+ * An index of the trigrams (three consecutive bytes) of a log file. The file
+ * is divided into blocks of whole entries, for every trigram the index holds
+ * the blocks containing it. A literal can only occur in the blocks containing
+ * all of its trigrams, so a search for a selective pattern only has to read
+ * these candidate blocks.
+ * <p>
+ * The posting list of a trigram is stored as variable length deltas of the
+ * block numbers. The index is stored as sidecar file next to the log file, it
+ * records the size and modification time of the indexed file, so an outdated
+ * index is detected.
+ */
+public class TrigramIndex {
+	public static final String FILE_EXTENSION = ".lftri";
+	private static final int MAGIC = 0x4C465452;
+	private static final int VERSION = 1;
+
+	private final String datePattern;
+	final long indexedSize;
+	final long modifiedTime;
+	/** The start offsets of the blocks followed by the end of the last block */
+	private final long[] blockStarts;
+	/** Sorted trigrams, the posting list of a trigram has the same index */
+	private final int[] trigrams;
+	private final int[] postingStarts;
+	private final byte[] postings;
+
+	TrigramIndex(String datePattern, long indexedSize, long modifiedTime, long[] blockStarts, int[] trigrams,
+			int[] postingStarts, byte[] postings) {
+		this.datePattern = datePattern;
+		this.indexedSize = indexedSize;
+		this.modifiedTime = modifiedTime;
+		this.blockStarts = blockStarts;
+		this.trigrams = trigrams;
+		this.postingStarts = postingStarts;
+		this.postings = postings;
+	}
+
+	public static Path indexFileOf(Path source) {
+		return source.resolveSibling(source.getFileName() + FILE_EXTENSION);
+	}
+
+	/**
+	 * @return <code>true</code>, if the index is built for the file in its
+	 *         current state with the date pattern
+	 */
+	public boolean isValid(long size, long otherModifiedTime, String otherDatePattern) {
+		return indexedSize == size && modifiedTime == otherModifiedTime && datePattern.equals(otherDatePattern);
+	}
+
+	public int getBlockCount() {
+		return blockStarts.length - 1;
+	}
+
+	public long getBlockStart(int block) {
+		return blockStarts[block];
+	}
+
+	public long getBlockEnd(int block) {
+		return blockStarts[block + 1];
+	}
+
+	/**
+	 * @param regexes
+	 *            alternative patterns in the form of the raw bytes of the file
+	 * @return the blocks, which may contain a match of one of the patterns, or
+	 *         <code>null</code> if the candidates cannot be restricted
+	 */
+	public BitSet candidateBlocks(Collection<String> regexes) {
+		BitSet result = new BitSet(getBlockCount());
+		for (String regex : regexes) {
+			List<List<String>> branches = RegexLiterals.analyze(regex).getBranchLiterals();
+			if (branches.isEmpty()) {
+				return null;
+			}
+			for (List<String> literals : branches) {
+				BitSet branchBlocks = branchBlocks(literals);
+				if (branchBlocks == null) {
+					return null;
+				}
+				result.or(branchBlocks);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the blocks containing all literals or <code>null</code>, if all
+	 *         literals are too short
+	 */
+	private BitSet branchBlocks(List<String> literals) {
+		BitSet result = null;
+		for (String literal : literals) {
+			BitSet blocks = literalBlocks(literal);
+			if (blocks != null && result == null) {
+				result = blocks;
+			} else if (blocks != null) {
+				result.and(blocks);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the blocks containing all trigrams of the literal or
+	 *         <code>null</code>, if the literal is too short
+	 */
+	BitSet literalBlocks(String literal) {
+		if (literal.length() < 3) {
+			return null;
+		}
+		BitSet result = null;
+		int trigram = (literal.charAt(0) & 0xFF) << 8 | literal.charAt(1) & 0xFF;
+		for (int i = 2; i < literal.length(); i++) {
+			trigram = (trigram << 8 | literal.charAt(i) & 0xFF) & 0xFFFFFF;
+			BitSet blocks = postingOf(trigram);
+			if (result == null) {
+				result = blocks;
+			} else {
+				result.and(blocks);
+			}
+			if (result.isEmpty()) {
+				break;
+			}
+		}
+		return result;
+	}
+
+	private BitSet postingOf(int trigram) {
+		BitSet result = new BitSet(getBlockCount());
+		int index = Arrays.binarySearch(trigrams, trigram);
+		if (index >= 0) {
+			int block = -1;
+			int position = postingStarts[index];
+			while (position < postingStarts[index + 1]) {
+				int delta = 0;
+				for (int shift = 0;; shift += 7) {
+					byte b = postings[position++];
+					delta |= (b & 0x7F) << shift;
+					if (b >= 0) {
+						break;
+					}
+				}
+				block += delta;
+				result.set(block);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the stored index or <code>null</code>, if there is none or it
+	 *         cannot be read
+	 */
+	public static TrigramIndex load(Path indexFile) {
+		if (!Files.isRegularFile(indexFile)) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return null;
+			}
+			String datePattern = in.readUTF();
+			long indexedSize = in.readLong();
+			long modifiedTime = in.readLong();
+			long[] blockStarts = new long[in.readInt()];
+			for (int i = 0; i < blockStarts.length; i++) {
+				blockStarts[i] = in.readLong();
+			}
+			int[] trigrams = new int[in.readInt()];
+			int[] postingStarts = new int[trigrams.length + 1];
+			for (int i = 0; i < trigrams.length; i++) {
+				trigrams[i] = in.readInt();
+				postingStarts[i + 1] = in.readInt();
+			}
+			byte[] postings = new byte[postingStarts[trigrams.length]];
+			in.readFully(postings);
+			return new TrigramIndex(datePattern, indexedSize, modifiedTime, blockStarts, trigrams, postingStarts,
+					postings);
+		} catch (IOException e) {
+			// A damaged index is built again
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the index to a temporary file first, so a reader never sees an
+	 * incomplete index.
+	 */
+	public void save(Path indexFile) throws IOException {
+		Path tempFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(datePattern);
+			out.writeLong(indexedSize);
+			out.writeLong(modifiedTime);
+			out.writeInt(blockStarts.length);
+			for (long blockStart : blockStarts) {
+				out.writeLong(blockStart);
+			}
+			out.writeInt(trigrams.length);
+			for (int i = 0; i < trigrams.length; i++) {
+				out.writeInt(trigrams[i]);
+				out.writeInt(postingStarts[i + 1]);
+			}
+			out.write(postings);
+		}
+		Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
@@ -0,0 +1,191 @@
+package logfilefilter.internal.index;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+import logfilefilter.internal.processors.ByteSequence;
+import logfilefilter.internal.processors.MappedFileProcessor;
+
+/**
+ * Builds the {@link TrigramIndex} of a file. The entries are collected into
+ * blocks of about the block size, the trigrams of each entry are added to the
+ * posting lists of the block. Trigrams spanning two entries are not indexed,
+ * because a pattern is matched against single entries.
+ */
+public class TrigramIndexBuilder {
+	public static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+
+	private final Pattern patternStartOfLogLine;
+	private final String datePattern;
+	private int blockSize = DEFAULT_BLOCK_SIZE;
+
+	// Open addressing map from trigram to its posting list
+	private int[] keys;
+	private byte[][] postings;
+	private int[] postingLengths;
+	private int[] lastBlocks;
+	private int size;
+
+	/**
+	 * @param patternStartOfLogLine
+	 *            the pattern for the raw bytes of the file, see
+	 *            {@link ByteSequence#toByteView(String, java.nio.charset.Charset)}
+	 * @param datePattern
+	 *            the date pattern as given by the user, stored in the index
+	 */
+	public TrigramIndexBuilder(Pattern patternStartOfLogLine, String datePattern) {
+		this.patternStartOfLogLine = patternStartOfLogLine;
+		this.datePattern = datePattern;
+	}
+
+	protected void setBlockSize(int blockSize) {
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * Builds and stores the sidecar index of the source, if it is missing or
+	 * outdated.
+	 */
+	public TrigramIndex updateSidecar(Path source, FileChannel channel) throws IOException {
+		Path indexFile = TrigramIndex.indexFileOf(source);
+		long modifiedTime = Files.getLastModifiedTime(source).toMillis();
+		TrigramIndex stored = TrigramIndex.load(indexFile);
+		if (stored != null && stored.isValid(channel.size(), modifiedTime, datePattern)) {
+			return stored;
+		}
+		TrigramIndex result = build(channel, modifiedTime);
+		result.save(indexFile);
+		return result;
+	}
+
+	public TrigramIndex build(FileChannel channel, long modifiedTime) throws IOException {
+		long size = channel.size();
+		clear(1 << 16);
+		long[] blockStarts = new long[16];
+		int block = -1;
+		long blockEnd = 0;
+
+		MappedFileProcessor entries = new MappedFileProcessor(channel, 0, size, patternStartOfLogLine);
+		long position = 0;
+		for (ByteSequence logEntry = entries.nextEntry(); logEntry != null; logEntry = entries.nextEntry()) {
+			if (position >= blockEnd) {
+				block++;
+				if (block + 1 >= blockStarts.length) {
+					blockStarts = Arrays.copyOf(blockStarts, blockStarts.length * 2);
+				}
+				blockStarts[block] = position;
+				blockEnd = position + blockSize;
+			}
+			addTrigrams(logEntry, block);
+			position += logEntry.length();
+		}
+		blockStarts[block + 1] = size;
+		return toIndex(Arrays.copyOf(blockStarts, block + 2), size, modifiedTime);
+	}
+
+	private void addTrigrams(ByteSequence logEntry, int block) {
+		int length = logEntry.length();
+		if (length < 3) {
+			return;
+		}
+		int trigram = (logEntry.byteAt(0) & 0xFF) << 8 | logEntry.byteAt(1) & 0xFF;
+		for (int i = 2; i < length; i++) {
+			trigram = (trigram << 8 | logEntry.byteAt(i) & 0xFF) & 0xFFFFFF;
+			addPosting(trigram, block);
+		}
+	}
+
+	private void addPosting(int trigram, int block) {
+		int slot = slotOf(trigram);
+		if (keys[slot] < 0) {
+			keys[slot] = trigram;
+			postings[slot] = new byte[4];
+			lastBlocks[slot] = -1;
+			if (++size * 2 > keys.length) {
+				grow();
+				slot = slotOf(trigram);
+			}
+		} else if (lastBlocks[slot] == block) {
+			return;
+		}
+
+		int delta = block - lastBlocks[slot];
+		lastBlocks[slot] = block;
+		byte[] posting = postings[slot];
+		int length = postingLengths[slot];
+		if (length + 5 > posting.length) {
+			posting = postings[slot] = Arrays.copyOf(posting, posting.length * 2);
+		}
+		while ((delta & ~0x7F) != 0) {
+			posting[length++] = (byte) (delta & 0x7F | 0x80);
+			delta >>>= 7;
+		}
+		posting[length++] = (byte) delta;
+		postingLengths[slot] = length;
+	}
+
+	private int slotOf(int trigram) {
+		int mask = keys.length - 1;
+		int slot = (trigram * 0x9E3779B1) >>> 8 & mask;
+		while (keys[slot] >= 0 && keys[slot] != trigram) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void grow() {
+		int[] oldKeys = keys;
+		byte[][] oldPostings = postings;
+		int[] oldPostingLengths = postingLengths;
+		int[] oldLastBlocks = lastBlocks;
+		int oldSize = size;
+		clear(oldKeys.length * 2);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] >= 0) {
+				int slot = slotOf(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				postings[slot] = oldPostings[i];
+				postingLengths[slot] = oldPostingLengths[i];
+				lastBlocks[slot] = oldLastBlocks[i];
+			}
+		}
+		size = oldSize;
+	}
+
+	private TrigramIndex toIndex(long[] blockStarts, long size, long modifiedTime) {
+		int[] trigrams = new int[this.size];
+		int count = 0;
+		int postingsLength = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] >= 0) {
+				trigrams[count++] = keys[i];
+				postingsLength += postingLengths[i];
+			}
+		}
+		Arrays.sort(trigrams);
+
+		int[] postingStarts = new int[trigrams.length + 1];
+		byte[] allPostings = new byte[postingsLength];
+		for (int i = 0; i < trigrams.length; i++) {
+			int slot = slotOf(trigrams[i]);
+			System.arraycopy(postings[slot], 0, allPostings, postingStarts[i], postingLengths[slot]);
+			postingStarts[i + 1] = postingStarts[i] + postingLengths[slot];
+		}
+		// The map is not needed anymore
+		clear(1);
+		return new TrigramIndex(datePattern, size, modifiedTime, blockStarts, trigrams, postingStarts, allPostings);
+	}
+
+	private void clear(int capacity) {
+		keys = new int[capacity];
+		Arrays.fill(keys, -1);
+		postings = new byte[capacity][];
+		postingLengths = new int[capacity];
+		lastBlocks = new int[capacity];
+		size = 0;
+	}
+}
@@ -0,0 +1,139 @@
+package logfilefilter.internal.input;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads a stream on a separate thread ahead of its consumer. The data is
+ * handed over in chunks through a bounded queue, the chunks are recycled, so
+ * the memory used is fixed. If the consumer is slower, the reading thread
+ * waits; if the reading thread is slower, the consumer waits.
+ */
+public class AsyncInputStream extends InputStream {
+	public static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+	public static final int DEFAULT_CHUNK_COUNT = 8;
+
+	private static class Chunk {
+		private final byte[] data;
+		private int length;
+
+		private Chunk(int size) {
+			data = new byte[size];
+		}
+	}
+
+	private static final Chunk END_OF_STREAM = new Chunk(0);
+
+	private final BlockingQueue<Chunk> filledChunks;
+	private final BlockingQueue<Chunk> freeChunks;
+	private final Thread readerThread;
+	private volatile IOException readFailure;
+
+	private Chunk current = null;
+	private int position = 0;
+	private boolean endOfStream = false;
+
+	public AsyncInputStream(InputStream source, String threadName) {
+		this(source, threadName, DEFAULT_CHUNK_SIZE, DEFAULT_CHUNK_COUNT);
+	}
+
+	public AsyncInputStream(InputStream source, String threadName, int chunkSize, int chunkCount) {
+		// One more slot than chunks, so the end of the stream always fits
+		filledChunks = new ArrayBlockingQueue<>(chunkCount + 1);
+		freeChunks = new ArrayBlockingQueue<>(chunkCount);
+		for (int i = 0; i < chunkCount; i++) {
+			freeChunks.add(new Chunk(chunkSize));
+		}
+
+		readerThread = new Thread(() -> readAhead(source), threadName);
+		readerThread.setDaemon(true);
+		readerThread.start();
+	}
+
+	private void readAhead(InputStream source) {
+		try (InputStream in = source) {
+			while (true) {
+				Chunk chunk = freeChunks.take();
+				chunk.length = 0;
+				int read = 0;
+				while (chunk.length < chunk.data.length
+						&& (read = in.read(chunk.data, chunk.length, chunk.data.length - chunk.length)) > 0) {
+					chunk.length += read;
+				}
+
+				if (chunk.length > 0) {
+					filledChunks.put(chunk);
+				}
+				if (read < 0) {
+					break;
+				}
+			}
+		} catch (IOException e) {
+			readFailure = e;
+		} catch (InterruptedException e) {
+			// The stream has been closed by the consumer
+			return;
+		}
+		filledChunks.add(END_OF_STREAM);
+	}
+
+	@Override
+	public int read() throws IOException {
+		byte[] result = new byte[1];
+		return read(result, 0, 1) < 0 ? -1 : result[0] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!nextChunkIfNeeded()) {
+			return -1;
+		}
+
+		int result = Math.min(len, current.length - position);
+		System.arraycopy(current.data, position, b, off, result);
+		position += result;
+		return result;
+	}
+
+	private boolean nextChunkIfNeeded() throws IOException {
+		if (endOfStream) {
+			return false;
+		}
+		if (current != null && position < current.length) {
+			return true;
+		}
+
+		if (current != null) {
+			freeChunks.add(current);
+			current = null;
+		}
+		try {
+			Chunk next = filledChunks.take();
+			if (next == END_OF_STREAM) {
+				endOfStream = true;
+				if (readFailure != null) {
+					throw readFailure;
+				}
+				return false;
+			}
+			current = next;
+			position = 0;
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		endOfStream = true;
+		readerThread.interrupt();
+	}
+}
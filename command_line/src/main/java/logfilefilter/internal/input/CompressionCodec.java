@@ -0,0 +1,26 @@
+package logfilefilter.internal.input;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A compression format of source files, detected by the first bytes of a
+ * file. Besides the built-in gzip support, further codecs (e.g. zstd or lz4)
+ * can be added by putting a jar on the classpath which registers an
+ * implementation in
+ * <code>META-INF/services/logfilefilter.internal.input.CompressionCodec</code>.
+ */
+public interface CompressionCodec {
+	String getName();
+
+	/**
+	 * @param header
+	 *            the first bytes of the file
+	 * @param length
+	 *            the number of valid bytes in the header, less than its size
+	 *            for very small files
+	 */
+	boolean matches(byte[] header, int length);
+
+	InputStream decompress(InputStream in) throws IOException;
+}
@@ -0,0 +1,68 @@
+package logfilefilter.internal.input;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Detects and opens compressed source files.
+ */
+public class CompressionCodecs {
+	private static final int HEADER_SIZE = 16;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final List<CompressionCodec> CODECS = loadCodecs();
+
+	private CompressionCodecs() {
+	}
+
+	private static List<CompressionCodec> loadCodecs() {
+		List<CompressionCodec> result = new ArrayList<>();
+		result.add(new GzipCodec());
+		for (CompressionCodec codec : ServiceLoader.load(CompressionCodec.class)) {
+			result.add(codec);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the codec of the file or <code>null</code>, if the file is not
+	 *         compressed in a known format
+	 */
+	public static CompressionCodec detect(Path file) throws IOException {
+		byte[] header = new byte[HEADER_SIZE];
+		int length = 0;
+		try (InputStream in = Files.newInputStream(file)) {
+			int read = 0;
+			while (length < HEADER_SIZE && (read = in.read(header, length, HEADER_SIZE - length)) > 0) {
+				length += read;
+			}
+		}
+
+		for (CompressionCodec codec : CODECS) {
+			if (codec.matches(header, length)) {
+				return codec;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Opens the file and decompresses it on a separate thread, so
+	 * decompressing and filtering run at the same time.
+	 */
+	public static InputStream openDecompressed(Path file, CompressionCodec codec) throws IOException {
+		InputStream in = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE);
+		try {
+			return new AsyncInputStream(codec.decompress(in), "Decompress " + file.getFileName());
+		} catch (IOException | RuntimeException e) {
+			in.close();
+			throw e;
+		}
+	}
+}
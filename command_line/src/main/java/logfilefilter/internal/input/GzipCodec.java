@@ -0,0 +1,27 @@
+package logfilefilter.internal.input;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * gzip files, including files of several concatenated gzip members.
+ */
+public class GzipCodec implements CompressionCodec {
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	@Override
+	public String getName() {
+		return "gzip";
+	}
+
+	@Override
+	public boolean matches(byte[] header, int length) {
+		return length >= 2 && header[0] == (byte) 0x1f && header[1] == (byte) 0x8b;
+	}
+
+	@Override
+	public InputStream decompress(InputStream in) throws IOException {
+		return new GZIPInputStream(in, BUFFER_SIZE);
+	}
+}
@@ -0,0 +1,141 @@
+package logfilefilter.internal.input;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import logfilefilter.internal.index.EntryIndex;
+import logfilefilter.internal.index.TrigramIndex;
+
+/**
+ * Resolves source file arguments, which may be glob patterns like
+ * <code>logs/app.log*</code> or <code>logs/**&#47;*.gz</code>. The files
+ * matching a glob are sorted by name, numbers in the names are compared by
+ * their value, so <code>app.log.2.gz</code> comes before
+ * <code>app.log.10.gz</code>.
+ * <p>
+ * A directory stands for all files below it. The sidecar index files of the
+ * sources are never resolved as sources themselves.
+ */
+public class SourceResolver {
+	private static final String GLOB_CHARACTERS = "*?[{";
+	private static final Pattern NUMBER_OR_TEXT = Pattern.compile("[0-9]+|[^0-9]+");
+	private static final List<String> SIDECAR_EXTENSIONS = Arrays.asList(EntryIndex.FILE_EXTENSION,
+			TrigramIndex.FILE_EXTENSION);
+
+	private SourceResolver() {
+	}
+
+	public static List<Path> resolve(List<String> sourceFilePaths) throws IOException {
+		List<Path> result = new ArrayList<>();
+		for (String sourceFilePath : sourceFilePaths) {
+			result.addAll(resolve(sourceFilePath));
+		}
+		return result;
+	}
+
+	public static List<Path> resolve(String sourceFilePath) throws IOException {
+		if (!isGlob(sourceFilePath)) {
+			Path source = Paths.get(sourceFilePath);
+			if (Files.isDirectory(source)) {
+				return resolveDirectory(source, sourceFilePath);
+			}
+			List<Path> result = new ArrayList<>();
+			result.add(source);
+			return result;
+		}
+
+		// Search from the last directory before the first glob character
+		String normalized = sourceFilePath.replace('\\', '/');
+		int firstGlobCharacter = indexOfGlobCharacter(normalized);
+		int baseEnd = normalized.lastIndexOf('/', firstGlobCharacter);
+		Path baseDirectory = Paths.get(baseEnd < 0 ? "." : baseEnd == 0 ? "/" : normalized.substring(0, baseEnd));
+		String relativeGlob = normalized.substring(baseEnd + 1);
+		int maxDepth = relativeGlob.contains("**") ? Integer.MAX_VALUE : relativeGlob.split("/").length;
+
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + relativeGlob);
+		List<Path> result;
+		try (Stream<Path> files = Files.walk(baseDirectory, maxDepth)) {
+			result = files.filter(SourceResolver::isSource)
+					.filter(file -> matcher.matches(baseDirectory.relativize(file)))
+					.sorted(Comparator.comparing(Path::toString, SourceResolver::compareNatural))
+					.collect(Collectors.toList());
+		}
+
+		if (result.isEmpty()) {
+			throw new IllegalArgumentException("No source file matches '" + sourceFilePath + "'.");
+		}
+		return result;
+	}
+
+	private static List<Path> resolveDirectory(Path directory, String sourceFilePath) throws IOException {
+		List<Path> result;
+		try (Stream<Path> files = Files.walk(directory)) {
+			result = files.filter(SourceResolver::isSource)
+					.sorted(Comparator.comparing(Path::toString, SourceResolver::compareNatural))
+					.collect(Collectors.toList());
+		}
+
+		if (result.isEmpty()) {
+			throw new IllegalArgumentException("Directory '" + sourceFilePath + "' contains no source file.");
+		}
+		return result;
+	}
+
+	private static boolean isSource(Path file) {
+		String fileName = file.getFileName().toString();
+		return Files.isRegularFile(file) && SIDECAR_EXTENSIONS.stream().noneMatch(fileName::endsWith);
+	}
+
+	public static boolean isGlob(String sourceFilePath) {
+		return indexOfGlobCharacter(sourceFilePath) >= 0;
+	}
+
+	private static int indexOfGlobCharacter(String sourceFilePath) {
+		for (int i = 0; i < sourceFilePath.length(); i++) {
+			if (GLOB_CHARACTERS.indexOf(sourceFilePath.charAt(i)) >= 0) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	static int compareNatural(String first, String second) {
+		Matcher firstParts = NUMBER_OR_TEXT.matcher(first);
+		Matcher secondParts = NUMBER_OR_TEXT.matcher(second);
+		while (firstParts.find() && secondParts.find()) {
+			String firstPart = firstParts.group();
+			String secondPart = secondParts.group();
+			int result;
+			if (Character.isDigit(firstPart.charAt(0)) && Character.isDigit(secondPart.charAt(0))) {
+				result = compareNumbers(firstPart, secondPart);
+			} else {
+				result = firstPart.compareTo(secondPart);
+			}
+			if (result != 0) {
+				return result;
+			}
+		}
+		return first.compareTo(second);
+	}
+
+	private static int compareNumbers(String first, String second) {
+		String firstDigits = first.replaceFirst("^0+(?=.)", "");
+		String secondDigits = second.replaceFirst("^0+(?=.)", "");
+		if (firstDigits.length() != secondDigits.length()) {
+			return firstDigits.length() - secondDigits.length();
+		}
+		return firstDigits.compareTo(secondDigits);
+	}
+}
@@ -0,0 +1,270 @@
+package logfilefilter.internal.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import logfilefilter.internal.processors.ByteSequence;
+import logfilefilter.internal.processors.StreamProcessor;
+
+/**
+ * Collects the log entries in one large reusable buffer, so the target is
+ * written with few large writes instead of one write per entry. The target is
+ * either an {@link OutputStream} (written with whole buffers, bypassing small
+ * intermediate buffers) or a {@link FileChannel}.
+ * <p>
+ * With gather writes enabled, the bytes of {@link ByteSequence} entries are
+ * not copied at all: the slices of the (mapped) source are collected and
+ * written with one gathering write to the file channel.
+ * <p>
+ * With {@link FlushPolicy#INTERVAL} a timer flushes the buffered entries,
+ * even if no further entry is written (e.g. a quiet pipe).
+ */
+public class BufferedOutputSink implements OutputSink {
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+	/** Most systems limit the number of buffers of one gathering write */
+	private static final int MAX_GATHERED_BUFFERS = 1024;
+
+	private final OutputStream out;
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+
+	private final Charset inputCharset;
+	private final Charset outputCharset;
+	private final CharsetEncoder encoder;
+	private final ByteBuffer lineSeparator;
+
+	private FlushPolicy flushPolicy = FlushPolicy.BUFFER;
+	private long flushIntervalNanos = 0;
+	private long oldestUnflushedNanos = -1;
+	/** Flushes the expired entries, only used with {@link FlushPolicy#INTERVAL} */
+	private ScheduledExecutorService flushTimer;
+	/** The failure of the timer, thrown by the next call */
+	private IOException flushFailure;
+
+	private boolean gatherWrites = false;
+	private final List<ByteBuffer> gatheredBuffers = new ArrayList<>();
+	private long gatheredBytes = 0;
+
+	public BufferedOutputSink(OutputStream out, Charset inputCharset, Charset outputCharset, int bufferSize) {
+		this(out, null, ByteBuffer.allocate(bufferSize), inputCharset, outputCharset);
+	}
+
+	public BufferedOutputSink(FileChannel channel, Charset inputCharset, Charset outputCharset, int bufferSize) {
+		this(null, channel, ByteBuffer.allocateDirect(bufferSize), inputCharset, outputCharset);
+	}
+
+	private BufferedOutputSink(OutputStream out, FileChannel channel, ByteBuffer buffer, Charset inputCharset,
+			Charset outputCharset) {
+		this.out = out;
+		this.channel = channel;
+		this.buffer = buffer;
+		this.inputCharset = inputCharset;
+		this.outputCharset = outputCharset;
+		// Same behavior as String.getBytes(Charset)
+		this.encoder = outputCharset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.lineSeparator = ByteBuffer.wrap(StreamProcessor.LINE_SEPARATOR.getBytes(outputCharset)).asReadOnlyBuffer();
+	}
+
+	/**
+	 * @param flushInterval
+	 *            the maximum age of buffered entries, only used with
+	 *            {@link FlushPolicy#INTERVAL}
+	 */
+	public synchronized void setFlushPolicy(FlushPolicy flushPolicy, long flushInterval, TimeUnit unit) {
+		this.flushPolicy = flushPolicy;
+		this.flushIntervalNanos = unit.toNanos(flushInterval);
+		if (flushPolicy == FlushPolicy.INTERVAL && flushTimer == null) {
+			flushTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "Flush output");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Enables gathering writes for byte entries, only possible for a
+	 * {@link FileChannel} target.
+	 */
+	public synchronized void setGatherWrites(boolean gatherWrites) {
+		this.gatherWrites = gatherWrites && channel != null;
+	}
+
+	@Override
+	public synchronized void write(CharSequence logEntry) throws IOException {
+		throwFlushFailure();
+		if (logEntry instanceof ByteSequence) {
+			write((ByteSequence) logEntry);
+			return;
+		}
+
+		writeGathered();
+		encode(CharBuffer.wrap(logEntry));
+		if (logEntry.length() == 0 || logEntry.charAt(logEntry.length() - 1) != '\n') {
+			put(lineSeparator.duplicate());
+		}
+		afterEntry();
+	}
+
+	@Override
+	public synchronized void write(ByteSequence logEntry) throws IOException {
+		throwFlushFailure();
+		boolean transcode = !inputCharset.equals(outputCharset);
+		if (transcode) {
+			writeGathered();
+			encode(inputCharset.decode(logEntry.asByteBuffer()));
+		} else if (gatherWrites) {
+			drain();
+			gather(logEntry.asByteBuffer());
+		} else {
+			put(logEntry.asByteBuffer());
+		}
+
+		if (!logEntry.endsWithNewline()) {
+			if (gatherWrites && !transcode) {
+				gather(lineSeparator.duplicate());
+			} else {
+				put(lineSeparator.duplicate());
+			}
+		}
+		afterEntry();
+	}
+
+	private void afterEntry() throws IOException {
+		if (flushPolicy == FlushPolicy.ENTRY) {
+			flush();
+		} else if (flushPolicy == FlushPolicy.INTERVAL) {
+			long now = System.nanoTime();
+			if (oldestUnflushedNanos < 0) {
+				oldestUnflushedNanos = now;
+				flushTimer.schedule(this::flushExpired, flushIntervalNanos, TimeUnit.NANOSECONDS);
+			} else if (now - oldestUnflushedNanos >= flushIntervalNanos) {
+				flush();
+			}
+		}
+	}
+
+	/**
+	 * Called by the timer, the entries may have been flushed by a write since.
+	 */
+	private synchronized void flushExpired() {
+		if (oldestUnflushedNanos < 0 || flushFailure != null) {
+			return;
+		}
+		long remainingNanos = oldestUnflushedNanos + flushIntervalNanos - System.nanoTime();
+		if (remainingNanos > 0) {
+			// Flushed and buffered again since the timer was started
+			flushTimer.schedule(this::flushExpired, remainingNanos, TimeUnit.NANOSECONDS);
+			return;
+		}
+		try {
+			flush();
+		} catch (IOException e) {
+			flushFailure = e;
+		}
+	}
+
+	private void throwFlushFailure() throws IOException {
+		if (flushFailure != null) {
+			throw flushFailure;
+		}
+	}
+
+	private void encode(CharBuffer chars) throws IOException {
+		encoder.reset();
+		CoderResult result = encoder.encode(chars, buffer, true);
+		while (result.isOverflow()) {
+			drain();
+			result = encoder.encode(chars, buffer, true);
+		}
+		while (encoder.flush(buffer).isOverflow()) {
+			drain();
+		}
+	}
+
+	private void put(ByteBuffer bytes) throws IOException {
+		while (bytes.remaining() > buffer.remaining()) {
+			int limit = bytes.limit();
+			bytes.limit(bytes.position() + buffer.remaining());
+			buffer.put(bytes);
+			bytes.limit(limit);
+			drain();
+		}
+		buffer.put(bytes);
+	}
+
+	private void gather(ByteBuffer bytes) throws IOException {
+		gatheredBuffers.add(bytes);
+		gatheredBytes += bytes.remaining();
+		if (gatheredBuffers.size() >= MAX_GATHERED_BUFFERS || gatheredBytes >= buffer.capacity()) {
+			writeGathered();
+		}
+	}
+
+	private void writeGathered() throws IOException {
+		if (!gatheredBuffers.isEmpty()) {
+			ByteBuffer[] buffers = gatheredBuffers.toArray(new ByteBuffer[gatheredBuffers.size()]);
+			long remaining = gatheredBytes;
+			while (remaining > 0) {
+				remaining -= channel.write(buffers);
+			}
+			gatheredBuffers.clear();
+			gatheredBytes = 0;
+		}
+	}
+
+	/**
+	 * Writes the content of the buffer to the target.
+	 */
+	private void drain() throws IOException {
+		buffer.flip();
+		if (channel != null) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} else if (buffer.hasRemaining()) {
+			out.write(buffer.array(), buffer.arrayOffset(), buffer.remaining());
+		}
+		buffer.clear();
+	}
+
+	@Override
+	public synchronized void flush() throws IOException {
+		throwFlushFailure();
+		writeGathered();
+		drain();
+		if (out != null) {
+			out.flush();
+		}
+		oldestUnflushedNanos = -1;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			if (flushTimer != null) {
+				flushTimer.shutdownNow();
+			}
+			if (channel != null) {
+				channel.close();
+			} else {
+				out.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,13 @@
+package logfilefilter.internal.output;
+
+/**
+ * Defines when the buffered output is written to the target.
+ */
+public enum FlushPolicy {
+	/** Only when the buffer is full and at the end */
+	BUFFER,
+	/** After each log entry, e.g. for a pipe which is read live */
+	ENTRY,
+	/** When the oldest buffered entry is older than the flush interval */
+	INTERVAL;
+}
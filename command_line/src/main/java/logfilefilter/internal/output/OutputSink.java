@@ -0,0 +1,25 @@
+package logfilefilter.internal.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import logfilefilter.internal.processors.ByteSequence;
+
+/**
+ * Receives the log entries passing the filters. A log entry without a
+ * trailing line separator (the last line of a file) is completed by the sink.
+ */
+public interface OutputSink extends Closeable {
+	/**
+	 * Writes a decoded log entry. A {@link ByteSequence} is written as bytes.
+	 */
+	void write(CharSequence logEntry) throws IOException;
+
+	/**
+	 * Writes the bytes of a log entry, they are only re-encoded if the output
+	 * charset differs from the input charset.
+	 */
+	void write(ByteSequence logEntry) throws IOException;
+
+	void flush() throws IOException;
+}
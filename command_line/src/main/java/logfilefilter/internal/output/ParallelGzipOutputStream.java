@@ -0,0 +1,138 @@
+package logfilefilter.internal.output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses the written bytes on several threads, like pigz. The bytes are
+ * cut into blocks, each block is compressed independently into a gzip member
+ * and the members are written in order. The result is a standard gzip file of
+ * concatenated members, which gzip and {@link java.util.zip.GZIPInputStream}
+ * decompress as one stream.
+ * <p>
+ * While the blocks are compressed, the writer continues to fill the next
+ * block. Only when too many blocks are in flight, it waits for the oldest one.
+ * A flush writes the complete blocks only, the last partial block is
+ * compressed on close. So frequent flushes (e.g. after each entry) do not cut
+ * the output into many small members. The stream is not thread safe.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+	/** The blocks per thread, which may be in flight */
+	private static final int BLOCKS_PER_THREAD = 2;
+
+	private final OutputStream out;
+	private final ExecutorService compressors;
+	private final int maxBlocksInFlight;
+	private final Deque<Future<byte[]>> blocksInFlight = new ArrayDeque<>();
+	private byte[] block;
+	private int blockLength = 0;
+	private boolean closed = false;
+
+	public ParallelGzipOutputStream(OutputStream out, int threadCount, int blockSize) {
+		this.out = out;
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.compressors = Executors.newFixedThreadPool(threadCount, task -> {
+			Thread thread = new Thread(task, "gzip-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.maxBlocksInFlight = threadCount * BLOCKS_PER_THREAD;
+		this.block = new byte[blockSize];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		while (length > 0) {
+			int copied = Math.min(length, block.length - blockLength);
+			System.arraycopy(bytes, offset, block, blockLength, copied);
+			blockLength += copied;
+			offset += copied;
+			length -= copied;
+			if (blockLength == block.length) {
+				submitBlock();
+			}
+		}
+	}
+
+	private void submitBlock() throws IOException {
+		if (blockLength == 0) {
+			return;
+		}
+		while (blocksInFlight.size() >= maxBlocksInFlight) {
+			writeOldestBlock();
+		}
+		byte[] uncompressed = block;
+		int length = blockLength;
+		blocksInFlight.add(compressors.submit(() -> compress(uncompressed, length)));
+		block = new byte[uncompressed.length];
+		blockLength = 0;
+
+		// Write the blocks already compressed without waiting
+		while (!blocksInFlight.isEmpty() && blocksInFlight.peek().isDone()) {
+			writeOldestBlock();
+		}
+	}
+
+	private static byte[] compress(byte[] uncompressed, int length) throws IOException {
+		ByteArrayOutputStream result = new ByteArrayOutputStream(length / 4 + 64);
+		try (GZIPOutputStream member = new GZIPOutputStream(result, 1 << 16)) {
+			member.write(uncompressed, 0, length);
+		}
+		return result.toByteArray();
+	}
+
+	private void writeOldestBlock() throws IOException {
+		try {
+			out.write(blocksInFlight.remove().get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while compressing");
+		} catch (ExecutionException e) {
+			throw new IOException("Compression failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Waits for the complete blocks and writes them. The current block is not
+	 * completed, else many flushes of small blocks make the compression worse.
+	 */
+	@Override
+	public void flush() throws IOException {
+		while (!blocksInFlight.isEmpty()) {
+			writeOldestBlock();
+		}
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			submitBlock();
+			flush();
+		} finally {
+			blocksInFlight.forEach(blockInFlight -> blockInFlight.cancel(true));
+			compressors.shutdownNow();
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package logfilefilter.internal.output;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import logfilefilter.internal.processors.ByteSequence;
+
+/**
+ * Writes the log entries into a series of target files of limited size. The
+ * first file is the target itself, the following ones have a number inserted
+ * before the extensions of the target, e.g. <code>filtered.log.gz</code>,
+ * <code>filtered.1.log.gz</code>, <code>filtered.2.log.gz</code>. A file is
+ * completed after the entry which exceeds the size, so entries are never
+ * split. The size counts the characters of the entries (the bytes of
+ * {@link ByteSequence} entries) before any compression.
+ */
+public class RotatingOutputSink implements OutputSink {
+	public interface SinkFactory {
+		OutputSink open(Path target) throws IOException;
+	}
+
+	private final Path target;
+	private final long maxFileSize;
+	private final SinkFactory sinkFactory;
+	private OutputSink current;
+	private long currentSize = 0;
+	private int fileCount = 1;
+
+	public RotatingOutputSink(Path target, long maxFileSize, SinkFactory sinkFactory) throws IOException {
+		this.target = target;
+		this.maxFileSize = maxFileSize;
+		this.sinkFactory = sinkFactory;
+		// The target is created, even if no entry is written
+		this.current = sinkFactory.open(target);
+	}
+
+	/**
+	 * @return the name of the file with the given number, the first file has
+	 *         the number 0
+	 */
+	public static Path fileOf(Path target, int number) {
+		if (number == 0) {
+			return target;
+		}
+		String name = target.getFileName().toString();
+		// The extensions start at the first dot after the first character
+		int extension = name.indexOf('.', 1);
+		String numbered = extension > 0 ? name.substring(0, extension) + "." + number + name.substring(extension)
+				: name + "." + number;
+		return target.resolveSibling(numbered);
+	}
+
+	public int getFileCount() {
+		return fileCount;
+	}
+
+	@Override
+	public void write(CharSequence logEntry) throws IOException {
+		currentSink().write(logEntry);
+		afterEntry(logEntry.length());
+	}
+
+	@Override
+	public void write(ByteSequence logEntry) throws IOException {
+		currentSink().write(logEntry);
+		afterEntry(logEntry.length());
+	}
+
+	private OutputSink currentSink() throws IOException {
+		if (current == null) {
+			current = sinkFactory.open(fileOf(target, fileCount++));
+			currentSize = 0;
+		}
+		return current;
+	}
+
+	private void afterEntry(int entrySize) throws IOException {
+		currentSize += entrySize;
+		if (currentSize >= maxFileSize) {
+			OutputSink completed = current;
+			current = null;
+			completed.close();
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (current != null) {
+			current.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (current != null) {
+			current.close();
+			current = null;
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package logfilefilter.internal.processors;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A zero-copy {@link CharSequence} view on a range of a {@link ByteBuffer}.
+ * Every byte is exposed as one char (ISO-8859-1), so regular expressions can
+ * be applied to the raw bytes of a log file without decoding them first.
+ * Patterns containing non-ASCII characters have to be converted with
+ * {@link #toByteView(String, Charset)} before they are compiled.
+ */
+public final class ByteSequence implements CharSequence {
+	/**
+	 * The escapes, which may match a char encoded into several bytes or
+	 * depend on such a char: negated and Unicode shorthands, word boundaries
+	 * and escaped code points
+	 */
+	private static final String MULTI_BYTE_ESCAPES = "WSDHVpPbBXRxuN0";
+
+	private final ByteBuffer buffer;
+	private final int offset;
+	private final int length;
+
+	public ByteSequence(ByteBuffer buffer, int offset, int length) {
+		this.buffer = buffer;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		return (char) (buffer.get(offset + index) & 0xFF);
+	}
+
+	@Override
+	public ByteSequence subSequence(int start, int end) {
+		return new ByteSequence(buffer, offset + start, end - start);
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	public byte byteAt(int index) {
+		return buffer.get(offset + index);
+	}
+
+	public boolean endsWithNewline() {
+		return length > 0 && byteAt(length - 1) == '\n';
+	}
+
+	/**
+	 * @return a new buffer sharing the content of this sequence, positioned at
+	 *         its first byte and limited to its last byte
+	 */
+	public ByteBuffer asByteBuffer() {
+		ByteBuffer result = buffer.duplicate();
+		result.limit(offset + length).position(offset);
+		return result;
+	}
+
+	public String decode(Charset charset) {
+		return charset.decode(asByteBuffer()).toString();
+	}
+
+	@Override
+	public String toString() {
+		return decode(StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Converts a text (e.g. a regex pattern) into the form it has when the
+	 * bytes of its encoding are read as {@link ByteSequence}.
+	 */
+	public static String toByteView(String text, Charset charset) {
+		return new String(text.getBytes(charset), StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * @return <code>false</code>, if the {@link #toByteView(String, Charset)}
+	 *         of the regex matches the bytes of an entry differently than the
+	 *         regex matches the decoded entry. For a charset encoding a char
+	 *         into several bytes this is the case, if such a char is inside a
+	 *         character class or under a quantifier, or if the regex has a
+	 *         construct matching any single char, like '.', a negated class,
+	 *         a negated or Unicode shorthand ("\\W", "\\p{L}") or a word
+	 *         boundary.
+	 * @param bytewise
+	 *            if <code>true</code>, a construct matching any single char is
+	 *            meant to match a single byte, like in raw mode
+	 */
+	public static boolean hasExactByteView(String regex, Charset charset, boolean bytewise) {
+		boolean checkWildcards = !bytewise && charset.newEncoder().maxBytesPerChar() > 1;
+		int classDepth = 0;
+		boolean quoted = false;
+		int i = 0;
+		while (i < regex.length()) {
+			int c = regex.codePointAt(i);
+			int next = i + Character.charCount(c);
+			if (quoted) {
+				if (regex.startsWith("\\E", i)) {
+					quoted = false;
+					i += 2;
+					continue;
+				}
+			} else if (c == '\\') {
+				if (regex.startsWith("Q", next)) {
+					quoted = true;
+					i = next + 1;
+					continue;
+				}
+				if (checkWildcards && next < regex.length() && MULTI_BYTE_ESCAPES.indexOf(regex.charAt(next)) >= 0) {
+					return false;
+				}
+				// The escaped char is matched like a literal
+				if (next < regex.length()) {
+					c = regex.codePointAt(next);
+					next += Character.charCount(c);
+				}
+			} else if (c == '[') {
+				classDepth++;
+				i = next;
+				// A ']' at the begin of a class is a literal
+				if (regex.startsWith("^", i)) {
+					if (checkWildcards) {
+						return false;
+					}
+					i++;
+				}
+				if (regex.startsWith("]", i)) {
+					i++;
+				}
+				continue;
+			} else if (c == ']' && classDepth > 0) {
+				classDepth--;
+				i = next;
+				continue;
+			} else if (c == '.' && classDepth == 0 && checkWildcards) {
+				return false;
+			}
+			// A quantifier may follow the end of the quote
+			int following = quoted && regex.startsWith("\\E", next) ? next + 2 : next;
+			if ((classDepth > 0 || isQuantifier(regex, following)) && isMultiByte(c, charset)) {
+				return false;
+			}
+			i = next;
+		}
+		return true;
+	}
+
+	private static boolean isMultiByte(int c, Charset charset) {
+		return c >= 0x80 && toByteView(new String(Character.toChars(c)), charset).length() > 1;
+	}
+
+	private static boolean isQuantifier(String regex, int index) {
+		return index < regex.length() && "?*+{".indexOf(regex.charAt(index)) >= 0;
+	}
+}
@@ -0,0 +1,97 @@
+package logfilefilter.internal.processors;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the begin of log entries at arbitrary positions of a file, e.g. to
+ * split a file into chunks which can be processed independently. A line which
+ * matches the pattern for the start of a log entry is always the begin of an
+ * entry, unless it is the first line of the file, which starts an entry
+ * anyway.
+ */
+public class EntryBoundaryFinder {
+	private static final int BLOCK_SIZE = 64 * 1024;
+
+	private final FileChannel channel;
+	private final LogLineDetector logLineDetector;
+	private final ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+	private long blockStart = 0;
+
+	public EntryBoundaryFinder(FileChannel channel, Pattern patternStartOfLogLine) {
+		this.channel = channel;
+		this.logLineDetector = LogLineDetector.forPattern(patternStartOfLogLine);
+		block.limit(0);
+	}
+
+	/**
+	 * @return the position of the first log entry starting at or after the
+	 *         given position, or the size of the file if there is none
+	 */
+	public long nextEntryStart(long position) throws IOException {
+		long size = channel.size();
+		if (position <= 0) {
+			return 0;
+		}
+
+		long lineStart = position;
+		if (position < size && byteAt(position - 1) != '\n') {
+			lineStart = nextLineStart(position, size);
+		}
+
+		while (lineStart < size) {
+			long lineEnd = indexOfNewline(lineStart, size);
+			if (isLogLine(lineStart, lineEnd)) {
+				return lineStart;
+			}
+			lineStart = lineEnd + 1;
+		}
+		return size;
+	}
+
+	private long nextLineStart(long position, long size) throws IOException {
+		return Math.min(indexOfNewline(position, size) + 1, size);
+	}
+
+	/**
+	 * @return the position of the next newline or the size of the file
+	 */
+	private long indexOfNewline(long from, long size) throws IOException {
+		for (long i = from; i < size; i++) {
+			if (byteAt(i) == '\n') {
+				return i;
+			}
+		}
+		return size;
+	}
+
+	private boolean isLogLine(long lineStart, long lineEnd) throws IOException {
+		int length = (int) Math.min(lineEnd - lineStart, MappedFileProcessor.DEFAULT_WINDOW_SIZE);
+		if (length <= BLOCK_SIZE) {
+			if (lineStart < blockStart || lineStart + length > blockStart + block.limit()) {
+				fill(lineStart);
+			}
+			return logLineDetector.isLogLine(block, (int) (lineStart - blockStart), length);
+		} else {
+			return logLineDetector.isLogLine(channel.map(FileChannel.MapMode.READ_ONLY, lineStart, length), 0, length);
+		}
+	}
+
+	private byte byteAt(long position) throws IOException {
+		if (position < blockStart || position >= blockStart + block.limit()) {
+			fill(position);
+		}
+		return block.get((int) (position - blockStart));
+	}
+
+	private void fill(long position) throws IOException {
+		block.clear();
+		blockStart = position;
+		while (block.hasRemaining() && channel.read(block, blockStart + block.position()) > 0) {
+			// Read until the block is full or the end of the file is reached
+		}
+		block.flip();
+	}
+}
@@ -0,0 +1,52 @@
+package logfilefilter.internal.processors;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the {@link EntryOffsetTable}s of the recently filtered files, so
+ * filtering a file again with other patterns does not split it again. A table
+ * is dropped, when its file has changed. Thread safe.
+ */
+public class EntryOffsetCache {
+	public static final int DEFAULT_MAX_FILES = 4;
+
+	private final Map<Path, EntryOffsetTable> tables;
+
+	public EntryOffsetCache() {
+		this(DEFAULT_MAX_FILES);
+	}
+
+	public EntryOffsetCache(int maxFiles) {
+		this.tables = new LinkedHashMap<Path, EntryOffsetTable>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Path, EntryOffsetTable> eldest) {
+				return size() > maxFiles;
+			}
+		};
+	}
+
+	/**
+	 * @return the table of the file, if it is still valid, otherwise
+	 *         <code>null</code>
+	 */
+	public synchronized EntryOffsetTable get(Path file, String datePattern) throws IOException {
+		Path key = file.toAbsolutePath();
+		EntryOffsetTable result = tables.get(key);
+		if (result != null
+				&& !result.isValid(Files.size(file), Files.getLastModifiedTime(file).toMillis(), datePattern)) {
+			tables.remove(key);
+			result = null;
+		}
+		return result;
+	}
+
+	public synchronized void put(Path file, EntryOffsetTable table) {
+		tables.put(file.toAbsolutePath(), table);
+	}
+}
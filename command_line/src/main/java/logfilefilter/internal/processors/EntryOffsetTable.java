@@ -0,0 +1,136 @@
+package logfilefilter.internal.processors;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * The start offsets of all log entries of a file in a <code>long[]</code>. A
+ * file, which has been split into entries once, can be filtered again with
+ * other patterns without searching the entry boundaries again: the entries are
+ * matched in parallel batches directly on the mapped file.
+ * <p>
+ * The table records the size and modification time of the file and the date
+ * pattern it has been built with, see {@link #isValid(long, long, String)}.
+ */
+public class EntryOffsetTable {
+	/** The preferred size of the bytes of the entries of one batch */
+	private static final long BATCH_SIZE = 16L << 20;
+
+	/** The start of each entry followed by the end of the last entry */
+	private final long[] offsets;
+	private final int entryCount;
+	private final long modifiedTime;
+	private final String datePattern;
+
+	private EntryOffsetTable(long[] offsets, int entryCount, long modifiedTime, String datePattern) {
+		this.offsets = offsets;
+		this.entryCount = entryCount;
+		this.modifiedTime = modifiedTime;
+		this.datePattern = datePattern;
+	}
+
+	/**
+	 * Records the entries of a file in the order of the file, e.g. as they are
+	 * split by a {@link MappedFileProcessor} starting at the begin of the file.
+	 */
+	public static class Builder {
+		private long[] offsets = new long[1024];
+		private int entryCount = 0;
+		private long position = 0;
+
+		public void add(ByteSequence logEntry) {
+			if (entryCount + 1 == offsets.length) {
+				offsets = Arrays.copyOf(offsets, offsets.length * 2);
+			}
+			offsets[entryCount++] = position;
+			position += logEntry.length();
+		}
+
+		/**
+		 * @param modifiedTime
+		 *            of the file before it has been split
+		 */
+		public EntryOffsetTable build(long modifiedTime, String datePattern) {
+			offsets[entryCount] = position;
+			return new EntryOffsetTable(Arrays.copyOf(offsets, entryCount + 1), entryCount, modifiedTime,
+					datePattern);
+		}
+	}
+
+	public int getEntryCount() {
+		return entryCount;
+	}
+
+	public long getSize() {
+		return offsets[entryCount];
+	}
+
+	/**
+	 * @return <code>true</code>, if the file is unchanged and is split by the
+	 *         same date pattern
+	 */
+	public boolean isValid(long fileSize, long fileModifiedTime, String filePattern) {
+		return getSize() == fileSize && modifiedTime == fileModifiedTime && datePattern.equals(filePattern);
+	}
+
+	/**
+	 * Filters all entries of the file in batches on the pool.
+	 *
+	 * @param filter
+	 *            applied to each log entry on the threads of the pool, must be
+	 *            thread safe
+	 * @param consumer
+	 *            receives the log entries passing the filter in the order of
+	 *            the file
+	 */
+	public void filter(FileChannel channel, Predicate<? super ByteSequence> filter,
+			Consumer<? super ByteSequence> consumer, ForkJoinPool pool) {
+		List<Integer> batchStarts = new ArrayList<>();
+		for (int entry = 0; entry < entryCount; entry = batchEnd(entry)) {
+			batchStarts.add(entry);
+		}
+		batchStarts.add(entryCount);
+
+		ParallelFileProcessor.executeOrdered(pool, batchStarts.size() - 1,
+				batch -> () -> filterBatch(channel, batchStarts.get(batch), batchStarts.get(batch + 1), filter),
+				consumer);
+	}
+
+	/**
+	 * @return the first entry after the batch starting with the given entry
+	 */
+	private int batchEnd(int firstEntry) {
+		int result = firstEntry + 1;
+		while (result < entryCount && offsets[result + 1] - offsets[firstEntry] <= BATCH_SIZE) {
+			result++;
+		}
+		return result;
+	}
+
+	private List<ByteSequence> filterBatch(FileChannel channel, int firstEntry, int endEntry,
+			Predicate<? super ByteSequence> filter) throws IOException {
+		long start = offsets[firstEntry];
+		long length = offsets[endEntry] - start;
+		if (length > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Log entry at position " + start + " is too large to be mapped");
+		}
+
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+		List<ByteSequence> result = new ArrayList<>();
+		for (int entry = firstEntry; entry < endEntry; entry++) {
+			ByteSequence logEntry = new ByteSequence(buffer, (int) (offsets[entry] - start),
+					(int) (offsets[entry + 1] - offsets[entry]));
+			if (filter.test(logEntry)) {
+				result.add(logEntry);
+			}
+		}
+		return result;
+	}
+}
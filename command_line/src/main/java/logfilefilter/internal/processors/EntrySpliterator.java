@@ -0,0 +1,100 @@
+package logfilefilter.internal.processors;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link Spliterator} over the log entries of a range of a file. It splits
+ * its range at entry boundaries found by an {@link EntryBoundaryFinder}, so
+ * the entries of a file can be processed by a parallel stream. The entries
+ * are {@link ByteSequence} views into the memory mapped file.
+ * <p>
+ * The estimated size is the number of remaining bytes.
+ */
+public class EntrySpliterator implements Spliterator<ByteSequence> {
+	private final FileChannel channel;
+	private final Pattern logLinePattern;
+	private final long minSplitSize;
+	private long position;
+	private long end;
+	/** Created on the first access, so a split does not map the range */
+	private MappedFileProcessor processor = null;
+
+	/**
+	 * @param start
+	 *            must be the begin of a log entry
+	 */
+	public EntrySpliterator(FileChannel channel, long start, long end, Pattern patternStartOfLogLine) {
+		this(channel, start, end, patternStartOfLogLine, ParallelFileProcessor.MIN_CHUNK_SIZE);
+	}
+
+	EntrySpliterator(FileChannel channel, long start, long end, Pattern patternStartOfLogLine, long minSplitSize) {
+		this.channel = channel;
+		this.logLinePattern = patternStartOfLogLine;
+		this.minSplitSize = minSplitSize;
+		this.position = start;
+		this.end = end;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super ByteSequence> action) {
+		ByteSequence logEntry = processor().nextEntry();
+		position = processor.getPosition();
+		if (logEntry == null) {
+			return false;
+		}
+		action.accept(logEntry);
+		return true;
+	}
+
+	@Override
+	public void forEachRemaining(Consumer<? super ByteSequence> action) {
+		MappedFileProcessor entries = processor();
+		for (ByteSequence logEntry = entries.nextEntry(); logEntry != null; logEntry = entries.nextEntry()) {
+			action.accept(logEntry);
+		}
+		position = entries.getPosition();
+	}
+
+	private MappedFileProcessor processor() {
+		if (processor == null) {
+			processor = new MappedFileProcessor(channel, position, end, logLinePattern);
+		}
+		return processor;
+	}
+
+	@Override
+	public Spliterator<ByteSequence> trySplit() {
+		if (end - position < 2 * minSplitSize) {
+			return null;
+		}
+		try {
+			long middle = new EntryBoundaryFinder(channel, logLinePattern).nextEntryStart(position + (end - position) / 2);
+			if (middle <= position || middle >= end) {
+				// No entry starts in the second half
+				return null;
+			}
+
+			Spliterator<ByteSequence> prefix = new EntrySpliterator(channel, position, middle, logLinePattern,
+					minSplitSize);
+			position = middle;
+			processor = null;
+			return prefix;
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public long estimateSize() {
+		return end - position;
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | NONNULL | IMMUTABLE;
+	}
+}
@@ -0,0 +1,228 @@
+package logfilefilter.internal.processors;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Detects the begin of a log entry without a regex, by checking the characters
+ * at fixed positions of the line. It is compiled from patterns like the
+ * default date pattern <code>^[0-9-]{10} [0-9:,]{12}</code> or
+ * <code>^\d{4}-\d{2}-\d{2}T\d{2}:\d{2}:\d{2}[+-]\d{2}:\d{2}</code>, which consist
+ * of a '^' followed by literals, character classes, '.', <code>\d</code>,
+ * <code>\w</code> and <code>\s</code>, each optionally repeated by an exact
+ * <code>{n}</code>.
+ */
+public class FixedWidthLogLineDetector implements LogLineDetector {
+	/** Line terminators outside of ASCII, which are not matched by '.' */
+	private static final char NEXT_LINE = 0x85;
+	private static final char LINE_SEPARATOR = 0x2028;
+	private static final char PARAGRAPH_SEPARATOR = 0x2029;
+
+	/** Per position the allowed ASCII characters as bit set */
+	private final long[] lowBits;
+	private final long[] highBits;
+	/** Per position, whether any character outside of ASCII is allowed */
+	private final boolean[] anyNonAscii;
+
+	private FixedWidthLogLineDetector(List<CharClass> positions) {
+		lowBits = new long[positions.size()];
+		highBits = new long[positions.size()];
+		anyNonAscii = new boolean[positions.size()];
+		for (int i = 0; i < positions.size(); i++) {
+			lowBits[i] = positions.get(i).lowBits;
+			highBits[i] = positions.get(i).highBits;
+			anyNonAscii[i] = positions.get(i).anyNonAscii;
+		}
+	}
+
+	public int getWidth() {
+		return lowBits.length;
+	}
+
+	@Override
+	public boolean isLogLine(CharSequence line) {
+		if (line.length() < lowBits.length) {
+			return false;
+		}
+		for (int i = 0; i < lowBits.length; i++) {
+			if (!matches(i, line.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean isLogLine(ByteBuffer buffer, int offset, int length) {
+		if (length < lowBits.length) {
+			return false;
+		}
+		for (int i = 0; i < lowBits.length; i++) {
+			if (!matches(i, (char) (buffer.get(offset + i) & 0xFF))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean matches(int position, char c) {
+		if (c < 64) {
+			return (lowBits[position] & 1L << c) != 0;
+		} else if (c < 128) {
+			return (highBits[position] & 1L << c) != 0;
+		} else {
+			return anyNonAscii[position] && c != NEXT_LINE && c != LINE_SEPARATOR && c != PARAGRAPH_SEPARATOR;
+		}
+	}
+
+	/**
+	 * @return the detector or <code>null</code>, if the pattern is not a
+	 *         supported fixed width pattern
+	 */
+	public static FixedWidthLogLineDetector compile(Pattern pattern) {
+		String regex = pattern.pattern();
+		if (pattern.flags() != 0 || !regex.startsWith("^")) {
+			return null;
+		}
+
+		List<CharClass> positions = new ArrayList<>();
+		int i = 1;
+		while (i < regex.length()) {
+			CharClass charClass = new CharClass();
+			i = parseAtom(regex, i, charClass);
+			if (i < 0) {
+				return null;
+			}
+
+			int repetitions = 1;
+			if (i < regex.length() && regex.charAt(i) == '{') {
+				int end = regex.indexOf('}', i);
+				String count = end < 0 ? "" : regex.substring(i + 1, end);
+				if (!count.matches("[0-9]{1,4}")) {
+					return null;
+				}
+				repetitions = Integer.parseInt(count);
+				i = end + 1;
+			}
+			for (int r = 0; r < repetitions; r++) {
+				positions.add(charClass);
+			}
+		}
+		return positions.isEmpty() ? null : new FixedWidthLogLineDetector(positions);
+	}
+
+	/**
+	 * @return the index after the atom or -1, if it is not supported
+	 */
+	private static int parseAtom(String regex, int start, CharClass charClass) {
+		char c = regex.charAt(start);
+		if (c == '\\') {
+			return parseEscape(regex, start, charClass) ? start + 2 : -1;
+		} else if (c == '[') {
+			return parseCharacterClass(regex, start, charClass);
+		} else if (c == '.') {
+			charClass.addRange(0, 127);
+			charClass.remove('\n');
+			charClass.remove('\r');
+			charClass.anyNonAscii = true;
+			return start + 1;
+		} else if (c >= 128 || "()|*+?{}$^".indexOf(c) >= 0) {
+			return -1;
+		} else {
+			charClass.add(c);
+			return start + 1;
+		}
+	}
+
+	private static int parseCharacterClass(String regex, int start, CharClass charClass) {
+		int i = start + 1;
+		if (i < regex.length() && (regex.charAt(i) == '^' || regex.charAt(i) == ']')) {
+			return -1;
+		}
+		while (i < regex.length()) {
+			char c = regex.charAt(i);
+			if (c == ']') {
+				return i + 1;
+			} else if (c == '\\') {
+				if (!parseEscape(regex, i, charClass)) {
+					return -1;
+				}
+				i += 2;
+			} else if (c == '[' || c >= 128 || regex.startsWith("&&", i)) {
+				return -1;
+			} else if (i + 2 < regex.length() && regex.charAt(i + 1) == '-' && regex.charAt(i + 2) != ']') {
+				char to = regex.charAt(i + 2);
+				if (to < c || to >= 128 || to == '\\' || to == '[') {
+					return -1;
+				}
+				charClass.addRange(c, to);
+				i += 3;
+			} else {
+				charClass.add(c);
+				i++;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean parseEscape(String regex, int start, CharClass charClass) {
+		if (start + 1 >= regex.length()) {
+			return false;
+		}
+		char escaped = regex.charAt(start + 1);
+		switch (escaped) {
+		case 'd':
+			charClass.addRange('0', '9');
+			return true;
+		case 'w':
+			charClass.addRange('a', 'z');
+			charClass.addRange('A', 'Z');
+			charClass.addRange('0', '9');
+			charClass.add('_');
+			return true;
+		case 's':
+			charClass.add(' ');
+			charClass.addRange('\t', '\r');
+			return true;
+		case 't':
+			charClass.add('\t');
+			return true;
+		default:
+			if (escaped < 128 && !Character.isLetterOrDigit(escaped)) {
+				charClass.add(escaped);
+				return true;
+			}
+			return false;
+		}
+	}
+
+	private static class CharClass {
+		private long lowBits;
+		private long highBits;
+		private boolean anyNonAscii;
+
+		private void add(char c) {
+			if (c < 64) {
+				lowBits |= 1L << c;
+			} else {
+				highBits |= 1L << c;
+			}
+		}
+
+		private void addRange(int from, int to) {
+			for (int c = from; c <= to; c++) {
+				add((char) c);
+			}
+		}
+
+		private void remove(char c) {
+			if (c < 64) {
+				lowBits &= ~(1L << c);
+			} else {
+				highBits &= ~(1L << c);
+			}
+		}
+	}
+}
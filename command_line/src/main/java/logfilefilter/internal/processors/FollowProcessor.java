@@ -0,0 +1,286 @@
+package logfilefilter.internal.processors;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Follows a live log file like <code>tail -F</code>: starting at its current
+ * end, only the appended bytes are read, starting with the next complete
+ * entry. The process waits for changes of the
+ * file with a {@link WatchService} instead of polling it.
+ * <p>
+ * If the file is replaced (rotated, detected by its file key, e.g. the inode)
+ * the rest of the old file is read and the new file is followed from its
+ * begin. If the file is truncated, it is followed from its begin again.
+ * <p>
+ * A log entry is normally complete when the next entry starts. As a live log
+ * may not continue for a long time, a pending entry is also completed when no
+ * data has been appended for the idle flush timeout.
+ */
+public class FollowProcessor {
+	public static final long DEFAULT_IDLE_FLUSH_TIMEOUT = 100;
+	/** The file is checked at least this often, even without any event */
+	private static final long MAX_WAIT_MILLIS = 1000;
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	private final Path file;
+	private final Charset charset;
+	private final LogLineDetector logLineDetector;
+	private long idleFlushTimeoutMillis = DEFAULT_IDLE_FLUSH_TIMEOUT;
+
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+	private byte[] line = new byte[1024];
+	private int lineLength = 0;
+	private boolean skipPartialLine = false;
+	/** The rest of an entry, which started before following the file */
+	private boolean skipUntilEntryStart = false;
+
+	private FileChannel channel = null;
+	private Object fileKey = null;
+	private long position = 0;
+
+	public FollowProcessor(Path file, Charset charset, Pattern patternStartOfLogLine) {
+		this.file = file.toAbsolutePath();
+		this.charset = charset;
+		this.logLineDetector = LogLineDetector.forPattern(patternStartOfLogLine);
+	}
+
+	public void setIdleFlushTimeout(long idleFlushTimeoutMillis) {
+		this.idleFlushTimeoutMillis = idleFlushTimeoutMillis;
+	}
+
+	/**
+	 * Follows the file until the current thread is interrupted.
+	 *
+	 * @param afterEntries
+	 *            is called after new entries have been passed to the
+	 *            consumers, e.g. to flush the output
+	 */
+	public void execute(final List<Consumer<String>> consumerList, Runnable afterEntries) {
+		execute(logEntry -> true, logEntry -> {
+			for (Consumer<String> consumer : consumerList) {
+				consumer.accept(logEntry);
+			}
+		}, afterEntries);
+	}
+
+	/**
+	 * Follows the file until the current thread is interrupted. Lines
+	 * appended after the idle flush of an entry, which do not start a new
+	 * entry, are not filtered on their own: they are passed to the consumer,
+	 * if the flushed entry has passed the filter.
+	 *
+	 * @param afterEntries
+	 *            is called after new entries have been passed to the
+	 *            consumer, e.g. to flush the output
+	 */
+	public void execute(final Predicate<? super String> filter, final Consumer<String> consumer,
+			Runnable afterEntries) {
+		boolean[] lastEntryPassed = { false };
+		LogEntryAssembler assembler = new LogEntryAssembler(logLineDetector, (logEntry, continuation) -> {
+			lastEntryPassed[0] = continuation ? lastEntryPassed[0] : filter.test(logEntry);
+			if (lastEntryPassed[0]) {
+				consumer.accept(logEntry);
+			}
+		});
+
+		try (WatchService watchService = file.getFileSystem().newWatchService()) {
+			file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+			openAtEnd();
+
+			long lastDataNanos = System.nanoTime();
+			while (!Thread.currentThread().isInterrupted()) {
+				if (readAppended(assembler)) {
+					lastDataNanos = System.nanoTime();
+					afterEntries.run();
+				}
+
+				long waitMillis = MAX_WAIT_MILLIS;
+				if (assembler.hasPendingEntry()) {
+					long idleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastDataNanos);
+					if (idleMillis >= idleFlushTimeoutMillis) {
+						assembler.flush();
+						afterEntries.run();
+					} else {
+						waitMillis = idleFlushTimeoutMillis - idleMillis;
+					}
+				}
+
+				waitForChange(watchService, waitMillis);
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			closeChannel();
+			assembler.complete();
+			afterEntries.run();
+		}
+	}
+
+	private void waitForChange(WatchService watchService, long waitMillis) throws InterruptedException {
+		WatchKey key = watchService.poll(waitMillis, TimeUnit.MILLISECONDS);
+		while (key != null) {
+			boolean fileChanged = false;
+			for (WatchEvent<?> event : key.pollEvents()) {
+				fileChanged |= event.kind() == StandardWatchEventKinds.OVERFLOW
+						|| file.getFileName().equals(event.context());
+			}
+			key.reset();
+			// Events of other files in the directory are ignored
+			key = fileChanged ? null : watchService.poll(waitMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void openAtEnd() throws IOException {
+		BasicFileAttributes attributes = readAttributes();
+		if (attributes != null) {
+			open(attributes);
+			position = channel.size();
+			if (position > 0) {
+				// Start with the next complete entry
+				ByteBuffer lastByte = ByteBuffer.allocate(1);
+				channel.read(lastByte, position - 1);
+				skipPartialLine = lastByte.get(0) != '\n';
+				skipUntilEntryStart = true;
+			}
+		}
+	}
+
+	private void open(BasicFileAttributes attributes) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		fileKey = fileKey(attributes);
+		position = 0;
+	}
+
+	/**
+	 * @return <code>true</code>, if any data has been read
+	 */
+	private boolean readAppended(LogEntryAssembler assembler) throws IOException {
+		boolean result = false;
+		BasicFileAttributes attributes = readAttributes();
+
+		if (attributes != null && (channel == null || !Objects.equals(fileKey(attributes), fileKey))) {
+			// The file has been created or replaced by a new one
+			if (channel != null) {
+				result |= readToEnd(assembler);
+				endOfFile(assembler);
+				closeChannel();
+			}
+			open(attributes);
+		} else if (channel != null && channel.size() < position) {
+			// The file has been truncated
+			endOfFile(assembler);
+			position = 0;
+		}
+
+		if (channel != null) {
+			result |= readToEnd(assembler);
+		}
+		return result;
+	}
+
+	private boolean readToEnd(LogEntryAssembler assembler) throws IOException {
+		boolean result = false;
+		long size = channel.size();
+		while (position < size) {
+			readBuffer.clear();
+			int read = channel.read(readBuffer, position);
+			if (read <= 0) {
+				break;
+			}
+			position += read;
+			splitLines(readBuffer.array(), read, assembler);
+			result = true;
+		}
+		return result;
+	}
+
+	private void splitLines(byte[] data, int length, LogEntryAssembler assembler) {
+		for (int i = 0; i < length; i++) {
+			if (data[i] == '\n') {
+				if (skipPartialLine) {
+					skipPartialLine = false;
+					lineLength = 0;
+				} else {
+					completeLine(assembler);
+				}
+			} else {
+				if (lineLength == line.length) {
+					line = Arrays.copyOf(line, line.length * 2);
+				}
+				line[lineLength++] = data[i];
+			}
+		}
+	}
+
+	private void completeLine(LogEntryAssembler assembler) {
+		int length = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+		String completeLine = new String(line, 0, length, charset);
+		lineLength = 0;
+
+		skipUntilEntryStart &= !logLineDetector.isLogLine(completeLine);
+		if (!skipUntilEntryStart) {
+			assembler.acceptLine(completeLine);
+		}
+	}
+
+	/**
+	 * The old file has been rotated or truncated, its last line and entry are
+	 * complete.
+	 */
+	private void endOfFile(LogEntryAssembler assembler) {
+		if (lineLength > 0 && !skipPartialLine) {
+			completeLine(assembler);
+		}
+		lineLength = 0;
+		skipPartialLine = false;
+		skipUntilEntryStart = false;
+		assembler.complete();
+	}
+
+	private BasicFileAttributes readAttributes() throws IOException {
+		try {
+			return Files.readAttributes(file, BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			// Rotated, but not yet created again
+			return null;
+		}
+	}
+
+	private static Object fileKey(BasicFileAttributes attributes) {
+		return attributes.fileKey() != null ? attributes.fileKey() : attributes.creationTime();
+	}
+
+	private void closeChannel() {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// Only read from the file, nothing is lost
+			}
+			channel = null;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package logfilefilter.internal.processors;
+
+/**
+ * Assembles log entries from lines which are pushed into it, e.g. as they are
+ * appended to a live log file. An entry is passed to the consumer as soon as
+ * the next entry starts or when it is flushed explicitly.
+ */
+public class LogEntryAssembler {
+	public interface EntryConsumer {
+		/**
+		 * @param continuation
+		 *            <code>true</code>, if the entry has no first line of its
+		 *            own, but continues the entry flushed before, e.g. with
+		 *            late lines of a stack trace
+		 */
+		void accept(String logEntry, boolean continuation);
+	}
+
+	private final LogLineDetector logLineDetector;
+	private final EntryConsumer consumer;
+	private final StringBuilder pendingEntry = new StringBuilder();
+	private boolean hasPendingEntry = false;
+	private boolean pendingIsContinuation = false;
+	/** Lines following without a first line continue the flushed entry */
+	private boolean flushedEntryContinues = false;
+
+	public LogEntryAssembler(LogLineDetector logLineDetector, EntryConsumer consumer) {
+		this.logLineDetector = logLineDetector;
+		this.consumer = consumer;
+	}
+
+	/**
+	 * @param line
+	 *            a line without line separator
+	 */
+	public void acceptLine(String line) {
+		boolean isLogLine = logLineDetector.isLogLine(line);
+		if (hasPendingEntry && isLogLine) {
+			complete();
+		}
+		if (!hasPendingEntry) {
+			pendingIsContinuation = flushedEntryContinues && !isLogLine;
+		}
+		pendingEntry.append(line).append(StreamProcessor.LINE_SEPARATOR);
+		hasPendingEntry = true;
+	}
+
+	public boolean hasPendingEntry() {
+		return hasPendingEntry;
+	}
+
+	/**
+	 * Passes the pending entry to the consumer, without waiting for the next
+	 * entry. Lines following later without a first line are passed as
+	 * continuation of it.
+	 */
+	public void flush() {
+		if (hasPendingEntry) {
+			complete();
+			flushedEntryContinues = true;
+		}
+	}
+
+	/**
+	 * Passes the pending entry to the consumer, lines following later are
+	 * handled as a new entry, e.g. at the end of a file.
+	 */
+	public void complete() {
+		flushedEntryContinues = false;
+		if (hasPendingEntry) {
+			String logEntry = pendingEntry.toString();
+			pendingEntry.setLength(0);
+			hasPendingEntry = false;
+			consumer.accept(logEntry, pendingIsContinuation);
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package logfilefilter.internal.processors;
+
+import java.nio.ByteBuffer;
+import java.util.regex.Pattern;
+
+/**
+ * Decides whether a line starts a new log entry. A detector may keep state
+ * between calls and must not be shared between threads.
+ */
+public interface LogLineDetector {
+	boolean isLogLine(CharSequence line);
+
+	/**
+	 * Checks the line given as bytes of a buffer, each byte is one char.
+	 */
+	default boolean isLogLine(ByteBuffer buffer, int offset, int length) {
+		return isLogLine(new ByteSequence(buffer, offset, length));
+	}
+
+	/**
+	 * @return a {@link FixedWidthLogLineDetector}, if the pattern only checks
+	 *         the characters at fixed positions of the begin of a line (like
+	 *         most timestamps), otherwise a {@link RegexLogLineDetector}
+	 */
+	static LogLineDetector forPattern(Pattern patternStartOfLogLine) {
+		LogLineDetector result = FixedWidthLogLineDetector.compile(patternStartOfLogLine);
+		return result != null ? result : new RegexLogLineDetector(patternStartOfLogLine);
+	}
+}
@@ -0,0 +1,157 @@
+package logfilefilter.internal.processors;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Splits a range of a file into log entries without decoding it. The file is
+ * memory mapped window by window and the entry boundaries are searched
+ * directly on the bytes. Each entry is passed to the consumers (or returned by
+ * {@link #nextEntry()}) as a {@link ByteSequence} pointing into the mapped
+ * window, so an entry is only copied if a consumer decides to write it.
+ * <p>
+ * The range must start at the begin of a log entry. The first line of the
+ * range always starts a new entry, like the first line of a
+ * {@link StreamProcessor}.
+ */
+public class MappedFileProcessor {
+	/** Mapped windows are limited, because a buffer is indexed by int */
+	public static final long DEFAULT_WINDOW_SIZE = 1L << 30;
+
+	private final FileChannel channel;
+	private final long start;
+	private final long end;
+	private final LogLineDetector logLineDetector;
+	private long windowSize = DEFAULT_WINDOW_SIZE;
+
+	private long position;
+	private MappedByteBuffer window = null;
+	private long windowStart;
+	private int windowLimit;
+
+	public MappedFileProcessor(FileChannel channel, Pattern patternStartOfLogLine) throws IOException {
+		this(channel, 0, channel.size(), patternStartOfLogLine);
+	}
+
+	public MappedFileProcessor(FileChannel channel, long start, long end, Pattern patternStartOfLogLine) {
+		this(channel, start, end, LogLineDetector.forPattern(patternStartOfLogLine));
+	}
+
+	public MappedFileProcessor(FileChannel channel, long start, long end, LogLineDetector logLineDetector) {
+		this.channel = channel;
+		this.start = start;
+		this.end = end;
+		this.logLineDetector = logLineDetector;
+		this.position = start;
+	}
+
+	protected void setWindowSize(long windowSize) {
+		this.windowSize = windowSize;
+	}
+
+	public void execute(final List<Consumer<ByteSequence>> consumerList) {
+		ByteSequence logEntry = nextEntry();
+		while (logEntry != null) {
+			emit(logEntry, consumerList);
+			logEntry = nextEntry();
+		}
+	}
+
+	/**
+	 * @return the position of the next entry, the end of the range after the
+	 *         last entry
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	/**
+	 * @return the next log entry of the range or <code>null</code> at its end.
+	 *         The entry points into the mapped window, it stays valid when the
+	 *         next window is mapped.
+	 */
+	public ByteSequence nextEntry() {
+		try {
+			while (position < end) {
+				if (window == null || position >= windowStart + windowLimit) {
+					mapWindow(position);
+				}
+				ByteSequence logEntry = nextEntryInWindow();
+				if (logEntry != null) {
+					return logEntry;
+				}
+				if (position == windowStart) {
+					throw new IllegalStateException("Log entry at position " + windowStart
+							+ " and its following line exceed the mapped window size of " + windowSize);
+				}
+				// The entry ends in the next window
+				mapWindow(position);
+			}
+			return null;
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void mapWindow(long start) throws IOException {
+		windowStart = start;
+		windowLimit = (int) Math.min(end - windowStart, windowSize);
+		window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLimit);
+	}
+
+	/**
+	 * @return the entry at the position, if it ends inside of the window,
+	 *         otherwise <code>null</code>
+	 */
+	private ByteSequence nextEntryInWindow() {
+		boolean lastWindow = windowStart + windowLimit == end;
+		int entryStart = (int) (position - windowStart);
+		int lineStart = entryStart;
+		while (true) {
+			int newline = indexOfNewline(window, lineStart, windowLimit);
+			if (newline < 0 && !lastWindow) {
+				// The line continues in the next window
+				return null;
+			}
+
+			int lineEnd = newline < 0 ? windowLimit : newline;
+			if (lineStart > entryStart && isLogLine(window, lineStart, lineEnd)) {
+				position = windowStart + lineStart;
+				return new ByteSequence(window, entryStart, lineStart - entryStart);
+			}
+
+			if (newline < 0 || newline + 1 == windowLimit) {
+				if (!lastWindow) {
+					return null;
+				}
+				position = end;
+				return new ByteSequence(window, entryStart, windowLimit - entryStart);
+			}
+			lineStart = newline + 1;
+		}
+	}
+
+	private void emit(ByteSequence logEntry, List<Consumer<ByteSequence>> consumerList) {
+		for (Consumer<ByteSequence> consumer : consumerList) {
+			consumer.accept(logEntry);
+		}
+	}
+
+	protected boolean isLogLine(ByteBuffer buffer, int lineStart, int lineEnd) {
+		return logLineDetector.isLogLine(buffer, lineStart, lineEnd - lineStart);
+	}
+
+	static int indexOfNewline(ByteBuffer buffer, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (buffer.get(i) == '\n') {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,205 @@
+package logfilefilter.internal.processors;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+import logfilefilter.internal.index.TimestampParser;
+
+/**
+ * Merges the entries of several sources (e.g. the logs of several instances
+ * of a service) into one stream ordered by timestamp. Each source is read by
+ * its own thread, which prefetches a bounded number of entries, so the
+ * memory used does not depend on the size of the sources. The heads of the
+ * sources are merged with a heap.
+ * <p>
+ * The entries of each source are expected in the order of their timestamps,
+ * they are never reordered within a source. An entry without a timestamp
+ * keeps the position after the previous entry of its source. Entries with
+ * the same timestamp are ordered by their source.
+ */
+public class MergeProcessor {
+	/** Entries are passed between the threads in batches */
+	static final int BATCH_SIZE = 256;
+	static final int MAX_PENDING_BATCHES = 4;
+
+	/**
+	 * Reads the entries of one source, e.g. with a {@link StreamProcessor}.
+	 * Called on the reader thread of the source.
+	 */
+	public interface EntrySource {
+		void read(Consumer<String> consumer) throws IOException;
+	}
+
+	private static final class TimedEntry {
+		final long timestamp;
+		final String entry;
+
+		TimedEntry(long timestamp, String entry) {
+			this.timestamp = timestamp;
+			this.entry = entry;
+		}
+	}
+
+	/** The read position in the entries of one source */
+	private static final class Cursor {
+		final int source;
+		final BlockingQueue<List<TimedEntry>> batches;
+		final Reader reader;
+		List<TimedEntry> batch;
+		int position;
+
+		Cursor(int source, BlockingQueue<List<TimedEntry>> batches, Reader reader) {
+			this.source = source;
+			this.batches = batches;
+			this.reader = reader;
+		}
+
+		TimedEntry head() {
+			return batch.get(position);
+		}
+
+		/**
+		 * @return <code>false</code> at the end of the source
+		 */
+		boolean advance() throws InterruptedException {
+			if (batch != null && ++position < batch.size()) {
+				return true;
+			}
+			batch = batches.take();
+			position = 0;
+			if (batch.isEmpty()) {
+				reader.rethrowFailure();
+				return false;
+			}
+			return true;
+		}
+	}
+
+	private final class Reader extends Thread {
+		private final EntrySource source;
+		private final BlockingQueue<List<TimedEntry>> batches;
+		private List<TimedEntry> batch = new ArrayList<>(BATCH_SIZE);
+		private long lastTimestamp = Long.MIN_VALUE;
+		private boolean aborted = false;
+		/** A {@link RuntimeException} or an {@link Error} */
+		private volatile Throwable failure = null;
+
+		Reader(int index, EntrySource source, BlockingQueue<List<TimedEntry>> batches) {
+			super("merge-reader-" + index);
+			setDaemon(true);
+			this.source = source;
+			this.batches = batches;
+		}
+
+		@Override
+		public void run() {
+			try {
+				source.read(this::add);
+				if (!batch.isEmpty()) {
+					put(batch);
+				}
+			} catch (IOException e) {
+				failure = new IllegalStateException(e);
+			} catch (RuntimeException | Error e) {
+				// Also e.g. a StackOverflowError of a pattern, the end is still put
+				failure = e;
+			}
+			try {
+				if (!aborted) {
+					// The empty batch marks the end of the source
+					put(Collections.emptyList());
+				}
+			} catch (CancellationException e) {
+				// Nobody waits for the end anymore
+			}
+		}
+
+		private void add(String entry) {
+			long timestamp = timestampParser.parse(entry);
+			if (timestamp != TimestampParser.NO_TIMESTAMP) {
+				lastTimestamp = timestamp;
+			}
+			batch.add(new TimedEntry(lastTimestamp, entry));
+			if (batch.size() == BATCH_SIZE) {
+				put(batch);
+				batch = new ArrayList<>(BATCH_SIZE);
+			}
+		}
+
+		private void put(List<TimedEntry> entries) {
+			try {
+				batches.put(entries);
+			} catch (InterruptedException e) {
+				// The merge ended early, the entries are not needed anymore
+				aborted = true;
+				throw new CancellationException();
+			}
+		}
+
+		void rethrowFailure() {
+			if (failure instanceof Error) {
+				throw (Error) failure;
+			} else if (failure != null) {
+				throw (RuntimeException) failure;
+			}
+		}
+	}
+
+	private final List<EntrySource> sources;
+	private final TimestampParser timestampParser;
+
+	public MergeProcessor(List<EntrySource> sources, TimestampParser timestampParser) {
+		this.sources = sources;
+		this.timestampParser = timestampParser;
+	}
+
+	/**
+	 * @param consumer
+	 *            receives all entries in the order of their timestamps and the
+	 *            index of their source
+	 */
+	public void execute(ObjIntConsumer<String> consumer) {
+		List<Reader> readers = new ArrayList<>();
+		PriorityQueue<Cursor> heap = new PriorityQueue<>(Math.max(sources.size(), 1),
+				Comparator.<Cursor> comparingLong(cursor -> cursor.head().timestamp)
+						.thenComparingInt(cursor -> cursor.source));
+		try {
+			List<Cursor> cursors = new ArrayList<>();
+			for (int i = 0; i < sources.size(); i++) {
+				BlockingQueue<List<TimedEntry>> batches = new ArrayBlockingQueue<>(MAX_PENDING_BATCHES);
+				Reader reader = new Reader(i, sources.get(i), batches);
+				readers.add(reader);
+				cursors.add(new Cursor(i, batches, reader));
+				reader.start();
+			}
+			for (Cursor cursor : cursors) {
+				if (cursor.advance()) {
+					heap.add(cursor);
+				}
+			}
+
+			while (!heap.isEmpty()) {
+				Cursor cursor = heap.poll();
+				consumer.accept(cursor.head().entry, cursor.source);
+				if (cursor.advance()) {
+					heap.add(cursor);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} finally {
+			// Stops the readers, if the merge ended early
+			readers.forEach(Thread::interrupt);
+		}
+	}
+}
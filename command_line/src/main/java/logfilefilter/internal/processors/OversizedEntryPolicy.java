@@ -0,0 +1,19 @@
+package logfilefilter.internal.processors;
+
+/**
+ * How a {@link StreamProcessor} handles a log entry exceeding the maximum entry
+ * size, e.g. a dumped payload or the whole file, if the date pattern does not
+ * match.
+ */
+public enum OversizedEntryPolicy {
+	/** The entry is cut at the maximum size and a marker line is appended */
+	TRUNCATE,
+	/** The entry is split into several entries of at most the maximum size */
+	SPLIT,
+	/**
+	 * The entry is spilled into a temporary file and passed on as view of the
+	 * file, so it is filtered and written completely without being kept in the
+	 * heap
+	 */
+	STREAM
+}
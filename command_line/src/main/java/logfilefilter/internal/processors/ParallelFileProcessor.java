@@ -0,0 +1,129 @@
+package logfilefilter.internal.processors;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Filters a file on several threads. The file is split into chunks, each
+ * chunk boundary is moved forward to the begin of the next log entry, so a
+ * multi-line entry is never split. The chunks are filtered on a
+ * {@link ForkJoinPool} by {@link MappedFileProcessor}s and the matching entries
+ * are passed to the consumer on the calling thread in the order of the file.
+ * The result is the same as filtering the file sequentially.
+ */
+public class ParallelFileProcessor {
+	public static final long MIN_CHUNK_SIZE = 1L << 20;
+	public static final long MAX_CHUNK_SIZE = 64L << 20;
+
+	private final FileChannel channel;
+	private final Pattern logLinePattern;
+	private final ForkJoinPool pool;
+	private long chunkSize;
+
+	public ParallelFileProcessor(FileChannel channel, Pattern patternStartOfLogLine, ForkJoinPool pool)
+			throws IOException {
+		this.channel = channel;
+		this.logLinePattern = patternStartOfLogLine;
+		this.pool = pool;
+		// Several chunks per thread, so a slow chunk does not stall the others
+		long preferredChunkSize = channel.size() / (pool.getParallelism() * 8L);
+		this.chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, preferredChunkSize));
+	}
+
+	protected void setChunkSize(long chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * @param filter
+	 *            applied to each log entry on the threads of the pool, must be
+	 *            thread safe
+	 * @param consumer
+	 *            receives the log entries passing the filter in the order of
+	 *            the file
+	 */
+	public void execute(final Predicate<? super ByteSequence> filter, final Consumer<? super ByteSequence> consumer) {
+		try {
+			List<Long> boundaries = findChunkBoundaries();
+			executeOrdered(pool, boundaries.size() - 1,
+					chunk -> () -> filterChunk(boundaries.get(chunk), boundaries.get(chunk + 1), filter), consumer);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Executes the chunks on the pool and passes their results to the consumer
+	 * on the calling thread, in the order of the chunks.
+	 *
+	 * @param chunks
+	 *            creates the task of the chunk with the given index
+	 */
+	static void executeOrdered(ForkJoinPool pool, int chunkCount, IntFunction<Callable<List<ByteSequence>>> chunks,
+			Consumer<? super ByteSequence> consumer) {
+		// Limit the chunks in progress, the results are kept until they are
+		// passed to the consumer
+		int maxPendingChunks = pool.getParallelism() * 2;
+		Deque<ForkJoinTask<List<ByteSequence>>> pendingChunks = new ArrayDeque<>();
+		for (int i = 0; i < chunkCount; i++) {
+			pendingChunks.add(pool.submit(chunks.apply(i)));
+
+			if (pendingChunks.size() >= maxPendingChunks) {
+				pendingChunks.poll().join().forEach(consumer);
+			}
+		}
+
+		while (!pendingChunks.isEmpty()) {
+			pendingChunks.poll().join().forEach(consumer);
+		}
+	}
+
+	/**
+	 * @return the start positions of all chunks followed by the size of the
+	 *         file
+	 */
+	protected List<Long> findChunkBoundaries() throws IOException {
+		long size = channel.size();
+		EntryBoundaryFinder boundaryFinder = new EntryBoundaryFinder(channel, logLinePattern);
+
+		List<Long> result = new ArrayList<>();
+		result.add(0L);
+		long lastBoundary = 0;
+		for (long position = chunkSize; position < size; position += chunkSize) {
+			if (position > lastBoundary) {
+				lastBoundary = boundaryFinder.nextEntryStart(position);
+				if (lastBoundary == size) {
+					// No further log entry starts in the rest of the file
+					break;
+				}
+				result.add(lastBoundary);
+			}
+		}
+		if (size > 0) {
+			result.add(size);
+		}
+		return result;
+	}
+
+	private List<ByteSequence> filterChunk(long start, long end, Predicate<? super ByteSequence> filter) {
+		List<ByteSequence> result = new ArrayList<>();
+		new MappedFileProcessor(channel, start, end, logLinePattern).execute(Arrays.asList(logEntry -> {
+			if (filter.test(logEntry)) {
+				result.add(logEntry);
+			}
+		}));
+		return result;
+	}
+}
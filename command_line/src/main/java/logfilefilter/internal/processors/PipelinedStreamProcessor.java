@@ -0,0 +1,174 @@
+package logfilefilter.internal.processors;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Filters a stream, which cannot be split into chunks like a file (e.g. the
+ * standard input), on several threads. The stages run concurrently: a thread
+ * assembles the log entries with a {@link StreamProcessor} into batches, the
+ * batches are matched on a {@link ForkJoinPool} and the matching entries are
+ * passed to the consumer on the calling thread in the order of the stream.
+ * <p>
+ * The batches are allocated once and recycled, so the memory used is fixed.
+ * If the consumer or the matching is slower, the assembling thread waits for
+ * a free batch; if the assembling is slower, the consumer waits.
+ */
+public class PipelinedStreamProcessor {
+	public static final int DEFAULT_BATCH_SIZE = 1024;
+	/** A batch is completed earlier, if its entries have this many chars */
+	public static final int MAX_BATCH_CHARS = 1 << 20;
+
+	private static class Batch {
+		private final CharSequence[] entries;
+		private final boolean[] matches;
+		private int size = 0;
+		private long chars = 0;
+		/** The failure of the filter, passed on unchanged by the consumer */
+		private RuntimeException failure = null;
+
+		private Batch(int capacity) {
+			entries = new CharSequence[capacity];
+			matches = new boolean[capacity];
+		}
+
+		private boolean add(CharSequence logEntry) {
+			entries[size++] = logEntry;
+			chars += logEntry.length();
+			return size == entries.length || chars >= MAX_BATCH_CHARS;
+		}
+
+		private Batch match(Predicate<? super CharSequence> filter) {
+			try {
+				for (int i = 0; i < size; i++) {
+					matches[i] = filter.test(entries[i]);
+				}
+			} catch (RuntimeException e) {
+				failure = e;
+			}
+			return this;
+		}
+
+		private void clear() {
+			Arrays.fill(entries, 0, size, null);
+			size = 0;
+			chars = 0;
+		}
+	}
+
+	private static final Future<Batch> END_OF_STREAM = CompletableFuture.completedFuture(null);
+
+	private final StreamProcessor assembler;
+	private final ForkJoinPool pool;
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	/**
+	 * @param assembler
+	 *            assembles the log entries, it must not stream oversized
+	 *            entries, their view is only valid during the call
+	 */
+	public PipelinedStreamProcessor(StreamProcessor assembler, ForkJoinPool pool) {
+		this.assembler = assembler;
+		this.pool = pool;
+	}
+
+	protected void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @param filter
+	 *            applied to each log entry on the threads of the pool, must be
+	 *            thread safe
+	 * @param consumer
+	 *            receives the log entries passing the filter in the order of
+	 *            the stream
+	 */
+	public void execute(final Predicate<? super CharSequence> filter, final Consumer<? super CharSequence> consumer) {
+		// Batches matched on each thread, one assembled and one consumed
+		int batchCount = pool.getParallelism() * 2 + 2;
+		BlockingQueue<Batch> freeBatches = new ArrayBlockingQueue<>(batchCount);
+		for (int i = 0; i < batchCount; i++) {
+			freeBatches.add(new Batch(batchSize));
+		}
+		// In the order of the stream, one more slot, so the end always fits
+		BlockingQueue<Future<Batch>> pendingBatches = new ArrayBlockingQueue<>(batchCount + 1);
+
+		Thread assemblerThread = new Thread(() -> assemble(filter, freeBatches, pendingBatches), "Assemble entries");
+		assemblerThread.setDaemon(true);
+		assemblerThread.start();
+		try {
+			while (true) {
+				Future<Batch> pendingBatch = pendingBatches.take();
+				if (pendingBatch == END_OF_STREAM) {
+					return;
+				}
+				Batch batch = pendingBatch.get();
+				if (batch.failure != null) {
+					throw batch.failure;
+				}
+				for (int i = 0; i < batch.size; i++) {
+					if (batch.matches[i]) {
+						consumer.accept(batch.entries[i]);
+					}
+				}
+				batch.clear();
+				freeBatches.add(batch);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while filtering the stream", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			} else if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			// Stops the assembling, if the consumer failed
+			assemblerThread.interrupt();
+		}
+	}
+
+	private void assemble(Predicate<? super CharSequence> filter, BlockingQueue<Batch> freeBatches,
+			BlockingQueue<Future<Batch>> pendingBatches) {
+		try {
+			Batch[] filling = { freeBatches.take() };
+			assembler.execute(Arrays.asList(logEntry -> {
+				if (filling[0].add(logEntry)) {
+					submit(filling[0], filter, pendingBatches);
+					try {
+						filling[0] = freeBatches.take();
+					} catch (InterruptedException e) {
+						throw new CancellationException();
+					}
+				}
+			}));
+			if (filling[0].size > 0) {
+				submit(filling[0], filter, pendingBatches);
+			}
+			pendingBatches.add(END_OF_STREAM);
+		} catch (InterruptedException | CancellationException e) {
+			// The consumer has stopped
+		} catch (RuntimeException | Error e) {
+			CompletableFuture<Batch> failure = new CompletableFuture<>();
+			failure.completeExceptionally(e);
+			pendingBatches.add(failure);
+		}
+	}
+
+	private void submit(Batch batch, Predicate<? super CharSequence> filter,
+			BlockingQueue<Future<Batch>> pendingBatches) {
+		// Never blocks, there are not more pending batches than batches
+		pendingBatches.add(pool.submit(() -> batch.match(filter)));
+	}
+}
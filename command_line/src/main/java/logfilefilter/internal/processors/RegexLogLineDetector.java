@@ -0,0 +1,82 @@
+package logfilefilter.internal.processors;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Detects the begin of a log entry with a regex. The {@link Matcher} is reused
+ * for all lines. A pattern starting with '^' is only tried at the begin of the
+ * line, unless it has an alternative on the top level (e.g. "^a|b"), which may
+ * match anywhere.
+ */
+public class RegexLogLineDetector implements LogLineDetector {
+	private final Matcher matcher;
+	private final boolean anchored;
+
+	public RegexLogLineDetector(Pattern patternStartOfLogLine) {
+		this.matcher = patternStartOfLogLine.matcher("");
+		this.anchored = patternStartOfLogLine.pattern().startsWith("^")
+				&& (patternStartOfLogLine.flags() & Pattern.MULTILINE) == 0
+				&& !hasTopLevelAlternation(patternStartOfLogLine.pattern());
+	}
+
+	/**
+	 * @return <code>true</code>, if the regex has a '|' outside of groups,
+	 *         character classes, escapes and quotes
+	 */
+	static boolean hasTopLevelAlternation(String regex) {
+		int depth = 0;
+		for (int i = 0; i < regex.length(); i++) {
+			char c = regex.charAt(i);
+			if (c == '\\') {
+				if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') {
+					int end = regex.indexOf("\\E", i + 2);
+					i = end < 0 ? regex.length() : end + 1;
+				} else {
+					i++;
+				}
+			} else if (c == '[') {
+				i = endOfClass(regex, i);
+			} else if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+			} else if (c == '|' && depth == 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the index of the ']' closing the class starting at the given
+	 *         index, classes may be nested
+	 */
+	private static int endOfClass(String regex, int start) {
+		int i = start + 1;
+		if (i < regex.length() && regex.charAt(i) == '^') {
+			i++;
+		}
+		// A ']' at the begin of a class is a literal
+		if (i < regex.length() && regex.charAt(i) == ']') {
+			i++;
+		}
+		for (; i < regex.length(); i++) {
+			char c = regex.charAt(i);
+			if (c == '\\') {
+				i++;
+			} else if (c == '[') {
+				i = endOfClass(regex, i);
+			} else if (c == ']') {
+				return i;
+			}
+		}
+		return regex.length();
+	}
+
+	@Override
+	public boolean isLogLine(CharSequence line) {
+		matcher.reset(line);
+		return anchored ? matcher.lookingAt() : matcher.find();
+	}
+}
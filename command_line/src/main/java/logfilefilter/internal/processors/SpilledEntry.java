@@ -0,0 +1,75 @@
+package logfilefilter.internal.processors;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A log entry, which is too large to be kept in the heap, in a temporary
+ * file. The chars are stored as UTF-16, so the file can be mapped as
+ * {@link CharBuffer} and regular expressions can be applied to it directly.
+ * The file is deleted when the entry is closed.
+ */
+class SpilledEntry implements Closeable {
+	/** A mapped buffer is indexed by int */
+	static final long MAX_LENGTH = Integer.MAX_VALUE / 2;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+	private final CharBuffer chars = buffer.asCharBuffer();
+	private long length = 0;
+
+	SpilledEntry() throws IOException {
+		Path file = Files.createTempFile("logfilefilter", ".entry");
+		this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.DELETE_ON_CLOSE);
+	}
+
+	long length() {
+		return length;
+	}
+
+	/**
+	 * @return the number of chars appended, less than the given ones if the
+	 *         maximum length is reached
+	 */
+	int append(CharSequence text) throws IOException {
+		int count = (int) Math.min(text.length(), MAX_LENGTH - length);
+		for (int i = 0; i < count; i++) {
+			if (!chars.hasRemaining()) {
+				drain();
+			}
+			chars.put(text.charAt(i));
+		}
+		length += count;
+		return count;
+	}
+
+	private void drain() throws IOException {
+		buffer.limit(chars.position() * 2).position(0);
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+		chars.clear();
+	}
+
+	/**
+	 * @return the entry as view of the mapped file, valid until the entry is
+	 *         closed
+	 */
+	CharSequence map() throws IOException {
+		drain();
+		return channel.map(FileChannel.MapMode.READ_ONLY, 0, length * 2).asCharBuffer();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -4,25 +4,74 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.Consumer;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class StreamProcessor {
 	public static final String LINE_SEPARATOR = System.getProperty("line.separator");
 
 	protected BufferedReader input;
-	private Pattern logLinePattern;
+	private LogLineDetector logLineDetector;
 	private String lastReadLine = null;
 
+	private int maxEntrySize = 0;
+	private OversizedEntryPolicy oversizedEntryPolicy = OversizedEntryPolicy.TRUNCATE;
+	private Consumer<CharSequence> oversizedEntryConsumer = null;
+	/** Lines are read in parts of at most the maximum entry size */
+	private final char[] readBuffer = new char[8192];
+	private int readPosition = 0;
+	private int readLimit = 0;
+	/** The last line part ended with a '\r', a following '\n' belongs to it */
+	private boolean skipLineFeed = false;
+	private final StringBuilder linePart = new StringBuilder();
+	private boolean linePartComplete = true;
+	private boolean linePartIsLineStart = true;
+
 	public StreamProcessor(InputStream input, String patternStartOfLogLine) {
-		this.input = new BufferedReader(new InputStreamReader(input));
-		logLinePattern = Pattern.compile(patternStartOfLogLine);
+		this(input, Charset.defaultCharset(), patternStartOfLogLine);
+	}
+
+	public StreamProcessor(InputStream input, Charset charset, String patternStartOfLogLine) {
+		this.input = new BufferedReader(new InputStreamReader(input, charset));
+		logLineDetector = LogLineDetector.forPattern(Pattern.compile(patternStartOfLogLine));
 	}
 
 	protected StreamProcessor(BufferedReader input, Pattern patternStartOfLogLine) {
+		this(input, LogLineDetector.forPattern(patternStartOfLogLine));
+	}
+
+	protected StreamProcessor(BufferedReader input, LogLineDetector logLineDetector) {
 		this.input = input;
-		this.logLinePattern = patternStartOfLogLine;
+		this.logLineDetector = logLineDetector;
+	}
+
+	/**
+	 * Limits the memory used for a log entry. Without a limit, an entry is
+	 * kept in memory completely, however large it is.
+	 *
+	 * @param maxEntrySize
+	 *            the maximal number of chars of an entry, 0 for no limit
+	 */
+	public void setMaxEntrySize(int maxEntrySize, OversizedEntryPolicy oversizedEntryPolicy) {
+		this.maxEntrySize = maxEntrySize;
+		this.oversizedEntryPolicy = oversizedEntryPolicy;
+	}
+
+	/**
+	 * @param oversizedEntryConsumer
+	 *            receives the entries exceeding the maximum entry size with
+	 *            {@link OversizedEntryPolicy#STREAM}. The view is only valid
+	 *            during the call. Without a consumer (e.g. for
+	 *            {@link #entries()}), the entries are truncated.
+	 */
+	public void setOversizedEntryConsumer(Consumer<CharSequence> oversizedEntryConsumer) {
+		this.oversizedEntryConsumer = oversizedEntryConsumer;
 	}
 
 	public void execute(final List<Consumer<String>> consumerList) {
@@ -39,7 +88,32 @@ public class StreamProcessor {
 		}
 	}
 
+	/**
+	 * @return the log entries, they are read while the stream is consumed
+	 */
+	public Stream<String> entries() {
+		return StreamSupport.stream(new Spliterators.AbstractSpliterator<String>(Long.MAX_VALUE,
+				Spliterator.ORDERED | Spliterator.NONNULL) {
+			@Override
+			public boolean tryAdvance(Consumer<? super String> action) {
+				try {
+					String logEntry = getNextLogEntry();
+					if (logEntry == null) {
+						return false;
+					}
+					action.accept(logEntry);
+					return true;
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		}, false);
+	}
+
 	protected String getNextLogEntry() throws IOException {
+		if (maxEntrySize > 0) {
+			return getNextBoundedLogEntry();
+		}
 		StringBuilder result = new StringBuilder();
 
 		if (lastReadLine == null) {
@@ -64,10 +138,128 @@ public class StreamProcessor {
 		}
 	}
 
+	/**
+	 * Like {@link #getNextLogEntry()}, but lines are read in parts, so neither
+	 * a line nor an entry exceeds the maximum entry size in memory.
+	 */
+	private String getNextBoundedLogEntry() throws IOException {
+		if (lastReadLine == null) {
+			lastReadLine = readLinePart();
+		}
+
+		while (lastReadLine != null) {
+			StringBuilder result = new StringBuilder();
+			appendLinePart(result);
+			lastReadLine = readLinePart();
+
+			long truncated = 0;
+			while (lastReadLine != null && !(linePartIsLineStart && isLogLine(lastReadLine))) {
+				int partLength = lastReadLine.length() + (linePartComplete ? LINE_SEPARATOR.length() : 0);
+				if (truncated == 0 && result.length() + partLength <= maxEntrySize) {
+					appendLinePart(result);
+				} else if (oversizedEntryPolicy == OversizedEntryPolicy.SPLIT) {
+					// The part starts the next entry
+					return result.toString();
+				} else if (oversizedEntryPolicy == OversizedEntryPolicy.STREAM && oversizedEntryConsumer != null) {
+					break;
+				} else {
+					if (truncated == 0) {
+						int fitting = Math.max(maxEntrySize - result.length(), 0);
+						result.append(lastReadLine, 0, Math.min(fitting, lastReadLine.length()));
+						partLength -= Math.min(fitting, lastReadLine.length());
+					}
+					truncated += partLength;
+				}
+				lastReadLine = readLinePart();
+			}
+
+			if (lastReadLine == null || linePartIsLineStart && isLogLine(lastReadLine)) {
+				if (truncated > 0) {
+					if (result.length() > 0 && result.charAt(result.length() - 1) != '\n') {
+						// The marker is a line of its own, also if a line is cut
+						result.append(LINE_SEPARATOR);
+					}
+					result.append("[... ").append(truncated).append(" characters truncated]").append(LINE_SEPARATOR);
+				}
+				return result.toString();
+			}
+			streamOversizedEntry(result);
+		}
+		return null;
+	}
+
+	/**
+	 * Passes the entry, which has been read so far, and the rest of it to the
+	 * consumer without keeping it in memory.
+	 */
+	private void streamOversizedEntry(StringBuilder begin) throws IOException {
+		try (SpilledEntry entry = new SpilledEntry()) {
+			entry.append(begin);
+			long truncated = 0;
+			while (lastReadLine != null && !(linePartIsLineStart && isLogLine(lastReadLine))) {
+				truncated += lastReadLine.length() - entry.append(lastReadLine);
+				if (linePartComplete) {
+					truncated += LINE_SEPARATOR.length() - entry.append(LINE_SEPARATOR);
+				}
+				lastReadLine = readLinePart();
+			}
+			if (truncated > 0) {
+				// Only possible beyond the maximal length of a mapped entry
+				throw new IllegalStateException("Log entry exceeds " + SpilledEntry.MAX_LENGTH + " characters");
+			}
+			if (oversizedEntryConsumer != null) {
+				oversizedEntryConsumer.accept(entry.map());
+			}
+		}
+	}
+
+	private void appendLinePart(StringBuilder entry) {
+		entry.append(lastReadLine);
+		if (linePartComplete) {
+			entry.append(LINE_SEPARATOR);
+		}
+	}
+
+	/**
+	 * @return the next part of a line of at most the maximum entry size or
+	 *         <code>null</code> at the end of the stream
+	 */
+	private String readLinePart() throws IOException {
+		linePartIsLineStart = linePartComplete;
+		linePart.setLength(0);
+		while (linePart.length() < maxEntrySize) {
+			if (readPosition == readLimit) {
+				readLimit = Math.max(input.read(readBuffer, 0, readBuffer.length), 0);
+				readPosition = 0;
+				if (readLimit == 0) {
+					linePartComplete = true;
+					return linePart.length() > 0 || !linePartIsLineStart ? linePart.toString() : null;
+				}
+			}
+
+			char c = readBuffer[readPosition++];
+			if (skipLineFeed) {
+				skipLineFeed = false;
+				if (c == '\n') {
+					continue;
+				}
+			}
+			if (c == '\n' || c == '\r') {
+				// Like BufferedReader.readLine(), also a lone '\r' ends a line
+				skipLineFeed = c == '\r';
+				linePartComplete = true;
+				return linePart.toString();
+			}
+			linePart.append(c);
+		}
+		linePartComplete = false;
+		return linePart.toString();
+	}
+
 	protected boolean isLogLine(final String line) {
 		boolean result = false;
 
-		if (line != null && logLinePattern.matcher(line).find()) {
+		if (line != null && logLineDetector.isLogLine(line)) {
 			result = true;
 		}
 
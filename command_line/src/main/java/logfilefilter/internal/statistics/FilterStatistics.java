@@ -0,0 +1,295 @@
+package logfilefilter.internal.statistics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import logfilefilter.internal.filters.FilterPlan;
+
+/**
+ * Counters of a filter run: the amount of data read, split and written, the
+ * matches per pattern and the time spent in each stage. The counters are
+ * striped ({@link LongAdder}), so they can be updated by several threads
+ * without contention.
+ * <p>
+ * The time of a stage is summed over all threads. Reading is only measured
+ * for streams; splitting is the rest of the elapsed time of a sequential run.
+ */
+public class FilterStatistics implements FilterStatisticsMBean, FilterPlan.MatchListener {
+	public static final String OBJECT_NAME = "logfilefilter:type=FilterStatistics";
+
+	private static final AtomicInteger RUNS = new AtomicInteger();
+
+	private final List<String> includePatterns;
+	private final List<String> excludePatterns;
+	private final long startNanos = System.nanoTime();
+	private ObjectName objectName;
+
+	private final LongAdder bytesRead = new LongAdder();
+	private final LongAdder linesRead = new LongAdder();
+	private final LongAdder entries = new LongAdder();
+	private final LongAdder entriesWritten = new LongAdder();
+	private final LongAdder bytesWritten = new LongAdder();
+	private final LongAccumulator largestEntry = new LongAccumulator(Math::max, 0);
+	private final LongAdder[] includeMatches;
+	private final LongAdder[] excludeMatches;
+
+	private final LongAdder readNanos = new LongAdder();
+	private final LongAdder matchNanos = new LongAdder();
+	private final LongAdder writeNanos = new LongAdder();
+
+	public FilterStatistics(List<String> includePatterns, List<String> excludePatterns) {
+		this.includePatterns = includePatterns;
+		this.excludePatterns = excludePatterns;
+		this.includeMatches = newAdders(includePatterns.size());
+		this.excludeMatches = newAdders(excludePatterns.size());
+	}
+
+	private static LongAdder[] newAdders(int count) {
+		LongAdder[] result = new LongAdder[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = new LongAdder();
+		}
+		return result;
+	}
+
+	/**
+	 * @return the stream, which counts the bytes read and the time spent
+	 *         reading them
+	 */
+	public InputStream measureReads(InputStream in) {
+		return new FilterInputStream(in) {
+			@Override
+			public int read() throws IOException {
+				long start = System.nanoTime();
+				int result = super.read();
+				readNanos.add(System.nanoTime() - start);
+				if (result >= 0) {
+					bytesRead.increment();
+				}
+				return result;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				long start = System.nanoTime();
+				int result = super.read(b, off, len);
+				readNanos.add(System.nanoTime() - start);
+				if (result > 0) {
+					bytesRead.add(result);
+				}
+				return result;
+			}
+		};
+	}
+
+	/**
+	 * @param countBytes
+	 *            if <code>true</code>, the entries are the raw bytes of a file
+	 *            read without a stream, so their length is counted as bytes
+	 *            read
+	 * @return the filter, which counts the entries, their lines and the time
+	 *         spent matching them
+	 */
+	public Predicate<CharSequence> measureEntries(Predicate<CharSequence> entryFilter, boolean countBytes) {
+		return logEntry -> {
+			int length = logEntry.length();
+			if (countBytes) {
+				bytesRead.add(length);
+			}
+			entries.increment();
+			linesRead.add(countLines(logEntry, length));
+			largestEntry.accumulate(length);
+
+			long start = System.nanoTime();
+			boolean result = entryFilter.test(logEntry);
+			matchNanos.add(System.nanoTime() - start);
+			return result;
+		};
+	}
+
+	private static int countLines(CharSequence logEntry, int length) {
+		int result = 0;
+		for (int i = 0; i < length; i++) {
+			if (logEntry.charAt(i) == '\n') {
+				result++;
+			}
+		}
+		return length > 0 && logEntry.charAt(length - 1) != '\n' ? result + 1 : result;
+	}
+
+	public void addWritten(long length, long nanos) {
+		entriesWritten.increment();
+		bytesWritten.add(length);
+		writeNanos.add(nanos);
+	}
+
+	@Override
+	public void includeMatched(int includeIndex) {
+		includeMatches[includeIndex].increment();
+	}
+
+	@Override
+	public void excludeMatched(int excludeIndex) {
+		excludeMatches[excludeIndex].increment();
+	}
+
+	@Override
+	public long getBytesRead() {
+		return bytesRead.sum();
+	}
+
+	@Override
+	public long getLinesRead() {
+		return linesRead.sum();
+	}
+
+	@Override
+	public long getEntries() {
+		return entries.sum();
+	}
+
+	@Override
+	public long getEntriesWritten() {
+		return entriesWritten.sum();
+	}
+
+	@Override
+	public long getBytesWritten() {
+		return bytesWritten.sum();
+	}
+
+	@Override
+	public long getLargestEntry() {
+		return largestEntry.get();
+	}
+
+	@Override
+	public long[] getIncludeMatches() {
+		return sums(includeMatches);
+	}
+
+	@Override
+	public long[] getExcludeMatches() {
+		return sums(excludeMatches);
+	}
+
+	private static long[] sums(LongAdder[] adders) {
+		long[] result = new long[adders.length];
+		for (int i = 0; i < adders.length; i++) {
+			result[i] = adders[i].sum();
+		}
+		return result;
+	}
+
+	@Override
+	public long getReadMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(readNanos.sum());
+	}
+
+	@Override
+	public long getMatchMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(matchNanos.sum());
+	}
+
+	@Override
+	public long getWriteMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(writeNanos.sum());
+	}
+
+	@Override
+	public long getElapsedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * @return one line about the progress, for periodic output
+	 */
+	public String toProgressLine() {
+		long elapsedMillis = Math.max(getElapsedMillis(), 1);
+		return String.format("%,d MB read, %,d entries, %,d written, %.1f MB/s", getBytesRead() >> 20,
+				getEntries(), getEntriesWritten(), getBytesRead() / 1048.576 / elapsedMillis);
+	}
+
+	/**
+	 * @return the summary of a finished run
+	 */
+	public String toReport() {
+		long elapsedMillis = Math.max(getElapsedMillis(), 1);
+		long splitMillis = Math.max(elapsedMillis - getReadMillis() - getMatchMillis() - getWriteMillis(), 0);
+		long entryCount = getEntries();
+
+		StringBuilder result = new StringBuilder("Statistics:\n");
+		result.append(String.format("  Bytes read:      %,15d%n", getBytesRead()));
+		result.append(String.format("  Lines read:      %,15d%n", getLinesRead()));
+		result.append(String.format("  Entries:         %,15d%n", entryCount));
+		result.append(String.format("  Entries written: %,15d (%.2f %%)%n", getEntriesWritten(),
+				entryCount > 0 ? getEntriesWritten() * 100.0 / entryCount : 0.0));
+		result.append(String.format("  Bytes written:   %,15d%n", getBytesWritten()));
+		result.append(String.format("  Largest entry:   %,15d%n", getLargestEntry()));
+		appendMatches(result, "Include", includePatterns, getIncludeMatches());
+		appendMatches(result, "Exclude", excludePatterns, getExcludeMatches());
+		result.append(String.format("  Time reading:    %,12d ms%n", getReadMillis()));
+		result.append(String.format("  Time splitting:  %,12d ms%n", splitMillis));
+		result.append(String.format("  Time matching:   %,12d ms%n", getMatchMillis()));
+		result.append(String.format("  Time writing:    %,12d ms%n", getWriteMillis()));
+		result.append(String.format("  Elapsed:         %,12d ms (%.1f MB/s, %,d entries/s)%n", elapsedMillis,
+				getBytesRead() / 1048.576 / elapsedMillis, entryCount * 1000 / elapsedMillis));
+		return result.toString();
+	}
+
+	private static void appendMatches(StringBuilder result, String kind, List<String> patterns, long[] matches) {
+		for (int i = 0; i < matches.length; i++) {
+			result.append(String.format("  %s %,15d  %s%n", kind, matches[i], patterns.get(i)));
+		}
+	}
+
+	/**
+	 * Publishes the statistics as MBean {@link #OBJECT_NAME} of the platform
+	 * MBean server. Each run gets its own <code>name</code> key property, so
+	 * concurrent runs do not replace each other's MBean.
+	 */
+	public synchronized void register() {
+		try {
+			if (objectName == null) {
+				objectName = new ObjectName(OBJECT_NAME + ",name=run-" + RUNS.incrementAndGet());
+			}
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		} catch (JMException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public synchronized void unregister() {
+		if (objectName == null) {
+			return;
+		}
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+		} catch (JMException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return the name {@link #register()} published the MBean under, or
+	 *         <code>null</code> if it was not registered
+	 */
+	public synchronized ObjectName getObjectName() {
+		return objectName;
+	}
+}
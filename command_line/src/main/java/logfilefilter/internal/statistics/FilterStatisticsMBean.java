@@ -0,0 +1,33 @@
+package logfilefilter.internal.statistics;
+
+/**
+ * The attributes of the {@link FilterStatistics} of a running filter, which
+ * are published by JMX.
+ */
+public interface FilterStatisticsMBean {
+	long getBytesRead();
+
+	long getLinesRead();
+
+	long getEntries();
+
+	long getEntriesWritten();
+
+	long getBytesWritten();
+
+	long getLargestEntry();
+
+	/** The entries, which matched the include pattern of the same index */
+	long[] getIncludeMatches();
+
+	/** The entries, which were rejected by the exclude pattern of the same index */
+	long[] getExcludeMatches();
+
+	long getReadMillis();
+
+	long getMatchMillis();
+
+	long getWriteMillis();
+
+	long getElapsedMillis();
+}
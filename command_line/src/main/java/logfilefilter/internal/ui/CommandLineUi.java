@@ -1,54 +1,457 @@
 package logfilefilter.internal.ui;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
 import logfilefilter.JavaLogFileFilter;
+import logfilefilter.internal.aggregation.HistogramColumns;
+import logfilefilter.internal.cache.ResultCache;
+import logfilefilter.internal.daemon.FilterClient;
+import logfilefilter.internal.daemon.FilterDaemon;
+import logfilefilter.internal.filters.HeaderLayout;
+import logfilefilter.internal.filters.RegexEngine;
+import logfilefilter.internal.output.FlushPolicy;
+import logfilefilter.internal.processors.OversizedEntryPolicy;
+import logfilefilter.internal.statistics.FilterStatistics;
 
 public class CommandLineUi {
-	private final JavaLogFileFilter processor = new JavaLogFileFilter();
+	private JavaLogFileFilter processor = new JavaLogFileFilter();
+	/** The directory relative paths are resolved against, null for the current one */
+	private Path workingDirectory = null;
+
+	/**
+	 * Used by the {@link FilterDaemon} to execute the command line of a client
+	 * in the working directory of the client.
+	 */
+	public static CommandLineUi of(JavaLogFileFilter processor, Path workingDirectory) {
+		CommandLineUi result = new CommandLineUi();
+		result.processor = processor;
+		result.workingDirectory = workingDirectory;
+		return result;
+	}
 
 	public void parseCommandLineParameters(String[] args) {
 		String errorMessage = "No parameters defined";
 		boolean invalidParameters = args.length == 0;
+		String resultCacheDirectory = null;
+		long resultCacheSize = ResultCache.DEFAULT_SIZE_BUDGET;
 
 		for (int i = 0; i < args.length; i++) {
 			switch (args[i]) {
 			case "-i":
-				processor.setIncludePattern(args[++i]);
+				processor.addIncludePattern(args[++i]);
 				break;
 			case "-e":
-				processor.setExcludePattern(args[++i]);
+				processor.addExcludePattern(args[++i]);
+				break;
+			case "-I":
+				addPatternFile(processor::addIncludePatternFile, resolve(args[++i]));
+				break;
+			case "-E":
+				addPatternFile(processor::addExcludePatternFile, resolve(args[++i]));
 				break;
 			case "-d":
 				processor.setDatePattern(args[++i]);
 				break;
 			case "-f":
-				processor.setSourceFilePath(args[++i]);
+				// Several files, e.g. expanded by the shell from a glob
+				processor.addSourceFilePath(resolve(args[++i]));
+				while (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+					processor.addSourceFilePath(resolve(args[++i]));
+				}
 				break;
 			case "-t":
-				processor.setTargetFilePath(args[++i]);
+				processor.setTargetFilePath(resolve(args[++i]));
+				break;
+			case "-m":
+				processor.setMemoryMapped(true);
+				break;
+			case "-p":
+				processor.setParallel(true);
+				break;
+			case "--input-charset":
+				processor.setInputCharset(toCharset(args[++i]));
+				break;
+			case "--output-charset":
+				processor.setOutputCharset(toCharset(args[++i]));
+				break;
+			case "--raw":
+				processor.setRaw(true);
+				break;
+			case "--rotate-size":
+				processor.setRotateSize(toCount(args[++i]) * (1L << 20));
+				break;
+			case "--flush":
+				setFlushPolicy(args[++i]);
+				break;
+			case "--gather":
+				processor.setGatherWrites(true);
+				break;
+			case "--time-format":
+				processor.setTimeFormat(args[++i]);
+				break;
+			case "--from":
+				processor.setFrom(args[++i]);
+				break;
+			case "--to":
+				processor.setTo(args[++i]);
+				break;
+			case "--layout":
+				processor.setHeaderLayout(args[++i]);
+				break;
+			case "--level":
+				processor.addLevelCondition(args[++i]);
+				break;
+			case "--logger":
+				processor.addLogger(args[++i]);
+				break;
+			case "--thread":
+				processor.addThreadPattern(args[++i]);
+				break;
+			case "--message":
+				processor.addMessagePattern(args[++i]);
+				break;
+			case "--index":
+				processor.setIndex(true);
+				break;
+			case "--build-index":
+				processor.setBuildTrigramIndex(true);
+				break;
+			case "--stats":
+				processor.setStatisticsReport(true);
+				break;
+			case "--progress":
+				processor.setProgressInterval(toMillis(args[++i]));
+				break;
+			case "--jmx":
+				processor.setJmx(true);
+				break;
+			case "-F":
+				processor.setFollow(true);
+				break;
+			case "--idle-flush":
+				processor.setIdleFlushTimeout(toMillis(args[++i]));
+				break;
+			case "--max-entry-size":
+				processor.setMaxEntrySize(toEntrySize(args[++i]));
+				break;
+			case "--result-cache":
+				resultCacheDirectory = resolve(args[++i]);
+				break;
+			case "--result-cache-size":
+				resultCacheSize = toCount(args[++i]) * (1L << 20);
+				break;
+			case "--merge":
+				processor.setMerge(true);
+				break;
+			case "--tag":
+				processor.setMergeTag(true);
+				break;
+			case "--regex-engine":
+				processor.setRegexEngine(toRegexEngine(args[++i]));
+				break;
+			case "--match-budget":
+				processor.setMatchBudget(toMillis(args[++i]));
+				break;
+			case "--batch":
+				processor.setBatch(true);
+				break;
+			case "--jobs":
+				processor.setBatchJobs(toCount(args[++i]));
+				break;
+			case "--cpu-limit":
+				processor.setBatchCpuLimit(toCount(args[++i]));
+				break;
+			case "--io-limit":
+				processor.setBatchIoLimit(toCount(args[++i]));
+				break;
+			case "--histogram":
+				processor.setHistogram(toGranularity(args[++i]));
+				break;
+			case "--histogram-by":
+				processor.setHistogramColumns(toHistogramColumns(args[++i]));
+				break;
+			case "--csv":
+				processor.setHistogramCsv(true);
+				break;
+			case "--aggregate":
+				processor.setAggregate(true);
+				break;
+			case "--aggregate-frames":
+				processor.setAggregateFrames(toCount(args[++i]));
+				break;
+			case "--oversized":
+				processor.setOversizedEntryPolicy(toOversizedEntryPolicy(args[++i]));
 				break;
 			default:
+				if (args[i].startsWith("--level")) {
+					// The comparison attached, e.g. "--level>=WARN"
+					processor.addLevelCondition(args[i].substring("--level".length()));
+					break;
+				}
 				invalidParameters = true;
 				errorMessage = "Parameter '" + args[i] + "' is unknown.";
 				break;
 			}
 		}
 
+		if (resultCacheDirectory != null) {
+			processor.setResultCache(new ResultCache(Paths.get(resultCacheDirectory), resultCacheSize));
+		}
+
 		if (invalidParameters) {
 			throw new IllegalArgumentException(errorMessage + "\n" //
 					+ "The following parameters can be used:\n" //
-					+ "  -i  Include regex pattern\n" //
-					+ "  -e  Exclude regex pattern\n" //
+					+ "  -i  Include regex pattern, can be repeated\n" //
+					+ "  -e  Exclude regex pattern, can be repeated\n" //
+					+ "  -I  File with one include regex pattern per line\n" //
+					+ "  -E  File with one exclude regex pattern per line\n" //
 					+ "  -d  Date pattern used to identify the begin of a log entry\n" //
-					+ "  -f  Source file\n" //
-					+ "  -t  Target file, to write the resulting logs");
+					+ "  -f  Source files or glob patterns, gzip files are decompressed\n" //
+					+ "  -t  Target file, to write the resulting logs, compressed on all cores if it is *.gz\n" //
+					+ "  -m  Memory map the source file and filter its raw bytes\n" //
+					+ "  -p  Filter on all cores: files in chunks (implies -m), stdin and gzip in a pipeline\n" //
+					+ "  --input-charset   Charset of the source, default is the platform charset\n" //
+					+ "  --output-charset  Charset of the target, default is the input charset\n" //
+					+ "  --raw             Write the bytes of the source unchanged, never re-encode them\n" //
+					+ "  --rotate-size     Start a new numbered target file after this many MB (uncompressed)\n" //
+					+ "  --flush           When to flush the output: 'buffer' (default), 'entry' or an interval in ms\n" //
+					+ "  --gather          Write memory mapped entries to the target file without copying them\n" //
+					+ "  --time-format     Format of the timestamp found by -d, default 'yyyy-MM-dd HH:mm:ss,SSS'\n" //
+					+ "  --from            Only entries at or after this time, e.g. '2016-04-27 14:30'\n" //
+					+ "  --to              Only entries before this time\n" //
+					+ "  --layout          Layout of the first line, e.g. '%d %p [%t] %c - %m', or a preset:\n" //
+					+ "                    " + String.join(", ", HeaderLayout.PRESETS.keySet()) + ", default '"
+					+ HeaderLayout.DEFAULT_PRESET + "'\n" //
+					+ "  --level>=WARN     Only entries with this level, also with <=, <, > and =, can be repeated\n" //
+					+ "  --logger          Only entries of this logger or its child loggers, can be repeated\n" //
+					+ "  --thread          Only entries with a thread matching this regex pattern, can be repeated\n" //
+					+ "  --message         Only entries with a first line message matching this regex pattern\n" //
+					+ "  --index           Create or update the sidecar index (.lfidx) used by --from/--to\n" //
+					+ "  --build-index     Create or update the sidecar trigram index (.lftri) used by -i searches\n" //
+					+ "  --stats           Print statistics of data, matches and time per stage to stderr\n" //
+					+ "  --progress        Print a progress line to stderr in this interval in ms\n" //
+					+ "  --jmx             Publish the statistics as MBean '" + FilterStatistics.OBJECT_NAME + ",name=run-<n>'\n" //
+					+ "  -F                Follow the source file like 'tail -F', also across rotations\n" //
+					+ "  --idle-flush      Follow mode: write the last entry after this idle time in ms, default 100\n" //
+					+ "  --max-entry-size  Maximal number of characters of an entry kept in memory (stream processing)\n" //
+					+ "  --oversized       Larger entries: 'truncate' (default), 'split' or 'stream' via a temporary file\n" //
+					+ "  --result-cache    Directory caching the matches of queries on files not modified anymore\n" //
+					+ "  --result-cache-size  Size budget of the result cache in MB, default 256\n" //
+					+ "  --merge           Merge the entries of all source files ordered by their timestamps\n" //
+					+ "  --tag             Merge or batch mode: prefix each entry with the file name of its source\n" //
+					+ "  --batch           Filter the source files (or directories) concurrently, -t may be a directory\n" //
+					+ "  --jobs            Batch mode: number of files filtered at the same time, default 2 x cores\n" //
+					+ "  --cpu-limit       Batch mode: number of files matched at the same time, default cores\n" //
+					+ "  --io-limit        Batch mode: number of files read at the same time, default "
+					+ JavaLogFileFilter.DEFAULT_BATCH_IO_LIMIT + "\n" //
+					+ "  --regex-engine    'java' (default) or 'linear', which never backtracks and falls back to java\n" //
+					+ "  --match-budget    Time in ms java regex patterns may take per entry, else they do not match\n" //
+					+ "  --histogram       Count the entries per time bucket of this size, e.g. '10s', '1m', '1h' or ms\n" //
+					+ "  --histogram-by    Histogram columns: 'level' (default, see --layout) or 'pattern' (-i)\n" //
+					+ "  --csv             Write the histogram as CSV instead of a table\n" //
+					+ "  --aggregate       Write a summary of the distinct matching entries and their number\n" //
+					+ "  --aggregate-frames  Number of top stack frames distinguishing entries, default 5\n" //
+					+ "Or as first parameters:\n" //
+					+ "  --daemon          Keep running and answer the filter requests of clients\n" //
+					+ "  --workers         Daemon: number of requests filtered at the same time, default cores\n" //
+					+ "  --client          Send the following parameters to the daemon, or filter locally\n" //
+					+ "  --daemon-file     Daemon or client: the state file, default '"
+					+ FilterDaemon.DEFAULT_STATE_FILE + "'");
+		}
+	}
+
+	/**
+	 * @return the path resolved against the working directory, it may be a
+	 *         glob pattern
+	 */
+	private String resolve(String path) {
+		if (workingDirectory == null || new File(path).isAbsolute()) {
+			return path;
+		}
+		return new File(workingDirectory.toFile(), path).getPath();
+	}
+
+	private interface PatternFileConsumer {
+		void accept(String patternFilePath) throws IOException;
+	}
+
+	private void addPatternFile(PatternFileConsumer consumer, String patternFilePath) {
+		try {
+			consumer.accept(patternFilePath);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Pattern file '" + patternFilePath + "' cannot be read.", e);
+		}
+	}
+
+	private Charset toCharset(String charsetName) {
+		try {
+			return Charset.forName(charsetName);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Charset '" + charsetName + "' is not supported.", e);
+		}
+	}
+
+	private long toMillis(String millis) {
+		try {
+			return Long.parseLong(millis);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("'" + millis + "' is no time in milliseconds.", e);
+		}
+	}
+
+	private int toEntrySize(String size) {
+		try {
+			return Integer.parseInt(size);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("'" + size + "' is no entry size in characters.", e);
+		}
+	}
+
+	private int toCount(String count) {
+		try {
+			return Integer.parseInt(count);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("'" + count + "' is no number.", e);
+		}
+	}
+
+	private RegexEngine toRegexEngine(String engine) {
+		try {
+			return RegexEngine.valueOf(engine.toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Regex engine '" + engine + "' is unknown.", e);
+		}
+	}
+
+	/**
+	 * @return the milliseconds of a duration like "500ms", "10s", "1m", "1h"
+	 *         or "1d", without unit in milliseconds
+	 */
+	private long toGranularity(String granularity) {
+		String[] units = { "ms", "s", "m", "h", "d" };
+		TimeUnit[] timeUnits = { TimeUnit.MILLISECONDS, TimeUnit.SECONDS, TimeUnit.MINUTES, TimeUnit.HOURS,
+				TimeUnit.DAYS };
+		for (int i = 0; i < units.length; i++) {
+			if (granularity.endsWith(units[i])) {
+				String amount = granularity.substring(0, granularity.length() - units[i].length());
+				try {
+					return timeUnits[i].toMillis(Long.parseLong(amount));
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("'" + granularity + "' is no duration.", e);
+				}
+			}
+		}
+		return toMillis(granularity);
+	}
+
+	private HistogramColumns toHistogramColumns(String columns) {
+		try {
+			return HistogramColumns.valueOf(columns.toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Histogram columns '" + columns + "' are unknown.", e);
+		}
+	}
+
+	private OversizedEntryPolicy toOversizedEntryPolicy(String policy) {
+		try {
+			return OversizedEntryPolicy.valueOf(policy.toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Oversized entry policy '" + policy + "' is unknown.", e);
+		}
+	}
+
+	private void setFlushPolicy(String flushPolicy) {
+		switch (flushPolicy) {
+		case "buffer":
+			processor.setFlushPolicy(FlushPolicy.BUFFER, 0);
+			break;
+		case "entry":
+			processor.setFlushPolicy(FlushPolicy.ENTRY, 0);
+			break;
+		default:
+			try {
+				processor.setFlushPolicy(FlushPolicy.INTERVAL, Long.parseLong(flushPolicy));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Flush policy '" + flushPolicy + "' is unknown.", e);
+			}
+			break;
 		}
 	}
 
 	public void execute(String[] args) throws Exception {
+		if (args.length > 0 && args[0].equals("--daemon")) {
+			runDaemon(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length > 0 && args[0].equals("--client")) {
+			runClient(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		executeFilter(args);
+	}
+
+	/**
+	 * Executes the filter parameters only, without starting a daemon or a
+	 * client, e.g. for the request of a client.
+	 */
+	public void executeFilter(String[] args) throws Exception {
 		parseCommandLineParameters(args);
 		processor.execute();
 	}
 
+	private void runDaemon(String[] args) throws IOException {
+		Path stateFile = FilterDaemon.DEFAULT_STATE_FILE;
+		int workers = Runtime.getRuntime().availableProcessors();
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "--daemon-file":
+				stateFile = Paths.get(resolve(args[++i]));
+				break;
+			case "--workers":
+				workers = toCount(args[++i]);
+				break;
+			default:
+				throw new IllegalArgumentException("Parameter '" + args[i] + "' is unknown for the daemon.");
+			}
+		}
+		FilterDaemon daemon = new FilterDaemon(stateFile, workers);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				daemon.close();
+			} catch (IOException e) {
+				// Exiting anyway
+			}
+		}));
+		System.err.println("Filter daemon listening on port " + daemon.getPort() + ", state file " + stateFile);
+		daemon.run();
+	}
+
+	/**
+	 * Sends the command line to the daemon, or executes it locally if no
+	 * daemon runs or the standard input is filtered.
+	 */
+	private void runClient(String[] args) throws Exception {
+		Path stateFile = FilterDaemon.DEFAULT_STATE_FILE;
+		int first = 0;
+		if (args.length > 1 && args[0].equals("--daemon-file")) {
+			stateFile = Paths.get(resolve(args[1]));
+			first = 2;
+		}
+		String[] filterArgs = Arrays.copyOfRange(args, first, args.length);
+		Path directory = workingDirectory != null ? workingDirectory : Paths.get("");
+		if (!Arrays.asList(filterArgs).contains("-f")
+				|| !FilterClient.execute(stateFile, directory, filterArgs, System.out, System.err)) {
+			executeFilter(filterArgs);
+		}
+	}
+
 	public static void main(String[] args) {
 		CommandLineUi clUi = new CommandLineUi();
 		try {
@@ -0,0 +1,444 @@
+package logfilefilter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.Assert;
+import logfilefilter.internal.aggregation.HistogramColumns;
+import logfilefilter.internal.cache.ResultCache;
+import logfilefilter.internal.filters.FilterPlanCache;
+import logfilefilter.internal.filters.RegexEngine;
+import logfilefilter.internal.index.TrigramIndex;
+
+public class JavaLogFileFilterTest {
+	private static final String SIMPLE_LOG_FILE = "./src/test/resources/testLogs/simple_test.logfile";
+
+	private Path target;
+	private final JavaLogFileFilter filter = new JavaLogFileFilter();
+
+	@Before
+	public void setUp() throws Exception {
+		target = Files.createTempFile("JavaLogFileFilterTest", ".log");
+		filter.setSourceFilePath(SIMPLE_LOG_FILE);
+		filter.setTargetFilePath(target.toString());
+		filter.addIncludePattern("ERROR");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.delete(target);
+	}
+
+	@Test
+	public void testEntryObserverSeesWrittenEntries() throws Exception {
+		List<String> observed = new ArrayList<>();
+		filter.setEntryObserver(observed::add);
+		filter.setMemoryMapped(true);
+		filter.execute();
+
+		Assert.assertEquals(2, observed.size());
+		Assert.assertTrue(observed.get(0).startsWith("2016-04-27 14:38:44,400 ERROR An Exception occurred"));
+		Assert.assertEquals(new String(Files.readAllBytes(target)), String.join("", observed) + System.lineSeparator());
+	}
+
+	@Test
+	public void testRecordStatistics() throws Exception {
+		filter.setRecordStatistics(true);
+		filter.execute();
+		Assert.assertEquals(3, filter.getStatistics().getEntries());
+		Assert.assertEquals(2, filter.getStatistics().getEntriesWritten());
+	}
+
+	@Test(expected = CancellationException.class)
+	public void testCancel() throws Exception {
+		filter.cancel();
+		filter.execute();
+	}
+
+	@Test
+	public void testMergeTagged() throws Exception {
+		Path second = Files.createTempFile("JavaLogFileFilterTest", ".log");
+		try {
+			Files.write(second, "2016-04-27 14:38:44,000 ERROR first of the second file\n".getBytes());
+			filter.addSourceFilePath(second.toString());
+			filter.setMerge(true);
+			filter.setMergeTag(true);
+			filter.execute();
+
+			List<String> lines = Files.readAllLines(target);
+			Assert.assertEquals("[" + second.getFileName() + "] 2016-04-27 14:38:44,000 ERROR first of the second file",
+					lines.get(0));
+			Assert.assertTrue(lines.get(1).startsWith("[simple_test.logfile] 2016-04-27 14:38:44,400 ERROR"));
+		} finally {
+			Files.delete(second);
+		}
+	}
+
+	@Test
+	public void testBatchIntoDirectory() throws Exception {
+		filter.execute();
+		byte[] expected = Files.readAllBytes(target);
+
+		Path directory = Files.createTempDirectory("JavaLogFileFilterTest");
+		Path sources = Files.createDirectories(directory.resolve("sources/sub"));
+		Files.copy(Paths.get(SIMPLE_LOG_FILE), sources.resolveSibling("first.log"));
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(sources.resolve("second.log.gz")))) {
+			Files.copy(Paths.get(SIMPLE_LOG_FILE), out);
+		}
+		Path targets = Files.createDirectory(directory.resolve("targets"));
+		try {
+			filter.setSourceFilePath(sources.getParent().toString());
+			filter.setTargetFilePath(targets.toString());
+			filter.setBatch(true);
+			filter.setBatchJobs(2);
+			filter.setBatchCpuLimit(1);
+			filter.setBatchIoLimit(1);
+			filter.execute();
+
+			Assert.assertEquals(new String(expected), new String(Files.readAllBytes(targets.resolve("first.log"))));
+			Assert.assertEquals(new String(expected),
+					new String(Files.readAllBytes(targets.resolve("sub/second.log"))));
+		} finally {
+			try (Stream<Path> files = Files.walk(directory)) {
+				files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+			}
+		}
+	}
+
+	@Test
+	public void testBatchCombinedTagged() throws Exception {
+		filter.addSourceFilePath(SIMPLE_LOG_FILE);
+		filter.setBatch(true);
+		filter.setMergeTag(true);
+		filter.execute();
+
+		// Both matching entries of both sources, each tagged with its source
+		List<String> lines = Files.readAllLines(target);
+		Assert.assertEquals(4, lines.stream().filter(line -> line.startsWith("[simple_test.logfile] 2016")).count());
+		Assert.assertFalse(lines.stream().anyMatch(line -> line.startsWith("2016")));
+	}
+
+	@Test
+	public void testResultCache() throws Exception {
+		Path directory = Files.createTempDirectory("JavaLogFileFilterTest");
+		Path source = directory.resolve("rotated.log");
+		Files.copy(Paths.get(SIMPLE_LOG_FILE), source);
+		Files.setLastModifiedTime(source, FileTime.fromMillis(System.currentTimeMillis() - 3_600_000));
+		try {
+			filter.setSourceFilePath(source.toString());
+			filter.setResultCache(new ResultCache(directory.resolve("cache"), ResultCache.DEFAULT_SIZE_BUDGET));
+			filter.setRecordStatistics(true);
+			filter.execute();
+			byte[] expected = Files.readAllBytes(target);
+			Assert.assertEquals(3, filter.getStatistics().getEntries());
+
+			filter.execute();
+			Assert.assertEquals(new String(expected), new String(Files.readAllBytes(target)));
+			// Answered from the cache, no entry is filtered
+			Assert.assertEquals(0, filter.getStatistics().getEntries());
+			Assert.assertEquals(2, filter.getStatistics().getEntriesWritten());
+		} finally {
+			try (Stream<Path> files = Files.walk(directory)) {
+				files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+			}
+		}
+	}
+
+	@Test
+	public void testResultCacheKeepsPatternsApart() throws Exception {
+		Path directory = Files.createTempDirectory("JavaLogFileFilterTest");
+		Path source = directory.resolve("rotated.log");
+		Files.write(source, ("2016-04-27 14:38:44,100 INFO x, y\n" + "2016-04-27 14:38:44,200 INFO only x\n"
+				+ "2016-04-27 14:38:44,300 INFO only y\n").getBytes());
+		Files.setLastModifiedTime(source, FileTime.fromMillis(System.currentTimeMillis() - 3_600_000));
+		try {
+			filter.setSourceFilePath(source.toString());
+			filter.setResultCache(new ResultCache(directory.resolve("cache"), ResultCache.DEFAULT_SIZE_BUDGET));
+			filter.setIncludePattern("x, y");
+			filter.execute();
+			Assert.assertEquals(1, Files.readAllLines(target).size());
+
+			// The same patterns joined by ", ", but another query
+			filter.setIncludePattern("x");
+			filter.addIncludePattern("y");
+			filter.execute();
+			Assert.assertEquals(3, Files.readAllLines(target).size());
+		} finally {
+			try (Stream<Path> files = Files.walk(directory)) {
+				files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+			}
+		}
+	}
+
+	@Test
+	public void testResultCacheIsNotUsedWithMatchBudget() throws Exception {
+		Path directory = Files.createTempDirectory("JavaLogFileFilterTest");
+		Path source = directory.resolve("rotated.log");
+		Files.copy(Paths.get(SIMPLE_LOG_FILE), source);
+		Files.setLastModifiedTime(source, FileTime.fromMillis(System.currentTimeMillis() - 3_600_000));
+		try {
+			filter.setSourceFilePath(source.toString());
+			filter.setResultCache(new ResultCache(directory.resolve("cache"), ResultCache.DEFAULT_SIZE_BUDGET));
+			filter.setMatchBudget(1000);
+			filter.setRecordStatistics(true);
+			filter.execute();
+			filter.execute();
+			// Filtered again, not answered from the cache
+			Assert.assertEquals(3, filter.getStatistics().getEntries());
+
+			filter.setMatchBudget(0);
+			filter.execute();
+			Assert.assertEquals(3, filter.getStatistics().getEntries());
+			filter.setRegexEngine(RegexEngine.LINEAR);
+			filter.execute();
+			// Another engine is another query
+			Assert.assertEquals(3, filter.getStatistics().getEntries());
+			filter.execute();
+			Assert.assertEquals(0, filter.getStatistics().getEntries());
+		} finally {
+			try (Stream<Path> files = Files.walk(directory)) {
+				files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+			}
+		}
+	}
+
+	@Test
+	public void testPatternsWithoutExactByteViewAreMatchedDecoded() throws Exception {
+		Path source = Files.createTempFile("JavaLogFileFilterTest", ".log");
+		Files.write(source, ("2016-04-27 14:38:44,100 INFO K\u00e4se\n"
+				+ "2016-04-27 14:38:44,200 INFO Gr\u00fc\u00fc\u00dfe\n").getBytes(StandardCharsets.UTF_8));
+		try {
+			filter.setSourceFilePath(source.toString());
+			filter.setInputCharset(StandardCharsets.UTF_8);
+			// Per byte, the class would match the first byte of the '\u00e4'
+			// and the quantifier would repeat the last byte of the '\u00fc'
+			// '.' and the negated class would match a single byte only
+			for (String pattern : new String[] { "[\u00fc]", "Gr\u00fc+\u00dfe", "r.\u00fc", "r[^x]\u00fc" }) {
+				filter.setIncludePattern(pattern);
+				filter.setMemoryMapped(true);
+				filter.execute();
+				Assert.assertEquals(pattern, Arrays.asList("2016-04-27 14:38:44,200 INFO Gr\u00fc\u00fc\u00dfe"),
+						Files.readAllLines(target, StandardCharsets.UTF_8));
+
+				filter.setMemoryMapped(false);
+				filter.setParallel(true);
+				filter.execute();
+				Assert.assertEquals(pattern, Arrays.asList("2016-04-27 14:38:44,200 INFO Gr\u00fc\u00fc\u00dfe"),
+						Files.readAllLines(target, StandardCharsets.UTF_8));
+				filter.setParallel(false);
+			}
+		} finally {
+			Files.delete(source);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMultiByteCharInClassIsRejectedForRawBytes() throws Exception {
+		filter.setInputCharset(StandardCharsets.UTF_8);
+		filter.setRaw(true);
+		filter.setIncludePattern("[\u00fc]");
+		filter.execute();
+	}
+
+	@Test
+	public void testMatchBudgetIsReportedPerExecution() throws Exception {
+		StringBuilder entry = new StringBuilder("2016-04-27 14:38:44,400 ERROR ");
+		for (int i = 0; i < 40; i++) {
+			entry.append('a');
+		}
+		Path source = Files.createTempFile("JavaLogFileFilterTest", ".log");
+		Files.write(source, (entry + "\n").getBytes());
+		FilterPlanCache filterPlanCache = new FilterPlanCache();
+		try {
+			ByteArrayOutputStream err = new ByteArrayOutputStream();
+			filter.setSourceFilePath(source.toString());
+			filter.setIncludePattern("INFO");
+			filter.addExcludePattern("(.*a){12}[bc]");
+			filter.setMatchBudget(10);
+			filter.setFilterPlanCache(filterPlanCache);
+			filter.setStandardError(new PrintStream(err, true));
+			filter.execute();
+			Assert.assertTrue(err.toString(), err.toString().startsWith("1 entries exceeded the match time budget"));
+
+			// The same plan of the cache, but no entry exceeds the budget
+			ByteArrayOutputStream otherErr = new ByteArrayOutputStream();
+			JavaLogFileFilter other = new JavaLogFileFilter();
+			other.setSourceFilePath(SIMPLE_LOG_FILE);
+			other.setTargetFilePath(target.toString());
+			other.addIncludePattern("INFO");
+			other.addExcludePattern("(.*a){12}[bc]");
+			other.setMatchBudget(10);
+			other.setFilterPlanCache(filterPlanCache);
+			other.setStandardError(new PrintStream(otherErr, true));
+			other.execute();
+			Assert.assertEquals("", otherErr.toString());
+		} finally {
+			Files.delete(source);
+		}
+	}
+
+	@Test
+	public void testTrigramIndexGivesSameResult() throws Exception {
+		filter.execute();
+		byte[] expected = Files.readAllBytes(target);
+
+		Path directory = Files.createTempDirectory("JavaLogFileFilterTest");
+		Path source = directory.resolve("indexed.log");
+		Files.copy(Paths.get(SIMPLE_LOG_FILE), source);
+		try {
+			filter.setSourceFilePath(source.toString());
+			filter.setBuildTrigramIndex(true);
+			filter.execute();
+			Assert.assertTrue(Files.isRegularFile(TrigramIndex.indexFileOf(source)));
+			Assert.assertEquals(new String(expected), new String(Files.readAllBytes(target)));
+
+			filter.setBuildTrigramIndex(false);
+			filter.execute();
+			Assert.assertEquals(new String(expected), new String(Files.readAllBytes(target)));
+		} finally {
+			try (Stream<Path> files = Files.walk(directory)) {
+				files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+			}
+		}
+	}
+
+	@Test
+	public void testHeaderConditionsBeforePatterns() throws Exception {
+		filter.setIncludePattern("occurred|result");
+		filter.addLevelCondition(">=WARN");
+		filter.execute();
+		List<String> lines = Files.readAllLines(target);
+		Assert.assertEquals(3, lines.size());
+		Assert.assertTrue(lines.get(0).startsWith("2016-04-27 14:38:44,400 ERROR An Exception occurred"));
+
+		filter.setMemoryMapped(true);
+		filter.execute();
+		Assert.assertEquals(lines, Files.readAllLines(target));
+	}
+
+	@Test
+	public void testGzipTarget() throws Exception {
+		filter.execute();
+		byte[] expected = Files.readAllBytes(target);
+
+		Path gzipTarget = Files.createTempFile("JavaLogFileFilterTest", ".log.gz");
+		try {
+			filter.setTargetFilePath(gzipTarget.toString());
+			filter.execute();
+			try (InputStream in = new GZIPInputStream(Files.newInputStream(gzipTarget))) {
+				ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+				byte[] buffer = new byte[4096];
+				for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+					decompressed.write(buffer, 0, read);
+				}
+				Assert.assertEquals(new String(expected), decompressed.toString());
+			}
+		} finally {
+			Files.delete(gzipTarget);
+		}
+	}
+
+	@Test
+	public void testPipelinedGzipSource() throws Exception {
+		filter.addExcludePattern("INFO");
+		filter.execute();
+		byte[] expected = Files.readAllBytes(target);
+
+		Path gzipSource = Files.createTempFile("JavaLogFileFilterTest", ".log.gz");
+		try {
+			try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzipSource))) {
+				Files.copy(Paths.get(SIMPLE_LOG_FILE), out);
+			}
+			filter.setSourceFilePath(gzipSource.toString());
+			filter.setParallel(true);
+			filter.setRecordStatistics(true);
+			filter.execute();
+			Assert.assertEquals(new String(expected), new String(Files.readAllBytes(target)));
+			Assert.assertEquals(3, filter.getStatistics().getEntries());
+		} finally {
+			Files.delete(gzipSource);
+		}
+	}
+
+	@Test
+	public void testPipelinedStandardInput() throws Exception {
+		filter.addExcludePattern("INFO");
+		filter.execute();
+		byte[] expected = Files.readAllBytes(target);
+
+		InputStream standardInput = System.in;
+		try {
+			System.setIn(new ByteArrayInputStream(Files.readAllBytes(Paths.get(SIMPLE_LOG_FILE))));
+			// Without a source file
+			JavaLogFileFilter pipelined = new JavaLogFileFilter();
+			pipelined.setTargetFilePath(target.toString());
+			pipelined.addIncludePattern("ERROR");
+			pipelined.addExcludePattern("INFO");
+			pipelined.setParallel(true);
+			pipelined.execute();
+			Assert.assertEquals(new String(expected), new String(Files.readAllBytes(target)));
+		} finally {
+			System.setIn(standardInput);
+		}
+	}
+
+	@Test
+	public void testHistogramInsteadOfEntries() throws Exception {
+		filter.setIncludePattern("ERROR");
+		filter.setHistogram(1000);
+		filter.setHistogramColumns(HistogramColumns.LEVEL);
+		filter.setHistogramCsv(true);
+		filter.execute();
+
+		Assert.assertEquals(Arrays.asList("time,TRACE,DEBUG,INFO,WARN,ERROR,FATAL,other,total",
+				"2016-04-27 14:38:44,000,0,0,1,0,1,0,0,2"), Files.readAllLines(target));
+	}
+
+	@Test
+	public void testHistogramOfMappedEntriesWithNonAsciiDatePattern() throws Exception {
+		Path source = Files.createTempFile("JavaLogFileFilterTest", ".log");
+		Files.write(source, ("\u00e9 2016-04-27 14:38:44,100 ERROR first\n"
+				+ "\u00e9 2016-04-27 14:38:45,100 INFO second\n").getBytes(StandardCharsets.UTF_8));
+		try {
+			filter.setSourceFilePath(source.toString());
+			filter.setInputCharset(StandardCharsets.UTF_8);
+			filter.setDatePattern("(?<=\u00e9 )[0-9-]{10} [0-9:,]{12}");
+			filter.setIncludePattern("ERROR");
+			filter.addIncludePattern("INFO");
+			filter.setHistogram(1000);
+			filter.setHistogramColumns(HistogramColumns.PATTERN);
+			filter.setHistogramCsv(true);
+			filter.execute();
+			List<String> expected = Files.readAllLines(target);
+			Assert.assertEquals(Arrays.asList("time,ERROR,INFO,other,total", "2016-04-27 14:38:44,000,1,0,0,1",
+					"2016-04-27 14:38:45,000,0,1,0,1"), expected);
+
+			// The timestamps of the bytes are parsed with the byte view of the date pattern
+			filter.setMemoryMapped(true);
+			filter.execute();
+			Assert.assertEquals(expected, Files.readAllLines(target));
+		} finally {
+			Files.delete(source);
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package logfilefilter;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+import logfilefilter.internal.processors.ByteSequence;
+
+public class LogFilterTest {
+	private static final Path SIMPLE_LOG_FILE = Paths.get("./src/test/resources/testLogs/simple_test.logfile");
+
+	private final LogFilter filter = LogFilter.builder().include("ERROR").build();
+
+	@Test
+	public void testFilterFile() throws Exception {
+		try (Stream<ByteSequence> entries = filter.filter(SIMPLE_LOG_FILE)) {
+			List<String> result = entries.map(filter::decode).collect(Collectors.toList());
+
+			Assert.assertEquals(2, result.size());
+			Assert.assertTrue(result.get(0).startsWith("2016-04-27 14:38:44,400 ERROR An Exception occurred"));
+		}
+	}
+
+	@Test
+	public void testFilterFileInParallel() throws Exception {
+		try (Stream<ByteSequence> sequential = filter.filter(SIMPLE_LOG_FILE);
+				Stream<ByteSequence> parallel = filter.filter(SIMPLE_LOG_FILE)) {
+			Assert.assertEquals(sequential.map(filter::decode).collect(Collectors.toList()),
+					parallel.parallel().map(filter::decode).collect(Collectors.toList()));
+		}
+	}
+
+	@Test
+	public void testFilterInputStream() throws Exception {
+		List<String> result = filter.filter(new ByteArrayInputStream(Files.readAllBytes(SIMPLE_LOG_FILE)))
+				.collect(Collectors.toList());
+
+		try (Stream<ByteSequence> entries = filter.filter(SIMPLE_LOG_FILE)) {
+			Assert.assertEquals(entries.count(), result.size());
+		}
+	}
+
+	@Test
+	public void testTest() {
+		Assert.assertTrue(filter.test("2016-04-27 14:38:44,400 ERROR failed"));
+		Assert.assertFalse(filter.test("2016-04-27 14:38:44,400 INFO started"));
+
+		LogFilter excluding = LogFilter.builder().exclude("Service").build();
+		Assert.assertTrue(excluding.test("2016-04-27 14:38:44,400 INFO started"));
+		Assert.assertFalse(excluding.test("2016-04-27 14:38:44,400 INFO Service started"));
+		Assert.assertTrue(LogFilter.builder().build().test("anything"));
+	}
+
+	@Test
+	public void testFilterFileMatchesDecodedLikeStream() throws Exception {
+		Path file = Files.createTempFile("LogFilterTest", ".log");
+		Files.write(file, ("2016-04-27 14:38:44,100 INFO a\u00e4b\n" + "2016-04-27 14:38:44,200 INFO Caf\u00e9\n")
+				.getBytes(StandardCharsets.UTF_8));
+		try {
+			// Per byte, '.' misses the '\u00e4' and the class matches the first byte of the '\u00e9'
+			for (String pattern : new String[] { "a.b", "[\u00e4\u00f6]" }) {
+				LogFilter testee = LogFilter.builder().include(pattern).charset(StandardCharsets.UTF_8).build();
+				List<String> streamed = testee.filter(new ByteArrayInputStream(Files.readAllBytes(file)))
+						.map(String::trim).collect(Collectors.toList());
+				try (Stream<ByteSequence> entries = testee.filter(file)) {
+					List<String> result = entries.map(testee::decode).map(String::trim).collect(Collectors.toList());
+					Assert.assertEquals(pattern, 1, result.size());
+					Assert.assertEquals(pattern, streamed, result);
+				}
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package logfilefilter.internal.aggregation;
+
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+public class EntryFingerprinterTest {
+	private final EntryFingerprinter testee = new EntryFingerprinter(
+			Pattern.compile("^[0-9-]{10} [0-9:,]{12}"), 2);
+
+	private static String entry(String time, String message, String exception, String... frames) {
+		StringBuilder result = new StringBuilder(time).append(" ERROR ").append(message).append('\n');
+		result.append(exception).append('\n');
+		for (String frame : frames) {
+			result.append("\tat ").append(frame).append('\n');
+		}
+		return result.toString();
+	}
+
+	@Test
+	public void testSameExceptionAndTopFramesSameFingerprint() {
+		String first = entry("2016-04-27 14:58:44,123", "Order 4711 failed",
+				"java.lang.IllegalStateException: id 12", "a.B.c(B.java:10)", "a.B.d(B.java:20)", "x.Y.z(Y.java:1)");
+		String second = entry("2016-04-27 15:00:00,000", "Order 815 failed",
+				"java.lang.IllegalStateException: id 13", "a.B.c(B.java:11)", "a.B.d(B.java:21)", "q.R.s(R.java:2)");
+
+		Assert.assertEquals(testee.fingerprint(first), testee.fingerprint(second));
+	}
+
+	@Test
+	public void testOtherExceptionOrFrameOtherFingerprint() {
+		String first = entry("2016-04-27 14:58:44,123", "failed", "java.lang.IllegalStateException",
+				"a.B.c(B.java:10)");
+		String otherException = entry("2016-04-27 14:58:44,123", "failed", "java.io.IOException: x",
+				"a.B.c(B.java:10)");
+		String otherFrame = entry("2016-04-27 14:58:44,123", "failed", "java.lang.IllegalStateException",
+				"a.B.e(B.java:10)");
+
+		Assert.assertFalse(testee.fingerprint(first) == testee.fingerprint(otherException));
+		Assert.assertFalse(testee.fingerprint(first) == testee.fingerprint(otherFrame));
+	}
+
+	@Test
+	public void testEntryWithoutStackTraceByNormalizedMessage() {
+		long first = testee.fingerprint("2016-04-27 14:58:44,123 WARN Session 7f3a9c21 timed out after 30 s\n");
+		long second = testee.fingerprint("2016-04-27 16:01:02,999 WARN Session 0b77e4d8 timed out after 45 s\n");
+		long other = testee.fingerprint("2016-04-27 16:01:02,999 WARN Session 0b77e4d8 closed\n");
+
+		Assert.assertEquals(first, second);
+		Assert.assertFalse(first == other);
+	}
+
+	@Test
+	public void testNormalize() {
+		Assert.assertEquals("INFO User # logged in from #.#.#.#",
+				testee.normalize("2016-04-27 14:58:44,123 INFO User 42 logged in from 10.0.0.1"));
+	}
+}
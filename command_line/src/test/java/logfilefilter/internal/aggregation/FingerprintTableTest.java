@@ -0,0 +1,71 @@
+package logfilefilter.internal.aggregation;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+import logfilefilter.internal.index.TimestampParser;
+
+public class FingerprintTableTest {
+	@Test
+	public void testCountsFirstAndLastSeen() {
+		FingerprintTable testee = new FingerprintTable(10);
+		int slot = testee.add(42, 100);
+		testee.add(7, 150);
+		Assert.assertEquals(slot, testee.add(42, 200));
+
+		Assert.assertEquals(2, testee.size());
+		Assert.assertEquals(2, testee.getCount(slot));
+		Assert.assertEquals(100, testee.getFirstSeen(slot));
+		Assert.assertEquals(200, testee.getLastSeen(slot));
+	}
+
+	@Test
+	public void testFirstAndLastSeenOutOfOrderOrWithoutTimestamp() {
+		FingerprintTable testee = new FingerprintTable(10);
+		int slot = testee.add(42, TimestampParser.NO_TIMESTAMP);
+		testee.add(42, 200);
+		testee.add(42, 100);
+		testee.add(42, TimestampParser.NO_TIMESTAMP);
+
+		Assert.assertEquals(4, testee.getCount(slot));
+		Assert.assertEquals(100, testee.getFirstSeen(slot));
+		Assert.assertEquals(200, testee.getLastSeen(slot));
+	}
+
+	@Test
+	public void testSlotsByCount() {
+		FingerprintTable testee = new FingerprintTable(10);
+		testee.add(1, 0);
+		testee.add(2, 0);
+		testee.add(2, 0);
+		testee.add(3, 0);
+
+		int[] slots = testee.slotsByCount();
+		Assert.assertEquals(2, testee.getFingerprint(slots[0]));
+		// Equal counts in the order of their first occurrence
+		Assert.assertEquals(1, testee.getFingerprint(slots[1]));
+		Assert.assertEquals(3, testee.getFingerprint(slots[2]));
+	}
+
+	@Test
+	public void testBoundedFingerprints() {
+		FingerprintTable testee = new FingerprintTable(100);
+		for (long fingerprint = 1; fingerprint <= 1000; fingerprint++) {
+			testee.add(fingerprint, 0);
+		}
+		Assert.assertTrue(testee.add(1, 0) >= 0);
+		Assert.assertEquals(-1, testee.add(1001, 0));
+
+		Assert.assertEquals(100, testee.size());
+		Assert.assertEquals(901, testee.getOverflowCount());
+	}
+
+	@Test
+	public void testSampleKeptOnce() {
+		FingerprintTable testee = new FingerprintTable(1);
+		int slot = testee.add(5, 0);
+		testee.setSample(slot, "first");
+		testee.setSample(slot, "second");
+		Assert.assertEquals("first", testee.getSample(slot));
+	}
+}
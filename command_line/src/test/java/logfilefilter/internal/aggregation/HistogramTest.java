@@ -0,0 +1,79 @@
+package logfilefilter.internal.aggregation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+import logfilefilter.JavaLogFileFilter;
+import logfilefilter.internal.index.TimestampParser;
+
+public class HistogramTest {
+	private static final TimestampParser TIMESTAMP_PARSER = new TimestampParser(
+			Pattern.compile(JavaLogFileFilter.DEFAULT_DATE_PATTERN), TimestampParser.DEFAULT_TIME_FORMAT);
+	private static final long MINUTE = 60_000;
+
+	private final List<String> rows = new ArrayList<>();
+
+	private static Histogram newHistogram(long granularity, int maxBuckets) {
+		// The column is the last character of the message
+		return new Histogram(TIMESTAMP_PARSER, granularity, Arrays.asList("a", "b"),
+				logEntry -> logEntry.toString().endsWith("a\n") ? 0 : 1, maxBuckets, true);
+	}
+
+	@Test
+	public void testCountsPerBucketAndColumn() throws Exception {
+		Histogram testee = newHistogram(MINUTE, 100);
+		testee.add("2016-04-27 14:38:44,123 a\n");
+		testee.add("2016-04-27 14:38:59,999 b\n");
+		testee.add("2016-04-27 14:41:00,000 a\n");
+		testee.add("2016-04-27 14:37:10,000 a\n");
+		testee.add("   at no timestamp\n");
+		testee.writeAllRows(rows::add);
+
+		Assert.assertEquals(Arrays.asList("time,a,b,total", "2016-04-27 14:37:00,000,1,0,1",
+				"2016-04-27 14:38:00,000,1,1,2", "2016-04-27 14:39:00,000,0,0,0", "2016-04-27 14:40:00,000,0,0,0",
+				"2016-04-27 14:41:00,000,1,0,1", "no timestamp,0,1,1"), rows);
+	}
+
+	@Test
+	public void testGranularityIsDoubledWhenBucketsRunOut() throws Exception {
+		Histogram testee = newHistogram(MINUTE, 4);
+		testee.add("2016-04-27 14:00:00,000 a\n");
+		testee.add("2016-04-27 14:03:00,000 a\n");
+		Assert.assertEquals(MINUTE, testee.getGranularityMillis());
+		testee.add("2016-04-27 14:07:30,000 b\n");
+		Assert.assertEquals(2 * MINUTE, testee.getGranularityMillis());
+		testee.add("2016-04-27 13:59:00,000 b\n");
+		Assert.assertEquals(4 * MINUTE, testee.getGranularityMillis());
+		testee.writeAllRows(rows::add);
+
+		Assert.assertEquals(Arrays.asList("time,a,b,total", "2016-04-27 13:56:00,000,0,1,1",
+				"2016-04-27 14:00:00,000,2,0,2", "2016-04-27 14:04:00,000,0,1,1"), rows);
+	}
+
+	@Test
+	public void testCompletedRowsAreWrittenOnce() throws Exception {
+		Histogram testee = newHistogram(MINUTE, 3);
+		testee.add("2016-04-27 14:00:10,000 a\n");
+		testee.writeCompletedRows(rows::add);
+		Assert.assertTrue(rows.isEmpty());
+
+		testee.add("2016-04-27 14:01:10,000 b\n");
+		testee.writeCompletedRows(rows::add);
+		Assert.assertEquals(Arrays.asList("time,a,b,total", "2016-04-27 14:00:00,000,1,0,1"), rows);
+
+		// The buckets are moved instead of growing
+		testee.add("2016-04-27 14:03:10,000 b\n");
+		testee.add("2016-04-27 13:59:10,000 a\n");
+		testee.writeCompletedRows(rows::add);
+		Assert.assertEquals(MINUTE, testee.getGranularityMillis());
+		testee.writeAllRows(rows::add);
+		Assert.assertEquals(Arrays.asList("time,a,b,total", "2016-04-27 14:00:00,000,1,0,1",
+				"2016-04-27 14:01:00,000,0,1,1", "2016-04-27 14:02:00,000,0,0,0", "2016-04-27 14:03:00,000,0,1,1",
+				"too late,1,0,1"), rows);
+	}
+}
@@ -0,0 +1,102 @@
+package logfilefilter.internal.cache;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+public class ResultCacheTest {
+	private Path directory;
+	private Path source;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("ResultCacheTest");
+		source = directory.resolve("source.log");
+		Files.write(source, "2016-04-27 14:38:44,123 ERROR\n".getBytes());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+	}
+
+	private static MatchOffsets matches(long... offsetsAndLengths) {
+		MatchOffsets result = new MatchOffsets();
+		for (int i = 0; i < offsetsAndLengths.length; i += 2) {
+			result.add(offsetsAndLengths[i], (int) offsetsAndLengths[i + 1]);
+		}
+		return result;
+	}
+
+	@Test
+	public void testPutAndGet() throws Exception {
+		ResultCache testee = new ResultCache(directory.resolve("cache"), ResultCache.DEFAULT_SIZE_BUDGET);
+		String key = testee.key(source, Arrays.asList("ERROR"));
+		Assert.assertNull(testee.get(key));
+
+		testee.put(key, matches(0, 10, 10, 200, 5_000_000_000L, 1 << 20));
+		MatchOffsets result = testee.get(key);
+
+		Assert.assertEquals(3, result.size());
+		Assert.assertEquals(10, result.getOffset(1));
+		Assert.assertEquals(200, result.getLength(1));
+		Assert.assertEquals(5_000_000_000L, result.getOffset(2));
+		Assert.assertEquals(1 << 20, result.getLength(2));
+	}
+
+	@Test
+	public void testKeyDependsOnQueryAndSource() throws Exception {
+		ResultCache testee = new ResultCache(directory, ResultCache.DEFAULT_SIZE_BUDGET);
+		String key = testee.key(source, Arrays.asList("ERROR"));
+
+		Assert.assertEquals(key, testee.key(source, Arrays.asList("ERROR")));
+		Assert.assertFalse(key.equals(testee.key(source, Arrays.asList("WARN"))));
+
+		Files.setLastModifiedTime(source, FileTime.fromMillis(0));
+		Assert.assertFalse(key.equals(testee.key(source, Arrays.asList("ERROR"))));
+	}
+
+	@Test
+	public void testLiveFileNotCacheable() throws Exception {
+		ResultCache testee = new ResultCache(directory, ResultCache.DEFAULT_SIZE_BUDGET);
+		Assert.assertFalse(testee.isCacheable(source));
+
+		Files.setLastModifiedTime(source, FileTime.fromMillis(System.currentTimeMillis() - 3_600_000));
+		Assert.assertTrue(testee.isCacheable(source));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEvicted() throws Exception {
+		Path cacheDirectory = directory.resolve("cache");
+		// Room for two results of 1000 entries
+		ResultCache testee = new ResultCache(cacheDirectory, 5000);
+		MatchOffsets matches = new MatchOffsets();
+		for (int i = 0; i < 1000; i++) {
+			matches.add(i * 10, 5);
+		}
+
+		testee.put("first", matches);
+		testee.put("second", matches);
+		Files.setLastModifiedTime(cacheDirectory.resolve("first" + ResultCache.FILE_EXTENSION),
+				FileTime.fromMillis(1000));
+		Files.setLastModifiedTime(cacheDirectory.resolve("second" + ResultCache.FILE_EXTENSION),
+				FileTime.fromMillis(2000));
+		Assert.assertNotNull(testee.get("first"));
+		testee.put("third", matches);
+
+		Assert.assertNotNull(testee.get("first"));
+		Assert.assertNull(testee.get("second"));
+		Assert.assertNotNull(testee.get("third"));
+	}
+}
@@ -0,0 +1,137 @@
+package logfilefilter.internal.daemon;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+public class FilterDaemonTest {
+	private static final String SIMPLE_LOG_FILE = "./src/test/resources/testLogs/simple_test.logfile";
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+	private Path directory;
+	private Path stateFile;
+	private FilterDaemon daemon;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("FilterDaemonTest");
+		stateFile = directory.resolve("daemon.properties");
+		daemon = new FilterDaemon(stateFile, 2);
+		Thread acceptor = new Thread(() -> {
+			try {
+				daemon.run();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		});
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		daemon.close();
+		Files.deleteIfExists(stateFile);
+		Files.delete(directory);
+	}
+
+	@Test
+	public void testRepeatedRequests() throws Exception {
+		String[] args = { "-e", "INFO", "-i", "ERROR", "-f", SIMPLE_LOG_FILE };
+		String expected = "2016-04-27 14:38:44,400 ERROR An Exception occurred: Illegal state of object ..."
+				+ LINE_SEPARATOR //
+				+ "   at MyClass.execute(83)" + LINE_SEPARATOR //
+				+ "   at MyCallingClass.run(50)" + LINE_SEPARATOR //
+				+ "2016-04-27 14:38:44,400 INFO Service result: ERROR" + LINE_SEPARATOR;
+		for (int i = 0; i < 3; i++) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ByteArrayOutputStream err = new ByteArrayOutputStream();
+			Assert.assertTrue(FilterClient.execute(stateFile, Paths.get(""), args, out, err));
+			Assert.assertEquals(expected, out.toString());
+			Assert.assertEquals("", err.toString());
+		}
+	}
+
+	@Test
+	public void testErrorsAreReported() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		Assert.assertTrue(FilterClient.execute(stateFile, Paths.get(""), new String[] { "--unknown" }, out, err));
+		Assert.assertEquals("", out.toString());
+		Assert.assertTrue(err.toString().contains("Parameter '--unknown' is unknown."));
+	}
+
+	@Test
+	public void testDaemonAndClientAreRejected() throws Exception {
+		for (String mode : new String[] { "--client", "--daemon" }) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ByteArrayOutputStream err = new ByteArrayOutputStream();
+			Assert.assertTrue(FilterClient.execute(stateFile, Paths.get(""),
+					new String[] { mode, "-f", SIMPLE_LOG_FILE }, out, err));
+			Assert.assertEquals("", out.toString());
+			Assert.assertTrue(err.toString(), err.toString().contains("Parameter '" + mode + "' is unknown."));
+		}
+	}
+
+	@Test(timeout = 10_000)
+	public void testSilentConnectionsAreClosed() throws Exception {
+		daemon.setRequestTimeout(200);
+		// More silent connections than workers
+		try (Socket first = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort());
+				Socket second = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort());
+				Socket third = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort())) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ByteArrayOutputStream err = new ByteArrayOutputStream();
+			Assert.assertTrue(FilterClient.execute(stateFile, Paths.get(""),
+					new String[] { "-i", "ERROR", "-f", SIMPLE_LOG_FILE }, out, err));
+			Assert.assertEquals("", err.toString());
+			Assert.assertTrue(out.toString().startsWith("2016-04-27 14:38:44,400 ERROR"));
+			// The daemon has closed the silent connection
+			Assert.assertEquals(-1, first.getInputStream().read());
+		}
+	}
+
+	@Test
+	public void testWrongTokenIsRejected() throws Exception {
+		Properties state = new Properties();
+		try (InputStream in = Files.newInputStream(stateFile)) {
+			state.load(in);
+		}
+		state.setProperty(FilterDaemon.TOKEN_PROPERTY, "0123456789abcdef");
+		Path forgedStateFile = directory.resolve("forged.properties");
+		try (OutputStream stateOut = Files.newOutputStream(forgedStateFile)) {
+			state.store(stateOut, null);
+		}
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ByteArrayOutputStream err = new ByteArrayOutputStream();
+			Assert.assertTrue(FilterClient.execute(forgedStateFile, Paths.get(""),
+					new String[] { "-f", SIMPLE_LOG_FILE }, out, err));
+			Assert.assertEquals("", out.toString());
+			Assert.assertTrue(err.toString().contains("token"));
+		} finally {
+			Files.delete(forgedStateFile);
+		}
+	}
+
+	@Test
+	public void testCloseRemovesStateFile() throws Exception {
+		Assert.assertTrue(Files.exists(stateFile));
+		daemon.close();
+		Assert.assertFalse(Files.exists(stateFile));
+		Assert.assertFalse(FilterClient.execute(stateFile, Paths.get(""), new String[0], new ByteArrayOutputStream(),
+				new ByteArrayOutputStream()));
+	}
+}
@@ -0,0 +1,111 @@
+package logfilefilter.internal.filters;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+public class FilterPlanTest {
+	private static final String INFO_ENTRY = "2016-04-27 14:38:44,123 INFO First log\n";
+	private static final String ERROR_ENTRY = "2016-04-27 14:38:44,400 ERROR An Exception occurred\n"
+			+ "   at MyClass.execute(83)\n";
+
+	@Test
+	public void testCompileWithoutPatterns() throws Exception {
+		Assert.assertNull(FilterPlan.compile(Collections.emptyList(), Collections.emptyList()));
+	}
+
+	@Test
+	public void testIncludePatternsAreOred() throws Exception {
+		FilterPlan testee = FilterPlan.compile(Arrays.asList("INFO", "ERROR"), Collections.emptyList());
+		Assert.assertTrue(testee.test(INFO_ENTRY));
+		Assert.assertTrue(testee.test(ERROR_ENTRY));
+		Assert.assertFalse(testee.test("2016-04-27 14:38:44,400 WARN Something\n"));
+	}
+
+	@Test
+	public void testExcludePatternsAreOred() throws Exception {
+		FilterPlan testee = FilterPlan.compile(Collections.emptyList(), Arrays.asList("INFO", "MyClass\\.execute"));
+		Assert.assertFalse(testee.test(INFO_ENTRY));
+		Assert.assertFalse(testee.test(ERROR_ENTRY));
+		Assert.assertTrue(testee.test("2016-04-27 14:38:44,400 WARN Something\n"));
+	}
+
+	@Test
+	public void testIncludeOverrulesExclude() throws Exception {
+		FilterPlan testee = FilterPlan.compile(Arrays.asList("ERROR"), Arrays.asList("Exception"));
+		Assert.assertTrue(testee.test(ERROR_ENTRY));
+		Assert.assertTrue(testee.test(INFO_ENTRY));
+		Assert.assertFalse(testee.test("2016-04-27 14:38:44,400 WARN Exception\n"));
+	}
+
+	@Test
+	public void testPrefilterGivesSameResultAsRegex() throws Exception {
+		List<String> patterns = Arrays.asList("MyClass\\.execute\\(\\d+\\)", "ERROR|WARN", "Exceptions?", "^2016",
+				"(?i)first", "First\\b", "[A-Z]{5}", "x*", "INFO .*log$", "occurred\\n   at");
+		List<String> entries = Arrays.asList(INFO_ENTRY, ERROR_ENTRY, "", "no timestamp\n", "Exception",
+				"2016-04-27 14:38:44,400 WARN Exceptio\n");
+
+		for (String regex : patterns) {
+			FilterPlan testee = FilterPlan.compile(Arrays.asList(regex), Collections.emptyList());
+			for (String entry : entries) {
+				Assert.assertEquals(regex + " in " + entry, Pattern.compile(regex).matcher(entry).find(),
+						testee.test(entry));
+			}
+		}
+	}
+
+	@Test
+	public void testLinearEngineGivesSameResultAsRegex() throws Exception {
+		// The backreference is not supported by the linear engine
+		List<String> patterns = Arrays.asList("MyClass\\.execute\\(\\d+\\)", "(?i)first", "First\\b",
+				"INFO .*log$", "(R)\\1");
+		List<String> entries = Arrays.asList(INFO_ENTRY, ERROR_ENTRY, "", "Exception");
+
+		for (String regex : patterns) {
+			FilterPlan testee = FilterPlan.compile(Arrays.asList(regex), Collections.emptyList(), RegexEngine.LINEAR,
+					0);
+			for (String entry : entries) {
+				Assert.assertEquals(regex + " in " + entry, Pattern.compile(regex).matcher(entry).find(),
+						testee.test(entry));
+			}
+		}
+	}
+
+	@Test
+	public void testMatchBudget() throws Exception {
+		StringBuilder entry = new StringBuilder("2016-04-27 14:38:44,400 ERROR ");
+		for (int i = 0; i < 40; i++) {
+			entry.append('a');
+		}
+		FilterPlan testee = FilterPlan.compile(Arrays.asList("INFO"), Arrays.asList("(.*a){12}[bc]"), RegexEngine.JAVA,
+				TimeUnit.MILLISECONDS.toNanos(10));
+
+		// The exceeding exclude pattern does not match
+		Assert.assertTrue(testee.test(entry));
+		Assert.assertFalse(testee.test("2016-04-27 14:38:44,400 WARN aaaaaaaaaaaab\n"));
+		Assert.assertEquals(1, testee.getBudgetExceededCount());
+
+		int[] exceeded = { 0 };
+		Assert.assertTrue(testee.test(entry, new FilterPlan.MatchListener() {
+			@Override
+			public void includeMatched(int includeIndex) {
+			}
+
+			@Override
+			public void excludeMatched(int excludeIndex) {
+			}
+
+			@Override
+			public void budgetExceeded() {
+				exceeded[0]++;
+			}
+		}));
+		Assert.assertEquals(1, exceeded[0]);
+	}
+}
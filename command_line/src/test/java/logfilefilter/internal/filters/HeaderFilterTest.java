@@ -0,0 +1,115 @@
+package logfilefilter.internal.filters;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+import logfilefilter.JavaLogFileFilter;
+
+public class HeaderFilterTest {
+	private static final Pattern DATE_PATTERN = Pattern.compile(JavaLogFileFilter.DEFAULT_DATE_PATTERN);
+	private static final List<String> NONE = Collections.emptyList();
+	private static final String WARN_ENTRY = "2016-04-27 14:38:44,123 WARN  [main] com.acme.billing.Invoice - "
+			+ "Invoice 17 is late\n   at com.acme.Other.run(Other.java:1)\n";
+	private static final String ERROR_ENTRY = "2016-04-27 14:38:44,400 ERROR [pool-1-thread-2] "
+			+ "com.acme.billingx.Report - Failed\r\n";
+	private static final String INFO_ENTRY = "2016-04-27 14:38:44,500 INFO  [main] com.acme.billing.Invoice - "
+			+ "Invoice 18 created\n";
+
+	private static HeaderLayout log4j() {
+		return HeaderLayout.compile("log4j", DATE_PATTERN);
+	}
+
+	@Test
+	public void testCompileWithoutConditions() throws Exception {
+		Assert.assertNull(HeaderFilter.compile(log4j(), NONE, NONE, NONE, NONE));
+	}
+
+	@Test
+	public void testParseFields() throws Exception {
+		HeaderLayout testee = HeaderLayout.compile("%d %-5p [%t] %c{36} - %m%n", DATE_PATTERN);
+		int[] bounds = new int[10];
+		Assert.assertTrue(testee.parse(WARN_ENTRY, 4, bounds));
+		Assert.assertEquals("2016-04-27 14:38:44,123", WARN_ENTRY.substring(bounds[0], bounds[1]));
+		Assert.assertEquals("WARN", WARN_ENTRY.substring(bounds[2], bounds[3]));
+		Assert.assertEquals("main", WARN_ENTRY.substring(bounds[4], bounds[5]));
+		Assert.assertEquals("com.acme.billing.Invoice", WARN_ENTRY.substring(bounds[6], bounds[7]));
+		Assert.assertEquals("Invoice 17 is late", WARN_ENTRY.substring(bounds[8], bounds[9]));
+
+		Assert.assertTrue(testee.parse(ERROR_ENTRY, 4, bounds));
+		Assert.assertEquals("Failed", ERROR_ENTRY.substring(bounds[8], bounds[9]));
+		Assert.assertFalse(testee.parse("   at com.acme.Other.run(Other.java:1)\n", 1, bounds));
+	}
+
+	@Test
+	public void testLevelConditions() throws Exception {
+		HeaderFilter testee = HeaderFilter.compile(log4j(), Arrays.asList(">=WARN"), NONE, NONE, NONE);
+		Assert.assertTrue(testee.test(WARN_ENTRY));
+		Assert.assertTrue(testee.test(ERROR_ENTRY));
+		Assert.assertFalse(testee.test(INFO_ENTRY));
+
+		testee = HeaderFilter.compile(log4j(), Arrays.asList(">info", "<= warning"), NONE, NONE, NONE);
+		Assert.assertTrue(testee.test(WARN_ENTRY));
+		Assert.assertFalse(testee.test(ERROR_ENTRY));
+		Assert.assertFalse(testee.test(INFO_ENTRY));
+
+		testee = HeaderFilter.compile(log4j(), Arrays.asList("ERROR"), NONE, NONE, NONE);
+		Assert.assertFalse(testee.test(WARN_ENTRY));
+		Assert.assertTrue(testee.test(ERROR_ENTRY));
+	}
+
+	@Test
+	public void testLoggerIncludesChildLoggers() throws Exception {
+		HeaderFilter testee = HeaderFilter.compile(log4j(), NONE, Arrays.asList("com.acme.billing"), NONE, NONE);
+		Assert.assertTrue(testee.test(WARN_ENTRY));
+		Assert.assertFalse(testee.test(ERROR_ENTRY));
+
+		testee = HeaderFilter.compile(log4j(), NONE, Arrays.asList("com.acme.billing", "com.acme.billingx.Report"),
+				NONE, NONE);
+		Assert.assertTrue(testee.test(ERROR_ENTRY));
+	}
+
+	@Test
+	public void testConditionsOfDifferentFieldsAreAnded() throws Exception {
+		HeaderFilter testee = HeaderFilter.compile(log4j(), Arrays.asList(">=INFO"), Arrays.asList("com.acme"),
+				Arrays.asList("^main$"), Arrays.asList("Invoice \\d+ is"));
+		Assert.assertTrue(testee.test(WARN_ENTRY));
+		Assert.assertFalse(testee.test(ERROR_ENTRY));
+		// The message is only searched in the first line
+		Assert.assertFalse(testee.test(INFO_ENTRY + "Invoice 18 is late\n"));
+	}
+
+	@Test
+	public void testPresets() throws Exception {
+		HeaderFilter testee = HeaderFilter.compile(HeaderLayout.compile(HeaderLayout.DEFAULT_PRESET, DATE_PATTERN),
+				Arrays.asList(">=WARN"), NONE, NONE, Arrays.asList("^An"));
+		Assert.assertTrue(testee.test("2016-04-27 14:38:44,400 ERROR An Exception occurred\n   at MyClass.run(1)"));
+		Assert.assertFalse(testee.test("2016-04-27 14:38:44,400 INFO An info\n"));
+
+		testee = HeaderFilter.compile(HeaderLayout.compile("logback", DATE_PATTERN), Arrays.asList("DEBUG"),
+				Arrays.asList("c.a.Main"), Arrays.asList("worker"), NONE);
+		Assert.assertTrue(testee.test("2016-04-27 14:38:44,400 [worker 1] DEBUG c.a.Main - Started\n"));
+		Assert.assertFalse(testee.test("2016-04-27 14:38:44,400 [worker 1] INFO  c.a.Main - Started\n"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownLevel() throws Exception {
+		HeaderFilter.compile(log4j(), Arrays.asList(">=LOUD"), NONE, NONE, NONE);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testLayoutWithoutField() throws Exception {
+		// The default layout has no thread
+		HeaderFilter.compile(HeaderLayout.compile(HeaderLayout.DEFAULT_PRESET, DATE_PATTERN), NONE, NONE,
+				Arrays.asList("main"), NONE);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFieldsWithoutSeparator() throws Exception {
+		HeaderLayout.compile("%d %p%m", DATE_PATTERN);
+	}
+}
@@ -0,0 +1,140 @@
+package logfilefilter.internal.filters;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+public class LinearRegexTest {
+	private static final String LONG_TEXT = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaac";
+	/**
+	 * The nested quantifiers backtrack exponentially in java.util.regex of
+	 * Java 8 on the long text, their results are given instead
+	 */
+	private static final Map<String, Boolean> LONG_TEXT_RESULTS = new HashMap<>();
+
+	static {
+		LONG_TEXT_RESULTS.put("(a+)+b", false);
+		LONG_TEXT_RESULTS.put("(a*)*c", true);
+	}
+
+	private static final List<String> TEXTS = Arrays.asList("", "a", "ab", "abc", "ERROR", "error\n", "x ERROR y",
+			"2016-04-27 14:38:44,400 ERROR An Exception occurred\n   at MyClass.execute(83)\n",
+			"2016-04-27 14:38:44,123 INFO First log\r\n", "line\rnext", "end\r\n", "\n", "\r\n", "a\nb\n",
+			"foo_bar baz", "caf\u00e9 au lait", "smile \ud83d\ude00 done", "AbC aBc", "tab\there", "1234 5678",
+			LONG_TEXT, "x\u2028y", "id=0x1F2e", "a.1", "a.bbb1", "abb", "abab");
+
+	private static final List<String> PATTERNS = Arrays.asList("ERROR", "E.R", "^2016", "^ERROR", "ERROR$",
+			"log$", "\\n$", "(?m)^\\s+at ", "(?m)log$", "(?m)^$", "^$", "\\Aa", "c\\z", "c\\Z", "\\bERROR\\b",
+			"\\Berr", "ror\\b", "\\bcaf", "caf\\b", "(?i)error", "(?i)[a-c]+", "(?i:abc) ", "[^a-z ]+", "[\\d]{4}",
+			"\\d{2,3}-\\d+", "a{3,}c", "(a|b)*c", "(ab|a)(bc|c)", "(a+)+b", "(a*)*c", "x?y?z?", "s.d",
+			"(?s)log.2016", "smile ..? done", "smile . done", "\\w+\\s\\w+", "\\W\\W", "\\S+$", "[-a]", "[a-]",
+			"\\.", "\\Q(a)\\E", "\\x41b", "\\u0041", "\\t", "\\x{1F600}", "[\\u2028]", "(?i)\u00e9", "execute\\(\\d+\\)",
+			"(?<name>ab)c", "(?:a|)b", "a|", "0x[0-9a-fA-F]+", "(?-i)a", "(?i)a(?-i)B",
+			"\\Qa.b\\E*\\w", "\\Qab\\E{2}", "x\\Q\\E");
+
+	@Test
+	public void testSameResultAsPattern() throws Exception {
+		for (String regex : PATTERNS) {
+			LinearRegex testee = LinearRegex.compile(regex);
+			Pattern pattern = Pattern.compile(regex);
+			for (String text : TEXTS) {
+				boolean expected = text.equals(LONG_TEXT) && LONG_TEXT_RESULTS.containsKey(regex)
+						? LONG_TEXT_RESULTS.get(regex) : pattern.matcher(text).find();
+				Assert.assertEquals("'" + regex + "' in '" + text + "'", expected, testee.find(text));
+			}
+		}
+	}
+
+	@Test
+	public void testSameResultAsPatternForRandomRegexes() throws Exception {
+		Random random = new Random(42);
+		String[] atoms = { "a", "b", "c", ".", "[ab]", "[^a]", "\\w", "\\s", "\\n", "^", "$", "\\b", "(?m)^",
+				"(?m)$", "(?i)A", "\\B", "\\Z", "\\z", "\\A", "(?s).", "[^\\n]", "\\r", "\\W", "[a-c]{0,2}",
+				"(?i)[A-B]", "(a|\\n)", "\\u00e9", "\\x{1F600}" };
+		// Line terminators, a non-ASCII letter and a supplementary character
+		String alphabet = "abc \n\r_\u00e9\u2028\u0085\ud83d\ude00A";
+		String[] quantifiers = { "", "", "*", "+", "?", "{2}", "{1,3}" };
+		for (int i = 0; i < 5000; i++) {
+			StringBuilder regex = new StringBuilder();
+			int atomCount = 1 + random.nextInt(5);
+			for (int j = 0; j < atomCount; j++) {
+				String atom = atoms[random.nextInt(atoms.length)];
+				if (random.nextInt(4) == 0) {
+					atom = "(" + atom + "|" + atoms[random.nextInt(atoms.length)] + ")";
+				}
+				regex.append(atom);
+				if (!atom.startsWith("(?") && !atom.equals("^") && !atom.equals("$") && !atom.equals("\\b")) {
+					regex.append(quantifiers[random.nextInt(quantifiers.length)]);
+				}
+			}
+			if (!LinearRegex.isSupported(regex.toString())) {
+				continue;
+			}
+			LinearRegex testee = LinearRegex.compile(regex.toString());
+			Pattern pattern = Pattern.compile(regex.toString());
+			for (int j = 0; j < 20; j++) {
+				StringBuilder text = new StringBuilder();
+				int length = random.nextInt(12);
+				for (int k = 0; k < length; k++) {
+					text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+				}
+				Assert.assertEquals("'" + regex + "' in '" + escape(text) + "'", pattern.matcher(text).find(),
+						testee.find(text));
+			}
+		}
+	}
+
+	private static String escape(CharSequence text) {
+		StringBuilder result = new StringBuilder();
+		text.chars().forEach(c -> result.append(c >= ' ' && c < 127 ? String.valueOf((char) c)
+				: String.format("\\u%04x", c)));
+		return result.toString();
+	}
+
+	@Test
+	public void testNestedQuantifiersTakeLinearTime() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 100_000; i++) {
+			text.append('a');
+		}
+		text.append('c');
+		long start = System.nanoTime();
+		Assert.assertFalse(LinearRegex.compile("(a+)+b").find(text));
+		Assert.assertFalse(LinearRegex.compile("(a|aa)*b").find(text));
+		Assert.assertTrue(System.nanoTime() - start < 5_000_000_000L);
+	}
+
+	@Test
+	public void testCacheIsClearedWhenFull() throws Exception {
+		// Each position of the 20 a's is a different state
+		LinearRegex testee = LinearRegex.compile("a.{20}b");
+		Random random = new Random(7);
+		for (int i = 0; i < 200; i++) {
+			StringBuilder text = new StringBuilder();
+			for (int j = 0; j < 200; j++) {
+				text.append((char) ('a' + random.nextInt(3)));
+			}
+			Assert.assertEquals(Pattern.compile("a.{20}b").matcher(text).find(), testee.find(text));
+		}
+	}
+
+	@Test
+	public void testUnsupportedConstructs() throws Exception {
+		for (String regex : Arrays.asList("(a)\\1", "a(?=b)", "(?<!a)b", "a*+", "(?>a)", "\\p{Alpha}", "[a&&[b]]",
+				"(?x)a b", "\\R", "(^|a){2}")) {
+			Assert.assertFalse(regex, LinearRegex.isSupported(regex));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidRegex() throws Exception {
+		LinearRegex.compile("(a");
+	}
+}
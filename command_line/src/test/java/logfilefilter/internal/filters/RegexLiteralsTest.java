@@ -0,0 +1,77 @@
+package logfilefilter.internal.filters;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+public class RegexLiteralsTest {
+	@Test
+	public void testAnalyzePlainLiteral() throws Exception {
+		RegexLiterals literals = RegexLiterals.analyze("Service result: ERROR");
+		Assert.assertEquals(Collections.singleton("Service result: ERROR"), literals.getRequiredLiterals());
+		Assert.assertTrue(literals.isLiteralOnly());
+	}
+
+	@Test
+	public void testAnalyzeEscapedLiteral() throws Exception {
+		RegexLiterals literals = RegexLiterals.analyze("MyClass\\.execute\\(83\\)");
+		Assert.assertEquals(Collections.singleton("MyClass.execute(83)"), literals.getRequiredLiterals());
+		Assert.assertTrue(literals.isLiteralOnly());
+	}
+
+	@Test
+	public void testAnalyzeLongestLiteral() throws Exception {
+		RegexLiterals literals = RegexLiterals.analyze("^[0-9]+ ERROR .*Ex\\d*");
+		Assert.assertEquals(Collections.singleton(" ERROR "), literals.getRequiredLiterals());
+		Assert.assertFalse(literals.isLiteralOnly());
+	}
+
+	@Test
+	public void testAnalyzeOptionalCharacterIsNotRequired() throws Exception {
+		Assert.assertEquals(Collections.singleton("Exception"),
+				RegexLiterals.analyze("Exceptions?").getRequiredLiterals());
+		Assert.assertEquals(Collections.singleton("Exception"),
+				RegexLiterals.analyze("Exceptions{0,2}").getRequiredLiterals());
+		Assert.assertEquals(Collections.singleton("Exceptions"),
+				RegexLiterals.analyze("Exceptions+").getRequiredLiterals());
+	}
+
+	@Test
+	public void testAnalyzeAlternatives() throws Exception {
+		RegexLiterals literals = RegexLiterals.analyze("INFO|ERROR");
+		Assert.assertEquals(new HashSet<>(Arrays.asList("INFO", "ERROR")), literals.getRequiredLiterals());
+		Assert.assertFalse(literals.isLiteralOnly());
+	}
+
+	@Test
+	public void testAnalyzeWithoutLiterals() throws Exception {
+		Assert.assertTrue(RegexLiterals.analyze("(INFO|ERROR)").getRequiredLiterals().isEmpty());
+		Assert.assertTrue(RegexLiterals.analyze("INFO|\\d+").getRequiredLiterals().isEmpty());
+		Assert.assertTrue(RegexLiterals.analyze("(?i)error").getRequiredLiterals().isEmpty());
+		Assert.assertTrue(RegexLiterals.analyze("\\x41\\u0042").getRequiredLiterals().isEmpty());
+	}
+
+	@Test
+	public void testQuotedGroupCharsAndAlternationAreLiterals() throws Exception {
+		for (String regex : new String[] { "\\Q(\\E|foo", "\\Q)\\E|foo" }) {
+			Assert.assertTrue(Pattern.compile(regex).matcher("xx foo").find());
+			Assert.assertTrue(regex, RegexLiterals.analyze(regex).getRequiredLiterals().isEmpty());
+		}
+		Assert.assertEquals(new HashSet<>(Arrays.asList("foo", "bar")),
+				RegexLiterals.analyze("\\Q(\\E(x|y)foo|bar").getRequiredLiterals());
+	}
+
+	@Test
+	public void testBranchLiterals() throws Exception {
+		Assert.assertEquals(Arrays.asList(Arrays.asList("Rare", "Exception: b", "m")),
+				RegexLiterals.analyze("Rare\\w+Exception: b.*m").getBranchLiterals());
+		Assert.assertEquals(Arrays.asList(Arrays.asList("INFO", " start"), Arrays.asList("ERROR")),
+				RegexLiterals.analyze("INFO\\s+ start|ERROR").getBranchLiterals());
+		Assert.assertTrue(RegexLiterals.analyze("INFO|\\d+").getBranchLiterals().isEmpty());
+	}
+}
@@ -0,0 +1,149 @@
+package logfilefilter.internal.index;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+public class EntryIndexBuilderTest {
+	private static final Pattern LOG_LINE_PATTERN = Pattern.compile("^[0-9-]{10} [0-9:,]{12}");
+	private static final TimestampParser PARSER = new TimestampParser(LOG_LINE_PATTERN,
+			TimestampParser.DEFAULT_TIME_FORMAT);
+	private static final int SAMPLE_INTERVAL = 256;
+
+	private Path file;
+	private Path indexFile;
+	private final EntryIndexBuilder builder = new EntryIndexBuilder(LOG_LINE_PATTERN, PARSER);
+
+	@Before
+	public void setUp() throws Exception {
+		file = Files.createTempFile("EntryIndexBuilderTest", ".log");
+		indexFile = EntryIndex.indexFileOf(file);
+		builder.setSampleInterval(SAMPLE_INTERVAL);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(file);
+		Files.deleteIfExists(indexFile);
+	}
+
+	@Test
+	public void testOffsetsOfTimeRange() throws Exception {
+		String log = entries(0, 100);
+		Files.write(file, log.getBytes(StandardCharsets.UTF_8));
+
+		EntryIndex index = update(null);
+		long start = index.startOffset(PARSER.parseQuery("2016-04-27 14:00:40"));
+		long end = index.endOffset(PARSER.parseQuery("2016-04-27 14:00:59"));
+
+		// The range contains all entries of the time range and starts and
+		// ends at entry boundaries
+		Assert.assertTrue(start <= log.indexOf("14:00:40"));
+		Assert.assertTrue(start > 0);
+		Assert.assertEquals(0, log.indexOf('\n', (int) start - 1) - ((int) start - 1));
+		Assert.assertTrue(end > log.indexOf("14:00:58"));
+		Assert.assertTrue(end < log.length());
+		Assert.assertTrue(log.substring((int) end).startsWith("2016-04-27 14:00:"));
+	}
+
+	@Test
+	public void testOffsetsOutsideOfFile() throws Exception {
+		String log = entries(10, 20);
+		Files.write(file, log.getBytes(StandardCharsets.UTF_8));
+
+		EntryIndex index = update(null);
+		Assert.assertEquals(0, index.startOffset(PARSER.parseQuery("2016-04-27")));
+		Assert.assertEquals(0, index.endOffset(PARSER.parseQuery("2016-04-27")));
+		Assert.assertEquals(log.length(), index.endOffset(PARSER.parseQuery("2016-04-28")));
+	}
+
+	@Test
+	public void testSidecarIsExtendedWhenFileGrows() throws Exception {
+		Files.write(file, entries(0, 50).getBytes(StandardCharsets.UTF_8));
+		EntryIndex index = updateSidecar(true);
+		Assert.assertTrue(Files.exists(indexFile));
+
+		Files.write(file, entries(50, 100).getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+		EntryIndex extended = updateSidecar(false);
+		Assert.assertEquals(Files.size(file), extended.getIndexedSize());
+		Assert.assertEquals(Files.size(file), EntryIndex.load(indexFile).getIndexedSize());
+
+		Files.delete(indexFile);
+		EntryIndex rebuilt = updateSidecar(true);
+		Assert.assertEquals(extended.sampleCount, rebuilt.sampleCount);
+		for (int i = 0; i < rebuilt.sampleCount; i++) {
+			Assert.assertEquals(rebuilt.offsets[i], extended.offsets[i]);
+			Assert.assertEquals(rebuilt.timestamps[i], extended.timestamps[i]);
+		}
+		Assert.assertTrue(index.sampleCount < rebuilt.sampleCount);
+	}
+
+	@Test
+	public void testSidecarOfEmptyFileIsExtended() throws Exception {
+		Files.write(file, new byte[0]);
+		Assert.assertEquals(0, updateSidecar(true).sampleCount);
+
+		String log = entries(0, 50);
+		Files.write(file, log.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+		EntryIndex index = updateSidecar(false);
+		Assert.assertEquals(Files.size(file), index.getIndexedSize());
+		Assert.assertEquals(0, index.startOffset(PARSER.parseQuery("2016-04-27 14:00:00")));
+		Assert.assertTrue(index.startOffset(PARSER.parseQuery("2016-04-27 14:00:40")) <= log.indexOf("14:00:40"));
+		Assert.assertEquals(log.length(), index.endOffset(PARSER.parseQuery("2016-04-28")));
+	}
+
+	@Test
+	public void testReplacedFileIsIndexedAgain() throws Exception {
+		Files.write(file, entries(0, 50).getBytes(StandardCharsets.UTF_8));
+		updateSidecar(true);
+
+		String log = entries(20, 80).replace("14:00:", "15:00:");
+		Files.write(file, log.getBytes(StandardCharsets.UTF_8));
+		EntryIndex index = updateSidecar(false);
+		Assert.assertEquals(0, index.startOffset(PARSER.parseQuery("2016-04-27 15:00:20")));
+		Assert.assertTrue(index.startOffset(PARSER.parseQuery("2016-04-27 15:00:50")) > 0);
+	}
+
+	@Test
+	public void testMissingSidecarIsNotCreated() throws Exception {
+		Files.write(file, entries(0, 50).getBytes(StandardCharsets.UTF_8));
+		updateSidecar(false);
+		Assert.assertFalse(Files.exists(indexFile));
+	}
+
+	private EntryIndex update(EntryIndex index) throws Exception {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return builder.update(index, file, channel);
+		}
+	}
+
+	private EntryIndex updateSidecar(boolean create) throws Exception {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return builder.updateSidecar(file, channel, create);
+		}
+	}
+
+	/**
+	 * One entry per second, every third entry with a stack trace
+	 */
+	private static String entries(int fromSecond, int toSecond) {
+		StringBuilder result = new StringBuilder();
+		for (int second = fromSecond; second < toSecond; second++) {
+			result.append(String.format("2016-04-27 14:%02d:%02d,123 INFO Entry %d\n", second / 60, second % 60,
+					second));
+			if (second % 3 == 0) {
+				result.append("   at MyClass.execute(83)\n   at MyCallingClass.run(50)\n");
+			}
+		}
+		return result.toString();
+	}
+}
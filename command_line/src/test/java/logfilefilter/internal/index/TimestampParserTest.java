@@ -0,0 +1,52 @@
+package logfilefilter.internal.index;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+public class TimestampParserTest {
+	private final TimestampParser parser = new TimestampParser(Pattern.compile("^[0-9-]{10} [0-9:,]{12}"),
+			TimestampParser.DEFAULT_TIME_FORMAT);
+
+	@Test
+	public void testParse() {
+		Assert.assertEquals(millis(2016, 4, 27, 14, 38, 44, 123),
+				parser.parse("2016-04-27 14:38:44,123 INFO First log\n   at MyClass.execute(83)\n"));
+	}
+
+	@Test
+	public void testParseTimestampAfterPrefix() {
+		TimestampParser prefixParser = new TimestampParser(Pattern.compile("[0-9-]{10} [0-9:,]{12}"),
+				TimestampParser.DEFAULT_TIME_FORMAT);
+		Assert.assertEquals(millis(2016, 4, 27, 14, 38, 44, 123),
+				prefixParser.parse("[main] 2016-04-27 14:38:44,123 INFO First log"));
+	}
+
+	@Test
+	public void testParseWithoutTimestamp() {
+		Assert.assertEquals(TimestampParser.NO_TIMESTAMP, parser.parse("   at MyClass.execute(83)"));
+		Assert.assertEquals(TimestampParser.NO_TIMESTAMP, parser.parse("2016-99-27 14:38:44,123 INFO First log"));
+	}
+
+	@Test
+	public void testParseQueryWithOmittedFields() {
+		Assert.assertEquals(millis(2016, 4, 27, 14, 38, 44, 123), parser.parseQuery("2016-04-27 14:38:44,123"));
+		Assert.assertEquals(millis(2016, 4, 27, 14, 38, 44, 0), parser.parseQuery("2016-04-27 14:38:44"));
+		Assert.assertEquals(millis(2016, 4, 27, 14, 30, 0, 0), parser.parseQuery("2016-04-27 14:30"));
+		Assert.assertEquals(millis(2016, 4, 27, 0, 0, 0, 0), parser.parseQuery("2016-04-27"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseQueryInvalid() {
+		parser.parseQuery("14:30");
+	}
+
+	private static long millis(int year, int month, int day, int hour, int minute, int second, int milli) {
+		return LocalDateTime.of(year, month, day, hour, minute, second, milli * 1000000).toInstant(ZoneOffset.UTC)
+				.toEpochMilli();
+	}
+}
@@ -0,0 +1,112 @@
+package logfilefilter.internal.index;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+public class TrigramIndexBuilderTest {
+	private static final String DATE_PATTERN = "^[0-9-]{10} [0-9:,]{12}";
+	private static final int BLOCK_SIZE = 1024;
+
+	private Path file;
+	private Path indexFile;
+	private final TrigramIndexBuilder builder = new TrigramIndexBuilder(Pattern.compile(DATE_PATTERN), DATE_PATTERN);
+
+	@Before
+	public void setUp() throws Exception {
+		file = Files.createTempFile("TrigramIndexBuilderTest", ".log");
+		indexFile = TrigramIndex.indexFileOf(file);
+		builder.setBlockSize(BLOCK_SIZE);
+
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			content.append("2016-04-27 14:38:44,").append(100 + i % 900).append(" INFO Entry ").append(i).append('\n');
+			if (i == 123 || i == 876) {
+				content.append("java.lang.RareException: boom\n   at MyClass.execute(83)\n");
+			}
+		}
+		Files.write(file, content.toString().getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(file);
+		Files.deleteIfExists(indexFile);
+	}
+
+	private TrigramIndex buildIndex() throws Exception {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return builder.updateSidecar(file, channel);
+		}
+	}
+
+	private int blockOf(TrigramIndex index, long offset) {
+		for (int block = 0; block < index.getBlockCount(); block++) {
+			if (offset < index.getBlockEnd(block)) {
+				return block;
+			}
+		}
+		return -1;
+	}
+
+	@Test
+	public void testCandidateBlocksOfRareLiteral() throws Exception {
+		TrigramIndex index = buildIndex();
+		String content = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+
+		BitSet expected = new BitSet();
+		expected.set(blockOf(index, content.indexOf("RareException")));
+		expected.set(blockOf(index, content.lastIndexOf("RareException")));
+		Assert.assertTrue(index.getBlockCount() > 10);
+		Assert.assertEquals(expected, index.candidateBlocks(Collections.singletonList("Rare[A-Z]xception")));
+		Assert.assertTrue(index.candidateBlocks(Collections.singletonList("NotInTheFile")).isEmpty());
+	}
+
+	@Test
+	public void testBlocksStartAtEntries() throws Exception {
+		TrigramIndex index = buildIndex();
+		byte[] content = Files.readAllBytes(file);
+
+		Assert.assertEquals(0, index.getBlockStart(0));
+		Assert.assertEquals(content.length, index.getBlockEnd(index.getBlockCount() - 1));
+		for (int block = 1; block < index.getBlockCount(); block++) {
+			Assert.assertEquals(index.getBlockEnd(block - 1), index.getBlockStart(block));
+			Assert.assertEquals('2', content[(int) index.getBlockStart(block)]);
+			Assert.assertEquals('\n', content[(int) index.getBlockStart(block) - 1]);
+		}
+	}
+
+	@Test
+	public void testUnrestrictedPatterns() throws Exception {
+		TrigramIndex index = buildIndex();
+
+		Assert.assertNull(index.candidateBlocks(Collections.singletonList("[0-9]+")));
+		Assert.assertNull(index.candidateBlocks(Collections.singletonList("at")));
+		Assert.assertNull(index.candidateBlocks(Arrays.asList("RareException", "(?i)rare")));
+	}
+
+	@Test
+	public void testStoredIndexReusedUntilFileChanges() throws Exception {
+		TrigramIndex built = buildIndex();
+		TrigramIndex loaded = TrigramIndex.load(indexFile);
+
+		Assert.assertTrue(loaded.isValid(Files.size(file), Files.getLastModifiedTime(file).toMillis(), DATE_PATTERN));
+		Assert.assertEquals(built.candidateBlocks(Collections.singletonList("RareException")),
+				loaded.candidateBlocks(Collections.singletonList("RareException")));
+
+		Files.write(file, "2016-04-27 14:38:45,000 INFO appended\n".getBytes(), StandardOpenOption.APPEND);
+		Assert.assertFalse(loaded.isValid(Files.size(file), Files.getLastModifiedTime(file).toMillis(), DATE_PATTERN));
+	}
+}
@@ -0,0 +1,56 @@
+package logfilefilter.internal.input;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+public class AsyncInputStreamTest {
+	@Test
+	public void testReadGivesAllBytesInOrder() throws Exception {
+		byte[] content = new byte[100000];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) i;
+		}
+
+		try (InputStream testee = new AsyncInputStream(new ByteArrayInputStream(content), "test", 1000, 3)) {
+			Assert.assertTrue(Arrays.equals(content, readAll(testee)));
+			Assert.assertEquals(-1, testee.read());
+		}
+	}
+
+	@Test
+	public void testReadEmptyStream() throws Exception {
+		try (InputStream testee = new AsyncInputStream(new ByteArrayInputStream(new byte[0]), "test", 1000, 3)) {
+			Assert.assertEquals(-1, testee.read());
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testReadPassesFailure() throws Exception {
+		InputStream failing = new InputStream() {
+			@Override
+			public int read() throws IOException {
+				throw new IOException("Corrupt input");
+			}
+		};
+		try (InputStream testee = new AsyncInputStream(failing, "test", 1000, 3)) {
+			readAll(testee);
+		}
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		byte[] buffer = new byte[777];
+		int read;
+		while ((read = in.read(buffer)) >= 0) {
+			result.write(buffer, 0, read);
+		}
+		return result.toByteArray();
+	}
+}
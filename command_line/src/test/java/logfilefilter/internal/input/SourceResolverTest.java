@@ -0,0 +1,62 @@
+package logfilefilter.internal.input;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+public class SourceResolverTest {
+	private Path directory;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("SourceResolverTest");
+		for (String name : Arrays.asList("app.log", "app.log.1.gz", "app.log.10.gz", "app.log.2.gz", "other.txt")) {
+			Files.createFile(directory.resolve(name));
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (Path file : Files.list(directory).collect(Collectors.toList())) {
+			Files.delete(file);
+		}
+		Files.delete(directory);
+	}
+
+	@Test
+	public void testResolveGlobSortsNumbersByValue() throws Exception {
+		Assert.assertEquals(Arrays.asList("app.log", "app.log.1.gz", "app.log.2.gz", "app.log.10.gz"),
+				names(SourceResolver.resolve(directory + "/app.log*")));
+	}
+
+	@Test
+	public void testResolvePlainPath() throws Exception {
+		Assert.assertEquals(Collections.singletonList("missing.log"),
+				names(SourceResolver.resolve(directory + "/missing.log")));
+	}
+
+	@Test
+	public void testResolveDirectorySkipsSidecarFiles() throws Exception {
+		Files.createFile(directory.resolve("app.log.lfidx"));
+		Assert.assertEquals(Arrays.asList("app.log", "app.log.1.gz", "app.log.2.gz", "app.log.10.gz", "other.txt"),
+				names(SourceResolver.resolve(directory.toString())));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testResolveGlobWithoutMatch() throws Exception {
+		SourceResolver.resolve(directory + "/*.zst");
+	}
+
+	private static List<String> names(List<Path> paths) {
+		return paths.stream().map(path -> path.getFileName().toString()).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,113 @@
+package logfilefilter.internal.output;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+import logfilefilter.internal.processors.ByteSequence;
+import logfilefilter.internal.processors.StreamProcessor;
+
+public class BufferedOutputSinkTest {
+	private static final String ENTRY = "2016-04-27 14:38:44,123 INFO Gr\u00fc\u00dfe\n";
+
+	private ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+	@Test
+	public void testWriteIsBuffered() throws Exception {
+		BufferedOutputSink testee = new BufferedOutputSink(out, StandardCharsets.UTF_8, StandardCharsets.UTF_8, 1024);
+		testee.write(ENTRY);
+		Assert.assertEquals(0, out.size());
+
+		testee.flush();
+		Assert.assertTrue(Arrays.equals(ENTRY.getBytes(StandardCharsets.UTF_8), out.toByteArray()));
+	}
+
+	@Test
+	public void testWriteLargerThanBuffer() throws Exception {
+		BufferedOutputSink testee = new BufferedOutputSink(out, StandardCharsets.UTF_8, StandardCharsets.UTF_8, 8);
+		testee.write(ENTRY);
+		testee.write(bytes(ENTRY, StandardCharsets.UTF_8));
+		testee.close();
+		Assert.assertEquals(ENTRY + ENTRY, new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testWriteAddsMissingLineSeparator() throws Exception {
+		BufferedOutputSink testee = new BufferedOutputSink(out, StandardCharsets.UTF_8, StandardCharsets.UTF_8, 1024);
+		testee.write("last line");
+		testee.write(bytes("last line", StandardCharsets.UTF_8));
+		testee.close();
+		Assert.assertEquals("last line" + StreamProcessor.LINE_SEPARATOR + "last line" + StreamProcessor.LINE_SEPARATOR,
+				out.toString());
+	}
+
+	@Test
+	public void testWriteTranscodesBytes() throws Exception {
+		BufferedOutputSink testee = new BufferedOutputSink(out, StandardCharsets.ISO_8859_1, StandardCharsets.UTF_8,
+				1024);
+		testee.write(bytes(ENTRY, StandardCharsets.ISO_8859_1));
+		testee.close();
+		Assert.assertTrue(Arrays.equals(ENTRY.getBytes(StandardCharsets.UTF_8), out.toByteArray()));
+	}
+
+	@Test
+	public void testFlushPolicyEntry() throws Exception {
+		BufferedOutputSink testee = new BufferedOutputSink(out, StandardCharsets.UTF_8, StandardCharsets.UTF_8, 1024);
+		testee.setFlushPolicy(FlushPolicy.ENTRY, 0, TimeUnit.MILLISECONDS);
+		testee.write(ENTRY);
+		Assert.assertEquals(ENTRY, new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testFlushPolicyIntervalWithoutFurtherEntry() throws Exception {
+		BufferedOutputSink testee = new BufferedOutputSink(out, StandardCharsets.UTF_8, StandardCharsets.UTF_8, 1024);
+		testee.setFlushPolicy(FlushPolicy.INTERVAL, 50, TimeUnit.MILLISECONDS);
+		testee.write(ENTRY);
+		Assert.assertEquals(0, out.size());
+
+		// Flushed by the timer, although no entry is written anymore
+		long deadline = System.currentTimeMillis() + 5000;
+		while (out.size() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		synchronized (testee) {
+			Assert.assertEquals(ENTRY, new String(out.toByteArray(), StandardCharsets.UTF_8));
+		}
+		testee.close();
+	}
+
+	@Test
+	public void testGatherWrites() throws Exception {
+		Path file = Files.createTempFile("BufferedOutputSinkTest", ".log");
+		try {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+				BufferedOutputSink testee = new BufferedOutputSink(channel, StandardCharsets.UTF_8,
+						StandardCharsets.UTF_8, 1024);
+				testee.setGatherWrites(true);
+				testee.write(bytes(ENTRY, StandardCharsets.UTF_8));
+				testee.write("decoded\n");
+				testee.write(bytes("last line", StandardCharsets.UTF_8));
+				testee.close();
+			}
+			Assert.assertEquals(ENTRY + "decoded\nlast line" + StreamProcessor.LINE_SEPARATOR,
+					new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static ByteSequence bytes(String text, Charset charset) {
+		byte[] bytes = ("xx" + text).getBytes(charset);
+		return new ByteSequence(ByteBuffer.wrap(bytes), 2, bytes.length - 2);
+	}
+}
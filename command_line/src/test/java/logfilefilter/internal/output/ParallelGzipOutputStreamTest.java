@@ -0,0 +1,86 @@
+package logfilefilter.internal.output;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+public class ParallelGzipOutputStreamTest {
+	@Test
+	public void testBlocksAreConcatenatedMembers() throws Exception {
+		byte[] data = new byte[100_000];
+		Random random = new Random(3);
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) ('a' + random.nextInt(4));
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ParallelGzipOutputStream testee = new ParallelGzipOutputStream(out, 3, 4096)) {
+			// Writes of different sizes, across the block boundaries
+			int offset = 0;
+			for (int length = 1; offset < data.length; length = length * 3 % 10_007) {
+				int written = Math.min(length, data.length - offset);
+				testee.write(data, offset, written);
+				offset += written;
+			}
+		}
+
+		Assert.assertTrue(Arrays.equals(data, decompress(out.toByteArray())));
+	}
+
+	@Test
+	public void testFlushWritesCompleteBlocksOnly() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ParallelGzipOutputStream testee = new ParallelGzipOutputStream(out, 2, 8);
+		testee.write("first\n".getBytes());
+		testee.flush();
+		Assert.assertEquals(0, out.size());
+
+		// Completes the first block of 8 bytes
+		testee.write("second\n".getBytes());
+		testee.flush();
+		Assert.assertEquals("first\nse", new String(decompress(out.toByteArray())));
+		testee.close();
+		Assert.assertEquals("first\nsecond\n", new String(decompress(out.toByteArray())));
+	}
+
+	@Test
+	public void testFlushPerEntryKeepsMembers() throws Exception {
+		ByteArrayOutputStream flushed = new ByteArrayOutputStream();
+		ByteArrayOutputStream unflushed = new ByteArrayOutputStream();
+		try (ParallelGzipOutputStream flushing = new ParallelGzipOutputStream(flushed, 2, 4096);
+				ParallelGzipOutputStream buffering = new ParallelGzipOutputStream(unflushed, 2, 4096)) {
+			for (int i = 0; i < 1000; i++) {
+				byte[] entry = ("2016-04-27 14:38:44,123 INFO Entry " + i + "\n").getBytes();
+				flushing.write(entry);
+				flushing.flush();
+				buffering.write(entry);
+			}
+		}
+		Assert.assertTrue(Arrays.equals(unflushed.toByteArray(), flushed.toByteArray()));
+	}
+
+	@Test
+	public void testEmptyStream() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new ParallelGzipOutputStream(out, 2, 1024).close();
+		Assert.assertEquals(0, out.size());
+	}
+
+	private static byte[] decompress(byte[] compressed) throws Exception {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+			byte[] buffer = new byte[8192];
+			for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+				result.write(buffer, 0, read);
+			}
+		}
+		return result.toByteArray();
+	}
+}
@@ -0,0 +1,50 @@
+package logfilefilter.internal.output;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+public class RotatingOutputSinkTest {
+	private static final String ENTRY = "2016-04-27 14:38:44,123 INFO First log\n";
+
+	@Test
+	public void testFileOf() throws Exception {
+		Path target = Paths.get("out", "filtered.log.gz");
+		Assert.assertEquals(target, RotatingOutputSink.fileOf(target, 0));
+		Assert.assertEquals(Paths.get("out", "filtered.2.log.gz"), RotatingOutputSink.fileOf(target, 2));
+		Assert.assertEquals(Paths.get("filtered.1"), RotatingOutputSink.fileOf(Paths.get("filtered"), 1));
+		Assert.assertEquals(Paths.get(".hidden.1"), RotatingOutputSink.fileOf(Paths.get(".hidden"), 1));
+	}
+
+	@Test
+	public void testEntriesAreNotSplit() throws Exception {
+		Path directory = Files.createTempDirectory("RotatingOutputSinkTest");
+		Path target = directory.resolve("filtered.log");
+		try {
+			try (RotatingOutputSink testee = new RotatingOutputSink(target, 2 * ENTRY.length() - 1,
+					file -> new BufferedOutputSink(Files.newOutputStream(file), StandardCharsets.UTF_8,
+							StandardCharsets.UTF_8, 1024))) {
+				for (int i = 0; i < 5; i++) {
+					testee.write(ENTRY);
+				}
+				Assert.assertEquals(3, testee.getFileCount());
+			}
+
+			Assert.assertEquals(ENTRY + ENTRY, new String(Files.readAllBytes(target)));
+			Assert.assertEquals(ENTRY + ENTRY, new String(Files.readAllBytes(directory.resolve("filtered.1.log"))));
+			Assert.assertEquals(ENTRY, new String(Files.readAllBytes(directory.resolve("filtered.2.log"))));
+			Assert.assertFalse(Files.exists(directory.resolve("filtered.3.log")));
+		} finally {
+			try (Stream<Path> files = Files.walk(directory)) {
+				files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+			}
+		}
+	}
+}
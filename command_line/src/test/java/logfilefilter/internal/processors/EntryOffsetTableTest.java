@@ -0,0 +1,89 @@
+package logfilefilter.internal.processors;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+public class EntryOffsetTableTest {
+	private static final String DATE_PATTERN = "^[0-9-]{10} [0-9:,]{12}";
+
+	private Path file;
+	private ForkJoinPool pool;
+
+	@Before
+	public void setUp() throws Exception {
+		file = Files.createTempFile("EntryOffsetTableTest", ".log");
+		pool = new ForkJoinPool(4);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		pool.shutdown();
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testFilterCachedEntries() throws Exception {
+		StringBuilder log = new StringBuilder("   at a leading line\n");
+		for (int i = 0; i < 5000; i++) {
+			log.append("2016-04-27 14:38:44,123 ").append(i % 7 == 0 ? "ERROR" : "INFO").append(" Entry ").append(i)
+					.append('\n');
+			if (i % 3 == 0) {
+				log.append("   at MyClass.execute(83)\n");
+			}
+		}
+		Files.write(file, log.toString().getBytes(StandardCharsets.UTF_8));
+
+		List<String> expected = new ArrayList<>();
+		EntryOffsetTable table;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			EntryOffsetTable.Builder builder = new EntryOffsetTable.Builder();
+			new MappedFileProcessor(channel, Pattern.compile(DATE_PATTERN)).execute(Arrays.asList(logEntry -> {
+				builder.add(logEntry);
+				if (logEntry.toString().contains("ERROR")) {
+					expected.add(logEntry.toString());
+				}
+			}));
+			table = builder.build(0, DATE_PATTERN);
+
+			List<String> result = new ArrayList<>();
+			table.filter(channel, logEntry -> logEntry.toString().contains("ERROR"),
+					logEntry -> result.add(logEntry.toString()), pool);
+			Assert.assertEquals(expected, result);
+		}
+		Assert.assertEquals(5001, table.getEntryCount());
+		Assert.assertEquals(log.length(), table.getSize());
+	}
+
+	@Test
+	public void testCacheDropsTableOfChangedFile() throws Exception {
+		Files.write(file, "2016-04-27 14:38:44,123 INFO First log\n".getBytes(StandardCharsets.UTF_8));
+		long modifiedTime = Files.getLastModifiedTime(file).toMillis();
+		EntryOffsetTable.Builder builder = new EntryOffsetTable.Builder();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			new MappedFileProcessor(channel, Pattern.compile(DATE_PATTERN)).execute(Arrays.asList(builder::add));
+		}
+
+		EntryOffsetCache cache = new EntryOffsetCache();
+		cache.put(file, builder.build(modifiedTime, DATE_PATTERN));
+		Assert.assertNotNull(cache.get(file, DATE_PATTERN));
+		Assert.assertNull(cache.get(file, "^\\["));
+
+		Files.write(file, "2016-04-27 14:38:45,123 INFO Second log\n".getBytes(StandardCharsets.UTF_8),
+				StandardOpenOption.APPEND);
+		Assert.assertNull(cache.get(file, DATE_PATTERN));
+	}
+}
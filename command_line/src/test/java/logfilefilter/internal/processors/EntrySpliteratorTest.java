@@ -0,0 +1,97 @@
+package logfilefilter.internal.processors;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+public class EntrySpliteratorTest {
+	private static final Pattern LOG_LINE_PATTERN = Pattern.compile("^[0-9-]{10} [0-9:,]{12}");
+
+	private Path file;
+	private FileChannel channel;
+	private final List<String> expected = new ArrayList<>();
+
+	@Before
+	public void setUp() throws Exception {
+		file = Files.createTempFile("EntrySpliteratorTest", ".log");
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			StringBuilder entry = new StringBuilder();
+			entry.append("2016-04-27 14:38:44,").append(100 + i).append(" INFO Entry ").append(i).append('\n');
+			for (int j = 0; j < i % 5; j++) {
+				entry.append("   at MyClass.execute(").append(j).append(")\n");
+			}
+			expected.add(entry.toString());
+			content.append(entry);
+		}
+		Files.write(file, content.toString().getBytes(StandardCharsets.ISO_8859_1));
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		channel.close();
+		Files.deleteIfExists(file);
+	}
+
+	private EntrySpliterator spliterator(long minSplitSize) throws Exception {
+		return new EntrySpliterator(channel, 0, channel.size(), LOG_LINE_PATTERN, minSplitSize);
+	}
+
+	@Test
+	public void testSequentialStream() throws Exception {
+		Assert.assertEquals(expected, StreamSupport.stream(spliterator(1 << 20), false).map(ByteSequence::toString)
+				.collect(Collectors.toList()));
+	}
+
+	@Test
+	public void testParallelStreamKeepsOrder() throws Exception {
+		for (long minSplitSize : new long[] { 1, 50, 1000 }) {
+			Assert.assertEquals(expected, StreamSupport.stream(spliterator(minSplitSize), true)
+					.map(ByteSequence::toString).collect(Collectors.toList()));
+		}
+	}
+
+	@Test
+	public void testSplitAtEntryBoundary() throws Exception {
+		EntrySpliterator suffix = spliterator(1);
+		Spliterator<ByteSequence> prefix = suffix.trySplit();
+		Assert.assertNotNull(prefix);
+
+		List<String> entries = new ArrayList<>();
+		prefix.forEachRemaining(entry -> entries.add(entry.toString()));
+		int prefixCount = entries.size();
+		suffix.forEachRemaining(entry -> entries.add(entry.toString()));
+
+		Assert.assertTrue(prefixCount > 0 && prefixCount < expected.size());
+		Assert.assertEquals(expected, entries);
+	}
+
+	@Test
+	public void testTryAdvanceThenSplit() throws Exception {
+		EntrySpliterator testee = spliterator(1);
+		List<String> entries = new ArrayList<>();
+		Assert.assertTrue(testee.tryAdvance(entry -> entries.add(entry.toString())));
+
+		Spliterator<ByteSequence> prefix = testee.trySplit();
+		prefix.forEachRemaining(entry -> entries.add(entry.toString()));
+		testee.forEachRemaining(entry -> entries.add(entry.toString()));
+
+		Assert.assertEquals(expected, entries);
+		Assert.assertEquals(0, testee.estimateSize());
+	}
+}
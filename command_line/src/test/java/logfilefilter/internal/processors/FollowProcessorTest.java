@@ -0,0 +1,155 @@
+package logfilefilter.internal.processors;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+public class FollowProcessorTest {
+	private static final Pattern LOG_LINE_PATTERN = Pattern.compile("^[0-9-]{10} [0-9:,]{12}");
+	private static final String NL = StreamProcessor.LINE_SEPARATOR;
+
+	private static final String FIRST_ENTRY = "2016-04-27 14:38:44,123 INFO First log";
+	private static final String SECOND_ENTRY = "2016-04-27 14:38:44,400 ERROR An Exception occurred\n" //
+			+ "   at MyClass.execute(83)";
+	private static final String THIRD_ENTRY = "2016-04-27 14:38:44,400 INFO Service result: ERROR";
+
+	private Path directory;
+	private Path file;
+	private final BlockingQueue<String> entries = new LinkedBlockingQueue<>();
+	private Thread follower;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("FollowProcessorTest");
+		file = directory.resolve("live.log");
+	}
+
+	private void startFollowing() throws InterruptedException {
+		startFollowing(logEntry -> true);
+	}
+
+	private void startFollowing(Predicate<String> filter) throws InterruptedException {
+		FollowProcessor processor = new FollowProcessor(file, StandardCharsets.UTF_8, LOG_LINE_PATTERN);
+		processor.setIdleFlushTimeout(50);
+		follower = new Thread(() -> processor.execute(filter, entries::add, () -> {
+		}));
+		follower.start();
+		// Wait until the follower waits for the first change
+		while (follower.getState() != Thread.State.TIMED_WAITING) {
+			Thread.sleep(10);
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (follower != null) {
+			follower.interrupt();
+			follower.join(5000);
+		}
+		for (Path path : Files.newDirectoryStream(directory)) {
+			Files.delete(path);
+		}
+		Files.delete(directory);
+	}
+
+	/**
+	 * The file does not exist yet, so it is followed from its begin
+	 */
+	@Test
+	public void testAppendedEntries() throws Exception {
+		startFollowing();
+		append(file, FIRST_ENTRY + "\n" + SECOND_ENTRY + "\n");
+		assertNextEntry(FIRST_ENTRY);
+		// The last entry is completed by the idle flush timeout
+		assertNextEntry(SECOND_ENTRY);
+
+		append(file, THIRD_ENTRY + "\n");
+		assertNextEntry(THIRD_ENTRY);
+	}
+
+	@Test
+	public void testLateLinesOfIncludedEntry() throws Exception {
+		startFollowing(logEntry -> logEntry.contains("Exception"));
+		String[] lines = SECOND_ENTRY.split("\n");
+		append(file, lines[0] + "\n");
+		assertNextEntry(lines[0]);
+
+		// The late stack frame does not match, but belongs to the entry
+		append(file, lines[1] + "\n" + THIRD_ENTRY + "\n");
+		assertNextEntry(lines[1]);
+		Assert.assertNull(entries.poll(300, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testLateLinesOfExcludedEntry() throws Exception {
+		startFollowing(logEntry -> !logEntry.contains("Exception"));
+		String[] lines = SECOND_ENTRY.split("\n");
+		append(file, lines[0] + "\n");
+		Assert.assertNull(entries.poll(300, TimeUnit.MILLISECONDS));
+
+		append(file, lines[1] + "\n" + THIRD_ENTRY + "\n");
+		assertNextEntry(THIRD_ENTRY);
+	}
+
+	@Test
+	public void testExistingContentIsSkipped() throws Exception {
+		append(file, FIRST_ENTRY + "\n" + SECOND_ENTRY.substring(0, 20));
+		startFollowing();
+
+		append(file, SECOND_ENTRY.substring(20) + "\n" + THIRD_ENTRY + "\n");
+		assertNextEntry(THIRD_ENTRY);
+	}
+
+	@Test
+	public void testPartialLineIsNotWritten() throws Exception {
+		startFollowing();
+		append(file, FIRST_ENTRY.substring(0, 10));
+		Assert.assertNull(entries.poll(300, TimeUnit.MILLISECONDS));
+
+		append(file, FIRST_ENTRY.substring(10) + "\n");
+		assertNextEntry(FIRST_ENTRY);
+	}
+
+	@Test
+	public void testRotation() throws Exception {
+		startFollowing();
+		append(file, FIRST_ENTRY + "\n");
+		assertNextEntry(FIRST_ENTRY);
+
+		Files.move(file, directory.resolve("live.log.1"));
+		append(file, SECOND_ENTRY + "\n");
+		assertNextEntry(SECOND_ENTRY);
+	}
+
+	@Test
+	public void testTruncation() throws Exception {
+		startFollowing();
+		append(file, FIRST_ENTRY + "\n" + SECOND_ENTRY + "\n");
+		assertNextEntry(FIRST_ENTRY);
+		assertNextEntry(SECOND_ENTRY);
+
+		Files.write(file, (THIRD_ENTRY + "\n").getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+		assertNextEntry(THIRD_ENTRY);
+	}
+
+	private void assertNextEntry(String expected) throws InterruptedException {
+		Assert.assertEquals(expected.replace("\n", NL) + NL, entries.poll(5, TimeUnit.SECONDS));
+	}
+
+	private static void append(Path path, String text) throws Exception {
+		Files.write(path, text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND);
+	}
+}
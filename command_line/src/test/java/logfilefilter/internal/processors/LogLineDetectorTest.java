@@ -0,0 +1,68 @@
+package logfilefilter.internal.processors;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+public class LogLineDetectorTest {
+	private static final List<String> LINES = Arrays.asList("2016-04-27 14:38:44,123 INFO First log",
+			"2016-04-27 14:38:44,12", "2016-04-27T14:38:44.123+02:00 INFO First log",
+			"2016-04-27T14:38:44.123Z INFO First log", "   at MyClass.execute(83)", "", "INFO 2016-04-27 14:38:44,123",
+			"2016-04-27\t14:38:44,123", "2016-04-27 14:38:44,123\u00e4", "\u00e42016-04-27 14:38:44,123",
+			"[main] 2016-04-27 14:38:44,123", "INFO [main] started");
+
+	@Test
+	public void testForPatternCompilesFixedWidthPatterns() throws Exception {
+		for (String regex : Arrays.asList("^[0-9-]{10} [0-9:,]{12}", "^\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}",
+				"^\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\.\\d{3}[+-]\\d{2}:\\d{2}", "^....-..-..\\s")) {
+			Assert.assertTrue(regex, LogLineDetector.forPattern(Pattern.compile(regex)) instanceof FixedWidthLogLineDetector);
+			assertSameResultAsRegex(regex);
+		}
+	}
+
+	@Test
+	public void testForPatternFallsBackToRegex() throws Exception {
+		for (String regex : Arrays.asList("[0-9-]{10} [0-9:,]{12}", "^\\d{4}-\\d{2}-\\d{2}T.*(Z|[+-]\\d{2}:\\d{2})",
+				"^[0-9-]{8,10}", "^[^ ]{10}", "(?i)^info")) {
+			Assert.assertTrue(regex, LogLineDetector.forPattern(Pattern.compile(regex)) instanceof RegexLogLineDetector);
+			assertSameResultAsRegex(regex);
+		}
+	}
+
+	@Test
+	public void testTopLevelAlternationIsFoundAnywhere() throws Exception {
+		for (String regex : Arrays.asList("^\\d{4}|^\\[", "^2016|INFO", "^\\d{4}|\\[main", "^(\\d{4}|\\[)",
+				"^[|]INFO|\\[", "^\\Q|\\E|2016")) {
+			assertSameResultAsRegex(regex);
+		}
+		Assert.assertTrue(RegexLogLineDetector.hasTopLevelAlternation("^a|b"));
+		Assert.assertFalse(RegexLogLineDetector.hasTopLevelAlternation("^(a|b)"));
+		Assert.assertFalse(RegexLogLineDetector.hasTopLevelAlternation("^[|]\\|\\Q|\\E"));
+		Assert.assertTrue(RegexLogLineDetector.hasTopLevelAlternation("^[]|]|b"));
+	}
+
+	@Test
+	public void testFixedWidth() throws Exception {
+		FixedWidthLogLineDetector testee = FixedWidthLogLineDetector.compile(Pattern.compile("^[0-9-]{10} [0-9:,]{12}"));
+		Assert.assertEquals(23, testee.getWidth());
+	}
+
+	private void assertSameResultAsRegex(String regex) {
+		Pattern pattern = Pattern.compile(regex);
+		LogLineDetector testee = LogLineDetector.forPattern(pattern);
+		for (String line : LINES) {
+			boolean expected = pattern.matcher(line).find();
+			Assert.assertEquals(regex + " on " + line, expected, testee.isLogLine(line));
+
+			byte[] bytes = ("xx" + line).getBytes(StandardCharsets.ISO_8859_1);
+			Assert.assertEquals(regex + " on bytes " + line, expected,
+					testee.isLogLine(ByteBuffer.wrap(bytes), 2, bytes.length - 2));
+		}
+	}
+}
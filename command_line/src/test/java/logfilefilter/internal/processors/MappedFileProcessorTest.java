@@ -0,0 +1,80 @@
+package logfilefilter.internal.processors;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+public class MappedFileProcessorTest {
+	private static final Pattern LOG_LINE_PATTERN = Pattern.compile("^[0-9-]{10} [0-9:,]{12}");
+
+	private static final String FIRST_ENTRY = "2016-04-27 14:38:44,123 INFO First log\n";
+	private static final String SECOND_ENTRY = "2016-04-27 14:38:44,400 ERROR An Exception occurred\n" //
+			+ "   at MyClass.execute(83)\n" //
+			+ "   at MyCallingClass.run(50)\n";
+	private static final String THIRD_ENTRY = "2016-04-27 14:38:44,400 INFO Service result: ERROR";
+
+	private Path file;
+
+	@Before
+	public void setUp() throws Exception {
+		file = Files.createTempFile("MappedFileProcessorTest", ".log");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testExecuteSplitsMultiLineEntries() throws Exception {
+		Assert.assertEquals(Arrays.asList(FIRST_ENTRY, SECOND_ENTRY, THIRD_ENTRY),
+				execute(FIRST_ENTRY + SECOND_ENTRY + THIRD_ENTRY, MappedFileProcessor.DEFAULT_WINDOW_SIZE));
+	}
+
+	@Test
+	public void testExecuteEmptyFile() throws Exception {
+		Assert.assertTrue(execute("", MappedFileProcessor.DEFAULT_WINDOW_SIZE).isEmpty());
+	}
+
+	@Test
+	public void testExecuteFirstLineStartsEntry() throws Exception {
+		String leadingLine = "   at AnyClass.anyMethod(215)\n";
+		Assert.assertEquals(Arrays.asList(leadingLine, FIRST_ENTRY),
+				execute(leadingLine + FIRST_ENTRY, MappedFileProcessor.DEFAULT_WINDOW_SIZE));
+	}
+
+	@Test
+	public void testExecuteEntriesCrossingWindows() throws Exception {
+		Assert.assertEquals(Arrays.asList(FIRST_ENTRY, SECOND_ENTRY, FIRST_ENTRY, THIRD_ENTRY),
+				execute(FIRST_ENTRY + SECOND_ENTRY + FIRST_ENTRY + THIRD_ENTRY, SECOND_ENTRY.length() + FIRST_ENTRY.length()));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testExecuteEntryLargerThanWindow() throws Exception {
+		execute(FIRST_ENTRY + SECOND_ENTRY, 20);
+	}
+
+	private List<String> execute(String content, long windowSize) throws Exception {
+		Files.write(file, content.getBytes(StandardCharsets.ISO_8859_1));
+
+		List<String> result = new ArrayList<>();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedFileProcessor testee = new MappedFileProcessor(channel, LOG_LINE_PATTERN);
+			testee.setWindowSize(windowSize);
+			testee.execute(Arrays.asList(logEntry -> result.add(logEntry.toString())));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,91 @@
+package logfilefilter.internal.processors;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+import logfilefilter.internal.index.TimestampParser;
+
+public class MergeProcessorTest {
+	private final TimestampParser timestampParser = new TimestampParser(
+			Pattern.compile("^[0-9-]{10} [0-9:,]{12}"), TimestampParser.DEFAULT_TIME_FORMAT);
+
+	private static MergeProcessor.EntrySource source(String... entries) {
+		return consumer -> Arrays.asList(entries).forEach(consumer);
+	}
+
+	private List<String> merge(MergeProcessor.EntrySource... sources) {
+		List<String> result = new ArrayList<>();
+		new MergeProcessor(Arrays.asList(sources), timestampParser)
+				.execute((entry, source) -> result.add(source + ":" + entry));
+		return result;
+	}
+
+	@Test
+	public void testMergedByTimestamp() {
+		List<String> result = merge(source("2016-04-27 14:00:01,000 a1", "2016-04-27 14:00:03,000 a2"),
+				source("2016-04-27 14:00:00,000 b1", "2016-04-27 14:00:02,000 b2", "2016-04-27 14:00:04,000 b3"));
+
+		Assert.assertEquals(Arrays.asList("1:2016-04-27 14:00:00,000 b1", "0:2016-04-27 14:00:01,000 a1",
+				"1:2016-04-27 14:00:02,000 b2", "0:2016-04-27 14:00:03,000 a2", "1:2016-04-27 14:00:04,000 b3"),
+				result);
+	}
+
+	@Test
+	public void testEqualTimestampsOrderedBySource() {
+		List<String> result = merge(source("2016-04-27 14:00:00,000 a"), source("2016-04-27 14:00:00,000 b"));
+
+		Assert.assertEquals(Arrays.asList("0:2016-04-27 14:00:00,000 a", "1:2016-04-27 14:00:00,000 b"), result);
+	}
+
+	@Test
+	public void testEntryWithoutTimestampStaysAfterPreviousEntry() {
+		List<String> result = merge(source("2016-04-27 14:00:00,000 a", "no timestamp", "2016-04-27 14:00:05,000 c"),
+				source("2016-04-27 14:00:01,000 b"));
+
+		Assert.assertEquals(Arrays.asList("0:2016-04-27 14:00:00,000 a", "0:no timestamp",
+				"1:2016-04-27 14:00:01,000 b", "0:2016-04-27 14:00:05,000 c"), result);
+	}
+
+	@Test
+	public void testManyEntriesInBatches() {
+		int count = MergeProcessor.BATCH_SIZE * MergeProcessor.MAX_PENDING_BATCHES * 3;
+		String[] even = IntStream.range(0, count).mapToObj(i -> String.format("2016-04-27 14:00:00,000 %06d", i * 2))
+				.toArray(String[]::new);
+		String[] odd = IntStream.range(0, count)
+				.mapToObj(i -> String.format("2016-04-27 14:00:00,000 %06d", i * 2 + 1)).toArray(String[]::new);
+
+		List<String> result = merge(source(even), source(odd));
+
+		Assert.assertEquals(count * 2, result.size());
+		Assert.assertEquals(Arrays.stream(even).map(entry -> "0:" + entry).collect(Collectors.toList()),
+				result.stream().filter(entry -> entry.startsWith("0:")).collect(Collectors.toList()));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testFailureOfSourcePropagated() {
+		merge(source("2016-04-27 14:00:00,000 a"), consumer -> {
+			throw new IOException("broken");
+		});
+	}
+
+	@Test(expected = StackOverflowError.class, timeout = 10_000)
+	public void testErrorOfSourcePropagated() {
+		merge(source("2016-04-27 14:00:00,000 a"), consumer -> {
+			throw new StackOverflowError();
+		});
+	}
+
+	@Test
+	public void testEmptySources() {
+		Assert.assertTrue(merge().isEmpty());
+		Assert.assertTrue(merge(source(), source()).isEmpty());
+	}
+}
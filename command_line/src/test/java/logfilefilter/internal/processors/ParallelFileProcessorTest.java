@@ -0,0 +1,88 @@
+package logfilefilter.internal.processors;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+public class ParallelFileProcessorTest {
+	private static final Pattern LOG_LINE_PATTERN = Pattern.compile("^[0-9-]{10} [0-9:,]{12}");
+
+	private Path file;
+	private ForkJoinPool pool;
+
+	@Before
+	public void setUp() throws Exception {
+		file = Files.createTempFile("ParallelFileProcessorTest", ".log");
+		pool = new ForkJoinPool(4);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		pool.shutdown();
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testExecuteGivesSameResultAsSequentialProcessing() throws Exception {
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			content.append("2016-04-27 14:38:44,").append(100 + i).append(" INFO Entry ").append(i).append('\n');
+			for (int j = 0; j < i % 7; j++) {
+				content.append("   at MyClass.execute(").append(j).append(")\n");
+			}
+		}
+		Files.write(file, content.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+		for (long chunkSize : new long[] { 1, 17, 100, 1000, 1L << 20 }) {
+			Assert.assertEquals(executeSequential(), executeParallel(chunkSize));
+		}
+	}
+
+	@Test
+	public void testExecuteWithoutEntryStartAfterTheFirstLine() throws Exception {
+		Files.write(file, "first line\nsecond line\nthird line".getBytes(StandardCharsets.ISO_8859_1));
+
+		Assert.assertEquals(Arrays.asList("first line\nsecond line\nthird line"), executeParallel(5));
+	}
+
+	@Test
+	public void testExecuteEmptyFile() throws Exception {
+		Assert.assertTrue(executeParallel(5).isEmpty());
+	}
+
+	private List<String> executeSequential() throws Exception {
+		List<String> result = new ArrayList<>();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			new MappedFileProcessor(channel, LOG_LINE_PATTERN).execute(Arrays.asList(logEntry -> {
+				if (logEntry.toString().contains("at MyClass")) {
+					result.add(logEntry.toString());
+				}
+			}));
+		}
+		return result;
+	}
+
+	private List<String> executeParallel(long chunkSize) throws Exception {
+		List<String> result = new ArrayList<>();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ParallelFileProcessor testee = new ParallelFileProcessor(channel, LOG_LINE_PATTERN, pool);
+			testee.setChunkSize(chunkSize);
+			testee.execute(logEntry -> !logEntry.toString().startsWith("2016") || logEntry.toString().contains("at MyClass"),
+					logEntry -> result.add(logEntry.toString()));
+		}
+		return result;
+	}
+}
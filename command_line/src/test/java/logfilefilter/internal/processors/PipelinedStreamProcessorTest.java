@@ -0,0 +1,152 @@
+package logfilefilter.internal.processors;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+public class PipelinedStreamProcessorTest {
+	private static final String DATE_PATTERN = "^[0-9-]{10} [0-9:,]{12}";
+	private static final Predicate<CharSequence> FILTER = logEntry -> logEntry.toString().contains("execute(2)");
+
+	private ForkJoinPool pool;
+
+	@Before
+	public void setUp() {
+		pool = new ForkJoinPool(4);
+	}
+
+	@After
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void testExecuteGivesSameResultAsSequentialProcessing() {
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			content.append("2016-04-27 14:38:44,").append(100 + i % 900).append(" INFO Entry ").append(i).append('\n');
+			for (int j = 0; j < i % 7; j++) {
+				content.append("   at MyClass.execute(").append(j).append(")\n");
+			}
+		}
+		byte[] bytes = content.toString().getBytes(StandardCharsets.ISO_8859_1);
+
+		List<String> expected = new ArrayList<>();
+		newStreamProcessor(new ByteArrayInputStream(bytes)).execute(Arrays.asList(logEntry -> {
+			if (FILTER.test(logEntry)) {
+				expected.add(logEntry);
+			}
+		}));
+		Assert.assertFalse(expected.isEmpty());
+
+		for (int batchSize : new int[] { 1, 3, 100, PipelinedStreamProcessor.DEFAULT_BATCH_SIZE }) {
+			PipelinedStreamProcessor testee = new PipelinedStreamProcessor(
+					newStreamProcessor(new ByteArrayInputStream(bytes)), pool);
+			testee.setBatchSize(batchSize);
+			List<String> result = new ArrayList<>();
+			testee.execute(FILTER, logEntry -> result.add(logEntry.toString()));
+			Assert.assertEquals(expected, result);
+		}
+	}
+
+	@Test
+	public void testExecuteEmptyStream() {
+		List<CharSequence> result = new ArrayList<>();
+		new PipelinedStreamProcessor(newStreamProcessor(new ByteArrayInputStream(new byte[0])), pool)
+				.execute(logEntry -> true, result::add);
+		Assert.assertEquals(0, result.size());
+	}
+
+	@Test
+	public void testReadFailureIsPassedToTheConsumingThread() {
+		InputStream failing = new SequenceInputStream(
+				new ByteArrayInputStream("2016-04-27 14:38:44,100 INFO First\n".getBytes(StandardCharsets.ISO_8859_1)),
+				new InputStream() {
+					@Override
+					public int read() throws IOException {
+						throw new IOException("Broken pipe");
+					}
+				});
+		try {
+			new PipelinedStreamProcessor(newStreamProcessor(failing), pool).execute(logEntry -> true, logEntry -> {
+			});
+			Assert.fail("The read failure is not passed on");
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("Broken pipe", e.getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void testConsumerFailureStopsThePipeline() throws Exception {
+		PipelinedStreamProcessor testee = new PipelinedStreamProcessor(
+				newStreamProcessor(new ByteArrayInputStream(entries(10_000).getBytes(StandardCharsets.ISO_8859_1))),
+				pool);
+		testee.setBatchSize(10);
+		try {
+			testee.execute(logEntry -> true, logEntry -> {
+				throw new IllegalArgumentException("Disk full");
+			});
+			Assert.fail("The consumer failure is not passed on");
+		} catch (IllegalArgumentException e) {
+			Assert.assertEquals("Disk full", e.getMessage());
+		}
+		// The assembling thread waiting for a free batch is stopped
+		long deadline = System.currentTimeMillis() + 5000;
+		while (isAssemblerRunning() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Assert.assertFalse(isAssemblerRunning());
+	}
+
+	@Test
+	public void testFilterFailureIsPassedToTheConsumingThread() {
+		PipelinedStreamProcessor testee = new PipelinedStreamProcessor(newStreamProcessor(
+				new ByteArrayInputStream(entries(100).getBytes(StandardCharsets.ISO_8859_1))), pool);
+		testee.setBatchSize(7);
+		List<CharSequence> result = new ArrayList<>();
+		try {
+			testee.execute(logEntry -> {
+				if (logEntry.toString().contains("Entry 50")) {
+					throw new IllegalArgumentException("Broken filter");
+				}
+				return true;
+			}, result::add);
+			Assert.fail("The filter failure is not passed on");
+		} catch (IllegalArgumentException e) {
+			Assert.assertEquals("Broken filter", e.getMessage());
+		}
+		// The batches before the failing one are passed in order
+		Assert.assertEquals(49, result.size());
+		Assert.assertTrue(result.get(48).toString().contains("Entry 48"));
+	}
+
+	private static boolean isAssemblerRunning() {
+		return Thread.getAllStackTraces().keySet().stream()
+				.anyMatch(thread -> thread.getName().equals("Assemble entries") && thread.isAlive());
+	}
+
+	private static String entries(int count) {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			result.append("2016-04-27 14:38:44,100 INFO Entry ").append(i).append('\n');
+		}
+		return result.toString();
+	}
+
+	private static StreamProcessor newStreamProcessor(InputStream in) {
+		return new StreamProcessor(in, StandardCharsets.ISO_8859_1, DATE_PATTERN);
+	}
+}
@@ -1,9 +1,13 @@
 package logfilefilter.internal.processors;
 
 import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.function.Consumer;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -139,4 +143,99 @@ public class StreamProcessorTest {
 		// mockito verify statements:
 		Assert.assertNotNull(testee);
 	}
+
+	private StreamProcessor boundedProcessor(String input, int maxEntrySize, OversizedEntryPolicy policy) {
+		StreamProcessor result = new StreamProcessor(new BufferedReader(new StringReader(input)),
+				Pattern.compile("^[0-9-]{10} [0-9:,]{12}"));
+		result.setMaxEntrySize(maxEntrySize, policy);
+		return result;
+	}
+
+	@Test
+	public void testBoundedEntriesWithinLimitUnchanged() throws Exception {
+		String first = "2016-04-27 14:58:44,123 first\n  at A.b()\n";
+		String second = "2016-04-27 14:58:45,123 second\n";
+		StreamProcessor testee = boundedProcessor(first + second, 100, OversizedEntryPolicy.TRUNCATE);
+
+		Assert.assertEquals(first.replace("\n", StreamProcessor.LINE_SEPARATOR), testee.getNextLogEntry());
+		Assert.assertEquals(second.replace("\n", StreamProcessor.LINE_SEPARATOR), testee.getNextLogEntry());
+		Assert.assertNull(testee.getNextLogEntry());
+	}
+
+	@Test
+	public void testBoundedEntriesSplitLikeUnbounded() throws Exception {
+		for (String lineEnd : new String[] { "\n", "\r\n", "\r" }) {
+			String content = "2016-04-27 14:58:44,123 first" + lineEnd + "  at A.b()" + lineEnd
+					+ "2016-04-27 14:58:45,123 second" + lineEnd;
+			StreamProcessor unbounded = new StreamProcessor(new BufferedReader(new StringReader(content)),
+					Pattern.compile("^[0-9-]{10} [0-9:,]{12}"));
+			List<String> expected = unbounded.entries().collect(Collectors.toList());
+			Assert.assertEquals(2, expected.size());
+			// The line ends within a line part and at its end
+			for (int maxEntrySize : new int[] { 100, 10 }) {
+				StreamProcessor testee = boundedProcessor(content, maxEntrySize, OversizedEntryPolicy.SPLIT);
+				Assert.assertEquals(String.join("", expected),
+						String.join("", testee.entries().collect(Collectors.toList())));
+			}
+			Assert.assertEquals(expected, boundedProcessor(content, 100, OversizedEntryPolicy.TRUNCATE).entries()
+					.collect(Collectors.toList()));
+		}
+	}
+
+	@Test
+	public void testOversizedEntryTruncated() throws Exception {
+		String first = "2016-04-27 14:58:44,123 first\n" + "0123456789\n";
+		String second = "2016-04-27 14:58:45,123 second\n";
+		StreamProcessor testee = boundedProcessor(first + second, 35, OversizedEntryPolicy.TRUNCATE);
+
+		String entry = testee.getNextLogEntry();
+		Assert.assertTrue(entry, entry.startsWith("2016-04-27 14:58:44,123 first" + StreamProcessor.LINE_SEPARATOR));
+		Assert.assertTrue(entry, entry.endsWith(" characters truncated]" + StreamProcessor.LINE_SEPARATOR));
+		// The line is cut, the marker is still a line of its own
+		Assert.assertTrue(entry, entry.contains(StreamProcessor.LINE_SEPARATOR + "[... "));
+		Assert.assertEquals(second.replace("\n", StreamProcessor.LINE_SEPARATOR), testee.getNextLogEntry());
+	}
+
+	@Test
+	public void testOversizedLineSplit() throws Exception {
+		String line = "2016-04-27 14:58:44,123 " + "abcdefghij";
+		StreamProcessor testee = boundedProcessor(line + "\n", 20, OversizedEntryPolicy.SPLIT);
+
+		Assert.assertEquals(line.substring(0, 20), testee.getNextLogEntry());
+		Assert.assertEquals(line.substring(20) + StreamProcessor.LINE_SEPARATOR, testee.getNextLogEntry());
+		Assert.assertNull(testee.getNextLogEntry());
+	}
+
+	@Test
+	public void testOversizedEntryStreamed() throws Exception {
+		StringBuilder payload = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			payload.append("payload line ").append(i).append('\n');
+		}
+		String first = "2016-04-27 14:58:44,123 first\n" + payload;
+		String second = "2016-04-27 14:58:45,123 second\n";
+		StreamProcessor testee = boundedProcessor(first + second, 100, OversizedEntryPolicy.STREAM);
+		List<String> streamed = new ArrayList<>();
+		testee.setOversizedEntryConsumer(entry -> streamed.add(entry.toString()));
+
+		testee.execute(Arrays.asList(consumer));
+
+		Assert.assertEquals(Arrays.asList(first.replace("\n", StreamProcessor.LINE_SEPARATOR)), streamed);
+		Mockito.verify(consumer).accept(second.replace("\n", StreamProcessor.LINE_SEPARATOR));
+		Mockito.verifyNoMoreInteractions(consumer);
+	}
+
+	@Test
+	public void testOversizedEntryTruncatedWithoutStreamConsumer() throws Exception {
+		String first = "2016-04-27 14:58:44,123 first\n" + "0123456789\n";
+		String second = "2016-04-27 14:58:45,123 second\n";
+		StreamProcessor testee = boundedProcessor(first + second, 35, OversizedEntryPolicy.STREAM);
+
+		List<String> entries = testee.entries().collect(Collectors.toList());
+		Assert.assertEquals(2, entries.size());
+		Assert.assertTrue(entries.get(0), entries.get(0).startsWith("2016-04-27 14:58:44,123 first"));
+		Assert.assertTrue(entries.get(0),
+				entries.get(0).endsWith(" characters truncated]" + StreamProcessor.LINE_SEPARATOR));
+		Assert.assertEquals(second.replace("\n", StreamProcessor.LINE_SEPARATOR), entries.get(1));
+	}
 }
@@ -0,0 +1,110 @@
+package logfilefilter.internal.statistics;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+import javax.management.MBeanServer;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+import logfilefilter.internal.filters.FilterPlan;
+
+public class FilterStatisticsTest {
+	private static final List<String> INCLUDES = Arrays.asList("ERROR", "Service result");
+	private static final List<String> EXCLUDES = Arrays.asList("MyClass");
+
+	private static final String FIRST_ENTRY = "2016-04-27 14:38:44,123 INFO First log\n";
+	private static final String SECOND_ENTRY = "2016-04-27 14:38:44,400 ERROR An Exception occurred\n" //
+			+ "   at MyClass.execute(83)\n" //
+			+ "   at MyCallingClass.run(50)\n";
+	private static final String THIRD_ENTRY = "2016-04-27 14:38:44,400 INFO Service result";
+	private static final String FOURTH_ENTRY = "2016-04-27 14:38:44,500 WARN Retry\n   at MyClass.execute(83)\n";
+
+	private final FilterStatistics statistics = new FilterStatistics(INCLUDES, EXCLUDES);
+
+	@Test
+	public void testMeasureEntries() {
+		FilterPlan filterPlan = FilterPlan.compile(INCLUDES, EXCLUDES);
+		Predicate<CharSequence> filter = statistics
+				.measureEntries(logEntry -> filterPlan.test(logEntry, statistics), false);
+
+		for (String logEntry : Arrays.asList(FIRST_ENTRY, SECOND_ENTRY, THIRD_ENTRY, FOURTH_ENTRY)) {
+			if (filter.test(logEntry)) {
+				statistics.addWritten(logEntry.length(), 0);
+			}
+		}
+
+		Assert.assertEquals(4, statistics.getEntries());
+		Assert.assertEquals(7, statistics.getLinesRead());
+		Assert.assertEquals(SECOND_ENTRY.length(), statistics.getLargestEntry());
+		Assert.assertEquals(0, statistics.getBytesRead());
+		Assert.assertEquals(3, statistics.getEntriesWritten());
+		Assert.assertEquals(FIRST_ENTRY.length() + SECOND_ENTRY.length() + THIRD_ENTRY.length(),
+				statistics.getBytesWritten());
+		Assert.assertTrue(Arrays.equals(new long[] { 1, 1 }, statistics.getIncludeMatches()));
+		Assert.assertTrue(Arrays.equals(new long[] { 1 }, statistics.getExcludeMatches()));
+	}
+
+	@Test
+	public void testMeasureMappedEntriesCountsBytes() {
+		Predicate<CharSequence> filter = statistics.measureEntries(logEntry -> true, true);
+		filter.test(FIRST_ENTRY);
+		filter.test(THIRD_ENTRY);
+		Assert.assertEquals(FIRST_ENTRY.length() + THIRD_ENTRY.length(), statistics.getBytesRead());
+	}
+
+	@Test
+	public void testMeasureReads() throws Exception {
+		byte[] data = new byte[10000];
+		try (InputStream in = statistics.measureReads(new ByteArrayInputStream(data))) {
+			in.read();
+			while (in.read(new byte[4096]) > 0) {
+				// Read all
+			}
+		}
+		Assert.assertEquals(data.length, statistics.getBytesRead());
+	}
+
+	@Test
+	public void testReport() {
+		statistics.includeMatched(1);
+		String report = statistics.toReport();
+		Assert.assertTrue(report, report.contains("Service result"));
+		Assert.assertTrue(report, report.contains("MyClass"));
+	}
+
+	@Test
+	public void testRegisterMBean() throws Exception {
+		statistics.includeMatched(0);
+		statistics.register();
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			long[] includeMatches = (long[]) server.getAttribute(statistics.getObjectName(), "IncludeMatches");
+			Assert.assertTrue(Arrays.equals(new long[] { 1, 0 }, includeMatches));
+		} finally {
+			statistics.unregister();
+		}
+		Assert.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(statistics.getObjectName()));
+	}
+
+	@Test
+	public void testConcurrentRunsKeepTheirMBeans() throws Exception {
+		FilterStatistics other = new FilterStatistics(Arrays.asList("Other"), Arrays.<String> asList());
+		statistics.register();
+		try {
+			other.register();
+			other.unregister();
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			Assert.assertFalse(statistics.getObjectName().equals(other.getObjectName()));
+			Assert.assertTrue(server.isRegistered(statistics.getObjectName()));
+			Assert.assertEquals(2, ((long[]) server.getAttribute(statistics.getObjectName(), "IncludeMatches")).length);
+		} finally {
+			statistics.unregister();
+		}
+	}
+}
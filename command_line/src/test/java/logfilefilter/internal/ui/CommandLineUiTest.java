@@ -1,7 +1,11 @@
 package logfilefilter.internal.ui;
 
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -51,4 +55,60 @@ public class CommandLineUiTest {
         testee.execute(args);
         Assert.assertEquals("2016-04-27 14:38:44,400 INFO Service result: ERROR" + LINE_SEPARATOR, out.toString());
     }
+
+    @Test
+    public void shouldIncludeLineWhichIsAlsoExcludedFromMemoryMappedFile() throws Exception {
+        String[] args = {"-e", "INFO", "-i", "ERROR", "-m", "-f", SIMPLE_LOG_FILE};
+        testee.execute(args);
+        Assert.assertEquals( //
+                "2016-04-27 14:38:44,400 ERROR An Exception occurred: Illegal state of object ...\n" //
+                        + "   at MyClass.execute(83)\n" //
+                        + "   at MyCallingClass.run(50)\n" //
+                        + "2016-04-27 14:38:44,400 INFO Service result: ERROR" + LINE_SEPARATOR,
+                out.toString());
+    }
+
+    @Test
+    public void shouldExcludeWithSeveralExcludePatterns() throws Exception {
+        String[] args = {"-e", "MyClass", "-e", "First", "-f", SIMPLE_LOG_FILE};
+        testee.execute(args);
+        Assert.assertEquals("2016-04-27 14:38:44,400 INFO Service result: ERROR" + LINE_SEPARATOR, out.toString());
+    }
+
+    @Test
+    public void shouldExcludeWithExcludePatternFile() throws Exception {
+        String[] args = {"-E", "./src/test/resources/testPatterns/exclude.patterns", "-f", SIMPLE_LOG_FILE};
+        testee.execute(args);
+        Assert.assertEquals("2016-04-27 14:38:44,400 INFO Service result: ERROR" + LINE_SEPARATOR, out.toString());
+    }
+
+    @Test
+    public void shouldFilterSeveralFilesIncludingGzipWithoutMergingEntries() throws Exception {
+        Path gzipFile = Files.createTempFile("CommandLineUiTest", ".log.1.gz");
+        try (OutputStream gzip = new GZIPOutputStream(Files.newOutputStream(gzipFile))) {
+            gzip.write("2016-04-27 14:38:43,123 ERROR Rotated log\n   at MyClass.execute(83)".getBytes());
+        }
+        try {
+            String[] args = {"-i", "ERROR", "-f", gzipFile.toString(), SIMPLE_LOG_FILE};
+            testee.execute(args);
+            Assert.assertEquals( //
+                    "2016-04-27 14:38:43,123 ERROR Rotated log" + LINE_SEPARATOR //
+                            + "   at MyClass.execute(83)" + LINE_SEPARATOR //
+                            + "2016-04-27 14:38:44,400 ERROR An Exception occurred: Illegal state of object ..." + LINE_SEPARATOR //
+                            + "   at MyClass.execute(83)" + LINE_SEPARATOR //
+                            + "   at MyCallingClass.run(50)" + LINE_SEPARATOR //
+                            + "2016-04-27 14:38:44,400 INFO Service result: ERROR" + LINE_SEPARATOR,
+                    out.toString());
+        } finally {
+            Files.delete(gzipFile);
+        }
+    }
+
+    @Test
+    public void shouldFilterTimeRange() throws Exception {
+        String[] args = {"--from", "2016-04-27 14:38:44,200", "--to", "2016-04-27 14:38:45", "-e", "MyClass", "-f",
+                SIMPLE_LOG_FILE};
+        testee.execute(args);
+        Assert.assertEquals("2016-04-27 14:38:44,400 INFO Service result: ERROR" + LINE_SEPARATOR, out.toString());
+    }
 }
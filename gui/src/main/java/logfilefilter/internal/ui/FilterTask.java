@@ -0,0 +1,76 @@
+package logfilefilter.internal.ui;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javafx.concurrent.Task;
+import logfilefilter.JavaLogFileFilter;
+import logfilefilter.internal.statistics.FilterStatistics;
+
+/**
+ * Runs a {@link JavaLogFileFilter} in the background. The progress is based on
+ * the bytes read from the source files, the first written entries are
+ * collected for a preview. {@link #refresh(List)} has to be called
+ * periodically by the JavaFX application thread to publish both.
+ */
+class FilterTask extends Task<FilterStatistics> {
+	static final int PREVIEW_LIMIT = 10000;
+	private static final double MEGABYTE = 1024 * 1024;
+
+	private final JavaLogFileFilter processor;
+	private final long sourceSize;
+	private final Queue<String> previewEntries = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger previewCount = new AtomicInteger();
+
+	/**
+	 * @param sourceSize
+	 *            the size of all source files in bytes
+	 */
+	FilterTask(JavaLogFileFilter processor, long sourceSize) {
+		this.processor = processor;
+		this.sourceSize = sourceSize;
+		processor.setRecordStatistics(true);
+		processor.setEntryObserver(logEntry -> {
+			if (previewCount.getAndIncrement() < PREVIEW_LIMIT) {
+				previewEntries.add(logEntry);
+			}
+		});
+	}
+
+	@Override
+	protected FilterStatistics call() throws Exception {
+		processor.execute();
+		return processor.getStatistics();
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		// Stops the filter at the next entry
+		processor.cancel();
+		return super.cancel(mayInterruptIfRunning);
+	}
+
+	/**
+	 * Updates progress and message and moves the entries found since the last
+	 * call into the preview.
+	 */
+	void refresh(List<String> preview) {
+		String previewEntry;
+		while ((previewEntry = previewEntries.poll()) != null) {
+			preview.add(previewEntry.trim());
+		}
+
+		FilterStatistics statistics = processor.getStatistics();
+		if (statistics != null) {
+			long bytesRead = Math.min(statistics.getBytesRead(), sourceSize);
+			updateProgress(bytesRead, sourceSize);
+			updateMessage(String.format("%.1f of %.1f MB, %.1f MB/s, %,d entries written%s", bytesRead / MEGABYTE,
+					sourceSize / MEGABYTE, bytesRead / MEGABYTE * 1000 / Math.max(statistics.getElapsedMillis(), 1),
+					statistics.getEntriesWritten(),
+					statistics.getEntriesWritten() > PREVIEW_LIMIT ? " (preview limited to " + PREVIEW_LIMIT + ")"
+							: ""));
+		}
+	}
+}
@@ -1,10 +1,15 @@
 package logfilefilter.internal.ui;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Objects;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Application;
 import javafx.event.ActionEvent;
 import javafx.geometry.Insets;
@@ -12,6 +17,8 @@ import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
@@ -22,7 +29,10 @@ import javafx.scene.text.Text;
 import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import logfilefilter.JavaLogFileFilter;
+import logfilefilter.internal.input.SourceResolver;
+import logfilefilter.internal.processors.EntryOffsetCache;
 
 public class GraphicalUi extends Application {
 	TextField sourceFile = new TextField();
@@ -30,6 +40,17 @@ public class GraphicalUi extends Application {
 	TextField exclude = new TextField();
 	TextField include = new TextField();
 	TextField timeStamp = new TextField(JavaLogFileFilter.DEFAULT_DATE_PATTERN);
+	Button startButton = new Button("Start filter");
+	Button cancelButton = new Button("Cancel");
+	ProgressBar progressBar = new ProgressBar(0);
+	Label statusLabel = new Label();
+	ListView<String> preview = new ListView<>();
+
+	/** Refreshes progress and preview of the running filter */
+	private final Timeline refreshTimeline = new Timeline();
+	private FilterTask filterTask;
+	/** Re-filtering a source with other patterns does not split it again */
+	private final EntryOffsetCache entryOffsetCache = new EntryOffsetCache();
 
 	public static void main(String[] args) {
 		launch();
@@ -96,16 +117,29 @@ public class GraphicalUi extends Application {
 		grid.add(tsLabel, labelColumn, currentRow);
 		grid.add(timeStamp, fieldColumn, currentRow++);
 
-		Button btn = new Button();
-		btn.setText("Start filter");
-		btn.setOnAction(this::startProcessor);
+		startButton.setOnAction(this::startProcessor);
+		cancelButton.setOnAction(event -> filterTask.cancel());
+		cancelButton.setDisable(true);
 
 		HBox hbBtn = new HBox(10);
 		hbBtn.setAlignment(Pos.BOTTOM_RIGHT);
-		hbBtn.getChildren().add(btn);
+		hbBtn.getChildren().addAll(startButton, cancelButton);
 		grid.add(hbBtn, fieldColumn, currentRow++);
 
-		primaryStage.setScene(new Scene(grid, 1024, 250));
+		progressBar.setMaxWidth(Double.MAX_VALUE);
+		grid.add(progressBar, fieldColumn, currentRow++);
+		grid.add(statusLabel, fieldColumn, currentRow++);
+
+		Label previewLabel = new Label("Preview");
+		grid.add(previewLabel, labelColumn, currentRow);
+		preview.setPrefHeight(400);
+		grid.add(preview, fieldColumn, currentRow++);
+
+		refreshTimeline.getKeyFrames()
+				.add(new KeyFrame(Duration.millis(200), event -> filterTask.refresh(preview.getItems())));
+		refreshTimeline.setCycleCount(Animation.INDEFINITE);
+
+		primaryStage.setScene(new Scene(grid, 1024, 768));
 		primaryStage.show();
 	}
 
@@ -119,25 +153,72 @@ public class GraphicalUi extends Application {
 			setPropertyIfNotEmpty(exclude::getText, processor::setExcludePattern);
 			setPropertyIfNotEmpty(include::getText, processor::setIncludePattern);
 			setPropertyIfNotEmpty(timeStamp::getText, processor::setDatePattern);
+			processor.setEntryOffsetCache(entryOffsetCache);
 
-			processor.execute();
+			long sourceSize = 0;
+			for (Path source : SourceResolver.resolve(sourceFile.getText())) {
+				sourceSize += Files.size(source);
+			}
+			runInBackground(new FilterTask(processor, sourceSize));
 		} catch (Exception e) {
-			// StringWriter sw = new StringWriter();
-			// PrintWriter pw = new PrintWriter(sw);
-			// e.printStackTrace(pw);
-
-			final Stage dialog = new Stage();
-			dialog.initModality(Modality.APPLICATION_MODAL);
-			dialog.initOwner(primaryStage);
-			VBox dialogVbox = new VBox(20);
-			// dialogVbox.getChildren().add(new Text(sw.toString()));
-			dialogVbox.getChildren().add(new Text(e.getMessage()));
-			Scene dialogScene = new Scene(dialogVbox, 300, 200);
-			dialog.setScene(dialogScene);
-			dialog.show();
+			showError(e);
 		}
 	}
 
+	/**
+	 * The window stays responsive while the filter runs, the written entries
+	 * are shown in the preview as they are found.
+	 */
+	private void runInBackground(FilterTask task) {
+		filterTask = task;
+		preview.getItems().clear();
+		progressBar.progressProperty().bind(task.progressProperty());
+		statusLabel.textProperty().bind(task.messageProperty());
+		startButton.setDisable(true);
+		cancelButton.setDisable(false);
+
+		task.setOnSucceeded(event -> finish(task, null));
+		task.setOnCancelled(event -> finish(task, null));
+		task.setOnFailed(event -> finish(task, task.getException()));
+
+		Thread thread = new Thread(task, "filter");
+		thread.setDaemon(true);
+		thread.start();
+		refreshTimeline.play();
+	}
+
+	private void finish(FilterTask task, Throwable exception) {
+		refreshTimeline.stop();
+		task.refresh(preview.getItems());
+		progressBar.progressProperty().unbind();
+		statusLabel.textProperty().unbind();
+		if (task.isCancelled()) {
+			statusLabel.setText(statusLabel.getText() + " - cancelled");
+		}
+		startButton.setDisable(false);
+		cancelButton.setDisable(true);
+
+		if (exception != null) {
+			showError(exception);
+		}
+	}
+
+	private void showError(Throwable e) {
+		// StringWriter sw = new StringWriter();
+		// PrintWriter pw = new PrintWriter(sw);
+		// e.printStackTrace(pw);
+
+		final Stage dialog = new Stage();
+		dialog.initModality(Modality.APPLICATION_MODAL);
+		dialog.initOwner(primaryStage);
+		VBox dialogVbox = new VBox(20);
+		// dialogVbox.getChildren().add(new Text(sw.toString()));
+		dialogVbox.getChildren().add(new Text(e.getMessage()));
+		Scene dialogScene = new Scene(dialogVbox, 300, 200);
+		dialog.setScene(dialogScene);
+		dialog.show();
+	}
+
 	private void setPropertyMustNotEmpty(String attribute, Supplier<String> stringSupplier, Consumer<String> consumer) {
 		String string = stringSupplier.get();
 		Objects.requireNonNull(string);